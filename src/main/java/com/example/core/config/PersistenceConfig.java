@@ -0,0 +1,24 @@
+package com.example.core.config;
+
+import com.example.core.id.PooledIdAllocator;
+import com.example.core.id.PooledIdGenerator;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.function.Supplier;
+
+@Configuration
+public class PersistenceConfig {
+
+    /**
+     * Hands {@link PooledIdGenerator} a lookup of this context's allocator. The allocator is resolved
+     * on first use, since it needs the transaction manager that is built on the entity manager factory.
+     */
+    @Bean
+    public HibernatePropertiesCustomizer pooledIdAllocatorCustomizer(ObjectProvider<PooledIdAllocator> allocator) {
+        Supplier<PooledIdAllocator> lookup = allocator::getObject;
+        return properties -> properties.put(PooledIdGenerator.ALLOCATOR_SETTING, lookup);
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.core.config;
 
+import com.example.core.repository.AdminUserRepository;
+import com.example.core.security.AdminAuthorizationFilter;
 import com.example.core.security.JwtAuthenticationFilter;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
@@ -14,4 +16,13 @@ public class SecurityConfig {
         bean.setOrder(1);
         return bean;
     }
+
+    @Bean
+    public FilterRegistrationBean<AdminAuthorizationFilter> adminAuthorizationFilter(AdminUserRepository adminUserRepository) {
+        FilterRegistrationBean<AdminAuthorizationFilter> bean =
+                new FilterRegistrationBean<>(new AdminAuthorizationFilter(adminUserRepository));
+        bean.addUrlPatterns("/api/admin/*");
+        bean.setOrder(2);
+        return bean;
+    }
 }
@@ -0,0 +1,799 @@
+package com.example.core.config;
+
+import com.example.core.enums.DeductEngine;
+import com.example.core.enums.ProjectType;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Wallet engine tuning properties.
+ */
+@Component
+@ConfigurationProperties(prefix = "wallet")
+public class WalletProperties {
+
+    private Lanes lanes = new Lanes();
+    private Deduct deduct = new Deduct();
+    private GroupCommit groupCommit = new GroupCommit();
+    private Idempotency idempotency = new Idempotency();
+    private BalanceCache balanceCache = new BalanceCache();
+    private Holds holds = new Holds();
+    private Shards shards = new Shards();
+    private EventLedger eventLedger = new EventLedger();
+    private Rollups rollups = new Rollups();
+    private Reconciliation reconciliation = new Reconciliation();
+    private Refunds refunds = new Refunds();
+    private Adjustments adjustments = new Adjustments();
+    private OrderNumbers orderNumbers = new OrderNumbers();
+    private Ids ids = new Ids();
+    private IdentityCache identityCache = new IdentityCache();
+    private Transfers transfers = new Transfers();
+    private Checkpoints checkpoints = new Checkpoints();
+    private Statements statements = new Statements();
+    private Velocity velocity = new Velocity();
+
+    public Lanes getLanes() {
+        return lanes;
+    }
+
+    public void setLanes(Lanes lanes) {
+        this.lanes = lanes;
+    }
+
+    public Deduct getDeduct() {
+        return deduct;
+    }
+
+    public void setDeduct(Deduct deduct) {
+        this.deduct = deduct;
+    }
+
+    public GroupCommit getGroupCommit() {
+        return groupCommit;
+    }
+
+    public void setGroupCommit(GroupCommit groupCommit) {
+        this.groupCommit = groupCommit;
+    }
+
+    public Idempotency getIdempotency() {
+        return idempotency;
+    }
+
+    public void setIdempotency(Idempotency idempotency) {
+        this.idempotency = idempotency;
+    }
+
+    public BalanceCache getBalanceCache() {
+        return balanceCache;
+    }
+
+    public void setBalanceCache(BalanceCache balanceCache) {
+        this.balanceCache = balanceCache;
+    }
+
+    public Holds getHolds() {
+        return holds;
+    }
+
+    public void setHolds(Holds holds) {
+        this.holds = holds;
+    }
+
+    public Shards getShards() {
+        return shards;
+    }
+
+    public void setShards(Shards shards) {
+        this.shards = shards;
+    }
+
+    public EventLedger getEventLedger() {
+        return eventLedger;
+    }
+
+    public void setEventLedger(EventLedger eventLedger) {
+        this.eventLedger = eventLedger;
+    }
+
+    public Rollups getRollups() {
+        return rollups;
+    }
+
+    public void setRollups(Rollups rollups) {
+        this.rollups = rollups;
+    }
+
+    public Reconciliation getReconciliation() {
+        return reconciliation;
+    }
+
+    public void setReconciliation(Reconciliation reconciliation) {
+        this.reconciliation = reconciliation;
+    }
+
+    public Refunds getRefunds() {
+        return refunds;
+    }
+
+    public void setRefunds(Refunds refunds) {
+        this.refunds = refunds;
+    }
+
+    public Adjustments getAdjustments() {
+        return adjustments;
+    }
+
+    public void setAdjustments(Adjustments adjustments) {
+        this.adjustments = adjustments;
+    }
+
+    public OrderNumbers getOrderNumbers() {
+        return orderNumbers;
+    }
+
+    public void setOrderNumbers(OrderNumbers orderNumbers) {
+        this.orderNumbers = orderNumbers;
+    }
+
+    public Ids getIds() {
+        return ids;
+    }
+
+    public void setIds(Ids ids) {
+        this.ids = ids;
+    }
+
+    public IdentityCache getIdentityCache() {
+        return identityCache;
+    }
+
+    public void setIdentityCache(IdentityCache identityCache) {
+        this.identityCache = identityCache;
+    }
+
+    public Transfers getTransfers() {
+        return transfers;
+    }
+
+    public void setTransfers(Transfers transfers) {
+        this.transfers = transfers;
+    }
+
+    public Checkpoints getCheckpoints() {
+        return checkpoints;
+    }
+
+    public void setCheckpoints(Checkpoints checkpoints) {
+        this.checkpoints = checkpoints;
+    }
+
+    public Statements getStatements() {
+        return statements;
+    }
+
+    public void setStatements(Statements statements) {
+        this.statements = statements;
+    }
+
+    public Velocity getVelocity() {
+        return velocity;
+    }
+
+    public void setVelocity(Velocity velocity) {
+        this.velocity = velocity;
+    }
+
+    /**
+     * In-process per-account serialization. Writes for the same customer queue on one
+     * striped lane instead of racing on {@code accounts.version}.
+     */
+    public static class Lanes {
+
+        private boolean enabled = true;
+        private int stripes = 256;
+        private long acquireTimeoutMs = 5000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getStripes() {
+            return stripes;
+        }
+
+        public void setStripes(int stripes) {
+            this.stripes = stripes;
+        }
+
+        public long getAcquireTimeoutMs() {
+            return acquireTimeoutMs;
+        }
+
+        public void setAcquireTimeoutMs(long acquireTimeoutMs) {
+            this.acquireTimeoutMs = acquireTimeoutMs;
+        }
+    }
+
+    public static class Deduct {
+
+        private DeductEngine engine = DeductEngine.JPA;
+        private int maxBatchItems = 100;
+
+        public DeductEngine getEngine() {
+            return engine;
+        }
+
+        public void setEngine(DeductEngine engine) {
+            this.engine = engine;
+        }
+
+        public int getMaxBatchItems() {
+            return maxBatchItems;
+        }
+
+        public void setMaxBatchItems(int maxBatchItems) {
+            this.maxBatchItems = maxBatchItems;
+        }
+    }
+
+    /**
+     * Write-behind batching for {@code DeductEngine.GROUP_COMMIT}.
+     */
+    public static class GroupCommit {
+
+        private long windowMs = 3;
+        private int maxBatchSize = 128;
+        private int queueCapacity = 4096;
+        private long timeoutMs = 5000;
+
+        public long getWindowMs() {
+            return windowMs;
+        }
+
+        public void setWindowMs(long windowMs) {
+            this.windowMs = windowMs;
+        }
+
+        public int getMaxBatchSize() {
+            return maxBatchSize;
+        }
+
+        public void setMaxBatchSize(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public long getTimeoutMs() {
+            return timeoutMs;
+        }
+
+        public void setTimeoutMs(long timeoutMs) {
+            this.timeoutMs = timeoutMs;
+        }
+    }
+
+    public static class Idempotency {
+
+        private int cacheSize = 100_000;
+
+        public int getCacheSize() {
+            return cacheSize;
+        }
+
+        public void setCacheSize(int cacheSize) {
+            this.cacheSize = cacheSize;
+        }
+    }
+
+    public static class BalanceCache {
+
+        private long ttlMs = 2000;
+        private int maxEntries = 100_000;
+
+        public long getTtlMs() {
+            return ttlMs;
+        }
+
+        public void setTtlMs(long ttlMs) {
+            this.ttlMs = ttlMs;
+        }
+
+        public int getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+    }
+
+    /**
+     * Balance hold lifetime and expiry scheduling.
+     */
+    public static class Holds {
+
+        private long defaultTtlSeconds = 900;
+        private long maxTtlSeconds = 86_400;
+        private long tickMs = 1000;
+        private int wheelSize = 512;
+        private int expiryBatchSize = 200;
+        private long sweepIntervalMs = 60_000;
+
+        public long getDefaultTtlSeconds() {
+            return defaultTtlSeconds;
+        }
+
+        public void setDefaultTtlSeconds(long defaultTtlSeconds) {
+            this.defaultTtlSeconds = defaultTtlSeconds;
+        }
+
+        public long getMaxTtlSeconds() {
+            return maxTtlSeconds;
+        }
+
+        public void setMaxTtlSeconds(long maxTtlSeconds) {
+            this.maxTtlSeconds = maxTtlSeconds;
+        }
+
+        public long getTickMs() {
+            return tickMs;
+        }
+
+        public void setTickMs(long tickMs) {
+            this.tickMs = tickMs;
+        }
+
+        public int getWheelSize() {
+            return wheelSize;
+        }
+
+        public void setWheelSize(int wheelSize) {
+            this.wheelSize = wheelSize;
+        }
+
+        public int getExpiryBatchSize() {
+            return expiryBatchSize;
+        }
+
+        public void setExpiryBatchSize(int expiryBatchSize) {
+            this.expiryBatchSize = expiryBatchSize;
+        }
+
+        public long getSweepIntervalMs() {
+            return sweepIntervalMs;
+        }
+
+        public void setSweepIntervalMs(long sweepIntervalMs) {
+            this.sweepIntervalMs = sweepIntervalMs;
+        }
+    }
+
+    /**
+     * Sharded balances for hot accounts.
+     */
+    public static class Shards {
+
+        private int maxShards = 64;
+        private long rebalanceIntervalMs = 10_000;
+        private double rebalanceThreshold = 0.25;
+
+        public int getMaxShards() {
+            return maxShards;
+        }
+
+        public void setMaxShards(int maxShards) {
+            this.maxShards = maxShards;
+        }
+
+        public long getRebalanceIntervalMs() {
+            return rebalanceIntervalMs;
+        }
+
+        public void setRebalanceIntervalMs(long rebalanceIntervalMs) {
+            this.rebalanceIntervalMs = rebalanceIntervalMs;
+        }
+
+        public double getRebalanceThreshold() {
+            return rebalanceThreshold;
+        }
+
+        public void setRebalanceThreshold(double rebalanceThreshold) {
+            this.rebalanceThreshold = rebalanceThreshold;
+        }
+    }
+
+    /**
+     * Snapshotting and the single-writer lease for {@code DeductEngine.EVENT_SOURCED}.
+     */
+    public static class EventLedger {
+
+        private long snapshotIntervalMs = 5000;
+        private int snapshotEveryTransactions = 200;
+        private int keepSnapshots = 3;
+        private long leaseTtlMs = 30000;
+
+        public long getSnapshotIntervalMs() {
+            return snapshotIntervalMs;
+        }
+
+        public void setSnapshotIntervalMs(long snapshotIntervalMs) {
+            this.snapshotIntervalMs = snapshotIntervalMs;
+        }
+
+        public int getSnapshotEveryTransactions() {
+            return snapshotEveryTransactions;
+        }
+
+        public void setSnapshotEveryTransactions(int snapshotEveryTransactions) {
+            this.snapshotEveryTransactions = snapshotEveryTransactions;
+        }
+
+        public int getKeepSnapshots() {
+            return keepSnapshots;
+        }
+
+        public void setKeepSnapshots(int keepSnapshots) {
+            this.keepSnapshots = keepSnapshots;
+        }
+
+        public long getLeaseTtlMs() {
+            return leaseTtlMs;
+        }
+
+        public void setLeaseTtlMs(long leaseTtlMs) {
+            this.leaseTtlMs = leaseTtlMs;
+        }
+    }
+
+    /**
+     * Backfill of {@code transaction_rollups} from transactions that predate it.
+     */
+    public static class Rollups {
+
+        private int backfillBatchSize = 5000;
+        private long backfillPauseMs = 200;
+
+        public int getBackfillBatchSize() {
+            return backfillBatchSize;
+        }
+
+        public void setBackfillBatchSize(int backfillBatchSize) {
+            this.backfillBatchSize = backfillBatchSize;
+        }
+
+        public long getBackfillPauseMs() {
+            return backfillPauseMs;
+        }
+
+        public void setBackfillPauseMs(long backfillPauseMs) {
+            this.backfillPauseMs = backfillPauseMs;
+        }
+    }
+
+    /**
+     * Parallel balance-vs-ledger reconciliation.
+     */
+    public static class Reconciliation {
+
+        private int rangeSize = 1000;
+        private int concurrency = 4;
+
+        public int getRangeSize() {
+            return rangeSize;
+        }
+
+        public void setRangeSize(int rangeSize) {
+            this.rangeSize = rangeSize;
+        }
+
+        public int getConcurrency() {
+            return concurrency;
+        }
+
+        public void setConcurrency(int concurrency) {
+            this.concurrency = concurrency;
+        }
+    }
+
+    /**
+     * Bulk refunds.
+     */
+    public static class Refunds {
+
+        private int batchSize = 500;
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+    }
+
+    /**
+     * Bulk adjustment imports.
+     */
+    public static class Adjustments {
+
+        private int batchSize = 500;
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+    }
+
+    /**
+     * Recharge order number generation.
+     */
+    public static class OrderNumbers {
+
+        private int nodeId = -1;
+
+        public int getNodeId() {
+            return nodeId;
+        }
+
+        public void setNodeId(int nodeId) {
+            this.nodeId = nodeId;
+        }
+    }
+
+    /**
+     * Pooled id allocation for ledger, order event and comment rows.
+     */
+    public static class Ids {
+
+        private int allocationSize = 100;
+
+        public int getAllocationSize() {
+            return allocationSize;
+        }
+
+        public void setAllocationSize(int allocationSize) {
+            this.allocationSize = allocationSize;
+        }
+    }
+
+    /**
+     * openid / customer / account id mappings kept in memory.
+     */
+    public static class IdentityCache {
+
+        private int maxAccounts = 262_144;
+        private int maxOpenids = 100_000;
+
+        public int getMaxAccounts() {
+            return maxAccounts;
+        }
+
+        public void setMaxAccounts(int maxAccounts) {
+            this.maxAccounts = maxAccounts;
+        }
+
+        public int getMaxOpenids() {
+            return maxOpenids;
+        }
+
+        public void setMaxOpenids(int maxOpenids) {
+            this.maxOpenids = maxOpenids;
+        }
+    }
+
+    /**
+     * Wallet-to-wallet transfers.
+     */
+    public static class Transfers {
+
+        private int batchSize = 200;
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+    }
+
+    /**
+     * Daily balance checkpoints for point-in-time balance queries.
+     */
+    public static class Checkpoints {
+
+        private boolean enabled = true;
+        private long intervalMs = 600_000;
+        private long settleDelayMs = 600_000;
+        private int rangeSize = 10_000;
+        private int concurrency = 4;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getIntervalMs() {
+            return intervalMs;
+        }
+
+        public void setIntervalMs(long intervalMs) {
+            this.intervalMs = intervalMs;
+        }
+
+        public long getSettleDelayMs() {
+            return settleDelayMs;
+        }
+
+        public void setSettleDelayMs(long settleDelayMs) {
+            this.settleDelayMs = settleDelayMs;
+        }
+
+        public int getRangeSize() {
+            return rangeSize;
+        }
+
+        public void setRangeSize(int rangeSize) {
+            this.rangeSize = rangeSize;
+        }
+
+        public int getConcurrency() {
+            return concurrency;
+        }
+
+        public void setConcurrency(int concurrency) {
+            this.concurrency = concurrency;
+        }
+    }
+
+    /**
+     * Monthly statement generation over customer id ranges.
+     */
+    public static class Statements {
+
+        private boolean enabled = true;
+        private long intervalMs = 3_600_000;
+        private long settleDelayMs = 3_600_000;
+        private int rangeSize = 1_000;
+        private int concurrency = 4;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getIntervalMs() {
+            return intervalMs;
+        }
+
+        public void setIntervalMs(long intervalMs) {
+            this.intervalMs = intervalMs;
+        }
+
+        public long getSettleDelayMs() {
+            return settleDelayMs;
+        }
+
+        public void setSettleDelayMs(long settleDelayMs) {
+            this.settleDelayMs = settleDelayMs;
+        }
+
+        public int getRangeSize() {
+            return rangeSize;
+        }
+
+        public void setRangeSize(int rangeSize) {
+            this.rangeSize = rangeSize;
+        }
+
+        public int getConcurrency() {
+            return concurrency;
+        }
+
+        public void setConcurrency(int concurrency) {
+            this.concurrency = concurrency;
+        }
+    }
+
+    /**
+     * Per-customer spend caps on deducts, per project type; a project type without limits is not checked.
+     */
+    public static class Velocity {
+
+        private boolean enabled = true;
+        private int stripes = 64;
+        private long sweepIntervalMs = 600_000;
+        private Map<ProjectType, Limit> limits = new EnumMap<>(ProjectType.class);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getStripes() {
+            return stripes;
+        }
+
+        public void setStripes(int stripes) {
+            this.stripes = stripes;
+        }
+
+        public long getSweepIntervalMs() {
+            return sweepIntervalMs;
+        }
+
+        public void setSweepIntervalMs(long sweepIntervalMs) {
+            this.sweepIntervalMs = sweepIntervalMs;
+        }
+
+        public Map<ProjectType, Limit> getLimits() {
+            return limits;
+        }
+
+        public void setLimits(Map<ProjectType, Limit> limits) {
+            this.limits = limits;
+        }
+
+        /**
+         * Most that may be spent in a sliding minute, hour and day; null means no cap for that window.
+         */
+        public static class Limit {
+
+            private BigDecimal perMinute;
+            private BigDecimal perHour;
+            private BigDecimal perDay;
+
+            public BigDecimal getPerMinute() {
+                return perMinute;
+            }
+
+            public void setPerMinute(BigDecimal perMinute) {
+                this.perMinute = perMinute;
+            }
+
+            public BigDecimal getPerHour() {
+                return perHour;
+            }
+
+            public void setPerHour(BigDecimal perHour) {
+                this.perHour = perHour;
+            }
+
+            public BigDecimal getPerDay() {
+                return perDay;
+            }
+
+            public void setPerDay(BigDecimal perDay) {
+                this.perDay = perDay;
+            }
+        }
+    }
+}
@@ -5,6 +5,7 @@ import com.example.core.entity.Customer;
 import com.example.core.mapper.CustomerMapper;
 import com.example.core.repository.CustomerRepository;
 import com.example.core.security.AuthenticationContext;
+import com.example.core.service.AdminAuthService;
 import com.example.core.service.CustomerAuthService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -16,12 +17,14 @@ public class AuthController {
     private final CustomerAuthService customerAuthService;
     private final CustomerRepository customerRepository;
     private final AuthenticationContext authenticationContext;
+    private final AdminAuthService adminAuthService;
 
     public AuthController(CustomerAuthService customerAuthService, CustomerRepository customerRepository,
-                         AuthenticationContext authenticationContext) {
+                         AuthenticationContext authenticationContext, AdminAuthService adminAuthService) {
         this.customerAuthService = customerAuthService;
         this.customerRepository = customerRepository;
         this.authenticationContext = authenticationContext;
+        this.adminAuthService = adminAuthService;
     }
 
     @PostMapping("/wechat/login")
@@ -37,6 +40,16 @@ public class AuthController {
         }
     }
 
+    @PostMapping("/admin/login")
+    public ResponseEntity<?> adminLogin(@RequestBody AdminLoginRequest request) {
+        try {
+            String token = adminAuthService.login(request.getUsername(), request.getPassword());
+            return ResponseEntity.ok(new AdminLoginResponse(token));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(new ErrorResponse(e.getMessage()));
+        }
+    }
+
     @PostMapping("/profile/complete")
     public ResponseEntity<?> completeProfile(@RequestBody ProfileCompleteRequest request) {
         try {
@@ -96,6 +109,43 @@ public class AuthController {
         }
     }
 
+    public static class AdminLoginRequest {
+        private String username;
+        private String password;
+
+        public String getUsername() {
+            return username;
+        }
+
+        public void setUsername(String username) {
+            this.username = username;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        public void setPassword(String password) {
+            this.password = password;
+        }
+    }
+
+    public static class AdminLoginResponse {
+        private String token;
+
+        public AdminLoginResponse(String token) {
+            this.token = token;
+        }
+
+        public String getToken() {
+            return token;
+        }
+
+        public void setToken(String token) {
+            this.token = token;
+        }
+    }
+
     public static class ProfileCompleteRequest {
         private String name;
         private String phone;
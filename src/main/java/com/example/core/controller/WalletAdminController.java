@@ -0,0 +1,312 @@
+package com.example.core.controller;
+
+import com.example.core.dto.AccountDTO;
+import com.example.core.dto.AdjustmentImportDTO;
+import com.example.core.dto.BalanceAtDTO;
+import com.example.core.dto.ReconciliationRunDTO;
+import com.example.core.dto.RefundReportDTO;
+import com.example.core.dto.StatementRunDTO;
+import com.example.core.dto.TransferReportDTO;
+import com.example.core.service.AdjustmentImportService;
+import com.example.core.service.BalanceCheckpointJob;
+import com.example.core.service.LedgerExportService;
+import com.example.core.service.ShardedBalanceService;
+import com.example.core.service.StatementJob;
+import com.example.core.service.WalletMetrics;
+import com.example.core.service.WalletReconciliationJob;
+import com.example.core.service.WalletService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin/wallet")
+public class WalletAdminController {
+
+    private final WalletMetrics walletMetrics;
+    private final WalletService walletService;
+    private final ShardedBalanceService shardedBalanceService;
+    private final LedgerExportService ledgerExportService;
+    private final WalletReconciliationJob reconciliationJob;
+    private final AdjustmentImportService adjustmentImportService;
+    private final BalanceCheckpointJob balanceCheckpointJob;
+    private final StatementJob statementJob;
+
+    public WalletAdminController(WalletMetrics walletMetrics,
+                                 WalletService walletService,
+                                 ShardedBalanceService shardedBalanceService,
+                                 LedgerExportService ledgerExportService,
+                                 WalletReconciliationJob reconciliationJob,
+                                 AdjustmentImportService adjustmentImportService,
+                                 BalanceCheckpointJob balanceCheckpointJob,
+                                 StatementJob statementJob) {
+        this.walletMetrics = walletMetrics;
+        this.walletService = walletService;
+        this.shardedBalanceService = shardedBalanceService;
+        this.ledgerExportService = ledgerExportService;
+        this.reconciliationJob = reconciliationJob;
+        this.adjustmentImportService = adjustmentImportService;
+        this.balanceCheckpointJob = balanceCheckpointJob;
+        this.statementJob = statementJob;
+    }
+
+    @GetMapping("/metrics")
+    public ResponseEntity<Map<String, Long>> getMetrics() {
+        return ResponseEntity.ok(walletMetrics.snapshot());
+    }
+
+    @PostMapping("/accounts/{customerId}/shards")
+    public ResponseEntity<?> enableSharding(@PathVariable Long customerId, @RequestParam int count) {
+        try {
+            shardedBalanceService.enable(customerId, count);
+            AccountDTO dto = walletService.getBalance(customerId);
+            return ResponseEntity.ok(dto);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(new WalletController.ErrorResponse(e.getMessage()));
+        }
+    }
+
+    @GetMapping("/accounts/{customerId}/transactions/export")
+    public ResponseEntity<?> exportTransactions(@PathVariable Long customerId,
+                                                @RequestParam(required = false) String format,
+                                                @RequestParam(defaultValue = "false") boolean gzip) {
+        try {
+            LedgerExportService.Format exportFormat = LedgerExportService.Format.parse(format);
+            String filename = "wallet-" + customerId + "." + exportFormat.getExtension() + (gzip ? ".gz" : "");
+            StreamingResponseBody body = out -> ledgerExportService.export(customerId, exportFormat, gzip, out);
+
+            return ResponseEntity.ok()
+                    .contentType(gzip ? MediaType.parseMediaType("application/gzip") : MediaType.parseMediaType(exportFormat.getContentType()))
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                    .body(body);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(new WalletController.ErrorResponse(e.getMessage()));
+        }
+    }
+
+    @PostMapping("/reconciliations")
+    public ResponseEntity<?> startReconciliation() {
+        try {
+            ReconciliationRunDTO run = reconciliationJob.start();
+            return ResponseEntity.ok(run);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(new WalletController.ErrorResponse(e.getMessage()));
+        }
+    }
+
+    @GetMapping("/reconciliations/{runId}")
+    public ResponseEntity<?> getReconciliation(@PathVariable Long runId,
+                                               @RequestParam(defaultValue = "100") int driftLimit) {
+        try {
+            ReconciliationRunDTO run = reconciliationJob.getRun(runId, driftLimit);
+            return ResponseEntity.ok(run);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(new WalletController.ErrorResponse(e.getMessage()));
+        }
+    }
+
+    @GetMapping("/accounts/{customerId}/balance-at")
+    public ResponseEntity<?> getBalanceAt(@PathVariable Long customerId,
+                                          @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant at) {
+        try {
+            BalanceAtDTO dto = walletService.balanceAt(customerId, at);
+            return ResponseEntity.ok(dto);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(new WalletController.ErrorResponse(e.getMessage()));
+        }
+    }
+
+    @PostMapping("/checkpoints")
+    public ResponseEntity<?> writeCheckpoints(@RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate day) {
+        try {
+            int failedRanges = balanceCheckpointJob.checkpoint(day);
+            return ResponseEntity.ok(Map.of("checkpointAt", day.atStartOfDay().toString(), "failedRanges", failedRanges));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(new WalletController.ErrorResponse(e.getMessage()));
+        }
+    }
+
+    @PostMapping("/statements")
+    public ResponseEntity<?> generateStatements(@RequestParam @DateTimeFormat(pattern = "yyyy-MM") YearMonth month) {
+        try {
+            StatementRunDTO run = statementJob.generate(month);
+            return ResponseEntity.ok(run);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(new WalletController.ErrorResponse(e.getMessage()));
+        }
+    }
+
+    @GetMapping("/statements/{month}")
+    public ResponseEntity<?> getStatementRun(@PathVariable @DateTimeFormat(pattern = "yyyy-MM") YearMonth month) {
+        try {
+            StatementRunDTO run = statementJob.getRun(month);
+            return ResponseEntity.ok(run);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(new WalletController.ErrorResponse(e.getMessage()));
+        }
+    }
+
+    @PostMapping("/refunds")
+    public ResponseEntity<?> refund(@RequestBody List<RefundRequest> requests) {
+        try {
+            List<WalletService.RefundInstruction> instructions = new ArrayList<>(requests.size());
+            for (RefundRequest request : requests) {
+                instructions.add(new WalletService.RefundInstruction(
+                        request.getRefundReferenceNo(),
+                        request.getSpendReferenceNo(),
+                        request.getAmount(),
+                        request.getMetadata()
+                ));
+            }
+
+            RefundReportDTO report = walletService.refundBatch(instructions);
+            return ResponseEntity.ok(report);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(new WalletController.ErrorResponse(e.getMessage()));
+        }
+    }
+
+    @PostMapping("/transfers")
+    public ResponseEntity<?> transfer(@RequestBody List<TransferRequest> requests) {
+        try {
+            List<WalletService.TransferInstruction> instructions = new ArrayList<>(requests.size());
+            for (TransferRequest request : requests) {
+                instructions.add(new WalletService.TransferInstruction(
+                        request.getFromCustomerId(),
+                        request.getToCustomerId(),
+                        request.getAmount(),
+                        request.getReferenceNo(),
+                        request.getMetadata()
+                ));
+            }
+
+            TransferReportDTO report = walletService.transferBatch(instructions);
+            return ResponseEntity.ok(report);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(new WalletController.ErrorResponse(e.getMessage()));
+        }
+    }
+
+    @PostMapping(value = "/adjustments/imports", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> importAdjustments(@RequestParam("file") MultipartFile file) {
+        try {
+            if (file.isEmpty()) {
+                throw new IllegalArgumentException("Adjustment file is empty");
+            }
+            AdjustmentImportDTO result = adjustmentImportService.importFile(file.getOriginalFilename(), file);
+            return ResponseEntity.ok(result);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(new WalletController.ErrorResponse(e.getMessage()));
+        }
+    }
+
+    @GetMapping("/adjustments/imports/{importId}")
+    public ResponseEntity<?> getAdjustmentImport(@PathVariable Long importId,
+                                                 @RequestParam(defaultValue = "100") int failureLimit) {
+        try {
+            AdjustmentImportDTO result = adjustmentImportService.getImport(importId, failureLimit);
+            return ResponseEntity.ok(result);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(new WalletController.ErrorResponse(e.getMessage()));
+        }
+    }
+
+    public static class RefundRequest {
+        private String refundReferenceNo;
+        private String spendReferenceNo;
+        private BigDecimal amount;
+        private String metadata;
+
+        public String getRefundReferenceNo() {
+            return refundReferenceNo;
+        }
+
+        public void setRefundReferenceNo(String refundReferenceNo) {
+            this.refundReferenceNo = refundReferenceNo;
+        }
+
+        public String getSpendReferenceNo() {
+            return spendReferenceNo;
+        }
+
+        public void setSpendReferenceNo(String spendReferenceNo) {
+            this.spendReferenceNo = spendReferenceNo;
+        }
+
+        public BigDecimal getAmount() {
+            return amount;
+        }
+
+        public void setAmount(BigDecimal amount) {
+            this.amount = amount;
+        }
+
+        public String getMetadata() {
+            return metadata;
+        }
+
+        public void setMetadata(String metadata) {
+            this.metadata = metadata;
+        }
+    }
+
+    public static class TransferRequest {
+        private Long fromCustomerId;
+        private Long toCustomerId;
+        private BigDecimal amount;
+        private String referenceNo;
+        private String metadata;
+
+        public Long getFromCustomerId() {
+            return fromCustomerId;
+        }
+
+        public void setFromCustomerId(Long fromCustomerId) {
+            this.fromCustomerId = fromCustomerId;
+        }
+
+        public Long getToCustomerId() {
+            return toCustomerId;
+        }
+
+        public void setToCustomerId(Long toCustomerId) {
+            this.toCustomerId = toCustomerId;
+        }
+
+        public BigDecimal getAmount() {
+            return amount;
+        }
+
+        public void setAmount(BigDecimal amount) {
+            this.amount = amount;
+        }
+
+        public String getReferenceNo() {
+            return referenceNo;
+        }
+
+        public void setReferenceNo(String referenceNo) {
+            this.referenceNo = referenceNo;
+        }
+
+        public String getMetadata() {
+            return metadata;
+        }
+
+        public void setMetadata(String metadata) {
+            this.metadata = metadata;
+        }
+    }
+}
@@ -1,22 +1,35 @@
 package com.example.core.controller;
 
 import com.example.core.dto.AccountDTO;
+import com.example.core.dto.BalanceHoldDTO;
+import com.example.core.dto.BatchDeductResponseDTO;
 import com.example.core.dto.DeductResponseDTO;
 import com.example.core.dto.RechargeInitiationDTO;
+import com.example.core.dto.ShortfallPurchaseDTO;
+import com.example.core.dto.StatementDTO;
+import com.example.core.dto.TransactionPageDTO;
+import com.example.core.dto.TransactionRollupDTO;
+import com.example.core.dto.TransferDTO;
+import com.example.core.entity.BalanceHold;
 import com.example.core.entity.RechargePromotion;
 import com.example.core.entity.Transaction;
 import com.example.core.enums.PaymentChannel;
 import com.example.core.enums.ProjectType;
+import com.example.core.enums.TransactionType;
 import com.example.core.exception.InsufficientBalanceException;
-import com.example.core.mapper.AccountMapper;
+import com.example.core.mapper.BalanceHoldMapper;
 import com.example.core.repository.RechargePromotionRepository;
 import com.example.core.security.AuthenticationContext;
 import com.example.core.service.WalletService;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
 import java.util.List;
 
 @RestController
@@ -43,7 +56,7 @@ public class WalletController {
                 return ResponseEntity.badRequest().body(new ErrorResponse("Not authenticated"));
             }
 
-            AccountDTO dto = AccountMapper.toDTO(walletService.getOrCreateAccount(customerId));
+            AccountDTO dto = walletService.getBalance(customerId);
             return ResponseEntity.ok(dto);
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(new ErrorResponse(e.getMessage()));
@@ -60,6 +73,56 @@ public class WalletController {
         }
     }
 
+    @GetMapping("/transactions")
+    public ResponseEntity<?> getTransactions(@RequestParam(required = false) TransactionType type,
+                                             @RequestParam(required = false) ProjectType projectType,
+                                             @RequestParam(required = false) String cursor,
+                                             @RequestParam(required = false) Integer limit) {
+        try {
+            Long customerId = authenticationContext.getCurrentCustomerId();
+            if (customerId == null) {
+                return ResponseEntity.badRequest().body(new ErrorResponse("Not authenticated"));
+            }
+
+            TransactionPageDTO page = walletService.getTransactions(customerId, type, projectType, cursor, limit);
+            return ResponseEntity.ok(page);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(new ErrorResponse(e.getMessage()));
+        }
+    }
+
+    @GetMapping("/transactions/summary")
+    public ResponseEntity<?> getTransactionSummary(@RequestParam(required = false) TransactionType type,
+                                                   @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                   @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        try {
+            Long customerId = authenticationContext.getCurrentCustomerId();
+            if (customerId == null) {
+                return ResponseEntity.badRequest().body(new ErrorResponse("Not authenticated"));
+            }
+
+            List<TransactionRollupDTO> rollups = walletService.getTransactionRollups(customerId, type, from, to);
+            return ResponseEntity.ok(rollups);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(new ErrorResponse(e.getMessage()));
+        }
+    }
+
+    @GetMapping("/statements/{month}")
+    public ResponseEntity<?> getStatement(@PathVariable @DateTimeFormat(pattern = "yyyy-MM") YearMonth month) {
+        try {
+            Long customerId = authenticationContext.getCurrentCustomerId();
+            if (customerId == null) {
+                return ResponseEntity.badRequest().body(new ErrorResponse("Not authenticated"));
+            }
+
+            StatementDTO statement = walletService.getStatement(customerId, month);
+            return ResponseEntity.ok(statement);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(new ErrorResponse(e.getMessage()));
+        }
+    }
+
     @PostMapping("/recharge/initiate")
     public ResponseEntity<?> initiateRecharge(@RequestBody RechargeInitiateRequest request) {
         try {
@@ -105,6 +168,149 @@ public class WalletController {
         }
     }
 
+    @PostMapping("/deduct/batch")
+    public ResponseEntity<?> deductBatch(@RequestBody List<DeductRequest> requests) {
+        try {
+            Long customerId = authenticationContext.getCurrentCustomerId();
+            if (customerId == null) {
+                return ResponseEntity.badRequest().body(new ErrorResponse("Not authenticated"));
+            }
+
+            List<WalletService.DeductItem> items = new ArrayList<>(requests.size());
+            for (DeductRequest request : requests) {
+                items.add(new WalletService.DeductItem(
+                        request.getAmount(),
+                        request.getProjectType(),
+                        request.getMetadata(),
+                        request.getReferenceNo()
+                ));
+            }
+
+            BatchDeductResponseDTO result = walletService.deductBatch(customerId, items);
+            return ResponseEntity.ok(result);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(new ErrorResponse(e.getMessage()));
+        }
+    }
+
+    @PostMapping("/holds")
+    public ResponseEntity<?> authorizeHold(@RequestBody HoldRequest request) {
+        try {
+            Long customerId = authenticationContext.getCurrentCustomerId();
+            if (customerId == null) {
+                return ResponseEntity.badRequest().body(new ErrorResponse("Not authenticated"));
+            }
+
+            BalanceHold hold = walletService.authorizeHold(
+                    customerId,
+                    request.getAmount(),
+                    request.getProjectType(),
+                    request.getReferenceNo(),
+                    request.getTtlSeconds()
+            );
+
+            BalanceHoldDTO dto = BalanceHoldMapper.toDTO(hold);
+            return ResponseEntity.ok(dto);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(new ErrorResponse(e.getMessage()));
+        }
+    }
+
+    @PostMapping("/holds/{holdId}/capture")
+    public ResponseEntity<?> captureHold(@PathVariable Long holdId, @RequestBody(required = false) CaptureRequest request) {
+        try {
+            Long customerId = authenticationContext.getCurrentCustomerId();
+            if (customerId == null) {
+                return ResponseEntity.badRequest().body(new ErrorResponse("Not authenticated"));
+            }
+
+            Transaction transaction = walletService.captureHold(
+                    customerId,
+                    holdId,
+                    request != null ? request.getAmount() : null
+            );
+
+            return ResponseEntity.ok(new DeductResponseDTO(transaction.getId(), transaction.getAccount().getBalance()));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(new ErrorResponse(e.getMessage()));
+        }
+    }
+
+    @PostMapping("/holds/{holdId}/release")
+    public ResponseEntity<?> releaseHold(@PathVariable Long holdId) {
+        try {
+            Long customerId = authenticationContext.getCurrentCustomerId();
+            if (customerId == null) {
+                return ResponseEntity.badRequest().body(new ErrorResponse("Not authenticated"));
+            }
+
+            BalanceHoldDTO dto = BalanceHoldMapper.toDTO(walletService.releaseHold(customerId, holdId));
+            return ResponseEntity.ok(dto);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(new ErrorResponse(e.getMessage()));
+        }
+    }
+
+    @PostMapping("/transfers")
+    public ResponseEntity<?> transfer(@RequestBody TransferRequest request) {
+        try {
+            Long customerId = authenticationContext.getCurrentCustomerId();
+            if (customerId == null) {
+                return ResponseEntity.badRequest().body(new ErrorResponse("Not authenticated"));
+            }
+
+            TransferDTO transfer = walletService.transfer(
+                    customerId,
+                    request.getToCustomerId(),
+                    request.getAmount(),
+                    request.getReferenceNo(),
+                    request.getMetadata()
+            );
+
+            return ResponseEntity.ok(transfer);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(new ErrorResponse(e.getMessage()));
+        }
+    }
+
+    @PostMapping("/shortfall-purchases")
+    public ResponseEntity<?> purchaseWithShortfall(@RequestBody ShortfallPurchaseRequest request) {
+        try {
+            Long customerId = authenticationContext.getCurrentCustomerId();
+            if (customerId == null) {
+                return ResponseEntity.badRequest().body(new ErrorResponse("Not authenticated"));
+            }
+
+            ShortfallPurchaseDTO purchase = walletService.purchaseWithShortfall(
+                    customerId,
+                    request.getChannel(),
+                    request.getAmount(),
+                    request.getProjectType(),
+                    request.getMetadata(),
+                    request.getReferenceNo()
+            );
+
+            return ResponseEntity.ok(purchase);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(new ErrorResponse(e.getMessage()));
+        }
+    }
+
+    @GetMapping("/shortfall-purchases/{orderNo}")
+    public ResponseEntity<?> getShortfallPurchase(@PathVariable String orderNo) {
+        try {
+            Long customerId = authenticationContext.getCurrentCustomerId();
+            if (customerId == null) {
+                return ResponseEntity.badRequest().body(new ErrorResponse("Not authenticated"));
+            }
+
+            ShortfallPurchaseDTO purchase = walletService.getShortfallPurchase(customerId, orderNo);
+            return ResponseEntity.ok(purchase);
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(new ErrorResponse(e.getMessage()));
+        }
+    }
+
     public static class RechargeInitiateRequest {
         private PaymentChannel channel;
         private BigDecimal amount;
@@ -174,6 +380,144 @@ public class WalletController {
         }
     }
 
+    public static class HoldRequest {
+        private BigDecimal amount;
+        private ProjectType projectType = ProjectType.GENERAL;
+        private String referenceNo;
+        private Long ttlSeconds;
+
+        public BigDecimal getAmount() {
+            return amount;
+        }
+
+        public void setAmount(BigDecimal amount) {
+            this.amount = amount;
+        }
+
+        public ProjectType getProjectType() {
+            return projectType;
+        }
+
+        public void setProjectType(ProjectType projectType) {
+            this.projectType = projectType;
+        }
+
+        public String getReferenceNo() {
+            return referenceNo;
+        }
+
+        public void setReferenceNo(String referenceNo) {
+            this.referenceNo = referenceNo;
+        }
+
+        public Long getTtlSeconds() {
+            return ttlSeconds;
+        }
+
+        public void setTtlSeconds(Long ttlSeconds) {
+            this.ttlSeconds = ttlSeconds;
+        }
+    }
+
+    public static class CaptureRequest {
+        private BigDecimal amount;
+
+        public BigDecimal getAmount() {
+            return amount;
+        }
+
+        public void setAmount(BigDecimal amount) {
+            this.amount = amount;
+        }
+    }
+
+    public static class ShortfallPurchaseRequest {
+        private PaymentChannel channel;
+        private BigDecimal amount;
+        private ProjectType projectType = ProjectType.GENERAL;
+        private String metadata;
+        private String referenceNo;
+
+        public PaymentChannel getChannel() {
+            return channel;
+        }
+
+        public void setChannel(PaymentChannel channel) {
+            this.channel = channel;
+        }
+
+        public BigDecimal getAmount() {
+            return amount;
+        }
+
+        public void setAmount(BigDecimal amount) {
+            this.amount = amount;
+        }
+
+        public ProjectType getProjectType() {
+            return projectType;
+        }
+
+        public void setProjectType(ProjectType projectType) {
+            this.projectType = projectType;
+        }
+
+        public String getMetadata() {
+            return metadata;
+        }
+
+        public void setMetadata(String metadata) {
+            this.metadata = metadata;
+        }
+
+        public String getReferenceNo() {
+            return referenceNo;
+        }
+
+        public void setReferenceNo(String referenceNo) {
+            this.referenceNo = referenceNo;
+        }
+    }
+
+    public static class TransferRequest {
+        private Long toCustomerId;
+        private BigDecimal amount;
+        private String referenceNo;
+        private String metadata;
+
+        public Long getToCustomerId() {
+            return toCustomerId;
+        }
+
+        public void setToCustomerId(Long toCustomerId) {
+            this.toCustomerId = toCustomerId;
+        }
+
+        public BigDecimal getAmount() {
+            return amount;
+        }
+
+        public void setAmount(BigDecimal amount) {
+            this.amount = amount;
+        }
+
+        public String getReferenceNo() {
+            return referenceNo;
+        }
+
+        public void setReferenceNo(String referenceNo) {
+            this.referenceNo = referenceNo;
+        }
+
+        public String getMetadata() {
+            return metadata;
+        }
+
+        public void setMetadata(String metadata) {
+            this.metadata = metadata;
+        }
+    }
+
     public static class ErrorResponse {
         private String error;
 
@@ -10,6 +10,8 @@ public class AccountDTO {
     private Long id;
     private Long customerId;
     private BigDecimal balance;
+    private BigDecimal heldAmount;
+    private BigDecimal availableBalance;
     private BigDecimal totalRecharge;
     private BigDecimal totalSpend;
     private LocalDateTime createdAt;
@@ -38,6 +40,14 @@ public class AccountDTO {
 
     public void setBalance(BigDecimal balance) { this.balance = balance; }
 
+    public BigDecimal getHeldAmount() { return heldAmount; }
+
+    public void setHeldAmount(BigDecimal heldAmount) { this.heldAmount = heldAmount; }
+
+    public BigDecimal getAvailableBalance() { return availableBalance; }
+
+    public void setAvailableBalance(BigDecimal availableBalance) { this.availableBalance = availableBalance; }
+
     public BigDecimal getTotalRecharge() { return totalRecharge; }
 
     public void setTotalRecharge(BigDecimal totalRecharge) { this.totalRecharge = totalRecharge; }
@@ -0,0 +1,104 @@
+package com.example.core.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Progress of a bulk adjustment import and its rejected lines
+ */
+public class AdjustmentImportDTO {
+    private Long id;
+    private String fileSha256;
+    private String fileName;
+    private String status;
+    private Long linesProcessed;
+    private Long applied;
+    private Long duplicates;
+    private Long failed;
+    private BigDecimal appliedAmount;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+    private List<Failure> failures;
+
+    // Constructors
+    public AdjustmentImportDTO() {}
+
+    // Getters and Setters
+    public Long getId() { return id; }
+
+    public void setId(Long id) { this.id = id; }
+
+    public String getFileSha256() { return fileSha256; }
+
+    public void setFileSha256(String fileSha256) { this.fileSha256 = fileSha256; }
+
+    public String getFileName() { return fileName; }
+
+    public void setFileName(String fileName) { this.fileName = fileName; }
+
+    public String getStatus() { return status; }
+
+    public void setStatus(String status) { this.status = status; }
+
+    public Long getLinesProcessed() { return linesProcessed; }
+
+    public void setLinesProcessed(Long linesProcessed) { this.linesProcessed = linesProcessed; }
+
+    public Long getApplied() { return applied; }
+
+    public void setApplied(Long applied) { this.applied = applied; }
+
+    public Long getDuplicates() { return duplicates; }
+
+    public void setDuplicates(Long duplicates) { this.duplicates = duplicates; }
+
+    public Long getFailed() { return failed; }
+
+    public void setFailed(Long failed) { this.failed = failed; }
+
+    public BigDecimal getAppliedAmount() { return appliedAmount; }
+
+    public void setAppliedAmount(BigDecimal appliedAmount) { this.appliedAmount = appliedAmount; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+
+    public List<Failure> getFailures() { return failures; }
+
+    public void setFailures(List<Failure> failures) { this.failures = failures; }
+
+    /**
+     * A rejected line (1-based, not counting the header)
+     */
+    public static class Failure {
+        private Long lineNo;
+        private String referenceNo;
+        private String reason;
+
+        public Failure() {}
+
+        public Failure(Long lineNo, String referenceNo, String reason) {
+            this.lineNo = lineNo;
+            this.referenceNo = referenceNo;
+            this.reason = reason;
+        }
+
+        public Long getLineNo() { return lineNo; }
+
+        public void setLineNo(Long lineNo) { this.lineNo = lineNo; }
+
+        public String getReferenceNo() { return referenceNo; }
+
+        public void setReferenceNo(String referenceNo) { this.referenceNo = referenceNo; }
+
+        public String getReason() { return reason; }
+
+        public void setReason(String reason) { this.reason = reason; }
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.core.dto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Balance and totals of a customer as of a point in time, with the checkpoint it was replayed from
+ */
+public class BalanceAtDTO {
+    private Long customerId;
+    private LocalDateTime at;
+    private BigDecimal balance;
+    private BigDecimal totalRecharge;
+    private BigDecimal totalSpend;
+    private LocalDateTime checkpointAt;
+    private long replayedTransactions;
+
+    // Constructors
+    public BalanceAtDTO() {}
+
+    public BalanceAtDTO(Long customerId, LocalDateTime at, BigDecimal balance, BigDecimal totalRecharge,
+                        BigDecimal totalSpend, LocalDateTime checkpointAt, long replayedTransactions) {
+        this.customerId = customerId;
+        this.at = at;
+        this.balance = balance;
+        this.totalRecharge = totalRecharge;
+        this.totalSpend = totalSpend;
+        this.checkpointAt = checkpointAt;
+        this.replayedTransactions = replayedTransactions;
+    }
+
+    // Getters and Setters
+    public Long getCustomerId() { return customerId; }
+
+    public void setCustomerId(Long customerId) { this.customerId = customerId; }
+
+    public LocalDateTime getAt() { return at; }
+
+    public void setAt(LocalDateTime at) { this.at = at; }
+
+    public BigDecimal getBalance() { return balance; }
+
+    public void setBalance(BigDecimal balance) { this.balance = balance; }
+
+    public BigDecimal getTotalRecharge() { return totalRecharge; }
+
+    public void setTotalRecharge(BigDecimal totalRecharge) { this.totalRecharge = totalRecharge; }
+
+    public BigDecimal getTotalSpend() { return totalSpend; }
+
+    public void setTotalSpend(BigDecimal totalSpend) { this.totalSpend = totalSpend; }
+
+    public LocalDateTime getCheckpointAt() { return checkpointAt; }
+
+    public void setCheckpointAt(LocalDateTime checkpointAt) { this.checkpointAt = checkpointAt; }
+
+    public long getReplayedTransactions() { return replayedTransactions; }
+
+    public void setReplayedTransactions(long replayedTransactions) { this.replayedTransactions = replayedTransactions; }
+}
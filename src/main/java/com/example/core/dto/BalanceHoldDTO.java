@@ -0,0 +1,67 @@
+package com.example.core.dto;
+
+import com.example.core.enums.HoldStatus;
+import com.example.core.enums.ProjectType;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Balance hold DTO for data transfer
+ */
+public class BalanceHoldDTO {
+    private Long id;
+    private BigDecimal amount;
+    private BigDecimal capturedAmount;
+    private HoldStatus status;
+    private ProjectType projectType;
+    private String referenceNo;
+    private Long transactionId;
+    private LocalDateTime expiresAt;
+    private LocalDateTime settledAt;
+    private LocalDateTime createdAt;
+
+    // Constructors
+    public BalanceHoldDTO() {}
+
+    // Getters and Setters
+    public Long getId() { return id; }
+
+    public void setId(Long id) { this.id = id; }
+
+    public BigDecimal getAmount() { return amount; }
+
+    public void setAmount(BigDecimal amount) { this.amount = amount; }
+
+    public BigDecimal getCapturedAmount() { return capturedAmount; }
+
+    public void setCapturedAmount(BigDecimal capturedAmount) { this.capturedAmount = capturedAmount; }
+
+    public HoldStatus getStatus() { return status; }
+
+    public void setStatus(HoldStatus status) { this.status = status; }
+
+    public ProjectType getProjectType() { return projectType; }
+
+    public void setProjectType(ProjectType projectType) { this.projectType = projectType; }
+
+    public String getReferenceNo() { return referenceNo; }
+
+    public void setReferenceNo(String referenceNo) { this.referenceNo = referenceNo; }
+
+    public Long getTransactionId() { return transactionId; }
+
+    public void setTransactionId(Long transactionId) { this.transactionId = transactionId; }
+
+    public LocalDateTime getExpiresAt() { return expiresAt; }
+
+    public void setExpiresAt(LocalDateTime expiresAt) { this.expiresAt = expiresAt; }
+
+    public LocalDateTime getSettledAt() { return settledAt; }
+
+    public void setSettledAt(LocalDateTime settledAt) { this.settledAt = settledAt; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+}
@@ -0,0 +1,34 @@
+package com.example.core.dto;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public class BatchDeductResponseDTO {
+
+    private List<Long> transactionIds;
+    private BigDecimal newBalance;
+
+    public BatchDeductResponseDTO() {
+    }
+
+    public BatchDeductResponseDTO(List<Long> transactionIds, BigDecimal newBalance) {
+        this.transactionIds = transactionIds;
+        this.newBalance = newBalance;
+    }
+
+    public List<Long> getTransactionIds() {
+        return transactionIds;
+    }
+
+    public void setTransactionIds(List<Long> transactionIds) {
+        this.transactionIds = transactionIds;
+    }
+
+    public BigDecimal getNewBalance() {
+        return newBalance;
+    }
+
+    public void setNewBalance(BigDecimal newBalance) {
+        this.newBalance = newBalance;
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.core.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * One account whose stored balance/totals disagree with its ledger
+ */
+public class ReconciliationDriftDTO {
+    private Long accountId;
+    private Long customerId;
+    private BigDecimal storedBalance;
+    private BigDecimal ledgerBalance;
+    private BigDecimal storedTotalRecharge;
+    private BigDecimal ledgerTotalRecharge;
+    private BigDecimal storedTotalSpend;
+    private BigDecimal ledgerTotalSpend;
+
+    // Constructors
+    public ReconciliationDriftDTO() {}
+
+    public ReconciliationDriftDTO(Long accountId, Long customerId,
+                                  BigDecimal storedBalance, BigDecimal ledgerBalance,
+                                  BigDecimal storedTotalRecharge, BigDecimal ledgerTotalRecharge,
+                                  BigDecimal storedTotalSpend, BigDecimal ledgerTotalSpend) {
+        this.accountId = accountId;
+        this.customerId = customerId;
+        this.storedBalance = storedBalance;
+        this.ledgerBalance = ledgerBalance;
+        this.storedTotalRecharge = storedTotalRecharge;
+        this.ledgerTotalRecharge = ledgerTotalRecharge;
+        this.storedTotalSpend = storedTotalSpend;
+        this.ledgerTotalSpend = ledgerTotalSpend;
+    }
+
+    // Getters and Setters
+    public Long getAccountId() { return accountId; }
+
+    public void setAccountId(Long accountId) { this.accountId = accountId; }
+
+    public Long getCustomerId() { return customerId; }
+
+    public void setCustomerId(Long customerId) { this.customerId = customerId; }
+
+    public BigDecimal getStoredBalance() { return storedBalance; }
+
+    public void setStoredBalance(BigDecimal storedBalance) { this.storedBalance = storedBalance; }
+
+    public BigDecimal getLedgerBalance() { return ledgerBalance; }
+
+    public void setLedgerBalance(BigDecimal ledgerBalance) { this.ledgerBalance = ledgerBalance; }
+
+    public BigDecimal getStoredTotalRecharge() { return storedTotalRecharge; }
+
+    public void setStoredTotalRecharge(BigDecimal storedTotalRecharge) { this.storedTotalRecharge = storedTotalRecharge; }
+
+    public BigDecimal getLedgerTotalRecharge() { return ledgerTotalRecharge; }
+
+    public void setLedgerTotalRecharge(BigDecimal ledgerTotalRecharge) { this.ledgerTotalRecharge = ledgerTotalRecharge; }
+
+    public BigDecimal getStoredTotalSpend() { return storedTotalSpend; }
+
+    public void setStoredTotalSpend(BigDecimal storedTotalSpend) { this.storedTotalSpend = storedTotalSpend; }
+
+    public BigDecimal getLedgerTotalSpend() { return ledgerTotalSpend; }
+
+    public void setLedgerTotalSpend(BigDecimal ledgerTotalSpend) { this.ledgerTotalSpend = ledgerTotalSpend; }
+}
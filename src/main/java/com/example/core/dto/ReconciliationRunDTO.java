@@ -0,0 +1,69 @@
+package com.example.core.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Progress and drift report of one reconciliation run
+ */
+public class ReconciliationRunDTO {
+    private Long id;
+    private String status;
+    private Long maxAccountId;
+    private Integer rangeSize;
+    private Long rangesTotal;
+    private Long rangesChecked;
+    private Long accountsChecked;
+    private Long driftCount;
+    private LocalDateTime startedAt;
+    private LocalDateTime completedAt;
+    private List<ReconciliationDriftDTO> drifts;
+
+    // Constructors
+    public ReconciliationRunDTO() {}
+
+    // Getters and Setters
+    public Long getId() { return id; }
+
+    public void setId(Long id) { this.id = id; }
+
+    public String getStatus() { return status; }
+
+    public void setStatus(String status) { this.status = status; }
+
+    public Long getMaxAccountId() { return maxAccountId; }
+
+    public void setMaxAccountId(Long maxAccountId) { this.maxAccountId = maxAccountId; }
+
+    public Integer getRangeSize() { return rangeSize; }
+
+    public void setRangeSize(Integer rangeSize) { this.rangeSize = rangeSize; }
+
+    public Long getRangesTotal() { return rangesTotal; }
+
+    public void setRangesTotal(Long rangesTotal) { this.rangesTotal = rangesTotal; }
+
+    public Long getRangesChecked() { return rangesChecked; }
+
+    public void setRangesChecked(Long rangesChecked) { this.rangesChecked = rangesChecked; }
+
+    public Long getAccountsChecked() { return accountsChecked; }
+
+    public void setAccountsChecked(Long accountsChecked) { this.accountsChecked = accountsChecked; }
+
+    public Long getDriftCount() { return driftCount; }
+
+    public void setDriftCount(Long driftCount) { this.driftCount = driftCount; }
+
+    public LocalDateTime getStartedAt() { return startedAt; }
+
+    public void setStartedAt(LocalDateTime startedAt) { this.startedAt = startedAt; }
+
+    public LocalDateTime getCompletedAt() { return completedAt; }
+
+    public void setCompletedAt(LocalDateTime completedAt) { this.completedAt = completedAt; }
+
+    public List<ReconciliationDriftDTO> getDrifts() { return drifts; }
+
+    public void setDrifts(List<ReconciliationDriftDTO> drifts) { this.drifts = drifts; }
+}
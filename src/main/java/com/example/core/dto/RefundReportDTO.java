@@ -0,0 +1,148 @@
+package com.example.core.dto;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a bulk refund: totals, per-batch throughput and every rejected instruction
+ */
+public class RefundReportDTO {
+    private int requested;
+    private int refunded;
+    private int duplicates;
+    private int failed;
+    private BigDecimal refundedAmount = BigDecimal.ZERO;
+    private long elapsedMs;
+    private List<Batch> batches = new ArrayList<>();
+    private List<Failure> failures = new ArrayList<>();
+
+    // Constructors
+    public RefundReportDTO() {}
+
+    public RefundReportDTO(int requested) {
+        this.requested = requested;
+    }
+
+    // Getters and Setters
+    public int getRequested() { return requested; }
+
+    public void setRequested(int requested) { this.requested = requested; }
+
+    public int getRefunded() { return refunded; }
+
+    public void setRefunded(int refunded) { this.refunded = refunded; }
+
+    public int getDuplicates() { return duplicates; }
+
+    public void setDuplicates(int duplicates) { this.duplicates = duplicates; }
+
+    public int getFailed() { return failed; }
+
+    public void setFailed(int failed) { this.failed = failed; }
+
+    public BigDecimal getRefundedAmount() { return refundedAmount; }
+
+    public void setRefundedAmount(BigDecimal refundedAmount) { this.refundedAmount = refundedAmount; }
+
+    public long getElapsedMs() { return elapsedMs; }
+
+    public void setElapsedMs(long elapsedMs) { this.elapsedMs = elapsedMs; }
+
+    public List<Batch> getBatches() { return batches; }
+
+    public void setBatches(List<Batch> batches) { this.batches = batches; }
+
+    public List<Failure> getFailures() { return failures; }
+
+    public void setFailures(List<Failure> failures) { this.failures = failures; }
+
+    /**
+     * One database transaction worth of refunds
+     */
+    public static class Batch {
+        private int index;
+        private int accounts;
+        private int instructions;
+        private int refunded;
+        private int duplicates;
+        private int failed;
+        private long elapsedMs;
+        private double refundsPerSecond;
+
+        public Batch() {}
+
+        public Batch(int index, int accounts, int instructions) {
+            this.index = index;
+            this.accounts = accounts;
+            this.instructions = instructions;
+        }
+
+        public int getIndex() { return index; }
+
+        public void setIndex(int index) { this.index = index; }
+
+        public int getAccounts() { return accounts; }
+
+        public void setAccounts(int accounts) { this.accounts = accounts; }
+
+        public int getInstructions() { return instructions; }
+
+        public void setInstructions(int instructions) { this.instructions = instructions; }
+
+        public int getRefunded() { return refunded; }
+
+        public void setRefunded(int refunded) { this.refunded = refunded; }
+
+        public int getDuplicates() { return duplicates; }
+
+        public void setDuplicates(int duplicates) { this.duplicates = duplicates; }
+
+        public int getFailed() { return failed; }
+
+        public void setFailed(int failed) { this.failed = failed; }
+
+        public long getElapsedMs() { return elapsedMs; }
+
+        public void setElapsedMs(long elapsedMs) { this.elapsedMs = elapsedMs; }
+
+        public double getRefundsPerSecond() { return refundsPerSecond; }
+
+        public void setRefundsPerSecond(double refundsPerSecond) { this.refundsPerSecond = refundsPerSecond; }
+    }
+
+    /**
+     * A rejected instruction; batch is null when it was rejected before batching
+     */
+    public static class Failure {
+        private String refundReferenceNo;
+        private String spendReferenceNo;
+        private Integer batch;
+        private String reason;
+
+        public Failure() {}
+
+        public Failure(String refundReferenceNo, String spendReferenceNo, Integer batch, String reason) {
+            this.refundReferenceNo = refundReferenceNo;
+            this.spendReferenceNo = spendReferenceNo;
+            this.batch = batch;
+            this.reason = reason;
+        }
+
+        public String getRefundReferenceNo() { return refundReferenceNo; }
+
+        public void setRefundReferenceNo(String refundReferenceNo) { this.refundReferenceNo = refundReferenceNo; }
+
+        public String getSpendReferenceNo() { return spendReferenceNo; }
+
+        public void setSpendReferenceNo(String spendReferenceNo) { this.spendReferenceNo = spendReferenceNo; }
+
+        public Integer getBatch() { return batch; }
+
+        public void setBatch(Integer batch) { this.batch = batch; }
+
+        public String getReason() { return reason; }
+
+        public void setReason(String reason) { this.reason = reason; }
+    }
+}
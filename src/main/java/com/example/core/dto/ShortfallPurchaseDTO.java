@@ -0,0 +1,94 @@
+package com.example.core.dto;
+
+import com.example.core.enums.PaymentChannel;
+import com.example.core.enums.ProjectType;
+import com.example.core.enums.ShortfallPurchaseStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Shortfall purchase DTO; the payment fields are only set on the response that opens the recharge order
+ */
+public class ShortfallPurchaseDTO {
+    private Long id;
+    private String referenceNo;
+    private BigDecimal amount;
+    private BigDecimal heldAmount;
+    private BigDecimal shortfallAmount;
+    private ProjectType projectType;
+    private ShortfallPurchaseStatus status;
+    private String orderNo;
+    private Long transactionId;
+    private String failureReason;
+    private LocalDateTime createdAt;
+    private LocalDateTime completedAt;
+    private PaymentChannel channel;
+    private Map<String, String> wechatPayParams;
+    private String alipayOrderString;
+
+    // Constructors
+    public ShortfallPurchaseDTO() {}
+
+    // Getters and Setters
+    public Long getId() { return id; }
+
+    public void setId(Long id) { this.id = id; }
+
+    public String getReferenceNo() { return referenceNo; }
+
+    public void setReferenceNo(String referenceNo) { this.referenceNo = referenceNo; }
+
+    public BigDecimal getAmount() { return amount; }
+
+    public void setAmount(BigDecimal amount) { this.amount = amount; }
+
+    public BigDecimal getHeldAmount() { return heldAmount; }
+
+    public void setHeldAmount(BigDecimal heldAmount) { this.heldAmount = heldAmount; }
+
+    public BigDecimal getShortfallAmount() { return shortfallAmount; }
+
+    public void setShortfallAmount(BigDecimal shortfallAmount) { this.shortfallAmount = shortfallAmount; }
+
+    public ProjectType getProjectType() { return projectType; }
+
+    public void setProjectType(ProjectType projectType) { this.projectType = projectType; }
+
+    public ShortfallPurchaseStatus getStatus() { return status; }
+
+    public void setStatus(ShortfallPurchaseStatus status) { this.status = status; }
+
+    public String getOrderNo() { return orderNo; }
+
+    public void setOrderNo(String orderNo) { this.orderNo = orderNo; }
+
+    public Long getTransactionId() { return transactionId; }
+
+    public void setTransactionId(Long transactionId) { this.transactionId = transactionId; }
+
+    public String getFailureReason() { return failureReason; }
+
+    public void setFailureReason(String failureReason) { this.failureReason = failureReason; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+
+    public LocalDateTime getCompletedAt() { return completedAt; }
+
+    public void setCompletedAt(LocalDateTime completedAt) { this.completedAt = completedAt; }
+
+    public PaymentChannel getChannel() { return channel; }
+
+    public void setChannel(PaymentChannel channel) { this.channel = channel; }
+
+    public Map<String, String> getWechatPayParams() { return wechatPayParams; }
+
+    public void setWechatPayParams(Map<String, String> wechatPayParams) { this.wechatPayParams = wechatPayParams; }
+
+    public String getAlipayOrderString() { return alipayOrderString; }
+
+    public void setAlipayOrderString(String alipayOrderString) { this.alipayOrderString = alipayOrderString; }
+}
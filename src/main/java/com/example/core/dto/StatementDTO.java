@@ -0,0 +1,95 @@
+package com.example.core.dto;
+
+import com.example.core.enums.ProjectType;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * One customer's wallet statement for a calendar month
+ */
+public class StatementDTO {
+    private Long customerId;
+    private Long accountId;
+    private LocalDate periodStart;
+    private BigDecimal openingBalance = BigDecimal.ZERO;
+    private BigDecimal rechargeAmount = BigDecimal.ZERO;
+    private BigDecimal bonusAmount = BigDecimal.ZERO;
+    private BigDecimal spendAmount = BigDecimal.ZERO;
+    private BigDecimal refundAmount = BigDecimal.ZERO;
+    private BigDecimal adjustmentAmount = BigDecimal.ZERO;
+    private BigDecimal transferInAmount = BigDecimal.ZERO;
+    private BigDecimal transferOutAmount = BigDecimal.ZERO;
+    private BigDecimal closingBalance = BigDecimal.ZERO;
+    private int transactionCount;
+    private Map<ProjectType, BigDecimal> spendByProject = new EnumMap<>(ProjectType.class);
+
+    // Constructors
+    public StatementDTO() {}
+
+    public StatementDTO(Long customerId, Long accountId, LocalDate periodStart, BigDecimal openingBalance) {
+        this.customerId = customerId;
+        this.accountId = accountId;
+        this.periodStart = periodStart;
+        this.openingBalance = openingBalance;
+    }
+
+    // Getters and Setters
+    public Long getCustomerId() { return customerId; }
+
+    public void setCustomerId(Long customerId) { this.customerId = customerId; }
+
+    public Long getAccountId() { return accountId; }
+
+    public void setAccountId(Long accountId) { this.accountId = accountId; }
+
+    public LocalDate getPeriodStart() { return periodStart; }
+
+    public void setPeriodStart(LocalDate periodStart) { this.periodStart = periodStart; }
+
+    public BigDecimal getOpeningBalance() { return openingBalance; }
+
+    public void setOpeningBalance(BigDecimal openingBalance) { this.openingBalance = openingBalance; }
+
+    public BigDecimal getRechargeAmount() { return rechargeAmount; }
+
+    public void setRechargeAmount(BigDecimal rechargeAmount) { this.rechargeAmount = rechargeAmount; }
+
+    public BigDecimal getBonusAmount() { return bonusAmount; }
+
+    public void setBonusAmount(BigDecimal bonusAmount) { this.bonusAmount = bonusAmount; }
+
+    public BigDecimal getSpendAmount() { return spendAmount; }
+
+    public void setSpendAmount(BigDecimal spendAmount) { this.spendAmount = spendAmount; }
+
+    public BigDecimal getRefundAmount() { return refundAmount; }
+
+    public void setRefundAmount(BigDecimal refundAmount) { this.refundAmount = refundAmount; }
+
+    public BigDecimal getAdjustmentAmount() { return adjustmentAmount; }
+
+    public void setAdjustmentAmount(BigDecimal adjustmentAmount) { this.adjustmentAmount = adjustmentAmount; }
+
+    public BigDecimal getTransferInAmount() { return transferInAmount; }
+
+    public void setTransferInAmount(BigDecimal transferInAmount) { this.transferInAmount = transferInAmount; }
+
+    public BigDecimal getTransferOutAmount() { return transferOutAmount; }
+
+    public void setTransferOutAmount(BigDecimal transferOutAmount) { this.transferOutAmount = transferOutAmount; }
+
+    public BigDecimal getClosingBalance() { return closingBalance; }
+
+    public void setClosingBalance(BigDecimal closingBalance) { this.closingBalance = closingBalance; }
+
+    public int getTransactionCount() { return transactionCount; }
+
+    public void setTransactionCount(int transactionCount) { this.transactionCount = transactionCount; }
+
+    public Map<ProjectType, BigDecimal> getSpendByProject() { return spendByProject; }
+
+    public void setSpendByProject(Map<ProjectType, BigDecimal> spendByProject) { this.spendByProject = spendByProject; }
+}
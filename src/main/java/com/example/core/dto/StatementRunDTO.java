@@ -0,0 +1,59 @@
+package com.example.core.dto;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Progress of the statement generation for one month
+ */
+public class StatementRunDTO {
+    private LocalDate periodStart;
+    private String status;
+    private Long maxCustomerId;
+    private Integer rangeSize;
+    private Long rangesTotal;
+    private Long rangesCompleted;
+    private Long statementCount;
+    private LocalDateTime startedAt;
+    private LocalDateTime completedAt;
+
+    // Constructors
+    public StatementRunDTO() {}
+
+    // Getters and Setters
+    public LocalDate getPeriodStart() { return periodStart; }
+
+    public void setPeriodStart(LocalDate periodStart) { this.periodStart = periodStart; }
+
+    public String getStatus() { return status; }
+
+    public void setStatus(String status) { this.status = status; }
+
+    public Long getMaxCustomerId() { return maxCustomerId; }
+
+    public void setMaxCustomerId(Long maxCustomerId) { this.maxCustomerId = maxCustomerId; }
+
+    public Integer getRangeSize() { return rangeSize; }
+
+    public void setRangeSize(Integer rangeSize) { this.rangeSize = rangeSize; }
+
+    public Long getRangesTotal() { return rangesTotal; }
+
+    public void setRangesTotal(Long rangesTotal) { this.rangesTotal = rangesTotal; }
+
+    public Long getRangesCompleted() { return rangesCompleted; }
+
+    public void setRangesCompleted(Long rangesCompleted) { this.rangesCompleted = rangesCompleted; }
+
+    public Long getStatementCount() { return statementCount; }
+
+    public void setStatementCount(Long statementCount) { this.statementCount = statementCount; }
+
+    public LocalDateTime getStartedAt() { return startedAt; }
+
+    public void setStartedAt(LocalDateTime startedAt) { this.startedAt = startedAt; }
+
+    public LocalDateTime getCompletedAt() { return completedAt; }
+
+    public void setCompletedAt(LocalDateTime completedAt) { this.completedAt = completedAt; }
+}
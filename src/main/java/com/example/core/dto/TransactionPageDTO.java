@@ -0,0 +1,28 @@
+package com.example.core.dto;
+
+import java.util.List;
+
+/**
+ * One page of a customer's transaction history; nextCursor is null on the last page
+ */
+public class TransactionPageDTO {
+    private List<TransactionDTO> items;
+    private String nextCursor;
+
+    // Constructors
+    public TransactionPageDTO() {}
+
+    public TransactionPageDTO(List<TransactionDTO> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    // Getters and Setters
+    public List<TransactionDTO> getItems() { return items; }
+
+    public void setItems(List<TransactionDTO> items) { this.items = items; }
+
+    public String getNextCursor() { return nextCursor; }
+
+    public void setNextCursor(String nextCursor) { this.nextCursor = nextCursor; }
+}
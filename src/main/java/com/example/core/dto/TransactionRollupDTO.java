@@ -0,0 +1,50 @@
+package com.example.core.dto;
+
+import com.example.core.enums.ProjectType;
+import com.example.core.enums.TransactionType;
+
+import java.math.BigDecimal;
+
+/**
+ * Amount and count of a customer's transactions for one month, type and project type
+ */
+public class TransactionRollupDTO {
+    private String month;
+    private TransactionType type;
+    private ProjectType projectType;
+    private BigDecimal amount;
+    private Long count;
+
+    // Constructors
+    public TransactionRollupDTO() {}
+
+    public TransactionRollupDTO(String month, TransactionType type, ProjectType projectType,
+                                BigDecimal amount, Long count) {
+        this.month = month;
+        this.type = type;
+        this.projectType = projectType;
+        this.amount = amount;
+        this.count = count;
+    }
+
+    // Getters and Setters
+    public String getMonth() { return month; }
+
+    public void setMonth(String month) { this.month = month; }
+
+    public TransactionType getType() { return type; }
+
+    public void setType(TransactionType type) { this.type = type; }
+
+    public ProjectType getProjectType() { return projectType; }
+
+    public void setProjectType(ProjectType projectType) { this.projectType = projectType; }
+
+    public BigDecimal getAmount() { return amount; }
+
+    public void setAmount(BigDecimal amount) { this.amount = amount; }
+
+    public Long getCount() { return count; }
+
+    public void setCount(Long count) { this.count = count; }
+}
@@ -0,0 +1,59 @@
+package com.example.core.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * One settled transfer: the paired ledger rows and the sender's balance after it
+ */
+public class TransferDTO {
+    private String referenceNo;
+    private Long fromCustomerId;
+    private Long toCustomerId;
+    private BigDecimal amount;
+    private Long outTransactionId;
+    private Long inTransactionId;
+    private BigDecimal balance;
+
+    // Constructors
+    public TransferDTO() {}
+
+    public TransferDTO(String referenceNo, Long fromCustomerId, Long toCustomerId, BigDecimal amount,
+                       Long outTransactionId, Long inTransactionId, BigDecimal balance) {
+        this.referenceNo = referenceNo;
+        this.fromCustomerId = fromCustomerId;
+        this.toCustomerId = toCustomerId;
+        this.amount = amount;
+        this.outTransactionId = outTransactionId;
+        this.inTransactionId = inTransactionId;
+        this.balance = balance;
+    }
+
+    // Getters and Setters
+    public String getReferenceNo() { return referenceNo; }
+
+    public void setReferenceNo(String referenceNo) { this.referenceNo = referenceNo; }
+
+    public Long getFromCustomerId() { return fromCustomerId; }
+
+    public void setFromCustomerId(Long fromCustomerId) { this.fromCustomerId = fromCustomerId; }
+
+    public Long getToCustomerId() { return toCustomerId; }
+
+    public void setToCustomerId(Long toCustomerId) { this.toCustomerId = toCustomerId; }
+
+    public BigDecimal getAmount() { return amount; }
+
+    public void setAmount(BigDecimal amount) { this.amount = amount; }
+
+    public Long getOutTransactionId() { return outTransactionId; }
+
+    public void setOutTransactionId(Long outTransactionId) { this.outTransactionId = outTransactionId; }
+
+    public Long getInTransactionId() { return inTransactionId; }
+
+    public void setInTransactionId(Long inTransactionId) { this.inTransactionId = inTransactionId; }
+
+    public BigDecimal getBalance() { return balance; }
+
+    public void setBalance(BigDecimal balance) { this.balance = balance; }
+}
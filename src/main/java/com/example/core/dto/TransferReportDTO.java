@@ -0,0 +1,88 @@
+package com.example.core.dto;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a batch of transfers: totals and every rejected transfer
+ */
+public class TransferReportDTO {
+    private int requested;
+    private int transferred;
+    private int duplicates;
+    private int failed;
+    private int batches;
+    private BigDecimal transferredAmount = BigDecimal.ZERO;
+    private long elapsedMs;
+    private List<Failure> failures = new ArrayList<>();
+
+    // Constructors
+    public TransferReportDTO() {}
+
+    public TransferReportDTO(int requested) {
+        this.requested = requested;
+    }
+
+    // Getters and Setters
+    public int getRequested() { return requested; }
+
+    public void setRequested(int requested) { this.requested = requested; }
+
+    public int getTransferred() { return transferred; }
+
+    public void setTransferred(int transferred) { this.transferred = transferred; }
+
+    public int getDuplicates() { return duplicates; }
+
+    public void setDuplicates(int duplicates) { this.duplicates = duplicates; }
+
+    public int getFailed() { return failed; }
+
+    public void setFailed(int failed) { this.failed = failed; }
+
+    public int getBatches() { return batches; }
+
+    public void setBatches(int batches) { this.batches = batches; }
+
+    public BigDecimal getTransferredAmount() { return transferredAmount; }
+
+    public void setTransferredAmount(BigDecimal transferredAmount) { this.transferredAmount = transferredAmount; }
+
+    public long getElapsedMs() { return elapsedMs; }
+
+    public void setElapsedMs(long elapsedMs) { this.elapsedMs = elapsedMs; }
+
+    public List<Failure> getFailures() { return failures; }
+
+    public void setFailures(List<Failure> failures) { this.failures = failures; }
+
+    /**
+     * A rejected transfer; batch is null when it was rejected before batching
+     */
+    public static class Failure {
+        private String referenceNo;
+        private Integer batch;
+        private String reason;
+
+        public Failure() {}
+
+        public Failure(String referenceNo, Integer batch, String reason) {
+            this.referenceNo = referenceNo;
+            this.batch = batch;
+            this.reason = reason;
+        }
+
+        public String getReferenceNo() { return referenceNo; }
+
+        public void setReferenceNo(String referenceNo) { this.referenceNo = referenceNo; }
+
+        public Integer getBatch() { return batch; }
+
+        public void setBatch(Integer batch) { this.batch = batch; }
+
+        public String getReason() { return reason; }
+
+        public void setReason(String reason) { this.reason = reason; }
+    }
+}
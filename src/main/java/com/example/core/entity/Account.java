@@ -1,5 +1,6 @@
 package com.example.core.entity;
 
+import com.example.core.money.Money;
 import jakarta.persistence.*;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
@@ -25,12 +26,18 @@ public class Account {
     @Column(name = "balance", nullable = false, precision = 10, scale = 2)
     private BigDecimal balance = BigDecimal.ZERO;
 
+    @Column(name = "held_amount", nullable = false, precision = 10, scale = 2)
+    private BigDecimal heldAmount = BigDecimal.ZERO;
+
     @Column(name = "total_recharge", nullable = false, precision = 10, scale = 2)
     private BigDecimal totalRecharge = BigDecimal.ZERO;
 
     @Column(name = "total_spend", nullable = false, precision = 10, scale = 2)
     private BigDecimal totalSpend = BigDecimal.ZERO;
 
+    @Column(name = "shard_count", nullable = false)
+    private Integer shardCount = 0;
+
     @Version
     @Column(name = "version", nullable = false)
     private Long version = 0L;
@@ -66,14 +73,66 @@ public class Account {
 
     public void setBalance(BigDecimal balance) { this.balance = balance; }
 
+    public Money getBalanceMoney() { return Money.of(balance); }
+
+    public BigDecimal getHeldAmount() { return heldAmount; }
+
+    public void setHeldAmount(BigDecimal heldAmount) { this.heldAmount = heldAmount; }
+
+    public Money getHeldAmountMoney() { return Money.of(heldAmount); }
+
+    /**
+     * Balance not reserved by active holds
+     */
+    public BigDecimal getAvailableBalance() { return balance.subtract(heldAmount); }
+
+    /**
+     * Whether the balance not reserved by active holds covers the amount
+     */
+    public boolean canCover(BigDecimal amount) { return getAvailableBalance().compareTo(amount) >= 0; }
+
+    /**
+     * Take a spend off the balance
+     */
+    public void debit(BigDecimal amount) {
+        balance = balance.subtract(amount);
+        totalSpend = totalSpend.add(amount);
+    }
+
+    /**
+     * Move part of the balance into newly created shards
+     */
+    public void moveToShards(Money amount, int shardCount) {
+        balance = balance.subtract(amount.toBigDecimal());
+        this.shardCount = shardCount;
+    }
+
+    /**
+     * Credit a paid recharge plus any promotion bonus; only the paid part counts toward total recharge
+     */
+    public void recharge(BigDecimal paid, BigDecimal bonus) {
+        balance = balance.add(paid).add(bonus);
+        totalRecharge = totalRecharge.add(paid);
+    }
+
     public BigDecimal getTotalRecharge() { return totalRecharge; }
 
     public void setTotalRecharge(BigDecimal totalRecharge) { this.totalRecharge = totalRecharge; }
 
+    public Money getTotalRechargeMoney() { return Money.of(totalRecharge); }
+
     public BigDecimal getTotalSpend() { return totalSpend; }
 
     public void setTotalSpend(BigDecimal totalSpend) { this.totalSpend = totalSpend; }
 
+    public Money getTotalSpendMoney() { return Money.of(totalSpend); }
+
+    public Integer getShardCount() { return shardCount; }
+
+    public void setShardCount(Integer shardCount) { this.shardCount = shardCount; }
+
+    public boolean isSharded() { return shardCount != null && shardCount > 0; }
+
     public Long getVersion() { return version; }
 
     public void setVersion(Long version) { this.version = version; }
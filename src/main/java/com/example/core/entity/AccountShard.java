@@ -0,0 +1,114 @@
+package com.example.core.entity;
+
+import com.example.core.money.Money;
+import com.example.core.money.MoneyConverter;
+import jakarta.persistence.*;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * One sub-balance of a sharded account. Spends and credits land on a single shard so
+ * concurrent writers for the same account do not all contend on the accounts row.
+ */
+@Entity
+@Table(name = "account_shards", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_account_shards_account_shard_no", columnNames = {"account_id", "shard_no"})
+})
+public class AccountShard {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "account_id", nullable = false)
+    private Account account;
+
+    @Column(name = "shard_no", nullable = false)
+    private Integer shardNo;
+
+    @Convert(converter = MoneyConverter.class)
+    @Column(name = "balance", nullable = false, precision = 10, scale = 2)
+    private Money balance = Money.ZERO;
+
+    @Convert(converter = MoneyConverter.class)
+    @Column(name = "total_recharge", nullable = false, precision = 10, scale = 2)
+    private Money totalRecharge = Money.ZERO;
+
+    @Convert(converter = MoneyConverter.class)
+    @Column(name = "total_spend", nullable = false, precision = 10, scale = 2)
+    private Money totalSpend = Money.ZERO;
+
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version = 0L;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    // Constructors
+    public AccountShard() {}
+
+    public AccountShard(Account account, Integer shardNo, Money balance) {
+        this.account = account;
+        this.shardNo = shardNo;
+        this.balance = balance;
+    }
+
+    /**
+     * Take a spend off this shard
+     */
+    public void debit(Money amount) {
+        balance = balance.minus(amount);
+        totalSpend = totalSpend.plus(amount);
+    }
+
+    // Getters and Setters
+    public Long getId() { return id; }
+
+    public void setId(Long id) { this.id = id; }
+
+    public Account getAccount() { return account; }
+
+    public void setAccount(Account account) { this.account = account; }
+
+    public Integer getShardNo() { return shardNo; }
+
+    public void setShardNo(Integer shardNo) { this.shardNo = shardNo; }
+
+    public BigDecimal getBalance() { return balance.toBigDecimal(); }
+
+    public void setBalance(BigDecimal balance) { this.balance = Money.of(balance); }
+
+    public Money getBalanceMoney() { return balance; }
+
+    public void setBalanceMoney(Money balance) { this.balance = balance; }
+
+    public BigDecimal getTotalRecharge() { return totalRecharge.toBigDecimal(); }
+
+    public void setTotalRecharge(BigDecimal totalRecharge) { this.totalRecharge = Money.of(totalRecharge); }
+
+    public BigDecimal getTotalSpend() { return totalSpend.toBigDecimal(); }
+
+    public void setTotalSpend(BigDecimal totalSpend) { this.totalSpend = Money.of(totalSpend); }
+
+    public Long getVersion() { return version; }
+
+    public void setVersion(Long version) { this.version = version; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+}
@@ -1,7 +1,10 @@
 package com.example.core.entity;
 
+import com.example.core.id.PooledIdGenerator;
 import jakarta.persistence.*;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 import org.hibernate.annotations.UpdateTimestamp;
 
 import java.time.LocalDateTime;
@@ -18,7 +21,9 @@ import java.time.LocalDateTime;
 public class Comment {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "comments_id")
+    @GenericGenerator(name = "comments_id", type = PooledIdGenerator.class,
+            parameters = @Parameter(name = PooledIdGenerator.SEQUENCE_PARAM, value = "comments"))
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -0,0 +1,64 @@
+package com.example.core.entity;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * Maps free-form metadata strings to the {@code JSON} metadata columns. MySQL rejects anything
+ * that is not a single valid JSON document, so other text is stored as a JSON string instead
+ * and unwrapped again on read.
+ */
+@Converter
+public class JsonMetadataConverter implements AttributeConverter<String, String> {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .enable(DeserializationFeature.FAIL_ON_TRAILING_TOKENS);
+
+    @Override
+    public String convertToDatabaseColumn(String metadata) {
+        return normalize(metadata);
+    }
+
+    @Override
+    public String convertToEntityAttribute(String column) {
+        return denormalize(column);
+    }
+
+    /**
+     * The value to bind to a JSON column: null for blank input, valid JSON as is, anything else quoted
+     */
+    public static String normalize(String metadata) {
+        if (metadata == null || metadata.isBlank()) {
+            return null;
+        }
+        try {
+            MAPPER.readTree(metadata);
+            return metadata;
+        } catch (JsonProcessingException e) {
+            try {
+                return MAPPER.writeValueAsString(metadata);
+            } catch (JsonProcessingException unexpected) {
+                throw new IllegalStateException("Failed to quote metadata", unexpected);
+            }
+        }
+    }
+
+    /**
+     * The metadata as written, from a JSON column value: a JSON string scalar is unwrapped, other JSON is returned as is
+     */
+    public static String denormalize(String column) {
+        if (column == null) {
+            return null;
+        }
+        try {
+            JsonNode node = MAPPER.readTree(column);
+            return node.isTextual() ? node.textValue() : column;
+        } catch (JsonProcessingException e) {
+            return column;
+        }
+    }
+}
@@ -16,12 +16,13 @@ import java.time.LocalDateTime;
 @Table(name = "recharge_orders", indexes = {
         @Index(name = "idx_recharge_orders_customer", columnList = "customer_id"),
         @Index(name = "idx_recharge_orders_account", columnList = "account_id"),
-        @Index(name = "idx_recharge_orders_status", columnList = "status")
+        @Index(name = "idx_recharge_orders_status", columnList = "status"),
+        @Index(name = "idx_recharge_orders_promotion", columnList = "promotion_id, created_at")
 })
 public class RechargeOrder {
 
+    // Assigned from OrderNumberGenerator, which also derives order_no from it
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -58,18 +59,21 @@ public class RechargeOrder {
     @Column(name = "provider_transaction_id", length = 128)
     private String providerTransactionId;
 
-    @Column(name = "request_metadata", columnDefinition = "TEXT")
+    @Convert(converter = JsonMetadataConverter.class)
+    @Column(name = "request_metadata", columnDefinition = "JSON")
     private String requestMetadata;
 
-    @Column(name = "callback_metadata", columnDefinition = "TEXT")
+    @Convert(converter = JsonMetadataConverter.class)
+    @Column(name = "callback_metadata", columnDefinition = "JSON")
     private String callbackMetadata;
 
     @Column(name = "paid_at")
     private LocalDateTime paidAt;
 
+    // Null until first persisted, which is how Spring Data tells a new order with an assigned id from a detached one
     @Version
     @Column(name = "version", nullable = false)
-    private Long version = 0L;
+    private Long version;
 
     @CreationTimestamp
     @Column(name = "created_at", nullable = false, updatable = false)
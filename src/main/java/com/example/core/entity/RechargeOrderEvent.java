@@ -1,7 +1,10 @@
 package com.example.core.entity;
 
+import com.example.core.id.PooledIdGenerator;
 import jakarta.persistence.*;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import java.time.LocalDateTime;
 
@@ -16,7 +19,9 @@ import java.time.LocalDateTime;
 public class RechargeOrderEvent {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "recharge_order_events_id")
+    @GenericGenerator(name = "recharge_order_events_id", type = PooledIdGenerator.class,
+            parameters = @Parameter(name = PooledIdGenerator.SEQUENCE_PARAM, value = "recharge_order_events"))
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
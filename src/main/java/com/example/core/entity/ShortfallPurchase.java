@@ -0,0 +1,239 @@
+package com.example.core.entity;
+
+import com.example.core.enums.ProjectType;
+import com.example.core.enums.ShortfallPurchaseStatus;
+import jakarta.persistence.*;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Shortfall purchase entity: a spend the wallet only partly covers. The covered part is held and a
+ * recharge order is opened for the rest; the whole amount is spent once that order is paid.
+ */
+@Entity
+@Table(name = "shortfall_purchases", indexes = {
+        @Index(name = "idx_shortfall_purchases_account", columnList = "account_id")
+})
+public class ShortfallPurchase {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "customer_id", nullable = false)
+    private Customer customer;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "account_id", nullable = false)
+    private Account account;
+
+    @Column(name = "reference_no", nullable = false, length = 64)
+    private String referenceNo;
+
+    @Column(name = "amount", nullable = false, precision = 10, scale = 2)
+    private BigDecimal amount;
+
+    @Column(name = "held_amount", nullable = false, precision = 10, scale = 2)
+    private BigDecimal heldAmount = BigDecimal.ZERO;
+
+    @Column(name = "shortfall_amount", nullable = false, precision = 10, scale = 2)
+    private BigDecimal shortfallAmount = BigDecimal.ZERO;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "project_type", nullable = false, length = 20)
+    private ProjectType projectType;
+
+    @Convert(converter = JsonMetadataConverter.class)
+    @Column(name = "metadata", columnDefinition = "JSON")
+    private String metadata;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    private ShortfallPurchaseStatus status = ShortfallPurchaseStatus.AWAITING_PAYMENT;
+
+    @Column(name = "hold_id")
+    private Long holdId;
+
+    @Column(name = "order_no", length = 64, unique = true)
+    private String orderNo;
+
+    @Column(name = "transaction_id")
+    private Long transactionId;
+
+    @Column(name = "failure_reason")
+    private String failureReason;
+
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version = 0L;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    public ShortfallPurchase() {
+    }
+
+    public ShortfallPurchase(Customer customer, Account account, String referenceNo, BigDecimal amount, ProjectType projectType) {
+        this.customer = customer;
+        this.account = account;
+        this.referenceNo = referenceNo;
+        this.amount = amount;
+        this.projectType = projectType;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Customer getCustomer() {
+        return customer;
+    }
+
+    public void setCustomer(Customer customer) {
+        this.customer = customer;
+    }
+
+    public Account getAccount() {
+        return account;
+    }
+
+    public void setAccount(Account account) {
+        this.account = account;
+    }
+
+    public String getReferenceNo() {
+        return referenceNo;
+    }
+
+    public void setReferenceNo(String referenceNo) {
+        this.referenceNo = referenceNo;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public void setAmount(BigDecimal amount) {
+        this.amount = amount;
+    }
+
+    public BigDecimal getHeldAmount() {
+        return heldAmount;
+    }
+
+    public void setHeldAmount(BigDecimal heldAmount) {
+        this.heldAmount = heldAmount;
+    }
+
+    public BigDecimal getShortfallAmount() {
+        return shortfallAmount;
+    }
+
+    public void setShortfallAmount(BigDecimal shortfallAmount) {
+        this.shortfallAmount = shortfallAmount;
+    }
+
+    public ProjectType getProjectType() {
+        return projectType;
+    }
+
+    public void setProjectType(ProjectType projectType) {
+        this.projectType = projectType;
+    }
+
+    public String getMetadata() {
+        return metadata;
+    }
+
+    public void setMetadata(String metadata) {
+        this.metadata = metadata;
+    }
+
+    public ShortfallPurchaseStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(ShortfallPurchaseStatus status) {
+        this.status = status;
+    }
+
+    public Long getHoldId() {
+        return holdId;
+    }
+
+    public void setHoldId(Long holdId) {
+        this.holdId = holdId;
+    }
+
+    public String getOrderNo() {
+        return orderNo;
+    }
+
+    public void setOrderNo(String orderNo) {
+        this.orderNo = orderNo;
+    }
+
+    public Long getTransactionId() {
+        return transactionId;
+    }
+
+    public void setTransactionId(Long transactionId) {
+        this.transactionId = transactionId;
+    }
+
+    public String getFailureReason() {
+        return failureReason;
+    }
+
+    public void setFailureReason(String failureReason) {
+        this.failureReason = failureReason;
+    }
+
+    public LocalDateTime getCompletedAt() {
+        return completedAt;
+    }
+
+    public void setCompletedAt(LocalDateTime completedAt) {
+        this.completedAt = completedAt;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
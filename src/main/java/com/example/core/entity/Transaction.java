@@ -2,8 +2,12 @@ package com.example.core.entity;
 
 import com.example.core.enums.TransactionType;
 import com.example.core.enums.ProjectType;
+import com.example.core.id.PooledIdGenerator;
+import com.example.core.money.Money;
 import jakarta.persistence.*;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 import org.hibernate.annotations.UpdateTimestamp;
 
 import java.math.BigDecimal;
@@ -24,7 +28,9 @@ import java.time.LocalDateTime;
 public class Transaction {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "transactions_id")
+    @GenericGenerator(name = "transactions_id", type = PooledIdGenerator.class,
+            parameters = @Parameter(name = PooledIdGenerator.SEQUENCE_PARAM, value = "transactions"))
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -49,7 +55,11 @@ public class Transaction {
     @Column(name = "reference_no", length = 64)
     private String referenceNo;
 
-    @Column(name = "metadata", columnDefinition = "TEXT")
+    @Column(name = "related_transaction_id")
+    private Long relatedTransactionId;
+
+    @Convert(converter = JsonMetadataConverter.class)
+    @Column(name = "metadata", columnDefinition = "JSON")
     private String metadata;
 
     @CreationTimestamp
@@ -72,6 +82,11 @@ public class Transaction {
         this.projectType = projectType;
     }
 
+    public Transaction(Customer customer, Account account, TransactionType type,
+                      Money amount, ProjectType projectType) {
+        this(customer, account, type, Money.toBigDecimal(amount), projectType);
+    }
+
     // Getters and Setters
     public Long getId() { return id; }
 
@@ -93,6 +108,8 @@ public class Transaction {
 
     public void setAmount(BigDecimal amount) { this.amount = amount; }
 
+    public Money getAmountMoney() { return Money.ofNullable(amount); }
+
     public ProjectType getProjectType() { return projectType; }
 
     public void setProjectType(ProjectType projectType) { this.projectType = projectType; }
@@ -101,6 +118,10 @@ public class Transaction {
 
     public void setReferenceNo(String referenceNo) { this.referenceNo = referenceNo; }
 
+    public Long getRelatedTransactionId() { return relatedTransactionId; }
+
+    public void setRelatedTransactionId(Long relatedTransactionId) { this.relatedTransactionId = relatedTransactionId; }
+
     public String getMetadata() { return metadata; }
 
     public void setMetadata(String metadata) { this.metadata = metadata; }
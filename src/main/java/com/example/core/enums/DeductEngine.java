@@ -0,0 +1,19 @@
+package com.example.core.enums;
+
+/**
+ * Strategies for applying a wallet deduct.
+ */
+public enum DeductEngine {
+    /** Load customer and account entities, debit, rely on {@code @Version}. */
+    JPA,
+    /** One guarded {@code UPDATE accounts ... WHERE balance >= ?}, no entity loads. */
+    CONDITIONAL_UPDATE,
+    /** Deducts arriving within a short window share one DB transaction and commit. */
+    GROUP_COMMIT,
+    /**
+     * Writes only append to {@code transactions}; balances come from the latest snapshot plus
+     * the transactions after it, checked against an in-memory projection. Assumes one writer
+     * node per customer, and holds/sharding are unavailable in this mode.
+     */
+    EVENT_SOURCED
+}
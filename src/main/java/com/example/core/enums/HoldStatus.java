@@ -0,0 +1,11 @@
+package com.example.core.enums;
+
+/**
+ * Balance hold lifecycle status.
+ */
+public enum HoldStatus {
+    ACTIVE,
+    CAPTURED,
+    RELEASED,
+    EXPIRED
+}
@@ -0,0 +1,10 @@
+package com.example.core.enums;
+
+/**
+ * Shortfall purchase lifecycle status.
+ */
+public enum ShortfallPurchaseStatus {
+    AWAITING_PAYMENT,
+    COMPLETED,
+    FAILED
+}
@@ -7,5 +7,7 @@ public enum TransactionType {
     RECHARGE,
     SPEND,
     REFUND,
-    ADJUSTMENT
+    ADJUSTMENT,
+    TRANSFER_OUT,
+    TRANSFER_IN
 }
\ No newline at end of file
@@ -0,0 +1,12 @@
+package com.example.core.exception;
+
+/**
+ * The deduct was handed to a commit that had not finished when the caller gave up waiting, so it may
+ * still have been applied; only a retry with the same referenceNo can tell.
+ */
+public class DeductOutcomeUnknownException extends IllegalStateException {
+
+    public DeductOutcomeUnknownException(String message) {
+        super(message);
+    }
+}
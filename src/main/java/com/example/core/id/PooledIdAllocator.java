@@ -0,0 +1,118 @@
+package com.example.core.id;
+
+import com.example.core.config.WalletProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Hands out ids from the {@code id_sequences} table in blocks (pooled-lo): one short transaction
+ * reserves {@code allocationSize} ids, which are then given out from memory. Because ids are known
+ * before the INSERT, Hibernate can batch entity inserts and JDBC batches need no generated keys.
+ * JPA ({@link PooledIdGenerator}) and plain JDBC writers share the same pools, so ids for a table
+ * come from the same blocks on a node whichever path inserts the row.
+ * <p>
+ * Blocks are reserved outside the pool's monitor: callers usually hold a pooled connection already,
+ * and the reservation needs a second one, so it must not make other callers wait on it. When several
+ * threads find the pool empty at once, each reserves a block and the spares are used next, lowest first.
+ */
+@Component
+public class PooledIdAllocator {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate requiresNewTx;
+    private final int allocationSize;
+    private final ConcurrentMap<String, Pool> pools = new ConcurrentHashMap<>();
+
+    public PooledIdAllocator(JdbcTemplate jdbcTemplate,
+                             WalletProperties walletProperties,
+                             PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.allocationSize = walletProperties.getIds().getAllocationSize();
+        if (allocationSize < 1) {
+            throw new IllegalArgumentException("wallet.ids.allocation-size must be positive");
+        }
+
+        // Reserving a block must commit on its own, not hold the sequence row until the caller commits
+        this.requiresNewTx = new TransactionTemplate(transactionManager);
+        this.requiresNewTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public long next(String sequence) {
+        return next(sequence, 1)[0];
+    }
+
+    /**
+     * {@code count} ids; a request larger than the allocation size reserves a block of its own size
+     */
+    public long[] next(String sequence, int count) {
+        Pool pool = pools.computeIfAbsent(sequence, name -> new Pool());
+        long[] ids = new long[count];
+        int filled;
+        synchronized (pool) {
+            filled = pool.take(ids, 0);
+        }
+        if (filled < count) {
+            long size = Math.max(allocationSize, count - filled);
+            long end = reserve(sequence, size);
+            synchronized (pool) {
+                // Another thread may have refilled the pool meanwhile; the new block is at least as large as what is missing
+                pool.add(end - size, end);
+                pool.take(ids, filled);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Move the sequence forward by {@code size} and return its new value, the end (exclusive) of the reserved block
+     */
+    private long reserve(String sequence, long size) {
+        Long end = requiresNewTx.execute(status -> {
+            int updated = jdbcTemplate.update(
+                    "UPDATE id_sequences SET next_val = LAST_INSERT_ID(next_val + ?) WHERE name = ?", size, sequence);
+            if (updated == 0) {
+                throw new IllegalStateException("Unknown id sequence: " + sequence);
+            }
+            // LAST_INSERT_ID(expr) is per connection, and the transaction pins this one
+            return jdbcTemplate.queryForObject("SELECT LAST_INSERT_ID()", Long.class);
+        });
+        return end;
+    }
+
+    private static final class Pool {
+        private long next;
+        private long limit;
+        /** Reserved blocks not yet in use, as {start, end (exclusive)}, lowest first */
+        private final PriorityQueue<long[]> spare = new PriorityQueue<>(Comparator.comparingLong(block -> block[0]));
+
+        void add(long start, long end) {
+            spare.add(new long[]{start, end});
+        }
+
+        /**
+         * Fill {@code ids} from index {@code from} with ids on hand; returns the index after the last one filled
+         */
+        int take(long[] ids, int from) {
+            while (from < ids.length) {
+                if (next >= limit) {
+                    long[] block = spare.poll();
+                    if (block == null) {
+                        break;
+                    }
+                    next = block[0];
+                    limit = block[1];
+                }
+                ids[from++] = next++;
+            }
+            return from;
+        }
+    }
+}
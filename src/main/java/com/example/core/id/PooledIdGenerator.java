@@ -0,0 +1,45 @@
+package com.example.core.id;
+
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.util.Properties;
+import java.util.function.Supplier;
+
+/**
+ * Hibernate id generator backed by {@link PooledIdAllocator}. The {@code sequence} parameter names
+ * the {@code id_sequences} row, which is also what {@code LedgerJdbcRepository} draws from. The
+ * allocator is looked up through the {@link #ALLOCATOR_SETTING} Hibernate setting, which
+ * {@code PersistenceConfig} fills from the Spring context.
+ */
+public class PooledIdGenerator implements IdentifierGenerator {
+
+    public static final String SEQUENCE_PARAM = "sequence";
+
+    public static final String ALLOCATOR_SETTING = "wallet.ids.allocator";
+
+    private String sequence;
+    private Supplier<PooledIdAllocator> allocator;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void configure(Type type, Properties parameters, ServiceRegistry serviceRegistry) {
+        sequence = parameters.getProperty(SEQUENCE_PARAM);
+        if (sequence == null) {
+            throw new IllegalArgumentException("PooledIdGenerator needs a '" + SEQUENCE_PARAM + "' parameter");
+        }
+        Object setting = serviceRegistry.getService(ConfigurationService.class).getSettings().get(ALLOCATOR_SETTING);
+        if (!(setting instanceof Supplier<?>)) {
+            throw new IllegalStateException("PooledIdGenerator needs the '" + ALLOCATOR_SETTING + "' Hibernate setting");
+        }
+        allocator = (Supplier<PooledIdAllocator>) setting;
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object object) {
+        return allocator.get().next(sequence);
+    }
+}
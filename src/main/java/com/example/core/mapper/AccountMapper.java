@@ -20,6 +20,8 @@ public class AccountMapper {
         dto.setId(account.getId());
         dto.setCustomerId(account.getCustomer() != null ? account.getCustomer().getId() : null);
         dto.setBalance(account.getBalance());
+        dto.setHeldAmount(account.getHeldAmount());
+        dto.setAvailableBalance(account.getAvailableBalance());
         dto.setTotalRecharge(account.getTotalRecharge());
         dto.setTotalSpend(account.getTotalSpend());
         dto.setCreatedAt(account.getCreatedAt());
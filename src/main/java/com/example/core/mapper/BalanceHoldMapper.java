@@ -0,0 +1,33 @@
+package com.example.core.mapper;
+
+import com.example.core.dto.BalanceHoldDTO;
+import com.example.core.entity.BalanceHold;
+
+/**
+ * Balance hold entity mapper
+ */
+public class BalanceHoldMapper {
+
+    /**
+     * Convert BalanceHold entity to BalanceHoldDTO
+     */
+    public static BalanceHoldDTO toDTO(BalanceHold hold) {
+        if (hold == null) {
+            return null;
+        }
+
+        BalanceHoldDTO dto = new BalanceHoldDTO();
+        dto.setId(hold.getId());
+        dto.setAmount(hold.getAmount());
+        dto.setCapturedAmount(hold.getCapturedAmount());
+        dto.setStatus(hold.getStatus());
+        dto.setProjectType(hold.getProjectType());
+        dto.setReferenceNo(hold.getReferenceNo());
+        dto.setTransactionId(hold.getTransactionId());
+        dto.setExpiresAt(hold.getExpiresAt());
+        dto.setSettledAt(hold.getSettledAt());
+        dto.setCreatedAt(hold.getCreatedAt());
+
+        return dto;
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.core.mapper;
+
+import com.example.core.dto.ShortfallPurchaseDTO;
+import com.example.core.entity.ShortfallPurchase;
+
+/**
+ * Shortfall purchase entity mapper
+ */
+public class ShortfallPurchaseMapper {
+
+    /**
+     * Convert ShortfallPurchase entity to ShortfallPurchaseDTO
+     */
+    public static ShortfallPurchaseDTO toDTO(ShortfallPurchase purchase) {
+        if (purchase == null) {
+            return null;
+        }
+
+        ShortfallPurchaseDTO dto = new ShortfallPurchaseDTO();
+        dto.setId(purchase.getId());
+        dto.setReferenceNo(purchase.getReferenceNo());
+        dto.setAmount(purchase.getAmount());
+        dto.setHeldAmount(purchase.getHeldAmount());
+        dto.setShortfallAmount(purchase.getShortfallAmount());
+        dto.setProjectType(purchase.getProjectType());
+        dto.setStatus(purchase.getStatus());
+        dto.setOrderNo(purchase.getOrderNo());
+        dto.setTransactionId(purchase.getTransactionId());
+        dto.setFailureReason(purchase.getFailureReason());
+        dto.setCreatedAt(purchase.getCreatedAt());
+        dto.setCompletedAt(purchase.getCompletedAt());
+
+        return dto;
+    }
+}
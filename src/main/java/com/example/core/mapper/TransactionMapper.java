@@ -1,7 +1,11 @@
 package com.example.core.mapper;
 
 import com.example.core.dto.TransactionDTO;
+import com.example.core.entity.JsonMetadataConverter;
 import com.example.core.entity.Transaction;
+import com.example.core.enums.ProjectType;
+import com.example.core.enums.TransactionType;
+import com.example.core.repository.TransactionHistoryView;
 
 /**
  * Transaction entity mapper
@@ -31,6 +35,30 @@ public class TransactionMapper {
         return dto;
     }
 
+    /**
+     * Convert a history row projection to TransactionDTO; the projection reads the raw JSON column,
+     * so metadata is turned back into what the writer stored, as the entity converter does
+     */
+    public static TransactionDTO toDTO(TransactionHistoryView view) {
+        if (view == null) {
+            return null;
+        }
+
+        TransactionDTO dto = new TransactionDTO();
+        dto.setId(view.getId());
+        dto.setCustomerId(view.getCustomerId());
+        dto.setAccountId(view.getAccountId());
+        dto.setType(TransactionType.valueOf(view.getType()));
+        dto.setAmount(view.getAmount());
+        dto.setProjectType(ProjectType.valueOf(view.getProjectType()));
+        dto.setReferenceNo(view.getReferenceNo());
+        dto.setMetadata(JsonMetadataConverter.denormalize(view.getMetadata()));
+        dto.setCreatedAt(view.getCreatedAt());
+        dto.setUpdatedAt(view.getUpdatedAt());
+
+        return dto;
+    }
+
     /**
      * Convert TransactionDTO to Transaction entity (without relationships)
      */
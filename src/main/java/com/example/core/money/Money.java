@@ -0,0 +1,119 @@
+package com.example.core.money;
+
+import java.math.BigDecimal;
+
+/**
+ * Immutable CNY amount held as a whole number of fen (minor units) in a {@code long}.
+ * Arithmetic and comparisons are plain long operations. Only the JDBC write paths (batch deduct,
+ * group commit, transfers, refunds, adjustments) work in fen, through {@code AccountBalanceRow},
+ * and convert when binding SQL parameters. The JPA entities and the default JPA deduct path stay
+ * on {@link BigDecimal}, so converting there would only add allocations.
+ */
+public final class Money implements Comparable<Money> {
+
+    public static final int SCALE = 2;
+
+    public static final Money ZERO = new Money(0);
+
+    private final long fen;
+
+    private Money(long fen) {
+        this.fen = fen;
+    }
+
+    public static Money ofFen(long fen) {
+        return fen == 0 ? ZERO : new Money(fen);
+    }
+
+    /**
+     * Convert a yuan amount; rejects amounts with fractions of a fen
+     */
+    public static Money of(BigDecimal amount) {
+        if (amount == null) {
+            throw new IllegalArgumentException("Amount is required");
+        }
+        try {
+            return ofFen(amount.movePointRight(SCALE).longValueExact());
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Amount must have at most " + SCALE + " decimal places: " + amount);
+        }
+    }
+
+    public static Money ofNullable(BigDecimal amount) {
+        return amount != null ? of(amount) : null;
+    }
+
+    public static BigDecimal toBigDecimal(Money money) {
+        return money != null ? money.toBigDecimal() : null;
+    }
+
+    public long getFen() {
+        return fen;
+    }
+
+    /**
+     * Amount in fen as an int, as the WeChat Pay API expects; throws if it does not fit
+     */
+    public int toFenIntExact() {
+        return Math.toIntExact(fen);
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(fen, SCALE);
+    }
+
+    public Money plus(Money other) {
+        return other.fen == 0 ? this : ofFen(Math.addExact(fen, other.fen));
+    }
+
+    public Money minus(Money other) {
+        return other.fen == 0 ? this : ofFen(Math.subtractExact(fen, other.fen));
+    }
+
+    public Money negate() {
+        return ofFen(Math.negateExact(fen));
+    }
+
+    public boolean isZero() {
+        return fen == 0;
+    }
+
+    public boolean isPositive() {
+        return fen > 0;
+    }
+
+    public boolean isNegative() {
+        return fen < 0;
+    }
+
+    public boolean isLessThan(Money other) {
+        return fen < other.fen;
+    }
+
+    public boolean isGreaterThanOrEqualTo(Money other) {
+        return fen >= other.fen;
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(fen, other.fen);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        return o instanceof Money other && fen == other.fen;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(fen);
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.core.money;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import org.hibernate.annotations.Immutable;
+
+import java.math.BigDecimal;
+
+/**
+ * Maps {@link Money} to the existing {@code DECIMAL(10,2)} amount columns. Money is immutable,
+ * so Hibernate can dirty-check it by equality without snapshot copies.
+ */
+@Converter
+@Immutable
+public class MoneyConverter implements AttributeConverter<Money, BigDecimal> {
+
+    @Override
+    public BigDecimal convertToDatabaseColumn(Money money) {
+        return Money.toBigDecimal(money);
+    }
+
+    @Override
+    public Money convertToEntityAttribute(BigDecimal column) {
+        return Money.ofNullable(column);
+    }
+}
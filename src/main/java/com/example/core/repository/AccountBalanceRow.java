@@ -0,0 +1,88 @@
+package com.example.core.repository;
+
+import com.example.core.money.Money;
+
+/**
+ * An account row locked for update plus the deltas accumulated against it in memory,
+ * flushed back by {@link LedgerJdbcRepository#applyBalanceDeltas}. Amounts are kept as
+ * fen so debiting a batch does no decimal arithmetic.
+ */
+public class AccountBalanceRow {
+
+    private final Long id;
+    private final Long customerId;
+    private long balance;
+    private final long heldAmount;
+    private int shardCount;
+    private long balanceDelta;
+    private long rechargeDelta;
+    private long spendDelta;
+
+    public AccountBalanceRow(Long id, Long customerId, Money balance, Money heldAmount) {
+        this.id = id;
+        this.customerId = customerId;
+        this.balance = balance.getFen();
+        this.heldAmount = heldAmount.getFen();
+    }
+
+    /**
+     * Whether the balance not reserved by active holds covers the amount
+     */
+    public boolean canCover(Money amount) {
+        return balance - heldAmount >= amount.getFen();
+    }
+
+    public void debit(Money amount) {
+        balance = Math.subtractExact(balance, amount.getFen());
+        balanceDelta -= amount.getFen();
+        spendDelta += amount.getFen();
+    }
+
+    /**
+     * Give back part of an earlier spend: credits the balance and takes it off total_spend
+     */
+    public void refund(Money amount) {
+        balance = Math.addExact(balance, amount.getFen());
+        balanceDelta += amount.getFen();
+        spendDelta -= amount.getFen();
+    }
+
+    /**
+     * Signed balance correction that counts as neither recharge nor spend
+     */
+    public void adjust(Money amount) {
+        balance = Math.addExact(balance, amount.getFen());
+        balanceDelta += amount.getFen();
+    }
+
+    /**
+     * Whether part of the balance lives in account_shards, which a write against this row alone would miss
+     */
+    public boolean isSharded() {
+        return shardCount > 0;
+    }
+
+    public void setShardCount(int shardCount) {
+        this.shardCount = shardCount;
+    }
+
+    public boolean isDirty() {
+        return balanceDelta != 0 || rechargeDelta != 0 || spendDelta != 0;
+    }
+
+    public Long getId() { return id; }
+
+    public Long getCustomerId() { return customerId; }
+
+    public Money getBalance() { return Money.ofFen(balance); }
+
+    public Money getAvailable() { return Money.ofFen(balance - heldAmount); }
+
+    public Money getHeldAmount() { return Money.ofFen(heldAmount); }
+
+    public Money getBalanceDelta() { return Money.ofFen(balanceDelta); }
+
+    public Money getRechargeDelta() { return Money.ofFen(rechargeDelta); }
+
+    public Money getSpendDelta() { return Money.ofFen(spendDelta); }
+}
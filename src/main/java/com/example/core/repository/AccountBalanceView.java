@@ -0,0 +1,17 @@
+package com.example.core.repository;
+
+import java.math.BigDecimal;
+
+/**
+ * Lightweight projection of an account's balance columns
+ */
+public interface AccountBalanceView {
+
+    Long getId();
+
+    BigDecimal getBalance();
+
+    BigDecimal getHeldAmount();
+
+    Long getVersion();
+}
@@ -2,6 +2,7 @@ package com.example.core.repository;
 
 import com.example.core.entity.Account;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -42,4 +43,74 @@ public interface AccountRepository extends JpaRepository<Account, Long> {
      */
     @Query("SELECT a FROM Account a WHERE a.totalRecharge > :amount")
     List<Account> findByTotalRechargeGreaterThan(@Param("amount") BigDecimal amount);
-}
\ No newline at end of file
+
+    /**
+     * Debit an account in one guarded statement; returns 0 when the available balance does not cover the amount
+     */
+    @Modifying
+    @Query(value = "UPDATE accounts SET balance = balance - :amount, total_spend = total_spend + :amount, " +
+                   "version = version + 1 WHERE customer_id = :customerId AND balance - held_amount >= :amount",
+           nativeQuery = true)
+    int debitIfSufficient(@Param("customerId") Long customerId, @Param("amount") BigDecimal amount);
+
+    /**
+     * Read id, balance and version of a customer's account without loading the entity
+     */
+    @Query(value = "SELECT id, balance, held_amount AS heldAmount, version FROM accounts WHERE customer_id = :customerId",
+           nativeQuery = true)
+    Optional<AccountBalanceView> findBalanceViewByCustomerId(@Param("customerId") Long customerId);
+
+    /**
+     * Reserve part of the available balance for a hold; returns 0 when it is not available
+     */
+    @Modifying
+    @Query(value = "UPDATE accounts SET held_amount = held_amount + :amount, version = version + 1 " +
+                   "WHERE customer_id = :customerId AND balance - held_amount >= :amount",
+           nativeQuery = true)
+    int reserveIfAvailable(@Param("customerId") Long customerId, @Param("amount") BigDecimal amount);
+
+    /**
+     * Give a reserved amount back to the available balance
+     */
+    @Modifying
+    @Query(value = "UPDATE accounts SET held_amount = held_amount - :amount, version = version + 1 " +
+                   "WHERE customer_id = :customerId AND held_amount >= :amount",
+           nativeQuery = true)
+    int releaseHeld(@Param("customerId") Long customerId, @Param("amount") BigDecimal amount);
+
+    /**
+     * Settle a hold: drop the reservation and debit the captured part of it
+     */
+    @Modifying
+    @Query(value = "UPDATE accounts SET held_amount = held_amount - :held, balance = balance - :captured, " +
+                   "total_spend = total_spend + :captured, version = version + 1 " +
+                   "WHERE customer_id = :customerId AND held_amount >= :held AND balance >= :captured",
+           nativeQuery = true)
+    int captureHeld(@Param("customerId") Long customerId, @Param("held") BigDecimal held, @Param("captured") BigDecimal captured);
+
+    /**
+     * Settle a hold and debit more than it reserved: drop the reservation and debit {@code amount}, provided
+     * the balance outside the other holds covers it. With {@code held} 0 this is a plain guarded debit.
+     */
+    @Modifying
+    @Query(value = "UPDATE accounts SET held_amount = held_amount - :held, balance = balance - :amount, " +
+                   "total_spend = total_spend + :amount, version = version + 1 " +
+                   "WHERE customer_id = :customerId AND held_amount >= :held AND balance - (held_amount - :held) >= :amount",
+           nativeQuery = true)
+    int captureHeldAndDebit(@Param("customerId") Long customerId, @Param("held") BigDecimal held, @Param("amount") BigDecimal amount);
+
+    /**
+     * Customers whose account balance is split across account_shards
+     */
+    @Query(value = "SELECT customer_id FROM accounts WHERE shard_count > 0", nativeQuery = true)
+    List<Long> findShardedCustomerIds();
+
+    /**
+     * Take unreserved balance off the accounts row of a sharded account (to spread it over its shards)
+     */
+    @Modifying
+    @Query(value = "UPDATE accounts SET balance = balance - :amount, version = version + 1 " +
+                   "WHERE id = :accountId AND balance - held_amount >= :amount",
+           nativeQuery = true)
+    int withdrawAvailable(@Param("accountId") Long accountId, @Param("amount") BigDecimal amount);
+}
@@ -0,0 +1,76 @@
+package com.example.core.repository;
+
+import com.example.core.entity.AccountShard;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Repository
+public interface AccountShardRepository extends JpaRepository<AccountShard, Long> {
+
+    /**
+     * Unlocked shard balances, used to pick a shard that can cover a spend
+     */
+    @Query(value = "SELECT shard_no AS shardNo, balance FROM account_shards WHERE account_id = :accountId ORDER BY shard_no",
+           nativeQuery = true)
+    List<ShardBalanceView> findBalanceViewsByAccountId(@Param("accountId") Long accountId);
+
+    /**
+     * Lock every shard of an account (in shard order) for a multi-shard spend or a rebalance
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM AccountShard s WHERE s.account.id = :accountId ORDER BY s.shardNo")
+    List<AccountShard> lockByAccountId(@Param("accountId") Long accountId);
+
+    /**
+     * Debit one shard in one guarded statement; returns 0 when the shard does not cover the amount
+     */
+    @Modifying
+    @Query(value = "UPDATE account_shards SET balance = balance - :amount, total_spend = total_spend + :amount, " +
+                   "version = version + 1 WHERE account_id = :accountId AND shard_no = :shardNo AND balance >= :amount",
+           nativeQuery = true)
+    int debitIfSufficient(@Param("accountId") Long accountId,
+                          @Param("shardNo") int shardNo,
+                          @Param("amount") BigDecimal amount);
+
+    /**
+     * Credit one shard; only {@code recharge} (the paid part) counts toward total recharge
+     */
+    @Modifying
+    @Query(value = "UPDATE account_shards SET balance = balance + :amount, total_recharge = total_recharge + :recharge, " +
+                   "version = version + 1 WHERE account_id = :accountId AND shard_no = :shardNo",
+           nativeQuery = true)
+    int credit(@Param("accountId") Long accountId,
+               @Param("shardNo") int shardNo,
+               @Param("amount") BigDecimal amount,
+               @Param("recharge") BigDecimal recharge);
+
+    /**
+     * Sum of the shard columns of an account
+     */
+    @Query(value = "SELECT COALESCE(SUM(balance), 0) AS balance, COALESCE(SUM(total_recharge), 0) AS totalRecharge, " +
+                   "COALESCE(SUM(total_spend), 0) AS totalSpend FROM account_shards WHERE account_id = :accountId",
+           nativeQuery = true)
+    ShardTotalsView sumByAccountId(@Param("accountId") Long accountId);
+
+    interface ShardBalanceView {
+        Integer getShardNo();
+
+        BigDecimal getBalance();
+    }
+
+    interface ShardTotalsView {
+        BigDecimal getBalance();
+
+        BigDecimal getTotalRecharge();
+
+        BigDecimal getTotalSpend();
+    }
+}
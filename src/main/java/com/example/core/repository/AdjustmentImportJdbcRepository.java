@@ -0,0 +1,112 @@
+package com.example.core.repository;
+
+import com.example.core.dto.AdjustmentImportDTO;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JDBC access to the adjustment import checkpoint tables.
+ */
+@Repository
+public class AdjustmentImportJdbcRepository {
+
+    private static final String SELECT_IMPORT =
+            "SELECT id, file_sha256, file_name, status, next_line, applied_count, duplicate_count, failed_count, " +
+            "applied_amount, created_at, updated_at FROM adjustment_imports ";
+
+    private static final RowMapper<AdjustmentImportDTO> IMPORT_MAPPER = (rs, rowNum) -> {
+        AdjustmentImportDTO dto = new AdjustmentImportDTO();
+        dto.setId(rs.getLong("id"));
+        dto.setFileSha256(rs.getString("file_sha256"));
+        dto.setFileName(rs.getString("file_name"));
+        dto.setStatus(rs.getString("status"));
+        dto.setLinesProcessed(rs.getLong("next_line"));
+        dto.setApplied(rs.getLong("applied_count"));
+        dto.setDuplicates(rs.getLong("duplicate_count"));
+        dto.setFailed(rs.getLong("failed_count"));
+        dto.setAppliedAmount(rs.getBigDecimal("applied_amount"));
+        dto.setCreatedAt(toLocalDateTime(rs.getTimestamp("created_at")));
+        dto.setUpdatedAt(toLocalDateTime(rs.getTimestamp("updated_at")));
+        return dto;
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public AdjustmentImportJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * The import of a file with this content, created (RUNNING, at line 0) if it was never seen before
+     */
+    public AdjustmentImportDTO findOrCreate(String fileSha256, String fileName) {
+        try {
+            jdbcTemplate.update("INSERT INTO adjustment_imports (file_sha256, file_name, status) VALUES (?, ?, 'RUNNING')",
+                    fileSha256, fileName);
+        } catch (DuplicateKeyException e) {
+            // Same file uploaded again: resume (or report) the existing import
+        }
+        return jdbcTemplate.queryForObject(SELECT_IMPORT + "WHERE file_sha256 = ?", IMPORT_MAPPER, fileSha256);
+    }
+
+    /**
+     * Move the checkpoint from {@code fromLine} to {@code toLine} and add the batch's counters. Returns false
+     * when the checkpoint is no longer at {@code fromLine} (another upload of the same file got there first),
+     * in which case the caller must roll the batch back. Must run in the batch transaction.
+     */
+    public boolean advance(long importId, long fromLine, long toLine, int applied, int duplicates,
+                           List<AdjustmentImportDTO.Failure> failures, BigDecimal appliedAmount) {
+        int updated = jdbcTemplate.update(
+                "UPDATE adjustment_imports SET next_line = ?, applied_count = applied_count + ?, " +
+                "duplicate_count = duplicate_count + ?, failed_count = failed_count + ?, " +
+                "applied_amount = applied_amount + ? WHERE id = ? AND next_line = ? AND status = 'RUNNING'",
+                toLine, applied, duplicates, failures.size(), appliedAmount, importId, fromLine);
+        if (updated == 0) {
+            return false;
+        }
+
+        if (!failures.isEmpty()) {
+            List<Object[]> args = new ArrayList<>(failures.size());
+            for (AdjustmentImportDTO.Failure failure : failures) {
+                args.add(new Object[]{importId, failure.getLineNo(), failure.getReferenceNo(), failure.getReason()});
+            }
+            jdbcTemplate.batchUpdate("INSERT INTO adjustment_import_failures (import_id, line_no, reference_no, reason) " +
+                    "VALUES (?, ?, ?, ?)", args);
+        }
+        return true;
+    }
+
+    public void finish(long importId, String status) {
+        jdbcTemplate.update("UPDATE adjustment_imports SET status = ? WHERE id = ? AND status = 'RUNNING'", status, importId);
+    }
+
+    /**
+     * An import with up to {@code failureLimit} rejected lines; null when unknown
+     */
+    public AdjustmentImportDTO findImport(long importId, int failureLimit) {
+        List<AdjustmentImportDTO> imports = jdbcTemplate.query(SELECT_IMPORT + "WHERE id = ?", IMPORT_MAPPER, importId);
+        if (imports.isEmpty()) {
+            return null;
+        }
+        AdjustmentImportDTO dto = imports.get(0);
+        dto.setFailures(failureLimit <= 0 ? new ArrayList<>() : jdbcTemplate.query(
+                "SELECT line_no, reference_no, reason FROM adjustment_import_failures WHERE import_id = ? " +
+                "ORDER BY line_no LIMIT ?",
+                (rs, rowNum) -> new AdjustmentImportDTO.Failure(rs.getLong("line_no"), rs.getString("reference_no"),
+                        rs.getString("reason")),
+                importId, failureLimit));
+        return dto;
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.core.repository;
+
+import com.example.core.dto.BalanceAtDTO;
+import com.example.core.money.Money;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JDBC access to balance_checkpoints: writes each day's checkpoints range by range from the
+ * previous checkpoint plus the day's transactions, and answers point-in-time balance queries
+ * from the nearest earlier checkpoint plus the short tail after it.
+ */
+@Repository
+public class BalanceCheckpointJdbcRepository {
+
+    /**
+     * New checkpoints at {@code checkpoint_at} for the accounts in an id range that have transactions since
+     * their previous checkpoint. The tail is read through idx_transaction_customer_created. Recomputing a
+     * range overwrites it with the same figures, so an interrupted run can simply be repeated.
+     */
+    private static final String WRITE_RANGE =
+            "INSERT INTO balance_checkpoints (account_id, checkpoint_at, customer_id, balance, total_recharge, total_spend) " +
+            "SELECT a.id, ?, a.customer_id, " +
+            "COALESCE(p.balance, 0) + SUM(" + BalanceSnapshotJdbcRepository.BALANCE_DELTA + "), " +
+            "COALESCE(p.total_recharge, 0) + SUM(CASE WHEN t.type = 'RECHARGE' THEN t.amount ELSE 0 END), " +
+            "COALESCE(p.total_spend, 0) + SUM(" + BalanceSnapshotJdbcRepository.SPEND_DELTA + ") " +
+            "FROM accounts a " +
+            "LEFT JOIN balance_checkpoints p ON p.account_id = a.id AND p.checkpoint_at = (" +
+            "SELECT MAX(c.checkpoint_at) FROM balance_checkpoints c WHERE c.account_id = a.id AND c.checkpoint_at < ?) " +
+            "JOIN transactions t ON t.customer_id = a.customer_id " +
+            "AND t.created_at >= COALESCE(p.checkpoint_at, '1000-01-01') AND t.created_at < ? " +
+            "LEFT JOIN recharge_orders o ON t.type = 'RECHARGE' AND o.order_no = t.reference_no " +
+            "WHERE a.id BETWEEN ? AND ? " +
+            "GROUP BY a.id, a.customer_id, p.balance, p.total_recharge, p.total_spend " +
+            "ON DUPLICATE KEY UPDATE balance = VALUES(balance), total_recharge = VALUES(total_recharge), " +
+            "total_spend = VALUES(total_spend)";
+
+    /**
+     * Ledger tail of one customer in {@code [from, to)}, read through idx_transaction_customer_created
+     */
+    private static final String REPLAY_TAIL =
+            "SELECT COALESCE(SUM(" + BalanceSnapshotJdbcRepository.BALANCE_DELTA + "), 0) AS balance, " +
+            "COALESCE(SUM(CASE WHEN t.type = 'RECHARGE' THEN t.amount ELSE 0 END), 0) AS total_recharge, " +
+            "COALESCE(SUM(" + BalanceSnapshotJdbcRepository.SPEND_DELTA + "), 0) AS total_spend, " +
+            "COUNT(t.id) AS tail_length " +
+            "FROM transactions t " +
+            "LEFT JOIN recharge_orders o ON t.type = 'RECHARGE' AND o.order_no = t.reference_no " +
+            "WHERE t.customer_id = ? AND t.created_at >= ? AND t.created_at < ?";
+
+    /**
+     * Balance of every account of the customers in an id range over the transactions created before a
+     * point in time: each account's nearest checkpoint plus its tail, in one statement
+     */
+    private static final String BALANCES_AT =
+            "SELECT a.id, a.customer_id, a.held_amount, COALESCE(p.balance, 0) + COALESCE(SUM(" + BalanceSnapshotJdbcRepository.BALANCE_DELTA + "), 0) AS balance " +
+            "FROM accounts a " +
+            "LEFT JOIN balance_checkpoints p ON p.account_id = a.id AND p.checkpoint_at = (" +
+            "SELECT MAX(c.checkpoint_at) FROM balance_checkpoints c WHERE c.account_id = a.id AND c.checkpoint_at <= ?) " +
+            "LEFT JOIN transactions t ON t.customer_id = a.customer_id " +
+            "AND t.created_at >= COALESCE(p.checkpoint_at, '1000-01-01') AND t.created_at < ? " +
+            "LEFT JOIN recharge_orders o ON t.type = 'RECHARGE' AND o.order_no = t.reference_no " +
+            "WHERE a.customer_id BETWEEN ? AND ? " +
+            "GROUP BY a.id, a.customer_id, a.held_amount, p.balance";
+
+    private static final LocalDateTime BEGINNING = LocalDateTime.of(1000, 1, 1, 0, 0);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public BalanceCheckpointJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public long findMaxAccountId() {
+        Long max = jdbcTemplate.queryForObject("SELECT MAX(id) FROM accounts", Long.class);
+        return max != null ? max : 0L;
+    }
+
+    /**
+     * The latest checkpoint time whose run has completed; null before the first one
+     */
+    public LocalDateTime findLatestCompleted() {
+        return jdbcTemplate.queryForObject(
+                "SELECT MAX(checkpoint_at) FROM balance_checkpoint_runs WHERE status = 'COMPLETED'", LocalDateTime.class);
+    }
+
+    /**
+     * Record that a checkpoint run has started (or restarted) over accounts up to {@code maxAccountId}
+     */
+    public void startRun(LocalDateTime checkpointAt, long maxAccountId) {
+        jdbcTemplate.update(
+                "INSERT INTO balance_checkpoint_runs (checkpoint_at, status, max_account_id) VALUES (?, 'RUNNING', ?) " +
+                "ON DUPLICATE KEY UPDATE status = 'RUNNING', max_account_id = VALUES(max_account_id), " +
+                "accounts_written = 0, started_at = CURRENT_TIMESTAMP, completed_at = NULL",
+                checkpointAt, maxAccountId);
+    }
+
+    /**
+     * Write the checkpoints of accounts {@code start <= id <= end}; returns the affected row count
+     * (a repeated range whose figures did not change counts 0)
+     */
+    public int writeRange(LocalDateTime checkpointAt, long start, long end) {
+        return jdbcTemplate.update(WRITE_RANGE, checkpointAt, checkpointAt, checkpointAt, start, end);
+    }
+
+    public void finishRun(LocalDateTime checkpointAt, long accountsWritten) {
+        jdbcTemplate.update(
+                "UPDATE balance_checkpoint_runs SET status = 'COMPLETED', accounts_written = ?, completed_at = CURRENT_TIMESTAMP " +
+                "WHERE checkpoint_at = ?",
+                accountsWritten, checkpointAt);
+    }
+
+    /**
+     * Balance and totals of a customer over every transaction created before {@code at}: the nearest
+     * checkpoint at or before {@code at} plus the transactions between the two
+     */
+    public BalanceAtDTO balanceAt(Long customerId, LocalDateTime at) {
+        List<BalanceAtDTO> checkpoints = jdbcTemplate.query(
+                "SELECT checkpoint_at, balance, total_recharge, total_spend FROM balance_checkpoints " +
+                "WHERE customer_id = ? AND checkpoint_at <= ? ORDER BY checkpoint_at DESC LIMIT 1",
+                (rs, rowNum) -> new BalanceAtDTO(customerId, at, rs.getBigDecimal("balance"),
+                        rs.getBigDecimal("total_recharge"), rs.getBigDecimal("total_spend"),
+                        rs.getObject("checkpoint_at", LocalDateTime.class), 0),
+                customerId, at);
+        BalanceAtDTO result = checkpoints.isEmpty()
+                ? new BalanceAtDTO(customerId, at, BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO, null, 0)
+                : checkpoints.get(0);
+
+        LocalDateTime from = result.getCheckpointAt() != null ? result.getCheckpointAt() : BEGINNING;
+        jdbcTemplate.query(REPLAY_TAIL, rs -> {
+            result.setBalance(result.getBalance().add(rs.getBigDecimal("balance")));
+            result.setTotalRecharge(result.getTotalRecharge().add(rs.getBigDecimal("total_recharge")));
+            result.setTotalSpend(result.getTotalSpend().add(rs.getBigDecimal("total_spend")));
+            result.setReplayedTransactions(rs.getLong("tail_length"));
+        }, customerId, from, at);
+        return result;
+    }
+
+    /**
+     * Accounts of the customers with {@code fromCustomerId <= id <= toCustomerId} carrying their balance as of
+     * {@code at} (held amounts are current), keyed by customer id
+     */
+    public Map<Long, AccountBalanceRow> balancesAt(long fromCustomerId, long toCustomerId, LocalDateTime at) {
+        Map<Long, AccountBalanceRow> balances = new HashMap<>();
+        jdbcTemplate.query(BALANCES_AT, rs -> {
+            balances.put(rs.getLong("customer_id"), new AccountBalanceRow(rs.getLong("id"), rs.getLong("customer_id"),
+                    Money.of(rs.getBigDecimal("balance")), Money.of(rs.getBigDecimal("held_amount"))));
+        }, at, at, fromCustomerId, toCustomerId);
+        return balances;
+    }
+}
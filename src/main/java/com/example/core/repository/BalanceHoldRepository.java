@@ -0,0 +1,60 @@
+package com.example.core.repository;
+
+import com.example.core.entity.BalanceHold;
+import com.example.core.enums.HoldStatus;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface BalanceHoldRepository extends JpaRepository<BalanceHold, Long> {
+
+    Optional<BalanceHold> findByIdAndCustomerId(Long id, Long customerId);
+
+    Optional<BalanceHold> findByCustomerIdAndReferenceNo(Long customerId, String referenceNo);
+
+    /**
+     * Lock a customer's hold before settling it; the expiry job takes the same row lock first
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT h FROM BalanceHold h WHERE h.id = :id AND h.customer.id = :customerId")
+    Optional<BalanceHold> lockByIdAndCustomerId(@Param("id") Long id, @Param("customerId") Long customerId);
+
+    /**
+     * Lock the given holds that are still active and past their expiry
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT h FROM BalanceHold h WHERE h.id IN :ids AND h.status = :status AND h.expiresAt <= :now ORDER BY h.id")
+    List<BalanceHold> lockExpired(@Param("ids") Collection<Long> ids,
+                                  @Param("status") HoldStatus status,
+                                  @Param("now") LocalDateTime now);
+
+    /**
+     * Ids and expiry of all holds in a status, used to seed the in-memory expiry wheel
+     */
+    @Query("SELECT h.id AS id, h.expiresAt AS expiresAt FROM BalanceHold h WHERE h.status = :status")
+    List<HoldExpiryView> findExpiryViewsByStatus(@Param("status") HoldStatus status);
+
+    /**
+     * Ids of holds in a status whose expiry has passed (safety-net sweep)
+     */
+    @Query("SELECT h.id FROM BalanceHold h WHERE h.status = :status AND h.expiresAt <= :now ORDER BY h.expiresAt")
+    List<Long> findIdsByStatusAndExpiresAtBefore(@Param("status") HoldStatus status,
+                                                 @Param("now") LocalDateTime now,
+                                                 Pageable pageable);
+
+    interface HoldExpiryView {
+        Long getId();
+
+        LocalDateTime getExpiresAt();
+    }
+}
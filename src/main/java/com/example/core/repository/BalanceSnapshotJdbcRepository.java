@@ -0,0 +1,153 @@
+package com.example.core.repository;
+
+import com.example.core.money.Money;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * JDBC access to balance_snapshots: reads the latest snapshot of an account with the
+ * ledger tail replayed on top, writes new snapshots and folds them into accounts.
+ */
+@Repository
+public class BalanceSnapshotJdbcRepository {
+
+    /**
+     * Signed effect of one transactions row (alias {@code t}) on the balance. RECHARGE rows
+     * carry only the paid amount, so the promotion bonus is joined from recharge_orders
+     * (alias {@code o}, joined on the order number).
+     */
+    public static final String BALANCE_DELTA =
+            "CASE t.type WHEN 'RECHARGE' THEN t.amount + COALESCE(o.bonus_amount, 0) " +
+            "WHEN 'SPEND' THEN -t.amount " +
+            "WHEN 'REFUND' THEN t.amount " +
+            "WHEN 'ADJUSTMENT' THEN t.amount " +
+            "WHEN 'TRANSFER_OUT' THEN -t.amount " +
+            "WHEN 'TRANSFER_IN' THEN t.amount " +
+            "ELSE 0 END";
+
+    /**
+     * Signed effect of one transactions row (alias {@code t}) on total_spend; refunds give spend back,
+     * transfers are not spend
+     */
+    public static final String SPEND_DELTA =
+            "CASE t.type WHEN 'SPEND' THEN t.amount WHEN 'REFUND' THEN -t.amount ELSE 0 END";
+
+    private static final String SELECT_REPLAYED =
+            "SELECT s.account_id, s.customer_id, a.held_amount, s.last_transaction_id, " +
+            "s.balance + COALESCE(SUM(" + BALANCE_DELTA + "), 0) AS balance, " +
+            "s.total_recharge + COALESCE(SUM(CASE WHEN t.type = 'RECHARGE' THEN t.amount ELSE 0 END), 0) AS total_recharge, " +
+            "s.total_spend + COALESCE(SUM(" + SPEND_DELTA + "), 0) AS total_spend, " +
+            "COALESCE(MAX(t.id), s.last_transaction_id) AS replayed_to, COUNT(t.id) AS tail_length " +
+            "FROM balance_snapshots s " +
+            "JOIN (SELECT MAX(id) AS id FROM balance_snapshots %s GROUP BY account_id) latest ON latest.id = s.id " +
+            "JOIN accounts a ON a.id = s.account_id " +
+            "LEFT JOIN transactions t ON t.account_id = s.account_id AND t.id > s.last_transaction_id " +
+            "LEFT JOIN recharge_orders o ON t.type = 'RECHARGE' AND o.order_no = t.reference_no " +
+            "GROUP BY s.id, s.account_id, s.customer_id, a.held_amount, s.last_transaction_id, " +
+            "s.balance, s.total_recharge, s.total_spend";
+
+    private static final String INSERT_SNAPSHOT =
+            "INSERT INTO balance_snapshots (account_id, customer_id, balance, total_recharge, total_spend, last_transaction_id) " +
+            "VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final RowMapper<LedgerSnapshot> REPLAYED_MAPPER = (rs, rowNum) -> new LedgerSnapshot(
+            rs.getLong("account_id"),
+            rs.getLong("customer_id"),
+            Money.of(rs.getBigDecimal("balance")),
+            Money.of(rs.getBigDecimal("total_recharge")),
+            Money.of(rs.getBigDecimal("total_spend")),
+            Money.of(rs.getBigDecimal("held_amount")),
+            rs.getLong("replayed_to"),
+            rs.getInt("tail_length"));
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public BalanceSnapshotJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Latest snapshot of every account that has one, with its ledger tail replayed
+     */
+    public List<LedgerSnapshot> findAllReplayed() {
+        return jdbcTemplate.query(String.format(SELECT_REPLAYED, ""), REPLAYED_MAPPER);
+    }
+
+    /**
+     * Latest snapshot of one customer's account with its ledger tail replayed; null when it has none
+     */
+    public LedgerSnapshot findReplayedByCustomerId(Long customerId) {
+        List<LedgerSnapshot> rows = jdbcTemplate.query(String.format(SELECT_REPLAYED, "WHERE customer_id = ?"),
+                REPLAYED_MAPPER, customerId);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    /**
+     * First snapshot of an account, taken from its accounts row (which includes every
+     * transaction so far); null when the customer has no account. Sharded accounts are refused
+     * because part of their balance is not on the accounts row.
+     */
+    public LedgerSnapshot bootstrap(Long customerId) {
+        List<LedgerSnapshot> rows = jdbcTemplate.query(
+                "SELECT a.id, a.customer_id, a.balance, a.total_recharge, a.total_spend, a.held_amount, a.shard_count, " +
+                "(SELECT COALESCE(MAX(t.id), 0) FROM transactions t WHERE t.account_id = a.id) AS last_transaction_id " +
+                "FROM accounts a WHERE a.customer_id = ? FOR UPDATE",
+                (rs, rowNum) -> {
+                    if (rs.getInt("shard_count") > 0) {
+                        throw new IllegalStateException("Sharded accounts cannot use the event-sourced ledger");
+                    }
+                    return new LedgerSnapshot(
+                            rs.getLong("id"),
+                            rs.getLong("customer_id"),
+                            Money.of(rs.getBigDecimal("balance")),
+                            Money.of(rs.getBigDecimal("total_recharge")),
+                            Money.of(rs.getBigDecimal("total_spend")),
+                            Money.of(rs.getBigDecimal("held_amount")),
+                            rs.getLong("last_transaction_id"),
+                            0);
+                },
+                customerId);
+        if (rows.isEmpty()) {
+            return null;
+        }
+
+        LedgerSnapshot snapshot = rows.get(0);
+        insert(snapshot);
+        return snapshot;
+    }
+
+    public void insert(LedgerSnapshot snapshot) {
+        jdbcTemplate.update(INSERT_SNAPSHOT,
+                snapshot.getAccountId(),
+                snapshot.getCustomerId(),
+                snapshot.getBalance().toBigDecimal(),
+                snapshot.getTotalRecharge().toBigDecimal(),
+                snapshot.getTotalSpend().toBigDecimal(),
+                snapshot.getLastTransactionId());
+    }
+
+    /**
+     * Copy snapshot values onto the accounts row so plain readers of accounts stay close to current
+     */
+    public void foldIntoAccount(LedgerSnapshot snapshot) {
+        jdbcTemplate.update(
+                "UPDATE accounts SET balance = ?, total_recharge = ?, total_spend = ?, version = version + 1 WHERE id = ?",
+                snapshot.getBalance().toBigDecimal(),
+                snapshot.getTotalRecharge().toBigDecimal(),
+                snapshot.getTotalSpend().toBigDecimal(),
+                snapshot.getAccountId());
+    }
+
+    /**
+     * Delete all but the newest {@code keep} snapshots of an account
+     */
+    public int prune(Long accountId, int keep) {
+        return jdbcTemplate.update(
+                "DELETE FROM balance_snapshots WHERE account_id = ? AND id < (" +
+                "SELECT id FROM (SELECT id FROM balance_snapshots WHERE account_id = ? ORDER BY id DESC LIMIT 1 OFFSET ?) oldest_kept)",
+                accountId, accountId, Math.max(0, keep - 1));
+    }
+}
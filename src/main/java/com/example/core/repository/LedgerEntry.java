@@ -0,0 +1,54 @@
+package com.example.core.repository;
+
+import com.example.core.enums.ProjectType;
+import com.example.core.enums.TransactionType;
+
+import java.math.BigDecimal;
+
+/**
+ * One row to be appended to the transactions table through {@link LedgerJdbcRepository}
+ */
+public class LedgerEntry {
+
+    private final Long customerId;
+    private final Long accountId;
+    private final TransactionType type;
+    private final BigDecimal amount;
+    private final ProjectType projectType;
+    private final String referenceNo;
+    private final String metadata;
+    private final Long relatedTransactionId;
+
+    public LedgerEntry(Long customerId, Long accountId, TransactionType type, BigDecimal amount,
+                       ProjectType projectType, String referenceNo, String metadata) {
+        this(customerId, accountId, type, amount, projectType, referenceNo, metadata, null);
+    }
+
+    public LedgerEntry(Long customerId, Long accountId, TransactionType type, BigDecimal amount,
+                       ProjectType projectType, String referenceNo, String metadata, Long relatedTransactionId) {
+        this.customerId = customerId;
+        this.accountId = accountId;
+        this.type = type;
+        this.amount = amount;
+        this.projectType = projectType;
+        this.referenceNo = referenceNo;
+        this.metadata = metadata;
+        this.relatedTransactionId = relatedTransactionId;
+    }
+
+    public Long getCustomerId() { return customerId; }
+
+    public Long getAccountId() { return accountId; }
+
+    public TransactionType getType() { return type; }
+
+    public BigDecimal getAmount() { return amount; }
+
+    public ProjectType getProjectType() { return projectType; }
+
+    public String getReferenceNo() { return referenceNo; }
+
+    public String getMetadata() { return metadata; }
+
+    public Long getRelatedTransactionId() { return relatedTransactionId; }
+}
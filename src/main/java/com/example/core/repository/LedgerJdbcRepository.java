@@ -0,0 +1,225 @@
+package com.example.core.repository;
+
+import com.example.core.entity.JsonMetadataConverter;
+import com.example.core.enums.ProjectType;
+import com.example.core.enums.TransactionType;
+import com.example.core.id.PooledIdAllocator;
+import com.example.core.money.Money;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Plain JDBC access to the ledger tables for write paths that must not go through
+ * entity loading and dirty checking.
+ */
+@Repository
+public class LedgerJdbcRepository {
+
+    /** id_sequences row shared with the Transaction entity's generator */
+    private static final String TRANSACTION_SEQUENCE = "transactions";
+
+    private static final String INSERT_TRANSACTION =
+            "INSERT INTO transactions (id, customer_id, account_id, type, amount, project_type, reference_no, metadata, " +
+            "related_transaction_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String APPLY_BALANCE_DELTA =
+            "UPDATE accounts SET balance = balance + ?, total_recharge = total_recharge + ?, " +
+            "total_spend = total_spend + ?, version = version + 1 WHERE id = ?";
+
+    private static final String SELECT_CUSTOMER_TRANSACTIONS =
+            "SELECT id, account_id, type, amount, project_type, reference_no, metadata, created_at " +
+            "FROM transactions WHERE customer_id = ? ORDER BY id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final TransactionRollupRepository rollupRepository;
+    private final PooledIdAllocator idAllocator;
+
+    public LedgerJdbcRepository(JdbcTemplate jdbcTemplate, TransactionRollupRepository rollupRepository,
+                                PooledIdAllocator idAllocator) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.rollupRepository = rollupRepository;
+        this.idAllocator = idAllocator;
+
+        // Connector/J only streams rows one at a time for forward-only, read-only statements with this fetch size;
+        // anything else buffers the whole result set in the heap
+        this.streamingJdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.streamingJdbcTemplate.setFetchSize(Integer.MIN_VALUE);
+    }
+
+    /**
+     * Stream every transaction of a customer in id order to {@code handler} without buffering the
+     * result set. The connection is busy until the last row has been handled, so the handler must
+     * not issue queries of its own.
+     */
+    public void streamTransactionsByCustomerId(Long customerId, RowCallbackHandler handler) {
+        streamingJdbcTemplate.query(SELECT_CUSTOMER_TRANSACTIONS, handler, customerId);
+    }
+
+    /**
+     * Lock the accounts of the given customers (in primary key order) and return them keyed by customer id.
+     * The account ids are read first and the rows locked through the primary key: a locking read over the
+     * customer_id index would take its locks in customer order, which is not the account order the other
+     * multi-account writers (transfers in particular) lock in.
+     */
+    public Map<Long, AccountBalanceRow> lockAccountsByCustomerIds(Collection<Long> customerIds) {
+        Map<Long, AccountBalanceRow> rows = new LinkedHashMap<>();
+        if (customerIds.isEmpty()) {
+            return rows;
+        }
+
+        List<Long> accountIds = namedJdbcTemplate.queryForList(
+                "SELECT id FROM accounts WHERE customer_id IN (:customerIds)",
+                new MapSqlParameterSource("customerIds", customerIds), Long.class);
+        if (accountIds.isEmpty()) {
+            return rows;
+        }
+
+        namedJdbcTemplate.query(
+                "SELECT id, customer_id, balance, held_amount, shard_count FROM accounts WHERE id IN (:accountIds) ORDER BY id FOR UPDATE",
+                new MapSqlParameterSource("accountIds", accountIds),
+                rs -> {
+                    AccountBalanceRow row = new AccountBalanceRow(rs.getLong("id"), rs.getLong("customer_id"),
+                            Money.of(rs.getBigDecimal("balance")), Money.of(rs.getBigDecimal("held_amount")));
+                    row.setShardCount(rs.getInt("shard_count"));
+                    rows.put(row.getCustomerId(), row);
+                });
+        return rows;
+    }
+
+    /**
+     * Write the accumulated deltas of dirty rows back as one JDBC batch
+     */
+    public void applyBalanceDeltas(Collection<AccountBalanceRow> rows) {
+        List<Object[]> args = new ArrayList<>();
+        for (AccountBalanceRow row : rows) {
+            if (row.isDirty()) {
+                args.add(new Object[]{row.getBalanceDelta().toBigDecimal(), row.getRechargeDelta().toBigDecimal(),
+                        row.getSpendDelta().toBigDecimal(), row.getId()});
+            }
+        }
+        if (!args.isEmpty()) {
+            jdbcTemplate.batchUpdate(APPLY_BALANCE_DELTA, args);
+        }
+    }
+
+    /**
+     * Return which of the given reference numbers already exist for a transaction type
+     */
+    public Set<String> findExistingReferenceNos(TransactionType type, Collection<String> referenceNos) {
+        Set<String> existing = new HashSet<>();
+        if (referenceNos.isEmpty()) {
+            return existing;
+        }
+
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("type", type.name())
+                .addValue("referenceNos", referenceNos);
+        namedJdbcTemplate.query("SELECT reference_no FROM transactions WHERE type = :type AND reference_no IN (:referenceNos)",
+                params, rs -> {
+                    existing.add(rs.getString("reference_no"));
+                });
+        return existing;
+    }
+
+    /**
+     * SPEND rows with the given reference numbers and the amount already refunded against each, keyed by reference
+     */
+    public Map<String, RefundableSpend> findRefundableSpends(Collection<String> referenceNos) {
+        Map<String, RefundableSpend> spends = new LinkedHashMap<>();
+        if (referenceNos.isEmpty()) {
+            return spends;
+        }
+
+        namedJdbcTemplate.query(
+                "SELECT s.id, s.customer_id, s.account_id, s.reference_no, s.project_type, s.amount, " +
+                "COALESCE(SUM(r.amount), 0) AS refunded " +
+                "FROM transactions s LEFT JOIN transactions r ON r.related_transaction_id = s.id AND r.type = 'REFUND' " +
+                "WHERE s.type = 'SPEND' AND s.reference_no IN (:referenceNos) " +
+                "GROUP BY s.id, s.customer_id, s.account_id, s.reference_no, s.project_type, s.amount",
+                new MapSqlParameterSource("referenceNos", referenceNos),
+                rs -> {
+                    spends.put(rs.getString("reference_no"), new RefundableSpend(
+                            rs.getLong("id"),
+                            rs.getLong("customer_id"),
+                            rs.getLong("account_id"),
+                            rs.getString("reference_no"),
+                            ProjectType.valueOf(rs.getString("project_type")),
+                            Money.of(rs.getBigDecimal("amount")),
+                            Money.of(rs.getBigDecimal("refunded"))));
+                });
+        return spends;
+    }
+
+    /**
+     * Insert one ledger row (and roll it up) and return its id
+     */
+    public long insertTransaction(LedgerEntry entry) {
+        long id = idAllocator.next(TRANSACTION_SEQUENCE);
+        jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(INSERT_TRANSACTION);
+            bind(ps, id, entry);
+            return ps;
+        });
+        rollupRepository.rollUp(List.of(id));
+        return id;
+    }
+
+    /**
+     * Insert ledger rows as one JDBC batch (and roll them up) and return their ids in entry order
+     */
+    public List<Long> insertTransactions(List<LedgerEntry> entries) {
+        if (entries.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        // Ids come from the pool up front, so the batch needs no generated keys back
+        long[] ids = idAllocator.next(TRANSACTION_SEQUENCE, entries.size());
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(INSERT_TRANSACTION)) {
+                for (int i = 0; i < entries.size(); i++) {
+                    bind(ps, ids[i], entries.get(i));
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                return null;
+            }
+        });
+
+        List<Long> inserted = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            inserted.add(id);
+        }
+        rollupRepository.rollUp(inserted);
+        return inserted;
+    }
+
+    private void bind(PreparedStatement ps, long id, LedgerEntry entry) throws SQLException {
+        ps.setLong(1, id);
+        ps.setLong(2, entry.getCustomerId());
+        ps.setLong(3, entry.getAccountId());
+        ps.setString(4, entry.getType().name());
+        ps.setBigDecimal(5, entry.getAmount());
+        ps.setString(6, entry.getProjectType().name());
+        ps.setString(7, entry.getReferenceNo());
+        ps.setString(8, JsonMetadataConverter.normalize(entry.getMetadata()));
+        ps.setObject(9, entry.getRelatedTransactionId(), Types.BIGINT);
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.core.repository;
+
+import com.example.core.money.Money;
+
+/**
+ * An account's latest balance snapshot with the transactions after it already folded in,
+ * as read by {@link BalanceSnapshotJdbcRepository} to seed the in-memory projection
+ */
+public class LedgerSnapshot {
+
+    private final Long accountId;
+    private final Long customerId;
+    private final Money balance;
+    private final Money totalRecharge;
+    private final Money totalSpend;
+    private final Money heldAmount;
+    private final long lastTransactionId;
+    private final int tailLength;
+
+    public LedgerSnapshot(Long accountId, Long customerId, Money balance, Money totalRecharge, Money totalSpend,
+                          Money heldAmount, long lastTransactionId, int tailLength) {
+        this.accountId = accountId;
+        this.customerId = customerId;
+        this.balance = balance;
+        this.totalRecharge = totalRecharge;
+        this.totalSpend = totalSpend;
+        this.heldAmount = heldAmount;
+        this.lastTransactionId = lastTransactionId;
+        this.tailLength = tailLength;
+    }
+
+    public Long getAccountId() { return accountId; }
+
+    public Long getCustomerId() { return customerId; }
+
+    public Money getBalance() { return balance; }
+
+    public Money getTotalRecharge() { return totalRecharge; }
+
+    public Money getTotalSpend() { return totalSpend; }
+
+    public Money getHeldAmount() { return heldAmount; }
+
+    /**
+     * Highest transaction id included in the values above
+     */
+    public long getLastTransactionId() { return lastTransactionId; }
+
+    /**
+     * Number of transactions replayed on top of the stored snapshot
+     */
+    public int getTailLength() { return tailLength; }
+}
@@ -3,8 +3,11 @@ package com.example.core.repository;
 import com.example.core.entity.RechargeOrder;
 import com.example.core.enums.PaymentChannel;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -12,5 +15,18 @@ public interface RechargeOrderRepository extends JpaRepository<RechargeOrder, Lo
 
     Optional<RechargeOrder> findByOrderNo(String orderNo);
 
+    @Query("SELECT o.customer.id FROM RechargeOrder o WHERE o.orderNo = :orderNo")
+    Optional<Long> findCustomerIdByOrderNo(@Param("orderNo") String orderNo);
+
+    @Query("SELECT o.customer.id FROM RechargeOrder o WHERE o.id = :id AND o.orderNo = :orderNo")
+    Optional<Long> findCustomerIdByIdAndOrderNo(@Param("id") Long id, @Param("orderNo") String orderNo);
+
+    /**
+     * Orders created in a time window, as an id range (see OrderNumberGenerator#firstIdAt)
+     */
+    List<RechargeOrder> findByIdBetweenOrderByIdAsc(Long fromId, Long toId);
+
     Optional<RechargeOrder> findByChannelAndProviderTransactionId(PaymentChannel channel, String providerTransactionId);
+
+    List<RechargeOrder> findByPromotionIdOrderByCreatedAtDesc(Long promotionId);
 }
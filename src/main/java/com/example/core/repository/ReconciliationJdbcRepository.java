@@ -0,0 +1,194 @@
+package com.example.core.repository;
+
+import com.example.core.dto.ReconciliationDriftDTO;
+import com.example.core.dto.ReconciliationRunDTO;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * JDBC access to the reconciliation tables, plus the range scan that compares stored
+ * account balances/totals with sums over the ledger.
+ */
+@Repository
+public class ReconciliationJdbcRepository {
+
+    /**
+     * Stored (accounts row + shards) vs ledger sums for every account in an id range. One statement,
+     * so InnoDB answers it from a single consistent read view and takes no row locks. %s is an
+     * optional extra condition on transactions (alias {@code t}).
+     */
+    private static final String SCAN_RANGE =
+            "SELECT a.id, a.customer_id, " +
+            "a.balance + COALESCE(sh.balance, 0) AS stored_balance, " +
+            "a.total_recharge + COALESCE(sh.total_recharge, 0) AS stored_total_recharge, " +
+            "a.total_spend + COALESCE(sh.total_spend, 0) AS stored_total_spend, " +
+            "COALESCE(l.balance, 0) AS ledger_balance, " +
+            "COALESCE(l.total_recharge, 0) AS ledger_total_recharge, " +
+            "COALESCE(l.total_spend, 0) AS ledger_total_spend " +
+            "FROM accounts a " +
+            "LEFT JOIN (SELECT account_id, SUM(balance) AS balance, SUM(total_recharge) AS total_recharge, " +
+            "SUM(total_spend) AS total_spend FROM account_shards WHERE account_id BETWEEN ? AND ? " +
+            "GROUP BY account_id) sh ON sh.account_id = a.id " +
+            "LEFT JOIN (SELECT t.account_id, SUM(" + BalanceSnapshotJdbcRepository.BALANCE_DELTA + ") AS balance, " +
+            "SUM(CASE WHEN t.type = 'RECHARGE' THEN t.amount ELSE 0 END) AS total_recharge, " +
+            "SUM(" + BalanceSnapshotJdbcRepository.SPEND_DELTA + ") AS total_spend " +
+            "FROM transactions t " +
+            "LEFT JOIN recharge_orders o ON t.type = 'RECHARGE' AND o.order_no = t.reference_no " +
+            "WHERE t.account_id BETWEEN ? AND ? %s GROUP BY t.account_id) l ON l.account_id = a.id " +
+            "WHERE a.id BETWEEN ? AND ? ORDER BY a.id";
+
+    /**
+     * Event-sourced mode folds snapshots into accounts, so the row only covers the ledger up to its latest snapshot
+     */
+    private static final String SNAPSHOT_CUTOFF =
+            "AND t.id <= COALESCE((SELECT MAX(s.last_transaction_id) FROM balance_snapshots s " +
+            "WHERE s.account_id = t.account_id), t.id)";
+
+    private static final RowMapper<ReconciliationDriftDTO> SCAN_MAPPER = (rs, rowNum) -> new ReconciliationDriftDTO(
+            rs.getLong("id"),
+            rs.getLong("customer_id"),
+            rs.getBigDecimal("stored_balance"),
+            rs.getBigDecimal("ledger_balance"),
+            rs.getBigDecimal("stored_total_recharge"),
+            rs.getBigDecimal("ledger_total_recharge"),
+            rs.getBigDecimal("stored_total_spend"),
+            rs.getBigDecimal("ledger_total_spend"));
+
+    private static final String INSERT_DRIFT =
+            "INSERT INTO reconciliation_drifts (run_id, account_id, customer_id, stored_balance, ledger_balance, " +
+            "stored_total_recharge, ledger_total_recharge, stored_total_spend, ledger_total_spend) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ReconciliationJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public long findMaxAccountId() {
+        Long max = jdbcTemplate.queryForObject("SELECT MAX(id) FROM accounts", Long.class);
+        return max != null ? max : 0L;
+    }
+
+    /**
+     * Stored vs ledger figures of every account with {@code start <= id <= end}
+     */
+    public List<ReconciliationDriftDTO> scanRange(long start, long end, boolean snapshotCutoff) {
+        String sql = String.format(SCAN_RANGE, snapshotCutoff ? SNAPSHOT_CUTOFF : "");
+        return jdbcTemplate.query(sql, SCAN_MAPPER, start, end, start, end, start, end);
+    }
+
+    public long createRun(long maxAccountId, int rangeSize) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(
+                    "INSERT INTO reconciliation_runs (status, max_account_id, range_size) VALUES ('RUNNING', ?, ?)",
+                    Statement.RETURN_GENERATED_KEYS);
+            ps.setLong(1, maxAccountId);
+            ps.setInt(2, rangeSize);
+            return ps;
+        }, keyHolder);
+        return keyHolder.getKey().longValue();
+    }
+
+    /**
+     * Oldest run that never finished (e.g. the process died mid-run); null when there is none
+     */
+    public ReconciliationRunDTO findUnfinishedRun() {
+        List<Long> ids = jdbcTemplate.queryForList(
+                "SELECT id FROM reconciliation_runs WHERE status = 'RUNNING' ORDER BY id LIMIT 1", Long.class);
+        return ids.isEmpty() ? null : findRun(ids.get(0), 0);
+    }
+
+    public Set<Long> findCheckedRangeStarts(long runId) {
+        return new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT range_start FROM reconciliation_ranges WHERE run_id = ?", Long.class, runId));
+    }
+
+    /**
+     * Record a checked range and its drifts; returns false when the range was already recorded
+     * (by another node), in which case nothing is written. Must run in a transaction.
+     */
+    public boolean recordRange(long runId, long start, long end, int accountsChecked, List<ReconciliationDriftDTO> drifts) {
+        try {
+            jdbcTemplate.update("INSERT INTO reconciliation_ranges (run_id, range_start, range_end, accounts_checked, drift_count) " +
+                    "VALUES (?, ?, ?, ?, ?)", runId, start, end, accountsChecked, drifts.size());
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+
+        if (!drifts.isEmpty()) {
+            List<Object[]> args = new ArrayList<>(drifts.size());
+            for (ReconciliationDriftDTO drift : drifts) {
+                args.add(new Object[]{runId, drift.getAccountId(), drift.getCustomerId(),
+                        drift.getStoredBalance(), drift.getLedgerBalance(),
+                        drift.getStoredTotalRecharge(), drift.getLedgerTotalRecharge(),
+                        drift.getStoredTotalSpend(), drift.getLedgerTotalSpend()});
+            }
+            jdbcTemplate.batchUpdate(INSERT_DRIFT, args);
+        }
+        return true;
+    }
+
+    public void finishRun(long runId, String status) {
+        jdbcTemplate.update("UPDATE reconciliation_runs SET status = ?, completed_at = CURRENT_TIMESTAMP WHERE id = ? AND status = 'RUNNING'",
+                status, runId);
+    }
+
+    /**
+     * A run with its progress counters and up to {@code driftLimit} drifts (ordered by account id); null when unknown
+     */
+    public ReconciliationRunDTO findRun(long runId, int driftLimit) {
+        List<ReconciliationRunDTO> runs = jdbcTemplate.query(
+                "SELECT r.id, r.status, r.max_account_id, r.range_size, r.started_at, r.completed_at, " +
+                "COUNT(g.range_start) AS ranges_checked, COALESCE(SUM(g.accounts_checked), 0) AS accounts_checked, " +
+                "COALESCE(SUM(g.drift_count), 0) AS drift_count " +
+                "FROM reconciliation_runs r LEFT JOIN reconciliation_ranges g ON g.run_id = r.id " +
+                "WHERE r.id = ? GROUP BY r.id, r.status, r.max_account_id, r.range_size, r.started_at, r.completed_at",
+                (rs, rowNum) -> {
+                    ReconciliationRunDTO dto = new ReconciliationRunDTO();
+                    dto.setId(rs.getLong("id"));
+                    dto.setStatus(rs.getString("status"));
+                    dto.setMaxAccountId(rs.getLong("max_account_id"));
+                    dto.setRangeSize(rs.getInt("range_size"));
+                    dto.setRangesTotal(rangeCount(dto.getMaxAccountId(), dto.getRangeSize()));
+                    dto.setRangesChecked(rs.getLong("ranges_checked"));
+                    dto.setAccountsChecked(rs.getLong("accounts_checked"));
+                    dto.setDriftCount(rs.getLong("drift_count"));
+                    dto.setStartedAt(toLocalDateTime(rs.getTimestamp("started_at")));
+                    dto.setCompletedAt(toLocalDateTime(rs.getTimestamp("completed_at")));
+                    return dto;
+                }, runId);
+        if (runs.isEmpty()) {
+            return null;
+        }
+
+        ReconciliationRunDTO run = runs.get(0);
+        run.setDrifts(driftLimit <= 0 ? new ArrayList<>() : jdbcTemplate.query(
+                "SELECT account_id AS id, customer_id, stored_balance, ledger_balance, stored_total_recharge, " +
+                "ledger_total_recharge, stored_total_spend, ledger_total_spend FROM reconciliation_drifts " +
+                "WHERE run_id = ? ORDER BY account_id LIMIT ?", SCAN_MAPPER, runId, driftLimit));
+        return run;
+    }
+
+    public static long rangeCount(long maxAccountId, int rangeSize) {
+        return (maxAccountId + rangeSize - 1) / rangeSize;
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.core.repository;
+
+import com.example.core.enums.ProjectType;
+import com.example.core.money.Money;
+
+/**
+ * A SPEND row together with how much of it has already been refunded
+ */
+public class RefundableSpend {
+
+    private final Long id;
+    private final Long customerId;
+    private final Long accountId;
+    private final String referenceNo;
+    private final ProjectType projectType;
+    private final Money amount;
+    private final Money refunded;
+
+    public RefundableSpend(Long id, Long customerId, Long accountId, String referenceNo, ProjectType projectType,
+                           Money amount, Money refunded) {
+        this.id = id;
+        this.customerId = customerId;
+        this.accountId = accountId;
+        this.referenceNo = referenceNo;
+        this.projectType = projectType;
+        this.amount = amount;
+        this.refunded = refunded;
+    }
+
+    public Long getId() { return id; }
+
+    public Long getCustomerId() { return customerId; }
+
+    public Long getAccountId() { return accountId; }
+
+    public String getReferenceNo() { return referenceNo; }
+
+    public ProjectType getProjectType() { return projectType; }
+
+    public Money getAmount() { return amount; }
+
+    public Money getRefunded() { return refunded; }
+
+    public Money getRefundable() { return amount.minus(refunded); }
+}
@@ -0,0 +1,33 @@
+package com.example.core.repository;
+
+import com.example.core.entity.ShortfallPurchase;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface ShortfallPurchaseRepository extends JpaRepository<ShortfallPurchase, Long> {
+
+    Optional<ShortfallPurchase> findByCustomerIdAndReferenceNo(Long customerId, String referenceNo);
+
+    Optional<ShortfallPurchase> findByOrderNo(String orderNo);
+
+    /**
+     * Lock the purchase waiting on a recharge order before completing it; repeated payment callbacks queue here
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM ShortfallPurchase p WHERE p.orderNo = :orderNo")
+    Optional<ShortfallPurchase> lockByOrderNo(@Param("orderNo") String orderNo);
+
+    /**
+     * Lock a started purchase while its recharge order is recorded, or while it is failed when that order could not be opened
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT p FROM ShortfallPurchase p WHERE p.id = :id")
+    Optional<ShortfallPurchase> lockById(@Param("id") Long id);
+}
@@ -0,0 +1,208 @@
+package com.example.core.repository;
+
+import com.example.core.dto.StatementDTO;
+import com.example.core.dto.StatementRunDTO;
+import com.example.core.enums.ProjectType;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * JDBC access to the monthly statement tables, plus the ordered ledger scan statements are built from.
+ */
+@Repository
+public class StatementJdbcRepository {
+
+    /**
+     * A customer id range's transactions in a period, grouped by customer and in ledger order. Walks
+     * idx_transaction_customer_created, so rows arrive already sorted.
+     */
+    private static final String SCAN_RANGE =
+            "SELECT t.customer_id, t.account_id, t.type, t.project_type, t.amount, COALESCE(o.bonus_amount, 0) AS bonus " +
+            "FROM transactions t " +
+            "LEFT JOIN recharge_orders o ON t.type = 'RECHARGE' AND o.order_no = t.reference_no " +
+            "WHERE t.customer_id BETWEEN ? AND ? AND t.created_at >= ? AND t.created_at < ? " +
+            "ORDER BY t.customer_id, t.created_at, t.id";
+
+    private static final String UPSERT_STATEMENT =
+            "INSERT INTO wallet_statements (customer_id, period_start, account_id, opening_balance, recharge_amount, " +
+            "bonus_amount, spend_amount, refund_amount, adjustment_amount, transfer_in_amount, transfer_out_amount, " +
+            "closing_balance, transaction_count, spend_by_project) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE account_id = VALUES(account_id), opening_balance = VALUES(opening_balance), " +
+            "recharge_amount = VALUES(recharge_amount), bonus_amount = VALUES(bonus_amount), " +
+            "spend_amount = VALUES(spend_amount), refund_amount = VALUES(refund_amount), " +
+            "adjustment_amount = VALUES(adjustment_amount), transfer_in_amount = VALUES(transfer_in_amount), " +
+            "transfer_out_amount = VALUES(transfer_out_amount), closing_balance = VALUES(closing_balance), " +
+            "transaction_count = VALUES(transaction_count), spend_by_project = VALUES(spend_by_project)";
+
+    private static final TypeReference<Map<ProjectType, BigDecimal>> SPEND_BY_PROJECT = new TypeReference<>() {};
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JdbcTemplate streamingJdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    public StatementJdbcRepository(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+
+        // Same streaming setup as LedgerJdbcRepository: one row at a time instead of buffering the range
+        this.streamingJdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.streamingJdbcTemplate.setFetchSize(Integer.MIN_VALUE);
+    }
+
+    public long findMaxCustomerId() {
+        Long max = jdbcTemplate.queryForObject("SELECT MAX(id) FROM customers", Long.class);
+        return max != null ? max : 0L;
+    }
+
+    /**
+     * Stream the transactions of customers {@code fromCustomerId..toCustomerId} created in {@code [from, to)}
+     * to {@code handler}, ordered by customer. The connection is busy until the last row has been handled,
+     * so the handler must not issue queries of its own.
+     */
+    public void streamRange(long fromCustomerId, long toCustomerId, LocalDateTime from, LocalDateTime to,
+                            RowCallbackHandler handler) {
+        streamingJdbcTemplate.query(SCAN_RANGE, handler, fromCustomerId, toCustomerId, from, to);
+    }
+
+    /**
+     * Create the run for a month unless it exists; an existing run keeps its customer bound and range
+     * size, so a resumed run cuts the same ranges it recorded
+     */
+    public StatementRunDTO startRun(LocalDate periodStart, long maxCustomerId, int rangeSize) {
+        jdbcTemplate.update(
+                "INSERT INTO statement_runs (period_start, status, max_customer_id, range_size) VALUES (?, 'RUNNING', ?, ?) " +
+                "ON DUPLICATE KEY UPDATE period_start = period_start",
+                Date.valueOf(periodStart), maxCustomerId, rangeSize);
+        return findRun(periodStart);
+    }
+
+    public Set<Long> findCompletedRangeStarts(LocalDate periodStart) {
+        return new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT range_start FROM statement_run_ranges WHERE period_start = ?", Long.class, Date.valueOf(periodStart)));
+    }
+
+    /**
+     * Record a finished range and write its statements as one JDBC batch; returns false when the range
+     * was already recorded (by another node), in which case nothing is written. Must run in a transaction.
+     */
+    public boolean recordRange(LocalDate periodStart, long start, long end, List<StatementDTO> statements) {
+        try {
+            jdbcTemplate.update("INSERT INTO statement_run_ranges (period_start, range_start, range_end, statement_count) " +
+                    "VALUES (?, ?, ?, ?)", Date.valueOf(periodStart), start, end, statements.size());
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+
+        if (!statements.isEmpty()) {
+            List<Object[]> args = new ArrayList<>(statements.size());
+            for (StatementDTO statement : statements) {
+                args.add(new Object[]{statement.getCustomerId(), Date.valueOf(periodStart), statement.getAccountId(),
+                        statement.getOpeningBalance(), statement.getRechargeAmount(), statement.getBonusAmount(),
+                        statement.getSpendAmount(), statement.getRefundAmount(), statement.getAdjustmentAmount(),
+                        statement.getTransferInAmount(), statement.getTransferOutAmount(), statement.getClosingBalance(),
+                        statement.getTransactionCount(), toJson(statement.getSpendByProject())});
+            }
+            jdbcTemplate.batchUpdate(UPSERT_STATEMENT, args);
+        }
+        return true;
+    }
+
+    public void finishRun(LocalDate periodStart) {
+        jdbcTemplate.update("UPDATE statement_runs SET status = 'COMPLETED', completed_at = CURRENT_TIMESTAMP " +
+                "WHERE period_start = ? AND status = 'RUNNING'", Date.valueOf(periodStart));
+    }
+
+    /**
+     * The run of a month with its progress counters; null when none was started
+     */
+    public StatementRunDTO findRun(LocalDate periodStart) {
+        List<StatementRunDTO> runs = jdbcTemplate.query(
+                "SELECT r.period_start, r.status, r.max_customer_id, r.range_size, r.started_at, r.completed_at, " +
+                "COUNT(g.range_start) AS ranges_completed, COALESCE(SUM(g.statement_count), 0) AS statement_count " +
+                "FROM statement_runs r LEFT JOIN statement_run_ranges g ON g.period_start = r.period_start " +
+                "WHERE r.period_start = ? " +
+                "GROUP BY r.period_start, r.status, r.max_customer_id, r.range_size, r.started_at, r.completed_at",
+                (rs, rowNum) -> {
+                    StatementRunDTO dto = new StatementRunDTO();
+                    dto.setPeriodStart(rs.getDate("period_start").toLocalDate());
+                    dto.setStatus(rs.getString("status"));
+                    dto.setMaxCustomerId(rs.getLong("max_customer_id"));
+                    dto.setRangeSize(rs.getInt("range_size"));
+                    dto.setRangesTotal(ReconciliationJdbcRepository.rangeCount(dto.getMaxCustomerId(), dto.getRangeSize()));
+                    dto.setRangesCompleted(rs.getLong("ranges_completed"));
+                    dto.setStatementCount(rs.getLong("statement_count"));
+                    dto.setStartedAt(toLocalDateTime(rs.getTimestamp("started_at")));
+                    dto.setCompletedAt(toLocalDateTime(rs.getTimestamp("completed_at")));
+                    return dto;
+                }, Date.valueOf(periodStart));
+        return runs.isEmpty() ? null : runs.get(0);
+    }
+
+    /**
+     * A customer's statement for the month starting at {@code periodStart}; null when none was generated
+     */
+    public StatementDTO findStatement(Long customerId, LocalDate periodStart) {
+        List<StatementDTO> statements = jdbcTemplate.query(
+                "SELECT * FROM wallet_statements WHERE customer_id = ? AND period_start = ?",
+                statementMapper(), customerId, Date.valueOf(periodStart));
+        return statements.isEmpty() ? null : statements.get(0);
+    }
+
+    private RowMapper<StatementDTO> statementMapper() {
+        return (rs, rowNum) -> {
+            StatementDTO dto = new StatementDTO(rs.getLong("customer_id"), rs.getLong("account_id"),
+                    rs.getDate("period_start").toLocalDate(), rs.getBigDecimal("opening_balance"));
+            dto.setRechargeAmount(rs.getBigDecimal("recharge_amount"));
+            dto.setBonusAmount(rs.getBigDecimal("bonus_amount"));
+            dto.setSpendAmount(rs.getBigDecimal("spend_amount"));
+            dto.setRefundAmount(rs.getBigDecimal("refund_amount"));
+            dto.setAdjustmentAmount(rs.getBigDecimal("adjustment_amount"));
+            dto.setTransferInAmount(rs.getBigDecimal("transfer_in_amount"));
+            dto.setTransferOutAmount(rs.getBigDecimal("transfer_out_amount"));
+            dto.setClosingBalance(rs.getBigDecimal("closing_balance"));
+            dto.setTransactionCount(rs.getInt("transaction_count"));
+            dto.setSpendByProject(fromJson(rs.getString("spend_by_project")));
+            return dto;
+        };
+    }
+
+    private String toJson(Map<ProjectType, BigDecimal> spendByProject) {
+        try {
+            return objectMapper.writeValueAsString(spendByProject);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize statement spends", e);
+        }
+    }
+
+    private Map<ProjectType, BigDecimal> fromJson(String json) {
+        try {
+            Map<ProjectType, BigDecimal> spends = new EnumMap<>(ProjectType.class);
+            spends.putAll(objectMapper.readValue(json, SPEND_BY_PROJECT));
+            return spends;
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to read statement spends", e);
+        }
+    }
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toLocalDateTime() : null;
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.core.repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Flat projection of a transactions row for history listings, read without the customer/account entities
+ */
+public interface TransactionHistoryView {
+
+    Long getId();
+
+    Long getCustomerId();
+
+    Long getAccountId();
+
+    String getType();
+
+    BigDecimal getAmount();
+
+    String getProjectType();
+
+    String getReferenceNo();
+
+    /**
+     * Metadata as the JSON column holds it; map through {@code TransactionMapper} to get what was written
+     */
+    String getMetadata();
+
+    LocalDateTime getCreatedAt();
+
+    LocalDateTime getUpdatedAt();
+}
@@ -10,6 +10,7 @@ import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -18,6 +19,14 @@ import java.util.List;
 @Repository
 public interface TransactionRepository extends JpaRepository<Transaction, Long> {
 
+    String HISTORY_SELECT = "SELECT id, customer_id AS customerId, account_id AS accountId, type, amount, " +
+            "project_type AS projectType, reference_no AS referenceNo, metadata, " +
+            "created_at AS createdAt, updated_at AS updatedAt FROM transactions ";
+
+    String HISTORY_FILTER = "WHERE customer_id = :customerId " +
+            "AND (:type IS NULL OR type = :type) " +
+            "AND (:projectType IS NULL OR project_type = :projectType) ";
+
     /**
      * Find transactions by customer
      */
@@ -48,6 +57,60 @@ public interface TransactionRepository extends JpaRepository<Transaction, Long>
                                                          @Param("startDate") LocalDateTime startDate,
                                                          @Param("endDate") LocalDateTime endDate);
 
+    /**
+     * First page of a customer's history, newest first. Walks idx_transaction_customer_created,
+     * whose entries carry the primary key, so (created_at, id) ordering needs no filesort.
+     */
+    @Query(value = HISTORY_SELECT + HISTORY_FILTER +
+                   "ORDER BY created_at DESC, id DESC LIMIT :limit",
+           nativeQuery = true)
+    List<TransactionHistoryView> findHistoryPage(@Param("customerId") Long customerId,
+                                                 @Param("type") String type,
+                                                 @Param("projectType") String projectType,
+                                                 @Param("limit") int limit);
+
+    /**
+     * Next page of a customer's history, strictly after the (createdAt, id) keyset cursor
+     */
+    @Query(value = HISTORY_SELECT + HISTORY_FILTER +
+                   "AND (created_at < :createdAt OR (created_at = :createdAt AND id < :id)) " +
+                   "ORDER BY created_at DESC, id DESC LIMIT :limit",
+           nativeQuery = true)
+    List<TransactionHistoryView> findHistoryPageAfter(@Param("customerId") Long customerId,
+                                                      @Param("type") String type,
+                                                      @Param("projectType") String projectType,
+                                                      @Param("createdAt") LocalDateTime createdAt,
+                                                      @Param("id") Long id,
+                                                      @Param("limit") int limit);
+
+    /**
+     * Spends of one article, newest first, through the indexed meta_article_id generated column
+     * (metadata key {@code article_id})
+     */
+    @Query(value = HISTORY_SELECT +
+                   "WHERE meta_article_id = :articleId AND type = 'SPEND' " +
+                   "ORDER BY created_at DESC, id DESC LIMIT :limit",
+           nativeQuery = true)
+    List<TransactionHistoryView> findSpendsByArticleId(@Param("articleId") Long articleId,
+                                                       @Param("limit") int limit);
+
+    /**
+     * Recharges credited under a promotion, newest first, through the indexed meta_promotion_id generated column
+     */
+    @Query(value = HISTORY_SELECT +
+                   "WHERE meta_promotion_id = :promotionId AND type = 'RECHARGE' " +
+                   "ORDER BY created_at DESC, id DESC LIMIT :limit",
+           nativeQuery = true)
+    List<TransactionHistoryView> findRechargesByPromotionId(@Param("promotionId") Long promotionId,
+                                                            @Param("limit") int limit);
+
+    /**
+     * The ledger rows recorded for a recharge order, through the indexed meta_order_no generated column
+     */
+    @Query(value = HISTORY_SELECT + "WHERE meta_order_no = :orderNo ORDER BY id",
+           nativeQuery = true)
+    List<TransactionHistoryView> findByMetadataOrderNo(@Param("orderNo") String orderNo);
+
     /**
      * Find transactions by amount range
      */
@@ -56,7 +119,8 @@ public interface TransactionRepository extends JpaRepository<Transaction, Long>
                                         @Param("maxAmount") BigDecimal maxAmount);
 
     /**
-     * Get total transaction amount by customer and type
+     * Get total transaction amount by customer and type. Scans the customer's whole ledger;
+     * request paths read {@link TransactionRollupRepository#sumAmount} instead.
      */
     @Query("SELECT COALESCE(SUM(t.amount), 0) FROM Transaction t " +
            "WHERE t.customer.id = :customerId AND t.type = :type")
@@ -70,6 +134,8 @@ public interface TransactionRepository extends JpaRepository<Transaction, Long>
 
     long countByTypeAndReferenceNo(TransactionType type, String referenceNo);
 
+    List<Transaction> findByTypeAndReferenceNoIn(TransactionType type, Collection<String> referenceNos);
+
     /**
      * Find recent transactions with pagination support
      */
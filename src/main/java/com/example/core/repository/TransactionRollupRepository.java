@@ -0,0 +1,134 @@
+package com.example.core.repository;
+
+import com.example.core.dto.TransactionRollupDTO;
+import com.example.core.enums.ProjectType;
+import com.example.core.enums.TransactionType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Daily per-customer rollups of the ledger. Rows are folded in by id straight from the
+ * transactions table, so the rolled-up day always matches the stored created_at.
+ */
+@Repository
+public class TransactionRollupRepository {
+
+    private static final String ROLLUP_SELECT =
+            "INSERT INTO transaction_rollups (customer_id, type, project_type, day, slot, amount, tx_count) " +
+            "SELECT customer_id, type, project_type, DATE(created_at), MOD(id, 8), SUM(amount), COUNT(*) " +
+            "FROM transactions WHERE ";
+
+    private static final String ROLLUP_UPSERT =
+            " GROUP BY customer_id, type, project_type, DATE(created_at), MOD(id, 8) " +
+            "ON DUPLICATE KEY UPDATE amount = transaction_rollups.amount + VALUES(amount), tx_count = transaction_rollups.tx_count + VALUES(tx_count)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    public TransactionRollupRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+    }
+
+    /**
+     * Add freshly inserted transactions to the rollups; must run in the transaction that inserted them
+     */
+    public void rollUp(Collection<Long> transactionIds) {
+        if (transactionIds.isEmpty()) {
+            return;
+        }
+        namedJdbcTemplate.update(ROLLUP_SELECT + "id IN (:ids)" + ROLLUP_UPSERT,
+                new MapSqlParameterSource("ids", transactionIds));
+    }
+
+    /**
+     * Add transactions with {@code fromId < id <= toId} to the rollups
+     */
+    public int rollUpRange(long fromId, long toId) {
+        return jdbcTemplate.update(ROLLUP_SELECT + "id > ? AND id <= ?" + ROLLUP_UPSERT, fromId, toId);
+    }
+
+    /**
+     * Monthly amounts and counts of one transaction type between two days (inclusive)
+     */
+    public List<TransactionRollupDTO> findMonthlyTotals(Long customerId, TransactionType type, LocalDate from, LocalDate to) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("customerId", customerId)
+                .addValue("type", type.name())
+                .addValue("from", Date.valueOf(from))
+                .addValue("to", Date.valueOf(to));
+        return namedJdbcTemplate.query(
+                "SELECT DATE_FORMAT(day, '%Y-%m') AS month, project_type, SUM(amount) AS amount, SUM(tx_count) AS tx_count " +
+                "FROM transaction_rollups WHERE customer_id = :customerId AND type = :type AND day BETWEEN :from AND :to " +
+                "GROUP BY month, project_type ORDER BY month, project_type",
+                params,
+                (rs, rowNum) -> new TransactionRollupDTO(rs.getString("month"), type,
+                        ProjectType.valueOf(rs.getString("project_type")), rs.getBigDecimal("amount"), rs.getLong("tx_count")));
+    }
+
+    /**
+     * Stream each customer's SPEND amount per project type on one day, for the given project types
+     */
+    public void streamSpendTotals(LocalDate day, Collection<ProjectType> projectTypes, RowCallbackHandler handler) {
+        if (projectTypes.isEmpty()) {
+            return;
+        }
+        List<String> names = projectTypes.stream().map(ProjectType::name).toList();
+        namedJdbcTemplate.query(
+                "SELECT customer_id, project_type, SUM(amount) AS amount FROM transaction_rollups " +
+                "WHERE type = 'SPEND' AND day = :day AND project_type IN (:projectTypes) " +
+                "GROUP BY customer_id, project_type",
+                new MapSqlParameterSource().addValue("day", Date.valueOf(day)).addValue("projectTypes", names),
+                handler);
+    }
+
+    /**
+     * Lifetime amount of one transaction type for a customer
+     */
+    public BigDecimal sumAmount(Long customerId, TransactionType type) {
+        return jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(amount), 0) FROM transaction_rollups WHERE customer_id = ? AND type = ?",
+                BigDecimal.class, customerId, type.name());
+    }
+
+    /**
+     * Pin the backfill high-water mark to the newest transaction if no node has pinned it yet.
+     * Runs when the backfill starts, so rows written by nodes that predate the rollups are covered.
+     */
+    public void pinBackfillHighWater() {
+        jdbcTemplate.update(
+                "UPDATE transaction_rollup_backfill SET high_water_id = (SELECT COALESCE(MAX(id), 0) FROM transactions) " +
+                "WHERE id = 1 AND high_water_id IS NULL AND completed_at IS NULL");
+    }
+
+    /**
+     * Backfill progress: {high_water_id, backfilled_through_id}, or null once the backfill has completed
+     */
+    public long[] findPendingBackfill() {
+        List<long[]> rows = jdbcTemplate.query(
+                "SELECT high_water_id, backfilled_through_id FROM transaction_rollup_backfill WHERE id = 1 AND completed_at IS NULL",
+                (rs, rowNum) -> new long[]{rs.getLong("high_water_id"), rs.getLong("backfilled_through_id")});
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    /**
+     * Record backfill progress; only advances when {@code expectedThroughId} is still current,
+     * so two nodes never fold the same range twice. Returns false when another node got there first.
+     */
+    public boolean advanceBackfill(long expectedThroughId, long throughId, boolean completed) {
+        return jdbcTemplate.update(
+                "UPDATE transaction_rollup_backfill SET backfilled_through_id = ?, " +
+                "completed_at = CASE WHEN ? THEN CURRENT_TIMESTAMP ELSE NULL END " +
+                "WHERE id = 1 AND backfilled_through_id = ? AND completed_at IS NULL",
+                throughId, completed, expectedThroughId) == 1;
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.core.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * JDBC access to writer_leases: takes over, renews and releases a named single-writer lease.
+ * Expiry is compared against the database clock so nodes do not need synchronised clocks.
+ */
+@Repository
+public class WriterLeaseJdbcRepository {
+
+    private static final String ACQUIRE =
+            "UPDATE writer_leases SET owner = ?, expires_at = NOW(3) + INTERVAL ? MICROSECOND " +
+            "WHERE name = ? AND (owner IS NULL OR owner = ? OR expires_at < NOW(3))";
+
+    private static final String RENEW =
+            "UPDATE writer_leases SET expires_at = NOW(3) + INTERVAL ? MICROSECOND " +
+            "WHERE name = ? AND owner = ? AND expires_at >= NOW(3)";
+
+    private static final String RELEASE =
+            "UPDATE writer_leases SET owner = NULL, expires_at = NULL WHERE name = ? AND owner = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public WriterLeaseJdbcRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Take the lease if it is free, expired or already ours; returns whether {@code owner} now holds it
+     */
+    public boolean tryAcquire(String name, String owner, long ttlMs) {
+        return jdbcTemplate.update(ACQUIRE, owner, ttlMs * 1000, name, owner) == 1;
+    }
+
+    /**
+     * Extend a lease {@code owner} still holds; false once it has expired or been taken over
+     */
+    public boolean renew(String name, String owner, long ttlMs) {
+        return jdbcTemplate.update(RENEW, ttlMs * 1000, name, owner) == 1;
+    }
+
+    public void release(String name, String owner) {
+        jdbcTemplate.update(RELEASE, name, owner);
+    }
+}
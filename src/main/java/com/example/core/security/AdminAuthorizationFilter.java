@@ -0,0 +1,66 @@
+package com.example.core.security;
+
+import com.example.core.entity.AdminUser;
+import com.example.core.repository.AdminUserRepository;
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * Guards the admin API. Runs after {@link JwtAuthenticationFilter} and lets a request through only
+ * when it carries an admin token of an active, unlocked ADMIN user; the user is re-read on every
+ * request so deactivating an admin cuts off tokens already issued. Registered for /api/admin/* in
+ * SecurityConfig rather than as a component, so it never sees customer routes.
+ */
+public class AdminAuthorizationFilter implements Filter {
+
+    public static final String ADMIN_ROLE = "ADMIN";
+
+    private final AdminUserRepository adminUserRepository;
+
+    public AdminAuthorizationFilter(AdminUserRepository adminUserRepository) {
+        this.adminUserRepository = adminUserRepository;
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+        HttpServletResponse httpResponse = (HttpServletResponse) response;
+
+        Object adminUserId = httpRequest.getAttribute("adminUserId");
+        if (adminUserId == null) {
+            reject(httpResponse, HttpServletResponse.SC_UNAUTHORIZED, "Admin authentication required");
+            return;
+        }
+
+        Optional<AdminUser> adminUser = adminUserRepository.findById((Long) adminUserId);
+        if (adminUser.isEmpty() || !isAllowed(adminUser.get())) {
+            reject(httpResponse, HttpServletResponse.SC_FORBIDDEN, "Admin access denied");
+            return;
+        }
+
+        chain.doFilter(request, response);
+    }
+
+    static boolean isAllowed(AdminUser adminUser) {
+        return Boolean.TRUE.equals(adminUser.getIsActive())
+                && ADMIN_ROLE.equals(adminUser.getRole())
+                && (adminUser.getLockedUntil() == null || adminUser.getLockedUntil().isBefore(LocalDateTime.now()));
+    }
+
+    private void reject(HttpServletResponse response, int status, String message) throws IOException {
+        response.setStatus(status);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write("{\"error\":\"" + message + "\"}");
+    }
+}
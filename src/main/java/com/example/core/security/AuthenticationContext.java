@@ -23,6 +23,21 @@ public class AuthenticationContext {
         return null;
     }
 
+    public Long getCurrentAdminUserId() {
+        try {
+            ServletRequestAttributes attributes = (ServletRequestAttributes) RequestContextHolder.getRequestAttributes();
+            if (attributes != null) {
+                Object adminUserId = attributes.getRequest().getAttribute("adminUserId");
+                if (adminUserId != null) {
+                    return (Long) adminUserId;
+                }
+            }
+        } catch (Exception e) {
+            // No request context available
+        }
+        return null;
+    }
+
     public boolean isAuthenticated() {
         return getCurrentCustomerId() != null;
     }
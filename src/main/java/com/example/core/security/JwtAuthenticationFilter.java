@@ -34,8 +34,12 @@ public class JwtAuthenticationFilter implements Filter {
             String token = extractToken(httpRequest);
 
             if (StringUtils.hasText(token) && jwtTokenProvider.validateToken(token)) {
-                Long customerId = jwtTokenProvider.extractCustomerId(token);
-                httpRequest.setAttribute("customerId", customerId);
+                if (jwtTokenProvider.isAdminToken(token)) {
+                    httpRequest.setAttribute("adminUserId", jwtTokenProvider.extractAdminUserId(token));
+                } else {
+                    Long customerId = jwtTokenProvider.extractCustomerId(token);
+                    httpRequest.setAttribute("customerId", customerId);
+                }
             }
         } catch (Exception e) {
             // Token validation failed, continue without authentication
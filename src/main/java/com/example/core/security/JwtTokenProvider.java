@@ -13,6 +13,9 @@ import java.util.Date;
 @Component
 public class JwtTokenProvider {
 
+    private static final String SCOPE_CLAIM = "scope";
+    private static final String ADMIN_SCOPE = "admin";
+
     private final JwtProperties jwtProperties;
     private final SecretKey secretKey;
 
@@ -33,6 +36,31 @@ public class JwtTokenProvider {
                 .compact();
     }
 
+    /**
+     * Token for an admin user; carries the admin scope so it never passes as a customer token
+     */
+    public String generateAdminToken(Long adminUserId) {
+        Date now = new Date();
+        Date expiryDate = new Date(now.getTime() + jwtProperties.getExpiration());
+
+        return Jwts.builder()
+                .subject(adminUserId.toString())
+                .claim(SCOPE_CLAIM, ADMIN_SCOPE)
+                .issuedAt(now)
+                .expiration(expiryDate)
+                .signWith(secretKey, SignatureAlgorithm.HS512)
+                .compact();
+    }
+
+    public boolean isAdminToken(String token) {
+        Claims claims = Jwts.parserBuilder()
+                .setSigningKey(secretKey)
+                .build()
+                .parseClaimsJws(token)
+                .getBody();
+        return ADMIN_SCOPE.equals(claims.get(SCOPE_CLAIM, String.class));
+    }
+
     public Long extractCustomerId(String token) {
         Claims claims = Jwts.parserBuilder()
                 .setSigningKey(secretKey)
@@ -42,6 +70,18 @@ public class JwtTokenProvider {
         return Long.parseLong(claims.getSubject());
     }
 
+    public Long extractAdminUserId(String token) {
+        Claims claims = Jwts.parserBuilder()
+                .setSigningKey(secretKey)
+                .build()
+                .parseClaimsJws(token)
+                .getBody();
+        if (!ADMIN_SCOPE.equals(claims.get(SCOPE_CLAIM, String.class))) {
+            throw new IllegalArgumentException("Not an admin token");
+        }
+        return Long.parseLong(claims.getSubject());
+    }
+
     public boolean validateToken(String token) {
         try {
             Jwts.parserBuilder()
@@ -0,0 +1,82 @@
+package com.example.core.service;
+
+import com.example.core.config.WalletProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Striped per-account lanes. Wallet writes for one customer run one after another on the
+ * same fair lock, so they never race on the account version; different customers hash to
+ * different stripes and proceed in parallel.
+ */
+@Component
+public class AccountLanes {
+
+    private final ReentrantLock[] stripes;
+    private final int mask;
+    private final boolean enabled;
+    private final long acquireTimeoutMs;
+    private final WalletMetrics metrics;
+
+    public AccountLanes(WalletProperties properties, WalletMetrics metrics) {
+        WalletProperties.Lanes lanes = properties.getLanes();
+        int size = Integer.highestOneBit(Math.max(1, lanes.getStripes() - 1) << 1);
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock(true);
+        }
+        this.mask = size - 1;
+        this.enabled = lanes.isEnabled();
+        this.acquireTimeoutMs = lanes.getAcquireTimeoutMs();
+        this.metrics = metrics;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public <T> T run(Long customerId, Supplier<T> work) {
+        if (!enabled || customerId == null) {
+            return work.get();
+        }
+
+        ReentrantLock lock = stripes[indexFor(customerId)];
+        acquire(lock);
+        try {
+            return work.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int indexFor(Long customerId) {
+        int h = Long.hashCode(customerId) * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private void acquire(ReentrantLock lock) {
+        metrics.increment("wallet.lane.acquired");
+        if (lock.tryLock()) {
+            return;
+        }
+
+        metrics.increment("wallet.lane.contended");
+        metrics.recordMax("wallet.lane.queue-depth.max", lock.getQueueLength() + 1L);
+
+        long start = System.nanoTime();
+        try {
+            if (!lock.tryLock(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+                metrics.increment("wallet.lane.timeouts");
+                throw new IllegalStateException("Wallet account is busy, please retry");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for wallet account lane", e);
+        } finally {
+            metrics.add("wallet.lane.wait-nanos", System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,397 @@
+package com.example.core.service;
+
+import com.example.core.config.WalletProperties;
+import com.example.core.dto.AdjustmentImportDTO;
+import com.example.core.enums.ProjectType;
+import com.example.core.enums.TransactionType;
+import com.example.core.money.Money;
+import com.example.core.repository.AccountBalanceRow;
+import com.example.core.repository.AdjustmentImportJdbcRepository;
+import com.example.core.repository.LedgerEntry;
+import com.example.core.repository.LedgerJdbcRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Applies a CSV file of balance adjustments (customerId,amount,reason,referenceNo) in batches.
+ * The file is read line by line; each batch is one transaction that locks its accounts, appends
+ * ADJUSTMENT rows with a JDBC batch insert and moves the import's checkpoint forward. Re-uploading
+ * the same file resumes after the last committed batch, and an ADJUSTMENT referenceNo is applied
+ * at most once, so a crashed or repeated import never applies a line twice.
+ */
+@Service
+public class AdjustmentImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(AdjustmentImportService.class);
+
+    private static final int MAX_REFERENCE_NO_LENGTH = 64;
+    private static final int MAX_REASON_LENGTH = 255;
+    private static final int FAILURE_LIMIT = 100;
+
+    private final AdjustmentImportJdbcRepository importRepository;
+    private final LedgerJdbcRepository ledgerJdbcRepository;
+    private final EventSourcedLedger eventSourcedLedger;
+    private final BalanceCache balanceCache;
+    private final WalletMetrics metrics;
+    private final ObjectMapper objectMapper;
+    private final WalletProperties.Adjustments properties;
+    private final TransactionTemplate requiresNewTx;
+
+    public AdjustmentImportService(AdjustmentImportJdbcRepository importRepository,
+                                   LedgerJdbcRepository ledgerJdbcRepository,
+                                   EventSourcedLedger eventSourcedLedger,
+                                   BalanceCache balanceCache,
+                                   WalletMetrics metrics,
+                                   ObjectMapper objectMapper,
+                                   WalletProperties walletProperties,
+                                   PlatformTransactionManager transactionManager) {
+        this.importRepository = importRepository;
+        this.ledgerJdbcRepository = ledgerJdbcRepository;
+        this.eventSourcedLedger = eventSourcedLedger;
+        this.balanceCache = balanceCache;
+        this.metrics = metrics;
+        this.objectMapper = objectMapper;
+        this.properties = walletProperties.getAdjustments();
+
+        this.requiresNewTx = new TransactionTemplate(transactionManager);
+        this.requiresNewTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Import (or resume importing) a file. The source is read twice: once to fingerprint it, once to apply it.
+     */
+    public AdjustmentImportDTO importFile(String fileName, InputStreamSource source) throws IOException {
+        AdjustmentImportDTO existing = importRepository.findOrCreate(sha256(source), fileName);
+        long importId = existing.getId();
+        if (!"RUNNING".equals(existing.getStatus())) {
+            return importRepository.findImport(importId, FAILURE_LIMIT);
+        }
+        if (existing.getLinesProcessed() > 0) {
+            log.info("Resuming adjustment import {} after line {}", importId, existing.getLinesProcessed());
+        }
+
+        long checkpoint = existing.getLinesProcessed();
+        long lineNo = 0;
+        List<ImportLine> batch = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(source.getInputStream(), StandardCharsets.UTF_8))) {
+            String line = reader.readLine();
+            if (line != null && line.startsWith("\uFEFF")) {
+                line = line.substring(1);
+            }
+            if (line != null && isHeader(line)) {
+                line = reader.readLine();
+            }
+            for (; line != null; line = reader.readLine()) {
+                lineNo++;
+                if (lineNo <= checkpoint || line.isBlank()) {
+                    continue;
+                }
+                batch.add(parse(lineNo, line));
+                if (batch.size() >= properties.getBatchSize()) {
+                    applyBatch(importId, checkpoint, lineNo, batch);
+                    checkpoint = lineNo;
+                    batch = new ArrayList<>();
+                }
+            }
+        }
+        if (lineNo > checkpoint) {
+            // Also covers a trailing run of blank lines, so the checkpoint ends at the last line
+            applyBatch(importId, checkpoint, lineNo, batch);
+        }
+
+        importRepository.finish(importId, "COMPLETED");
+        return importRepository.findImport(importId, FAILURE_LIMIT);
+    }
+
+    public AdjustmentImportDTO getImport(Long importId, int failureLimit) {
+        AdjustmentImportDTO dto = importRepository.findImport(importId, failureLimit);
+        if (dto == null) {
+            throw new IllegalArgumentException("Adjustment import not found");
+        }
+        return dto;
+    }
+
+    /**
+     * Apply lines {@code fromLine + 1 .. toLine} and move the checkpoint to {@code toLine} in one transaction
+     */
+    private void applyBatch(long importId, long fromLine, long toLine, List<ImportLine> lines) {
+        Set<Long> customerIds = new TreeSet<>();
+        for (ImportLine line : lines) {
+            if (line.error == null) {
+                customerIds.add(line.customerId);
+            }
+        }
+
+        BatchPlan plan;
+        if (eventSourcedLedger.isActive()) {
+            plan = applyEventSourced(importId, fromLine, toLine, lines, new ArrayList<>(customerIds), 0, new LinkedHashMap<>());
+        } else {
+            plan = requiresNewTx.execute(status -> {
+                Map<Long, AccountBalanceRow> accounts = ledgerJdbcRepository.lockAccountsByCustomerIds(customerIds);
+                BatchPlan planned = plan(importId, lines, accounts);
+                ledgerJdbcRepository.applyBalanceDeltas(accounts.values());
+                ledgerJdbcRepository.insertTransactions(planned.entries);
+                checkpoint(importId, fromLine, toLine, planned);
+                return planned;
+            });
+            for (Long customerId : customerIds) {
+                balanceCache.evict(customerId);
+            }
+        }
+
+        metrics.add("wallet.adjustments.applied", plan.entries.size());
+        metrics.add("wallet.adjustments.duplicates", plan.duplicates);
+        metrics.add("wallet.adjustments.failed", plan.failures.size());
+    }
+
+    /**
+     * Take the projection locks of the batch's customers one by one, in customer id order (other writers
+     * only ever hold one, so this cannot deadlock), then commit the batch and credit the projections.
+     * Customers without an account fail to load a projection and are left unlocked.
+     */
+    private BatchPlan applyEventSourced(long importId, long fromLine, long toLine, List<ImportLine> lines,
+                                        List<Long> customerIds, int next, Map<Long, LedgerProjection> locked) {
+        if (next < customerIds.size()) {
+            Long customerId = customerIds.get(next);
+            try {
+                return eventSourcedLedger.appendLocked(customerId, projection -> {
+                    locked.put(customerId, projection);
+                    return applyEventSourced(importId, fromLine, toLine, lines, customerIds, next + 1, locked);
+                });
+            } catch (RuntimeException e) {
+                if (locked.containsKey(customerId)) {
+                    throw e;
+                }
+                return applyEventSourced(importId, fromLine, toLine, lines, customerIds, next + 1, locked);
+            }
+        }
+
+        Map<Long, AccountBalanceRow> accounts = new HashMap<>();
+        for (LedgerProjection projection : locked.values()) {
+            accounts.put(projection.getCustomerId(), new AccountBalanceRow(projection.getAccountId(),
+                    projection.getCustomerId(), projection.getBalance(), projection.getHeldAmount()));
+        }
+        List<Long> ids = new ArrayList<>();
+        BatchPlan plan = requiresNewTx.execute(status -> {
+            BatchPlan planned = plan(importId, lines, accounts);
+            ids.addAll(ledgerJdbcRepository.insertTransactions(planned.entries));
+            checkpoint(importId, fromLine, toLine, planned);
+            return planned;
+        });
+        for (int i = 0; i < plan.entries.size(); i++) {
+            LedgerEntry entry = plan.entries.get(i);
+            locked.get(entry.getCustomerId()).credit(Money.of(entry.getAmount()), ids.get(i));
+        }
+        return plan;
+    }
+
+    /**
+     * Decide which lines can be applied against the locked balances, applying them to the rows;
+     * must run in the batch transaction
+     */
+    private BatchPlan plan(long importId, List<ImportLine> lines, Map<Long, AccountBalanceRow> accounts) {
+        List<String> referenceNos = new ArrayList<>();
+        for (ImportLine line : lines) {
+            if (line.error == null) {
+                referenceNos.add(line.referenceNo);
+            }
+        }
+        Set<String> seen = new HashSet<>(ledgerJdbcRepository.findExistingReferenceNos(TransactionType.ADJUSTMENT, referenceNos));
+
+        BatchPlan plan = new BatchPlan();
+        for (ImportLine line : lines) {
+            if (line.error != null) {
+                plan.failures.add(new AdjustmentImportDTO.Failure(line.lineNo, line.referenceNo, line.error));
+                continue;
+            }
+            if (!seen.add(line.referenceNo)) {
+                plan.duplicates++;
+                continue;
+            }
+            AccountBalanceRow account = accounts.get(line.customerId);
+            if (account == null) {
+                plan.failures.add(new AdjustmentImportDTO.Failure(line.lineNo, line.referenceNo, "Account not found"));
+                continue;
+            }
+            if (account.isSharded()) {
+                // Part of the balance sits in the shards, which this batch does not lock
+                plan.failures.add(new AdjustmentImportDTO.Failure(line.lineNo, line.referenceNo,
+                        "Adjustments are not supported on sharded accounts"));
+                continue;
+            }
+            if (line.amount.isNegative() && !account.canCover(line.amount.negate())) {
+                plan.failures.add(new AdjustmentImportDTO.Failure(line.lineNo, line.referenceNo,
+                        "Insufficient balance: available " + account.getAvailable()));
+                continue;
+            }
+            account.adjust(line.amount);
+            plan.entries.add(new LedgerEntry(line.customerId, account.getId(), TransactionType.ADJUSTMENT,
+                    line.amount.toBigDecimal(), ProjectType.GENERAL, line.referenceNo, metadata(importId, line)));
+        }
+        return plan;
+    }
+
+    private void checkpoint(long importId, long fromLine, long toLine, BatchPlan plan) {
+        BigDecimal amount = BigDecimal.ZERO;
+        for (LedgerEntry entry : plan.entries) {
+            amount = amount.add(entry.getAmount());
+        }
+        if (!importRepository.advance(importId, fromLine, toLine, plan.entries.size(), plan.duplicates, plan.failures, amount)) {
+            throw new IllegalStateException("Adjustment import " + importId + " is no longer at line " + fromLine
+                    + "; it is being applied by another request");
+        }
+    }
+
+    private String metadata(long importId, ImportLine line) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("importId", importId);
+        data.put("line", line.lineNo);
+        if (line.reason != null) {
+            data.put("reason", line.reason);
+        }
+        try {
+            return objectMapper.writeValueAsString(data);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize adjustment metadata", e);
+        }
+    }
+
+    private static ImportLine parse(long lineNo, String text) {
+        ImportLine line = new ImportLine(lineNo);
+        List<String> fields = splitCsv(text);
+        if (fields == null) {
+            line.error = "Unterminated quoted field";
+            return line;
+        }
+        if (fields.size() != 4) {
+            line.error = "Expected 4 fields (customerId,amount,reason,referenceNo), got " + fields.size();
+            return line;
+        }
+        line.referenceNo = fields.get(3).trim();
+        line.reason = fields.get(2).trim().isEmpty() ? null : fields.get(2).trim();
+        if (line.referenceNo.isEmpty()) {
+            line.error = "referenceNo is required";
+        } else if (line.referenceNo.length() > MAX_REFERENCE_NO_LENGTH) {
+            line.error = "referenceNo is longer than " + MAX_REFERENCE_NO_LENGTH + " characters";
+            line.referenceNo = line.referenceNo.substring(0, MAX_REFERENCE_NO_LENGTH);
+        } else if (line.reason != null && line.reason.length() > MAX_REASON_LENGTH) {
+            line.error = "reason is longer than " + MAX_REASON_LENGTH + " characters";
+        }
+        if (line.error != null) {
+            return line;
+        }
+
+        try {
+            line.customerId = Long.parseLong(fields.get(0).trim());
+            line.amount = Money.of(new BigDecimal(fields.get(1).trim()));
+            if (line.amount.isZero()) {
+                line.error = "Amount must not be zero";
+            }
+        } catch (NumberFormatException e) {
+            line.error = "Invalid customerId or amount";
+        } catch (IllegalArgumentException e) {
+            line.error = e.getMessage();
+        }
+        return line;
+    }
+
+    private static boolean isHeader(String line) {
+        List<String> fields = splitCsv(line);
+        return fields != null && !fields.isEmpty() && fields.get(0).trim().equalsIgnoreCase("customerId");
+    }
+
+    /**
+     * Split one CSV record (RFC 4180 quoting, no embedded line breaks); null when a quote is left open
+     */
+    private static List<String> splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            return null;
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static String sha256(InputStreamSource source) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (InputStream in = new DigestInputStream(source.getInputStream(), digest)) {
+            byte[] buffer = new byte[8192];
+            while (in.read(buffer) != -1) {
+                // DigestInputStream hashes as it reads
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static final class ImportLine {
+        private final long lineNo;
+        private Long customerId;
+        private Money amount;
+        private String reason;
+        private String referenceNo;
+        private String error;
+
+        private ImportLine(long lineNo) {
+            this.lineNo = lineNo;
+        }
+    }
+
+    private static final class BatchPlan {
+        private final List<LedgerEntry> entries = new ArrayList<>();
+        private final List<AdjustmentImportDTO.Failure> failures = new ArrayList<>();
+        private int duplicates;
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.core.service;
+
+import com.example.core.entity.AdminUser;
+import com.example.core.repository.AdminUserRepository;
+import com.example.core.security.AdminAuthorizationFilter;
+import com.example.core.security.JwtTokenProvider;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+/**
+ * Password login for admin users. Issues the admin-scoped tokens the /api/admin routes require; five
+ * failed attempts in a row lock the user for fifteen minutes.
+ */
+@Service
+public class AdminAuthService {
+
+    private static final int MAX_FAILED_ATTEMPTS = 5;
+    private static final long LOCK_MINUTES = 15;
+
+    private final AdminUserRepository adminUserRepository;
+    private final JwtTokenProvider jwtTokenProvider;
+    private final BCryptPasswordEncoder passwordEncoder = new BCryptPasswordEncoder();
+
+    public AdminAuthService(AdminUserRepository adminUserRepository, JwtTokenProvider jwtTokenProvider) {
+        this.adminUserRepository = adminUserRepository;
+        this.jwtTokenProvider = jwtTokenProvider;
+    }
+
+    @Transactional(noRollbackFor = IllegalArgumentException.class)
+    public String login(String username, String password) {
+        if (username == null || password == null) {
+            throw new IllegalArgumentException("Invalid username or password");
+        }
+        AdminUser adminUser = adminUserRepository.findByUsername(username)
+                .orElseThrow(() -> new IllegalArgumentException("Invalid username or password"));
+
+        LocalDateTime now = LocalDateTime.now();
+        if (adminUser.getLockedUntil() != null && adminUser.getLockedUntil().isAfter(now)) {
+            throw new IllegalStateException("Admin user is locked, please retry later");
+        }
+
+        if (!passwordEncoder.matches(password, adminUser.getPassword())) {
+            int failed = adminUser.getFailedLoginAttempts() + 1;
+            adminUser.setFailedLoginAttempts(failed);
+            if (failed >= MAX_FAILED_ATTEMPTS) {
+                adminUser.setLockedUntil(now.plusMinutes(LOCK_MINUTES));
+                adminUser.setFailedLoginAttempts(0);
+            }
+            adminUserRepository.save(adminUser);
+            throw new IllegalArgumentException("Invalid username or password");
+        }
+
+        if (!Boolean.TRUE.equals(adminUser.getIsActive()) || !AdminAuthorizationFilter.ADMIN_ROLE.equals(adminUser.getRole())) {
+            throw new IllegalStateException("Admin access denied");
+        }
+
+        adminUser.setFailedLoginAttempts(0);
+        adminUser.setLockedUntil(null);
+        adminUser.setLastLoginAt(now);
+        adminUser.setLoginCount(adminUser.getLoginCount() + 1);
+        adminUserRepository.save(adminUser);
+        return jwtTokenProvider.generateAdminToken(adminUser.getId());
+    }
+
+    public String encodePassword(String password) {
+        return passwordEncoder.encode(password);
+    }
+}
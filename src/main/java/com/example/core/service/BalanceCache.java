@@ -0,0 +1,149 @@
+package com.example.core.service;
+
+import com.example.core.config.WalletProperties;
+import com.example.core.dto.AccountDTO;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Per-customer cache of account balances for the read path. Entries carry the account
+ * version they were read at; writers refresh with a newer version or evict. Every write
+ * bumps a global generation, and a reader only installs what it loaded if no write happened
+ * while it was loading, so a pre-write balance is never cached after the write. The cache is
+ * split into segments, each bounded and evicting its least recently used entries.
+ * A short TTL bounds staleness from writers on other nodes.
+ */
+@Component
+public class BalanceCache {
+
+    private static final int SEGMENTS = 16;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final AtomicLong generation = new AtomicLong();
+    private final WalletMetrics metrics;
+    private final long ttlNanos;
+
+    public BalanceCache(WalletProperties properties, WalletMetrics metrics) {
+        this.metrics = metrics;
+        this.ttlNanos = properties.getBalanceCache().getTtlMs() * 1_000_000L;
+        int perSegment = Math.max(1, properties.getBalanceCache().getMaxEntries() / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(perSegment);
+        }
+    }
+
+    /**
+     * Return the cached balance, or load it with {@code loader} and cache it unless a writer
+     * ran in the meantime. {@code loader} returns null when there is no account.
+     */
+    public AccountDTO get(Long customerId, Supplier<VersionedBalance> loader) {
+        Segment segment = segment(customerId);
+        Entry current;
+        synchronized (segment) {
+            current = segment.get(customerId);
+        }
+        if (current != null && System.nanoTime() - current.loadedAt < ttlNanos) {
+            metrics.increment("wallet.balance-cache.hits");
+            return copy(current.balance.dto);
+        }
+        metrics.increment("wallet.balance-cache.misses");
+
+        long loadGeneration = generation.get();
+        VersionedBalance loaded = loader.get();
+        if (loaded == null) {
+            return null;
+        }
+
+        synchronized (segment) {
+            // Writers bump the generation before touching the segment, so a write during the load is seen here
+            if (generation.get() == loadGeneration) {
+                Entry existing = segment.get(customerId);
+                if (existing == null || existing.balance.version <= loaded.version) {
+                    segment.put(customerId, new Entry(loaded, System.nanoTime()));
+                }
+            }
+        }
+        return copy(loaded.dto);
+    }
+
+    /**
+     * Install the state a writer just committed, unless a newer version is already cached
+     */
+    public void refresh(Long customerId, AccountDTO dto, long version) {
+        VersionedBalance balance = new VersionedBalance(copy(dto), version);
+        generation.incrementAndGet();
+        Segment segment = segment(customerId);
+        synchronized (segment) {
+            Entry existing = segment.get(customerId);
+            if (existing == null || existing.balance.version <= version) {
+                segment.put(customerId, new Entry(balance, System.nanoTime()));
+            }
+        }
+    }
+
+    /**
+     * Drop the cached balance after a write whose resulting state is not fully known
+     */
+    public void evict(Long customerId) {
+        generation.incrementAndGet();
+        Segment segment = segment(customerId);
+        synchronized (segment) {
+            segment.remove(customerId);
+        }
+    }
+
+    private Segment segment(Long customerId) {
+        return segments[(Long.hashCode(customerId) & 0x7fffffff) % SEGMENTS];
+    }
+
+    private AccountDTO copy(AccountDTO source) {
+        AccountDTO dto = new AccountDTO(source.getCustomerId(), source.getBalance(), source.getTotalRecharge(), source.getTotalSpend());
+        dto.setId(source.getId());
+        dto.setHeldAmount(source.getHeldAmount());
+        dto.setAvailableBalance(source.getAvailableBalance());
+        dto.setCreatedAt(source.getCreatedAt());
+        dto.setUpdatedAt(source.getUpdatedAt());
+        return dto;
+    }
+
+    public static final class VersionedBalance {
+        private final AccountDTO dto;
+        private final long version;
+
+        public VersionedBalance(AccountDTO dto, long version) {
+            this.dto = dto;
+            this.version = version;
+        }
+    }
+
+    private static final class Entry {
+        private final VersionedBalance balance;
+        private final long loadedAt;
+
+        private Entry(VersionedBalance balance, long loadedAt) {
+            this.balance = balance;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    /**
+     * Access-ordered map that drops its least recently used entry beyond {@code capacity}; guarded by its own monitor
+     */
+    private static final class Segment extends LinkedHashMap<Long, Entry> {
+        private final int capacity;
+
+        private Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+            return size() > capacity;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.core.service;
+
+import com.example.core.config.WalletProperties;
+import com.example.core.repository.BalanceCheckpointJdbcRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes a balance checkpoint per active account at every midnight, so a point-in-time balance
+ * query replays at most a day of one customer's ledger. The account id space is cut into fixed
+ * ranges checkpointed in parallel, one short transaction each. A midnight is only checkpointed
+ * once {@code settle-delay-ms} has passed, so transactions created just before it have committed.
+ */
+@Component
+public class BalanceCheckpointJob {
+
+    private static final Logger log = LoggerFactory.getLogger(BalanceCheckpointJob.class);
+
+    private final BalanceCheckpointJdbcRepository checkpointRepository;
+    private final WalletMetrics metrics;
+    private final WalletProperties.Checkpoints properties;
+    private final TransactionTemplate requiresNewTx;
+
+    private ScheduledExecutorService scheduler;
+
+    public BalanceCheckpointJob(BalanceCheckpointJdbcRepository checkpointRepository,
+                                WalletMetrics metrics,
+                                WalletProperties walletProperties,
+                                PlatformTransactionManager transactionManager) {
+        this.checkpointRepository = checkpointRepository;
+        this.metrics = metrics;
+        this.properties = walletProperties.getCheckpoints();
+
+        this.requiresNewTx = new TransactionTemplate(transactionManager);
+        this.requiresNewTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @PostConstruct
+    void start() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "wallet-balance-checkpoints");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::run, properties.getIntervalMs(), properties.getIntervalMs(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private void run() {
+        try {
+            LocalDateTime due = LocalDateTime.now().minusNanos(properties.getSettleDelayMs() * 1_000_000).toLocalDate().atStartOfDay();
+            LocalDateTime latest = checkpointRepository.findLatestCompleted();
+            if (latest == null || latest.isBefore(due)) {
+                // Checkpointing only the latest midnight is enough: its window reaches back to each account's previous checkpoint
+                checkpoint(due.toLocalDate());
+            }
+        } catch (RuntimeException e) {
+            log.warn("Balance checkpoint run failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Checkpoint every account with transactions since its previous checkpoint at the start of {@code day};
+     * returns how many ranges failed (0 when the run completed)
+     */
+    public int checkpoint(LocalDate day) {
+        LocalDateTime checkpointAt = day.atStartOfDay();
+        long started = System.nanoTime();
+        long maxAccountId = checkpointRepository.findMaxAccountId();
+        checkpointRepository.startRun(checkpointAt, maxAccountId);
+
+        List<Callable<Integer>> ranges = new ArrayList<>();
+        for (long start = 1; start <= maxAccountId; start += properties.getRangeSize()) {
+            long from = start;
+            long to = Math.min(start + properties.getRangeSize() - 1, maxAccountId);
+            ranges.add(() -> requiresNewTx.execute(status -> checkpointRepository.writeRange(checkpointAt, from, to)));
+        }
+
+        int failed = 0;
+        long written = 0;
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(properties.getConcurrency(), ranges.size())));
+        try {
+            for (Future<Integer> range : pool.invokeAll(ranges)) {
+                try {
+                    written += range.get();
+                } catch (ExecutionException e) {
+                    failed++;
+                    log.warn("Balance checkpoint range failed: {}", e.getCause().getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while writing balance checkpoints", e);
+        } finally {
+            pool.shutdown();
+        }
+
+        if (failed > 0) {
+            // Left RUNNING; the next tick repeats the whole run, which rewrites finished ranges unchanged
+            log.warn("Balance checkpoint at {} left {} ranges unwritten", checkpointAt, failed);
+        } else {
+            checkpointRepository.finishRun(checkpointAt, written);
+        }
+        metrics.add("wallet.checkpoints.rows", written);
+        log.info("Balance checkpoint at {}: {} ranges, {} rows written in {} ms", checkpointAt, ranges.size(), written,
+                (System.nanoTime() - started) / 1_000_000);
+        return failed;
+    }
+}
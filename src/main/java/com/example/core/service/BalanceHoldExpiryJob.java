@@ -0,0 +1,139 @@
+package com.example.core.service;
+
+import com.example.core.config.WalletProperties;
+import com.example.core.entity.BalanceHold;
+import com.example.core.enums.HoldStatus;
+import com.example.core.repository.AccountRepository;
+import com.example.core.repository.BalanceHoldRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Releases stale balance holds. Active holds sit in an in-memory {@link HoldExpiryWheel}
+ * (seeded from the database on startup); each tick releases whatever expired in short
+ * batched transactions. A periodic database sweep catches holds created on other nodes.
+ */
+@Component
+public class BalanceHoldExpiryJob {
+
+    private static final Logger log = LoggerFactory.getLogger(BalanceHoldExpiryJob.class);
+
+    private final BalanceHoldRepository balanceHoldRepository;
+    private final AccountRepository accountRepository;
+    private final BalanceCache balanceCache;
+    private final WalletMetrics metrics;
+    private final WalletProperties.Holds properties;
+    private final TransactionTemplate requiresNewTx;
+    private final HoldExpiryWheel wheel;
+
+    private ScheduledExecutorService scheduler;
+
+    public BalanceHoldExpiryJob(BalanceHoldRepository balanceHoldRepository,
+                                AccountRepository accountRepository,
+                                BalanceCache balanceCache,
+                                WalletMetrics metrics,
+                                WalletProperties walletProperties,
+                                PlatformTransactionManager transactionManager) {
+        this.balanceHoldRepository = balanceHoldRepository;
+        this.accountRepository = accountRepository;
+        this.balanceCache = balanceCache;
+        this.metrics = metrics;
+        this.properties = walletProperties.getHolds();
+        this.wheel = new HoldExpiryWheel(properties.getTickMs(), properties.getWheelSize(), System.currentTimeMillis());
+
+        this.requiresNewTx = new TransactionTemplate(transactionManager);
+        this.requiresNewTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @PostConstruct
+    void start() {
+        for (BalanceHoldRepository.HoldExpiryView view : balanceHoldRepository.findExpiryViewsByStatus(HoldStatus.ACTIVE)) {
+            schedule(view.getId(), view.getExpiresAt());
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "wallet-hold-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::tick, properties.getTickMs(), properties.getTickMs(), TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::sweep, properties.getSweepIntervalMs(), properties.getSweepIntervalMs(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    public void schedule(Long holdId, LocalDateTime expiresAt) {
+        wheel.schedule(holdId, expiresAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+    }
+
+    void tick() {
+        try {
+            expire(wheel.advance(System.currentTimeMillis()));
+        } catch (RuntimeException e) {
+            log.warn("Hold expiry tick failed: {}", e.getMessage());
+        }
+    }
+
+    void sweep() {
+        try {
+            expire(balanceHoldRepository.findIdsByStatusAndExpiresAtBefore(HoldStatus.ACTIVE, LocalDateTime.now(),
+                    PageRequest.of(0, properties.getExpiryBatchSize() * 10)));
+        } catch (RuntimeException e) {
+            log.warn("Hold expiry sweep failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Expire the given holds (those still active and overdue) in batches; returns how many were released
+     */
+    public int expire(List<Long> holdIds) {
+        int released = 0;
+        int batchSize = Math.max(1, properties.getExpiryBatchSize());
+        for (int from = 0; from < holdIds.size(); from += batchSize) {
+            List<Long> batch = holdIds.subList(from, Math.min(holdIds.size(), from + batchSize));
+            List<BalanceHold> expired = requiresNewTx.execute(status -> expireBatch(batch));
+            expired.stream().map(hold -> hold.getCustomer().getId()).distinct().forEach(balanceCache::evict);
+            released += expired.size();
+        }
+        if (released > 0) {
+            metrics.add("wallet.holds.expired", released);
+        }
+        return released;
+    }
+
+    private List<BalanceHold> expireBatch(List<Long> holdIds) {
+        LocalDateTime now = LocalDateTime.now();
+        List<BalanceHold> expired = balanceHoldRepository.lockExpired(holdIds, HoldStatus.ACTIVE, now);
+
+        Map<Long, BigDecimal> releasedByCustomer = new LinkedHashMap<>();
+        for (BalanceHold hold : expired) {
+            hold.setStatus(HoldStatus.EXPIRED);
+            hold.setSettledAt(now);
+            releasedByCustomer.merge(hold.getCustomer().getId(), hold.getAmount(), BigDecimal::add);
+        }
+        releasedByCustomer.forEach(accountRepository::releaseHeld);
+        return expired;
+    }
+}
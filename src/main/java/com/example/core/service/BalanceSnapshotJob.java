@@ -0,0 +1,102 @@
+package com.example.core.service;
+
+import com.example.core.config.WalletProperties;
+import com.example.core.repository.BalanceSnapshotJdbcRepository;
+import com.example.core.repository.LedgerSnapshot;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rolls event-sourced balances forward: once an account's projection has replayed enough
+ * transactions since its snapshot, a new snapshot is written, folded into the accounts row
+ * and older snapshots are pruned. This keeps the replay tail (and startup rebuild) bounded.
+ * On shutdown every non-empty tail is snapshotted.
+ */
+@Component
+public class BalanceSnapshotJob {
+
+    private static final Logger log = LoggerFactory.getLogger(BalanceSnapshotJob.class);
+
+    private final EventSourcedLedger ledger;
+    private final BalanceSnapshotJdbcRepository snapshotRepository;
+    private final WalletMetrics metrics;
+    private final WalletProperties.EventLedger properties;
+    private final TransactionTemplate requiresNewTx;
+
+    private ScheduledExecutorService scheduler;
+
+    public BalanceSnapshotJob(EventSourcedLedger ledger,
+                              BalanceSnapshotJdbcRepository snapshotRepository,
+                              WalletMetrics metrics,
+                              WalletProperties walletProperties,
+                              PlatformTransactionManager transactionManager) {
+        this.ledger = ledger;
+        this.snapshotRepository = snapshotRepository;
+        this.metrics = metrics;
+        this.properties = walletProperties.getEventLedger();
+
+        this.requiresNewTx = new TransactionTemplate(transactionManager);
+        this.requiresNewTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @PostConstruct
+    void start() {
+        if (!ledger.isActive()) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "wallet-balance-snapshots");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> rollForward(properties.getSnapshotEveryTransactions()),
+                properties.getSnapshotIntervalMs(), properties.getSnapshotIntervalMs(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdownNow();
+        rollForward(1);
+    }
+
+    /**
+     * Snapshot every projection whose tail has reached {@code minTail}; returns how many were written
+     */
+    public int rollForward(int minTail) {
+        int written = 0;
+        for (LedgerProjection projection : ledger.projections()) {
+            if (projection.getTailLength() < minTail) {
+                continue;
+            }
+            try {
+                synchronized (projection) {
+                    LedgerSnapshot snapshot = projection.toSnapshot();
+                    requiresNewTx.executeWithoutResult(status -> {
+                        snapshotRepository.insert(snapshot);
+                        snapshotRepository.foldIntoAccount(snapshot);
+                        snapshotRepository.prune(snapshot.getAccountId(), properties.getKeepSnapshots());
+                    });
+                    projection.snapshotted();
+                }
+                written++;
+            } catch (RuntimeException e) {
+                log.warn("Balance snapshot failed for customer {}: {}", projection.getCustomerId(), e.getMessage());
+            }
+        }
+        metrics.add("wallet.event-ledger.snapshots", written);
+        return written;
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.core.service;
+
+import com.example.core.entity.Transaction;
+import com.example.core.enums.ProjectType;
+import com.example.core.enums.TransactionType;
+import com.example.core.exception.InsufficientBalanceException;
+import com.example.core.repository.AccountBalanceView;
+import com.example.core.repository.AccountRepository;
+import com.example.core.repository.CustomerRepository;
+import com.example.core.repository.LedgerEntry;
+import com.example.core.repository.LedgerJdbcRepository;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+
+/**
+ * Deduct engine that debits with a single guarded UPDATE and decides insufficient funds
+ * from the affected-row count. No customer or account entity is loaded.
+ */
+@Component
+public class ConditionalDeductEngine {
+
+    private final AccountRepository accountRepository;
+    private final CustomerRepository customerRepository;
+    private final LedgerJdbcRepository ledgerJdbcRepository;
+    private final WalletMetrics metrics;
+    private final TransactionTemplate requiresNewTx;
+
+    public ConditionalDeductEngine(AccountRepository accountRepository,
+                                   CustomerRepository customerRepository,
+                                   LedgerJdbcRepository ledgerJdbcRepository,
+                                   WalletMetrics metrics,
+                                   PlatformTransactionManager transactionManager) {
+        this.accountRepository = accountRepository;
+        this.customerRepository = customerRepository;
+        this.ledgerJdbcRepository = ledgerJdbcRepository;
+        this.metrics = metrics;
+
+        this.requiresNewTx = new TransactionTemplate(transactionManager);
+        this.requiresNewTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public Transaction deduct(Long customerId, BigDecimal amount, ProjectType projectType, String metadata, String referenceNo) {
+        return requiresNewTx.execute(status -> {
+            if (accountRepository.debitIfSufficient(customerId, amount) == 0) {
+                metrics.increment("wallet.deduct.conditional.rejected");
+                // No row matched: the account cannot cover the amount, or it is missing. A customer without
+                // an account yet has a zero balance, as the JPA engine would create it, so only an unknown customer is not found
+                if (accountRepository.findBalanceViewByCustomerId(customerId).isEmpty()
+                        && !customerRepository.existsById(customerId)) {
+                    throw new IllegalArgumentException("Customer not found");
+                }
+                throw new InsufficientBalanceException("Insufficient balance");
+            }
+
+            AccountBalanceView view = accountRepository.findBalanceViewByCustomerId(customerId)
+                    .orElseThrow(() -> new IllegalStateException("Account vanished during deduct"));
+
+            long transactionId = ledgerJdbcRepository.insertTransaction(new LedgerEntry(customerId, view.getId(),
+                    TransactionType.SPEND, amount, projectType, referenceNo, metadata));
+            metrics.increment("wallet.deduct.conditional.applied");
+
+            Transaction transaction = DetachedLedger.transaction(customerId, view.getId(), view.getBalance(), transactionId,
+                    TransactionType.SPEND, amount, projectType, metadata, referenceNo);
+            transaction.getAccount().setVersion(view.getVersion());
+            return transaction;
+        });
+    }
+}
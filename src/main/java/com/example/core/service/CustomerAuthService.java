@@ -18,13 +18,16 @@ public class CustomerAuthService {
     private final AccountRepository accountRepository;
     private final WechatService wechatService;
     private final JwtTokenProvider jwtTokenProvider;
+    private final IdentityCache identityCache;
 
     public CustomerAuthService(CustomerRepository customerRepository, AccountRepository accountRepository,
-                               WechatService wechatService, JwtTokenProvider jwtTokenProvider) {
+                               WechatService wechatService, JwtTokenProvider jwtTokenProvider,
+                               IdentityCache identityCache) {
         this.customerRepository = customerRepository;
         this.accountRepository = accountRepository;
         this.wechatService = wechatService;
         this.jwtTokenProvider = jwtTokenProvider;
+        this.identityCache = identityCache;
     }
 
     @Transactional
@@ -36,7 +39,7 @@ public class CustomerAuthService {
         }
 
         String openid = response.getOpenid();
-        Optional<Customer> existingCustomer = customerRepository.findByWechatOpenid(openid);
+        Optional<Customer> existingCustomer = findByOpenid(openid);
 
         Customer customer;
         if (existingCustomer.isPresent()) {
@@ -52,9 +55,16 @@ public class CustomerAuthService {
             customerRepository.save(customer);
         }
 
-        // Ensure wallet account exists for the customer
-        accountRepository.findByCustomerId(customer.getId())
-                .orElseGet(() -> accountRepository.save(new Account(customer)));
+        Long customerId = customer.getId();
+        identityCache.afterCommit(() -> identityCache.putCustomerId(openid, customerId));
+
+        // Ensure wallet account exists for the customer; a cached mapping means it already does
+        if (identityCache.getAccountId(customerId) == null) {
+            Account account = accountRepository.findByCustomerId(customerId)
+                    .orElseGet(() -> accountRepository.save(new Account(customer)));
+            Long accountId = account.getId();
+            identityCache.afterCommit(() -> identityCache.putAccountId(customerId, accountId));
+        }
 
         String token = jwtTokenProvider.generateToken(customer.getId());
 
@@ -69,6 +79,23 @@ public class CustomerAuthService {
         );
     }
 
+    /**
+     * Resolve an openid through the primary key when the mapping is cached, else through the openid index.
+     * A cached mapping is trusted as is (openids never move between customers); the row is still read
+     * because login updates it and returns its profile fields.
+     */
+    private Optional<Customer> findByOpenid(String openid) {
+        Long customerId = identityCache.getCustomerId(openid);
+        if (customerId != null) {
+            Optional<Customer> cached = customerRepository.findById(customerId);
+            if (cached.isPresent()) {
+                return cached;
+            }
+            identityCache.evictCustomerId(openid);
+        }
+        return customerRepository.findByWechatOpenid(openid);
+    }
+
     @Transactional
     public Customer completeProfile(Long customerId, String name, String phone, String source) {
         Customer customer = customerRepository.findById(customerId)
@@ -0,0 +1,36 @@
+package com.example.core.service;
+
+import com.example.core.entity.Account;
+import com.example.core.entity.Customer;
+import com.example.core.entity.Transaction;
+import com.example.core.enums.ProjectType;
+import com.example.core.enums.TransactionType;
+
+import java.math.BigDecimal;
+
+/**
+ * Builds detached entities for results of JDBC write paths, so callers get the same
+ * {@link Transaction} shape (with {@code getAccount().getBalance()}) as the JPA path.
+ */
+final class DetachedLedger {
+
+    private DetachedLedger() {
+    }
+
+    static Transaction transaction(Long customerId, Long accountId, BigDecimal balanceAfter, Long transactionId,
+                                   TransactionType type, BigDecimal amount, ProjectType projectType,
+                                   String metadata, String referenceNo) {
+        Customer customer = new Customer();
+        customer.setId(customerId);
+
+        Account account = new Account(customer);
+        account.setId(accountId);
+        account.setBalance(balanceAfter);
+
+        Transaction transaction = new Transaction(customer, account, type, amount, projectType);
+        transaction.setId(transactionId);
+        transaction.setMetadata(metadata);
+        transaction.setReferenceNo(referenceNo);
+        return transaction;
+    }
+}
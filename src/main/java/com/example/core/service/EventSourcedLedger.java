@@ -0,0 +1,232 @@
+package com.example.core.service;
+
+import com.example.core.config.WalletProperties;
+import com.example.core.dto.AccountDTO;
+import com.example.core.entity.Transaction;
+import com.example.core.enums.DeductEngine;
+import com.example.core.enums.ProjectType;
+import com.example.core.enums.TransactionType;
+import com.example.core.exception.InsufficientBalanceException;
+import com.example.core.money.Money;
+import com.example.core.repository.BalanceSnapshotJdbcRepository;
+import com.example.core.repository.CustomerRepository;
+import com.example.core.repository.LedgerEntry;
+import com.example.core.repository.LedgerJdbcRepository;
+import com.example.core.repository.LedgerSnapshot;
+import com.example.core.repository.WriterLeaseJdbcRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * The {@link DeductEngine#EVENT_SOURCED} write path. Writes only append to
+ * {@code transactions}; balance checks run against per-account {@link LedgerProjection}s
+ * that are rebuilt from snapshots on startup (or loaded on first use) and advanced after
+ * each append commits. {@link BalanceSnapshotJob} rolls the snapshots forward.
+ * <p>
+ * Projections are only correct while this node is the sole writer, so startup takes the
+ * {@code event-sourced-ledger} row in writer_leases and fails if another node holds it.
+ * The lease is renewed in the background; once it lapses, appends are refused until restart.
+ */
+@Component
+public class EventSourcedLedger {
+
+    private static final Logger log = LoggerFactory.getLogger(EventSourcedLedger.class);
+
+    static final String LEASE_NAME = "event-sourced-ledger";
+
+    private final BalanceSnapshotJdbcRepository snapshotRepository;
+    private final LedgerJdbcRepository ledgerJdbcRepository;
+    private final CustomerRepository customerRepository;
+    private final WriterLeaseJdbcRepository leaseRepository;
+    private final BalanceCache balanceCache;
+    private final WalletMetrics metrics;
+    private final boolean active;
+    private final TransactionTemplate requiresNewTx;
+    private final long leaseTtlMs;
+    private final String leaseOwner;
+
+    private final ConcurrentHashMap<Long, LedgerProjection> projections = new ConcurrentHashMap<>();
+
+    /** System.nanoTime() after which this node can no longer assume it holds the lease */
+    private volatile long leaseValidUntil;
+    private volatile boolean leaseLost;
+    private ScheduledExecutorService leaseRenewer;
+
+    public EventSourcedLedger(BalanceSnapshotJdbcRepository snapshotRepository,
+                              LedgerJdbcRepository ledgerJdbcRepository,
+                              CustomerRepository customerRepository,
+                              WriterLeaseJdbcRepository leaseRepository,
+                              BalanceCache balanceCache,
+                              WalletMetrics metrics,
+                              WalletProperties walletProperties,
+                              PlatformTransactionManager transactionManager) {
+        this.snapshotRepository = snapshotRepository;
+        this.ledgerJdbcRepository = ledgerJdbcRepository;
+        this.customerRepository = customerRepository;
+        this.leaseRepository = leaseRepository;
+        this.balanceCache = balanceCache;
+        this.metrics = metrics;
+        this.active = walletProperties.getDeduct().getEngine() == DeductEngine.EVENT_SOURCED;
+        this.leaseTtlMs = walletProperties.getEventLedger().getLeaseTtlMs();
+        this.leaseOwner = hostName() + "/" + UUID.randomUUID();
+
+        this.requiresNewTx = new TransactionTemplate(transactionManager);
+        this.requiresNewTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @PostConstruct
+    void rebuild() {
+        if (!active) {
+            return;
+        }
+        long requestedAt = System.nanoTime();
+        if (!leaseRepository.tryAcquire(LEASE_NAME, leaseOwner, leaseTtlMs)) {
+            throw new IllegalStateException("EVENT_SOURCED mode needs the ledger writer lease, which another node holds");
+        }
+        leaseValidUntil = requestedAt + TimeUnit.MILLISECONDS.toNanos(leaseTtlMs);
+        log.info("Acquired ledger writer lease as {}", leaseOwner);
+
+        leaseRenewer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "wallet-ledger-lease");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long renewEveryMs = Math.max(1, leaseTtlMs / 3);
+        leaseRenewer.scheduleWithFixedDelay(this::renewLease, renewEveryMs, renewEveryMs, TimeUnit.MILLISECONDS);
+
+        long replayed = 0;
+        for (LedgerSnapshot snapshot : snapshotRepository.findAllReplayed()) {
+            projections.put(snapshot.getCustomerId(), new LedgerProjection(snapshot));
+            replayed += snapshot.getTailLength();
+        }
+        log.info("Rebuilt {} ledger projections ({} transactions replayed)", projections.size(), replayed);
+    }
+
+    @PreDestroy
+    void releaseLease() {
+        if (leaseRenewer == null) {
+            return;
+        }
+        leaseRenewer.shutdownNow();
+        leaseRepository.release(LEASE_NAME, leaseOwner);
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    void renewLease() {
+        if (leaseLost) {
+            return;
+        }
+        long requestedAt = System.nanoTime();
+        try {
+            if (leaseRepository.renew(LEASE_NAME, leaseOwner, leaseTtlMs)) {
+                leaseValidUntil = requestedAt + TimeUnit.MILLISECONDS.toNanos(leaseTtlMs);
+                return;
+            }
+            leaseLost = true;
+            log.error("Ledger writer lease expired or was taken over; refusing further appends");
+        } catch (RuntimeException e) {
+            // still ours until leaseValidUntil; the next run retries
+            log.warn("Failed to renew ledger writer lease", e);
+        }
+        metrics.increment("wallet.event-ledger.lease-renewal-failures");
+    }
+
+    /**
+     * Append a SPEND if the projected available balance covers it
+     */
+    public Transaction deduct(Long customerId, Money amount, ProjectType projectType, String metadata, String referenceNo) {
+        BigDecimal decimal = amount.toBigDecimal();
+        return appendLocked(customerId, projection -> {
+            if (!projection.canCover(amount)) {
+                throw new InsufficientBalanceException("Insufficient balance");
+            }
+            long transactionId = requiresNewTx.execute(status -> ledgerJdbcRepository.insertTransaction(new LedgerEntry(
+                    customerId, projection.getAccountId(), TransactionType.SPEND, decimal, projectType, referenceNo, metadata)));
+            projection.spend(amount, transactionId);
+            metrics.increment("wallet.event-ledger.appends");
+            return DetachedLedger.transaction(customerId, projection.getAccountId(), projection.getBalance().toBigDecimal(),
+                    transactionId, TransactionType.SPEND, decimal, projectType, metadata, referenceNo);
+        });
+    }
+
+    /**
+     * Run an append for one customer while holding its projection. {@code append} must commit
+     * before it advances the projection, and must not advance it when the append fails.
+     */
+    <T> T appendLocked(Long customerId, Function<LedgerProjection, T> append) {
+        LedgerProjection projection = projection(customerId);
+        T result;
+        synchronized (projection) {
+            if (leaseLost || System.nanoTime() - leaseValidUntil >= 0) {
+                leaseLost = true;
+                throw new IllegalStateException("This node no longer holds the ledger writer lease");
+            }
+            result = append.apply(projection);
+        }
+        balanceCache.evict(customerId);
+        return result;
+    }
+
+    /**
+     * Overlay the projected balance and totals on a DTO mapped from the (folded) accounts row
+     */
+    public void applyProjection(AccountDTO dto) {
+        LedgerProjection projection = projection(dto.getCustomerId());
+        synchronized (projection) {
+            dto.setBalance(projection.getBalance().toBigDecimal());
+            dto.setTotalRecharge(projection.getTotalRecharge().toBigDecimal());
+            dto.setTotalSpend(projection.getTotalSpend().toBigDecimal());
+            dto.setAvailableBalance(projection.getBalance().minus(projection.getHeldAmount()).toBigDecimal());
+        }
+    }
+
+    Collection<LedgerProjection> projections() {
+        return projections.values();
+    }
+
+    private LedgerProjection projection(Long customerId) {
+        return projections.computeIfAbsent(customerId, id -> {
+            LedgerSnapshot snapshot = snapshotRepository.findReplayedByCustomerId(id);
+            if (snapshot == null) {
+                snapshot = requiresNewTx.execute(status -> snapshotRepository.bootstrap(id));
+            }
+            if (snapshot == null) {
+                if (!customerRepository.existsById(id)) {
+                    throw new IllegalArgumentException("Customer not found");
+                }
+                throw new InsufficientBalanceException("Insufficient balance");
+            }
+            metrics.increment("wallet.event-ledger.projection-loads");
+            return new LedgerProjection(snapshot);
+        });
+    }
+
+    private static String hostName() {
+        try {
+            String host = InetAddress.getLocalHost().getHostName();
+            return host.length() > 64 ? host.substring(0, 64) : host;
+        } catch (UnknownHostException e) {
+            return "unknown-host";
+        }
+    }
+}
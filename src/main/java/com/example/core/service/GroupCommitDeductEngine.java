@@ -0,0 +1,300 @@
+package com.example.core.service;
+
+import com.example.core.config.WalletProperties;
+import com.example.core.entity.Transaction;
+import com.example.core.enums.DeductEngine;
+import com.example.core.enums.ProjectType;
+import com.example.core.enums.TransactionType;
+import com.example.core.exception.DeductOutcomeUnknownException;
+import com.example.core.exception.InsufficientBalanceException;
+import com.example.core.money.Money;
+import com.example.core.repository.AccountBalanceRow;
+import com.example.core.repository.LedgerEntry;
+import com.example.core.repository.LedgerJdbcRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Group-commit deduct engine. Callers enqueue their spend and block on a future; a single
+ * flusher thread collects everything that arrives within {@code wallet.group-commit.window-ms}
+ * (up to {@code max-batch-size}) and applies it in one DB transaction: the touched accounts
+ * are locked once, debited in arrival order in memory, written back with one UPDATE per
+ * account and the ledger rows go out as one multi-row insert. Futures complete only after
+ * that shared commit succeeds; if it fails, the batch is split in halves and each half is
+ * retried, so one bad item only fails its own caller. The queue is bounded: a deduct that finds it full is rejected
+ * at once, and a caller waits at most {@code timeout-ms} for its commit.
+ */
+@Component
+public class GroupCommitDeductEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(GroupCommitDeductEngine.class);
+
+    private final LedgerJdbcRepository ledgerJdbcRepository;
+    private final WalletMetrics metrics;
+    private final TransactionTemplate requiresNewTx;
+
+    private final boolean enabled;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final long timeoutMs;
+
+    private final BlockingQueue<PendingDeduct> queue;
+    private volatile boolean running;
+    private Thread flusher;
+
+    public GroupCommitDeductEngine(LedgerJdbcRepository ledgerJdbcRepository,
+                                   WalletMetrics metrics,
+                                   WalletProperties properties,
+                                   PlatformTransactionManager transactionManager) {
+        this.ledgerJdbcRepository = ledgerJdbcRepository;
+        this.metrics = metrics;
+
+        this.enabled = properties.getDeduct().getEngine() == DeductEngine.GROUP_COMMIT;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(properties.getGroupCommit().getWindowMs());
+        this.maxBatchSize = Math.max(1, properties.getGroupCommit().getMaxBatchSize());
+        this.timeoutMs = properties.getGroupCommit().getTimeoutMs();
+        this.queue = new LinkedBlockingQueue<>(Math.max(1, properties.getGroupCommit().getQueueCapacity()));
+
+        this.requiresNewTx = new TransactionTemplate(transactionManager);
+        this.requiresNewTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        flusher = new Thread(this::runFlusher, "wallet-group-commit");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+        if (flusher != null) {
+            flusher.interrupt();
+            try {
+                flusher.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        // Whatever the flusher did not get to (or was enqueued as it exited) would otherwise wait out its timeout
+        List<PendingDeduct> leftover = new ArrayList<>();
+        queue.drainTo(leftover);
+        if (!leftover.isEmpty()) {
+            log.warn("Group commit engine stopped with {} deducts still queued", leftover.size());
+            failAll(leftover, new IllegalStateException("Group commit engine is not running"));
+        }
+    }
+
+    public Transaction deduct(Long customerId, Money amount, ProjectType projectType, String metadata, String referenceNo) {
+        if (!running) {
+            throw new IllegalStateException("Group commit engine is not running");
+        }
+
+        if (customerId == null || amount == null) {
+            throw new IllegalArgumentException("Customer and amount are required");
+        }
+
+        // Checked before queueing so a malformed item cannot break the shared commit
+        PendingDeduct pending = new PendingDeduct(customerId, amount,
+                projectType != null ? projectType : ProjectType.GENERAL, metadata, referenceNo);
+        if (!queue.offer(pending)) {
+            metrics.increment("wallet.group-commit.queue-full");
+            throw new IllegalStateException("Wallet is busy, please retry");
+        }
+        try {
+            return pending.future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Group commit failed", e.getCause());
+        } catch (TimeoutException e) {
+            metrics.increment("wallet.group-commit.timeouts");
+            if (queue.remove(pending)) {
+                // Never picked up, so it can no longer be applied
+                throw new IllegalStateException("Wallet is busy, please retry");
+            }
+            // Already part of a commit in flight; only a retry with the same referenceNo can tell the outcome
+            throw new DeductOutcomeUnknownException("Deduct timed out while committing, retry with the same referenceNo");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (queue.remove(pending)) {
+                throw new IllegalStateException("Interrupted while waiting for group commit", e);
+            }
+            throw new DeductOutcomeUnknownException("Interrupted while committing, retry with the same referenceNo");
+        }
+    }
+
+    private void runFlusher() {
+        List<PendingDeduct> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingDeduct first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    PendingDeduct next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                flush(batch);
+            } catch (InterruptedException e) {
+                // Shutting down: commit whatever was already collected instead of dropping it
+                queue.drainTo(batch);
+                flush(batch);
+            } catch (RuntimeException e) {
+                log.error("Group commit flusher failed", e);
+                failAll(batch, e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    void flush(List<PendingDeduct> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        List<PendingDeduct> accepted = new ArrayList<>(batch.size());
+        try {
+            requiresNewTx.execute(status -> {
+                accepted.clear();
+                for (PendingDeduct pending : batch) {
+                    pending.failure = null;
+                }
+
+                Set<Long> customerIds = new LinkedHashSet<>();
+                Set<String> referenceNos = new HashSet<>();
+                for (PendingDeduct pending : batch) {
+                    customerIds.add(pending.customerId);
+                    if (pending.referenceNo != null) {
+                        referenceNos.add(pending.referenceNo);
+                    }
+                }
+
+                Map<Long, AccountBalanceRow> accounts = ledgerJdbcRepository.lockAccountsByCustomerIds(customerIds);
+                Set<String> usedReferenceNos = ledgerJdbcRepository.findExistingReferenceNos(TransactionType.SPEND, referenceNos);
+
+                List<LedgerEntry> entries = new ArrayList<>(batch.size());
+                for (PendingDeduct pending : batch) {
+                    AccountBalanceRow account = accounts.get(pending.customerId);
+                    if (account == null) {
+                        // Decided from the lock result alone, so no lookup runs while the accounts are locked
+                        pending.failure = new IllegalArgumentException("Customer not found");
+                    } else if (pending.referenceNo != null && !usedReferenceNos.add(pending.referenceNo)) {
+                        pending.failure = new DuplicateKeyException("Duplicate SPEND referenceNo: " + pending.referenceNo);
+                    } else if (!account.canCover(pending.amount)) {
+                        pending.failure = new InsufficientBalanceException("Insufficient balance");
+                    } else {
+                        account.debit(pending.amount);
+                        pending.accountId = account.getId();
+                        pending.balanceAfter = account.getBalance();
+                        entries.add(new LedgerEntry(pending.customerId, account.getId(), TransactionType.SPEND,
+                                pending.amount.toBigDecimal(), pending.projectType, pending.referenceNo, pending.metadata));
+                        accepted.add(pending);
+                    }
+                }
+
+                ledgerJdbcRepository.applyBalanceDeltas(accounts.values());
+                List<Long> ids = ledgerJdbcRepository.insertTransactions(entries);
+                for (int i = 0; i < accepted.size(); i++) {
+                    accepted.get(i).transactionId = ids.get(i);
+                }
+                return null;
+            });
+        } catch (RuntimeException e) {
+            metrics.increment("wallet.group-commit.failed-commits");
+            if (batch.size() == 1) {
+                failAll(batch, e);
+                return;
+            }
+            // Nothing was committed; bisect so the item that broke the commit fails alone and the rest still apply
+            log.warn("Group commit of {} deducts failed, retrying in halves", batch.size(), e);
+            int half = batch.size() / 2;
+            flush(new ArrayList<>(batch.subList(0, half)));
+            flush(new ArrayList<>(batch.subList(half, batch.size())));
+            return;
+        }
+
+        metrics.increment("wallet.group-commit.commits");
+        metrics.add("wallet.group-commit.applied", accepted.size());
+        metrics.recordMax("wallet.group-commit.batch-size.max", batch.size());
+
+        for (PendingDeduct pending : batch) {
+            if (pending.failure != null) {
+                metrics.increment("wallet.group-commit.rejected");
+                pending.future.completeExceptionally(pending.failure);
+            } else {
+                pending.future.complete(DetachedLedger.transaction(pending.customerId, pending.accountId,
+                        pending.balanceAfter.toBigDecimal(), pending.transactionId, TransactionType.SPEND, pending.amount.toBigDecimal(),
+                        pending.projectType, pending.metadata, pending.referenceNo));
+            }
+        }
+    }
+
+    private void failAll(List<PendingDeduct> batch, RuntimeException e) {
+        for (PendingDeduct pending : batch) {
+            pending.future.completeExceptionally(e);
+        }
+    }
+
+    static final class PendingDeduct {
+        final Long customerId;
+        final Money amount;
+        final ProjectType projectType;
+        final String metadata;
+        final String referenceNo;
+        final CompletableFuture<Transaction> future = new CompletableFuture<>();
+
+        RuntimeException failure;
+        Long accountId;
+        Money balanceAfter;
+        Long transactionId;
+
+        PendingDeduct(Long customerId, Money amount, ProjectType projectType, String metadata, String referenceNo) {
+            this.customerId = customerId;
+            this.amount = amount;
+            this.projectType = projectType;
+            this.metadata = metadata;
+            this.referenceNo = referenceNo;
+        }
+    }
+}
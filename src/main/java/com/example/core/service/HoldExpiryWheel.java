@@ -0,0 +1,74 @@
+package com.example.core.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Hashed timing wheel for hold expiry. Scheduling is O(1) from any thread; a single ticker
+ * thread calls {@link #advance} and gets back the ids whose deadline has passed. An entry
+ * scheduled concurrently with the tick that covers its slot is picked up one rotation later,
+ * which only delays (never loses) the expiry.
+ */
+final class HoldExpiryWheel {
+
+    private final long tickMillis;
+    private final long startMillis;
+    private final Queue<Timeout>[] slots;
+    private final int mask;
+    private volatile long processedTick;
+
+    @SuppressWarnings("unchecked")
+    HoldExpiryWheel(long tickMillis, int wheelSize, long startMillis) {
+        int size = Integer.highestOneBit(Math.max(2, wheelSize - 1) << 1);
+        this.tickMillis = Math.max(1, tickMillis);
+        this.startMillis = startMillis;
+        this.slots = new Queue[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.mask = size - 1;
+        this.processedTick = -1;
+    }
+
+    void schedule(long holdId, long expiresAtMillis) {
+        long deadlineTick = Math.max(0, Math.floorDiv(expiresAtMillis - startMillis + tickMillis - 1, tickMillis));
+        long target = Math.max(deadlineTick, processedTick + 1);
+        slots[(int) (target & mask)].add(new Timeout(holdId, deadlineTick));
+    }
+
+    List<Long> advance(long nowMillis) {
+        long nowTick = Math.floorDiv(nowMillis - startMillis, tickMillis);
+        List<Long> expired = new ArrayList<>();
+
+        // After a long pause visiting every slot once is enough: all overdue entries match
+        long from = Math.max(processedTick + 1, nowTick - mask);
+        for (long tick = from; tick <= nowTick; tick++) {
+            Queue<Timeout> slot = slots[(int) (tick & mask)];
+            for (int remaining = slot.size(); remaining > 0; remaining--) {
+                Timeout timeout = slot.poll();
+                if (timeout == null) {
+                    break;
+                }
+                if (timeout.deadlineTick <= tick) {
+                    expired.add(timeout.holdId);
+                } else {
+                    slot.add(timeout);
+                }
+            }
+            processedTick = tick;
+        }
+        return expired;
+    }
+
+    private static final class Timeout {
+        private final long holdId;
+        private final long deadlineTick;
+
+        private Timeout(long holdId, long deadlineTick) {
+            this.holdId = holdId;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.core.service;
+
+import com.example.core.config.WalletProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Identity mappings that never change once created: WeChat openid to customer id, and customer
+ * id to account id. Lets login and the wallet write paths read rows by primary key instead of
+ * through the openid and customer_id indexes. Callers still read the row itself and evict an entry
+ * whose row has gone, so a stale mapping costs a fallback lookup, never a wrong account. Mappings
+ * are only cached once the transaction that created the rows has committed. Past its bound the
+ * openid map drops its oldest entries first.
+ */
+@Component
+public class IdentityCache {
+
+    private final LongLongMap accountIds;
+    private final ConcurrentHashMap<String, Long> customerIds = new ConcurrentHashMap<>();
+    private final Queue<String> openidOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger openidCount = new AtomicInteger();
+    private final int maxOpenids;
+    private final WalletMetrics metrics;
+
+    public IdentityCache(WalletProperties properties, WalletMetrics metrics) {
+        this.metrics = metrics;
+        this.accountIds = new LongLongMap(properties.getIdentityCache().getMaxAccounts());
+        this.maxOpenids = Math.max(1, properties.getIdentityCache().getMaxOpenids());
+    }
+
+    /**
+     * The account id of a customer, or null when not cached
+     */
+    public Long getAccountId(Long customerId) {
+        long accountId = accountIds.get(customerId);
+        if (accountId == LongLongMap.MISSING) {
+            metrics.increment("wallet.identity-cache.account.misses");
+            return null;
+        }
+        metrics.increment("wallet.identity-cache.account.hits");
+        return accountId;
+    }
+
+    public void putAccountId(Long customerId, Long accountId) {
+        accountIds.put(customerId, accountId);
+    }
+
+    /**
+     * The customer id of a WeChat openid, or null when not cached
+     */
+    public Long getCustomerId(String openid) {
+        Long customerId = customerIds.get(openid);
+        metrics.increment(customerId != null ? "wallet.identity-cache.openid.hits" : "wallet.identity-cache.openid.misses");
+        return customerId;
+    }
+
+    public void putCustomerId(String openid, Long customerId) {
+        if (customerIds.putIfAbsent(openid, customerId) != null) {
+            return;
+        }
+        openidOrder.add(openid);
+        if (openidCount.incrementAndGet() > maxOpenids) {
+            String eldest = openidOrder.poll();
+            if (eldest != null && customerIds.remove(eldest) != null) {
+                openidCount.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Run {@code put} once the current transaction commits, so rows from a rolled-back transaction
+     * are never cached; outside a transaction it runs immediately
+     */
+    public void afterCommit(Runnable put) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            put.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                put.run();
+            }
+        });
+    }
+
+    public void evictAccountId(Long customerId) {
+        accountIds.remove(customerId);
+        metrics.increment("wallet.identity-cache.evictions");
+    }
+
+    public void evictCustomerId(String openid) {
+        if (customerIds.remove(openid) != null) {
+            openidOrder.remove(openid);
+            openidCount.decrementAndGet();
+        }
+        metrics.increment("wallet.identity-cache.evictions");
+    }
+}
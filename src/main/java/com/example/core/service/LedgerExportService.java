@@ -0,0 +1,203 @@
+package com.example.core.service;
+
+import com.example.core.entity.JsonMetadataConverter;
+import com.example.core.repository.LedgerJdbcRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes a customer's full wallet history straight from a streaming result set to an output
+ * stream, one row at a time, so memory use does not grow with the size of the history.
+ */
+@Service
+public class LedgerExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(LedgerExportService.class);
+
+    private static final String CSV_HEADER = "id,account_id,type,amount,project_type,reference_no,metadata,created_at";
+
+    public enum Format {
+        CSV("text/csv", "csv"),
+        NDJSON("application/x-ndjson", "ndjson");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        public static Format parse(String value) {
+            if (value == null || value.isEmpty()) {
+                return CSV;
+            }
+            try {
+                return Format.valueOf(value.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unsupported export format: " + value);
+            }
+        }
+    }
+
+    private final LedgerJdbcRepository ledgerJdbcRepository;
+    private final ObjectMapper objectMapper;
+    private final WalletMetrics metrics;
+
+    public LedgerExportService(LedgerJdbcRepository ledgerJdbcRepository,
+                               ObjectMapper objectMapper,
+                               WalletMetrics metrics) {
+        this.ledgerJdbcRepository = ledgerJdbcRepository;
+        this.objectMapper = objectMapper;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Export every transaction of the customer in id order; returns the number of rows written.
+     * {@code out} is finished (and the gzip trailer written) but not closed.
+     */
+    public long export(Long customerId, Format format, boolean gzip, OutputStream out) throws IOException {
+        GZIPOutputStream compressed = gzip ? new GZIPOutputStream(out, 8192) : null;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(compressed != null ? compressed : out, StandardCharsets.UTF_8));
+        RowWriter rows = format == Format.NDJSON ? new NdjsonRowWriter(writer) : new CsvRowWriter(writer);
+
+        long[] written = {0};
+        try {
+            rows.begin();
+            ledgerJdbcRepository.streamTransactionsByCustomerId(customerId, rs -> {
+                try {
+                    rows.write(rs);
+                } catch (IOException e) {
+                    // Client went away; unwinding here also stops the server-side stream
+                    throw new UncheckedIOException(e);
+                }
+                written[0]++;
+            });
+            writer.flush();
+        } catch (UncheckedIOException e) {
+            log.warn("Ledger export aborted for customer {} after {} rows", customerId, written[0]);
+            throw e.getCause();
+        } finally {
+            metrics.add("wallet.export.rows", written[0]);
+        }
+
+        if (compressed != null) {
+            compressed.finish();
+        }
+        metrics.increment("wallet.export.completed");
+        return written[0];
+    }
+
+    private interface RowWriter {
+
+        void begin() throws IOException;
+
+        void write(ResultSet rs) throws SQLException, IOException;
+    }
+
+    private static final class CsvRowWriter implements RowWriter {
+        private final Writer writer;
+
+        private CsvRowWriter(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void begin() throws IOException {
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+        }
+
+        @Override
+        public void write(ResultSet rs) throws SQLException, IOException {
+            writer.write(Long.toString(rs.getLong("id")));
+            writer.write(',');
+            writer.write(Long.toString(rs.getLong("account_id")));
+            writer.write(',');
+            writer.write(rs.getString("type"));
+            writer.write(',');
+            writer.write(rs.getBigDecimal("amount").toPlainString());
+            writer.write(',');
+            writer.write(rs.getString("project_type"));
+            writer.write(',');
+            writeField(rs.getString("reference_no"));
+            writer.write(',');
+            writeField(JsonMetadataConverter.denormalize(rs.getString("metadata")));
+            writer.write(',');
+            Timestamp createdAt = rs.getTimestamp("created_at");
+            writer.write(createdAt != null ? createdAt.toLocalDateTime().toString() : "");
+            writer.write('\n');
+        }
+
+        private void writeField(String value) throws IOException {
+            if (value == null) {
+                return;
+            }
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                writer.write(value);
+                return;
+            }
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+    }
+
+    private final class NdjsonRowWriter implements RowWriter {
+        private final Writer writer;
+        private final JsonGenerator generator;
+
+        private NdjsonRowWriter(Writer writer) throws IOException {
+            this.writer = writer;
+            // The generator must not close or flush the writer per row; flushing is left to the buffer
+            this.generator = objectMapper.getFactory().createGenerator(writer)
+                    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                    .disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+        }
+
+        @Override
+        public void begin() {
+        }
+
+        @Override
+        public void write(ResultSet rs) throws SQLException, IOException {
+            generator.writeStartObject();
+            generator.writeNumberField("id", rs.getLong("id"));
+            generator.writeNumberField("accountId", rs.getLong("account_id"));
+            generator.writeStringField("type", rs.getString("type"));
+            generator.writeNumberField("amount", rs.getBigDecimal("amount"));
+            generator.writeStringField("projectType", rs.getString("project_type"));
+            generator.writeStringField("referenceNo", rs.getString("reference_no"));
+            generator.writeStringField("metadata", JsonMetadataConverter.denormalize(rs.getString("metadata")));
+            Timestamp createdAt = rs.getTimestamp("created_at");
+            generator.writeStringField("createdAt", createdAt != null ? createdAt.toLocalDateTime().toString() : null);
+            generator.writeEndObject();
+            generator.flush();
+            writer.write('\n');
+        }
+    }
+}
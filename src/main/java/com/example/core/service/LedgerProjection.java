@@ -0,0 +1,98 @@
+package com.example.core.service;
+
+import com.example.core.money.Money;
+import com.example.core.repository.LedgerSnapshot;
+
+/**
+ * In-memory balance of one account in the event-sourced ledger mode: the latest snapshot
+ * plus every transaction appended since. Callers hold the projection's monitor while they
+ * check, append and apply, so the projection never runs ahead of (or behind) the ledger.
+ */
+final class LedgerProjection {
+
+    private final Long accountId;
+    private final Long customerId;
+    private final long heldAmount;
+    private long balance;
+    private long totalRecharge;
+    private long totalSpend;
+    private long lastTransactionId;
+    private int tailLength;
+
+    LedgerProjection(LedgerSnapshot snapshot) {
+        this.accountId = snapshot.getAccountId();
+        this.customerId = snapshot.getCustomerId();
+        this.heldAmount = snapshot.getHeldAmount().getFen();
+        this.balance = snapshot.getBalance().getFen();
+        this.totalRecharge = snapshot.getTotalRecharge().getFen();
+        this.totalSpend = snapshot.getTotalSpend().getFen();
+        this.lastTransactionId = snapshot.getLastTransactionId();
+        this.tailLength = snapshot.getTailLength();
+    }
+
+    boolean canCover(Money amount) {
+        return balance - heldAmount >= amount.getFen();
+    }
+
+    void spend(Money amount, long transactionId) {
+        balance = Math.subtractExact(balance, amount.getFen());
+        totalSpend += amount.getFen();
+        appended(transactionId);
+    }
+
+    void recharge(Money paid, Money bonus, long transactionId) {
+        balance = Math.addExact(balance, paid.getFen() + bonus.getFen());
+        totalRecharge += paid.getFen();
+        appended(transactionId);
+    }
+
+    void refund(Money amount, long transactionId) {
+        balance = Math.addExact(balance, amount.getFen());
+        totalSpend -= amount.getFen();
+        appended(transactionId);
+    }
+
+    /**
+     * Credit that does not count as recharge or spend (adjustments, incoming transfers)
+     */
+    void credit(Money amount, long transactionId) {
+        balance = Math.addExact(balance, amount.getFen());
+        appended(transactionId);
+    }
+
+    /**
+     * Debit that does not count as spend (outgoing transfers)
+     */
+    void debit(Money amount, long transactionId) {
+        balance = Math.subtractExact(balance, amount.getFen());
+        appended(transactionId);
+    }
+
+    private void appended(long transactionId) {
+        lastTransactionId = Math.max(lastTransactionId, transactionId);
+        tailLength++;
+    }
+
+    LedgerSnapshot toSnapshot() {
+        return new LedgerSnapshot(accountId, customerId, Money.ofFen(balance), Money.ofFen(totalRecharge),
+                Money.ofFen(totalSpend), Money.ofFen(heldAmount), lastTransactionId, 0);
+    }
+
+    void snapshotted() {
+        tailLength = 0;
+    }
+
+    Long getAccountId() { return accountId; }
+
+    Long getCustomerId() { return customerId; }
+
+    Money getBalance() { return Money.ofFen(balance); }
+
+    Money getTotalRecharge() { return Money.ofFen(totalRecharge); }
+
+    Money getTotalSpend() { return Money.ofFen(totalSpend); }
+
+    Money getHeldAmount() { return Money.ofFen(heldAmount); }
+
+    int getTailLength() { return tailLength; }
+}
@@ -0,0 +1,147 @@
+package com.example.core.service;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Bounded open-addressing map from positive long keys to positive long values, stored in two
+ * primitive arrays (16 bytes a slot, no boxing, no entry objects). Linear probing with
+ * backward-shift deletion; key 0 marks an empty slot. Reads are lock-free optimistic reads
+ * that fall back to the read lock if a write raced them. Once {@code maxEntries} is reached
+ * the map is cleared, as {@link BalanceCache} does.
+ */
+final class LongLongMap {
+
+    static final long MISSING = 0L;
+
+    private final StampedLock lock = new StampedLock();
+    private final long[] keys;
+    private final long[] values;
+    private final int mask;
+    private final int maxEntries;
+    private int size;
+
+    LongLongMap(int maxEntries) {
+        this.maxEntries = Math.max(1, maxEntries);
+        // At most half full, so probe sequences stay short
+        int capacity = Integer.highestOneBit(Math.max(2, this.maxEntries * 2 - 1)) << 1;
+        this.keys = new long[capacity];
+        this.values = new long[capacity];
+        this.mask = capacity - 1;
+    }
+
+    long get(long key) {
+        long stamp = lock.tryOptimisticRead();
+        long value = find(key);
+        if (lock.validate(stamp)) {
+            return value;
+        }
+        stamp = lock.readLock();
+        try {
+            return find(key);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    void put(long key, long value) {
+        if (key <= 0 || value <= 0) {
+            throw new IllegalArgumentException("Keys and values must be positive");
+        }
+        long stamp = lock.writeLock();
+        try {
+            int slot = slot(key);
+            while (keys[slot] != 0) {
+                if (keys[slot] == key) {
+                    values[slot] = value;
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (size >= maxEntries) {
+                clearLocked();
+                slot = slot(key);
+            }
+            keys[slot] = key;
+            values[slot] = value;
+            size++;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    void remove(long key) {
+        long stamp = lock.writeLock();
+        try {
+            int slot = slot(key);
+            while (keys[slot] != key) {
+                if (keys[slot] == 0) {
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            // Shift later entries of the probe run back so lookups never stop at the hole early
+            int hole = slot;
+            int next = (hole + 1) & mask;
+            while (keys[next] != 0) {
+                int home = slot(keys[next]);
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    keys[hole] = keys[next];
+                    values[hole] = values[next];
+                    hole = next;
+                }
+                next = (next + 1) & mask;
+            }
+            keys[hole] = 0;
+            values[hole] = 0;
+            size--;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    void clear() {
+        long stamp = lock.writeLock();
+        try {
+            clearLocked();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    int size() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private long find(long key) {
+        int slot = slot(key);
+        // Bounded by the capacity so a torn optimistic read cannot spin forever
+        for (int probes = 0; probes <= mask; probes++) {
+            long current = keys[slot];
+            if (current == key) {
+                return values[slot];
+            }
+            if (current == 0) {
+                return MISSING;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return MISSING;
+    }
+
+    private void clearLocked() {
+        Arrays.fill(keys, 0L);
+        Arrays.fill(values, 0L);
+        size = 0;
+    }
+
+    private int slot(long key) {
+        // Fibonacci hashing spreads sequential ids over the table
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.core.service;
+
+import com.example.core.config.WalletProperties;
+import com.example.core.enums.PaymentChannel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collections;
+
+/**
+ * Snowflake-style recharge order ids: 41 bits of milliseconds since {@link #EPOCH_MS}, 10 bits of
+ * node id and 12 bits of per-millisecond sequence. Ids only grow, so recharge_orders (keyed by the
+ * id itself) takes appends at the right edge of its B-trees, and the order number is just
+ * {@code CHANNEL_<id>}: at most 30 characters, within WeChat Pay's 32-character out_trade_no.
+ */
+@Component
+public class OrderNumberGenerator {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderNumberGenerator.class);
+
+    /** 2024-01-01T00:00:00Z; 41 bits of milliseconds last until 2093 */
+    private static final long EPOCH_MS = 1704067200000L;
+
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final int TIMESTAMP_SHIFT = NODE_BITS + SEQUENCE_BITS;
+
+    /** How far the clock may step back (e.g. an NTP slew) before generation fails instead of waiting */
+    private static final long MAX_CLOCK_BACKWARDS_MS = 5000;
+
+    private final long nodeId;
+    private long lastTimestamp = -1;
+    private long sequence;
+
+    public OrderNumberGenerator(WalletProperties walletProperties) {
+        int configured = walletProperties.getOrderNumbers().getNodeId();
+        if (configured > MAX_NODE_ID) {
+            throw new IllegalArgumentException("wallet.order-numbers.node-id must be between 0 and " + MAX_NODE_ID);
+        }
+        this.nodeId = configured >= 0 ? configured : nodeIdFromAddress();
+        log.info("Order number generator using node id {}", nodeId);
+    }
+
+    public synchronized long nextId() {
+        long now = System.currentTimeMillis();
+        if (now < lastTimestamp) {
+            long behind = lastTimestamp - now;
+            if (behind > MAX_CLOCK_BACKWARDS_MS) {
+                throw new IllegalStateException("Clock moved backwards by " + behind + " ms; refusing to generate order ids");
+            }
+            now = waitUntil(lastTimestamp);
+        }
+
+        if (now == lastTimestamp) {
+            sequence = (sequence + 1) & SEQUENCE_MASK;
+            if (sequence == 0) {
+                // 4096 ids in this millisecond already
+                now = waitUntil(lastTimestamp + 1);
+            }
+        } else {
+            sequence = 0;
+        }
+        lastTimestamp = now;
+        return ((now - EPOCH_MS) << TIMESTAMP_SHIFT) | (nodeId << SEQUENCE_BITS) | sequence;
+    }
+
+    public static String orderNo(PaymentChannel channel, long id) {
+        return channel.name() + "_" + id;
+    }
+
+    /**
+     * The id embedded in an order number, or null for order numbers not issued by this generator
+     * (such as the older {@code CHANNEL_<uuid>} ones)
+     */
+    public static Long parseId(String orderNo) {
+        if (orderNo == null) {
+            return null;
+        }
+        String digits = orderNo.substring(orderNo.lastIndexOf('_') + 1);
+        if (digits.isEmpty() || digits.length() > 19) {
+            return null;
+        }
+        for (int i = 0; i < digits.length(); i++) {
+            if (!Character.isDigit(digits.charAt(i))) {
+                return null;
+            }
+        }
+        try {
+            return Long.parseLong(digits);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * When the id was issued
+     */
+    public static LocalDateTime createdAt(long id) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli((id >>> TIMESTAMP_SHIFT) + EPOCH_MS), ZoneId.systemDefault());
+    }
+
+    /**
+     * The smallest id that can be issued at or after the given time, for id-range scans by time
+     */
+    public static long firstIdAt(LocalDateTime time) {
+        long ms = time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        return Math.max(0, ms - EPOCH_MS) << TIMESTAMP_SHIFT;
+    }
+
+    private static long waitUntil(long timestamp) {
+        long now = System.currentTimeMillis();
+        while (now < timestamp) {
+            Thread.onSpinWait();
+            now = System.currentTimeMillis();
+        }
+        return now;
+    }
+
+    /**
+     * Low bits of the first site-local IPv4 address: distinct per pod/host within a /22, which is
+     * what a node gets when no id is configured. Set wallet.order-numbers.node-id when that does not hold.
+     * Fails when there is no such address, since falling back to a fixed id would let nodes collide.
+     */
+    private static int nodeIdFromAddress() {
+        try {
+            for (NetworkInterface nic : Collections.list(NetworkInterface.getNetworkInterfaces())) {
+                if (nic.isLoopback() || !nic.isUp()) {
+                    continue;
+                }
+                for (InetAddress address : Collections.list(nic.getInetAddresses())) {
+                    if (address instanceof Inet4Address && address.isSiteLocalAddress()) {
+                        byte[] bytes = address.getAddress();
+                        return ((bytes[2] & 0xFF) << 8 | (bytes[3] & 0xFF)) & MAX_NODE_ID;
+                    }
+                }
+            }
+        } catch (SocketException e) {
+            throw new IllegalStateException("Could not read network interfaces to derive the order number node id; " +
+                    "set wallet.order-numbers.node-id", e);
+        }
+        throw new IllegalStateException("No site-local IPv4 address to derive the order number node id from; " +
+                "set wallet.order-numbers.node-id");
+    }
+}
@@ -0,0 +1,283 @@
+package com.example.core.service;
+
+import com.example.core.config.WalletProperties;
+import com.example.core.dto.RefundReportDTO;
+import com.example.core.enums.TransactionType;
+import com.example.core.money.Money;
+import com.example.core.repository.AccountBalanceRow;
+import com.example.core.repository.LedgerEntry;
+import com.example.core.repository.LedgerJdbcRepository;
+import com.example.core.repository.RefundableSpend;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Applies refunds of earlier spends in bulk. Instructions are grouped by account and packed
+ * into batches of whole accounts; each batch is one transaction that locks its accounts,
+ * re-reads what is still refundable and appends REFUND rows linked to the original spend.
+ * A refund reference is applied at most once, however often it is submitted.
+ */
+@Component
+public class RefundEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(RefundEngine.class);
+
+    private final LedgerJdbcRepository ledgerJdbcRepository;
+    private final EventSourcedLedger eventSourcedLedger;
+    private final BalanceCache balanceCache;
+    private final WalletMetrics metrics;
+    private final WalletProperties.Refunds properties;
+    private final TransactionTemplate requiresNewTx;
+
+    public RefundEngine(LedgerJdbcRepository ledgerJdbcRepository,
+                        EventSourcedLedger eventSourcedLedger,
+                        BalanceCache balanceCache,
+                        WalletMetrics metrics,
+                        WalletProperties walletProperties,
+                        PlatformTransactionManager transactionManager) {
+        this.ledgerJdbcRepository = ledgerJdbcRepository;
+        this.eventSourcedLedger = eventSourcedLedger;
+        this.balanceCache = balanceCache;
+        this.metrics = metrics;
+        this.properties = walletProperties.getRefunds();
+
+        this.requiresNewTx = new TransactionTemplate(transactionManager);
+        this.requiresNewTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public RefundReportDTO refund(List<WalletService.RefundInstruction> instructions) {
+        long started = System.nanoTime();
+        RefundReportDTO report = new RefundReportDTO(instructions.size());
+
+        Map<String, WalletService.RefundInstruction> unique = new LinkedHashMap<>();
+        for (WalletService.RefundInstruction instruction : instructions) {
+            String invalid = validate(instruction);
+            if (invalid != null) {
+                fail(report, instruction, null, invalid);
+            } else if (unique.putIfAbsent(instruction.getRefundReferenceNo(), instruction) != null) {
+                report.setDuplicates(report.getDuplicates() + 1);
+            }
+        }
+
+        // Locate the original spends up front only to learn their accounts; amounts are re-read under lock
+        Map<String, RefundableSpend> spends = new HashMap<>();
+        List<String> spendReferenceNos = new ArrayList<>(new LinkedHashSet<>(
+                unique.values().stream().map(WalletService.RefundInstruction::getSpendReferenceNo).toList()));
+        for (int i = 0; i < spendReferenceNos.size(); i += properties.getBatchSize()) {
+            spends.putAll(ledgerJdbcRepository.findRefundableSpends(
+                    spendReferenceNos.subList(i, Math.min(i + properties.getBatchSize(), spendReferenceNos.size()))));
+        }
+
+        Map<Long, List<WalletService.RefundInstruction>> byCustomer = new LinkedHashMap<>();
+        for (WalletService.RefundInstruction instruction : unique.values()) {
+            RefundableSpend spend = spends.get(instruction.getSpendReferenceNo());
+            if (spend == null) {
+                fail(report, instruction, null, "Original spend not found");
+                continue;
+            }
+            byCustomer.computeIfAbsent(spend.getCustomerId(), id -> new ArrayList<>()).add(instruction);
+        }
+
+        Map<Long, List<WalletService.RefundInstruction>> batch = new LinkedHashMap<>();
+        int batchSize = 0;
+        for (Map.Entry<Long, List<WalletService.RefundInstruction>> customer : byCustomer.entrySet()) {
+            if (batchSize > 0 && batchSize + customer.getValue().size() > properties.getBatchSize()) {
+                applyBatch(report, batch);
+                batch = new LinkedHashMap<>();
+                batchSize = 0;
+            }
+            batch.put(customer.getKey(), customer.getValue());
+            batchSize += customer.getValue().size();
+        }
+        if (!batch.isEmpty()) {
+            applyBatch(report, batch);
+        }
+
+        report.setElapsedMs((System.nanoTime() - started) / 1_000_000);
+        metrics.add("wallet.refunds.applied", report.getRefunded());
+        metrics.add("wallet.refunds.duplicates", report.getDuplicates());
+        metrics.add("wallet.refunds.failed", report.getFailed());
+        return report;
+    }
+
+    private void applyBatch(RefundReportDTO report, Map<Long, List<WalletService.RefundInstruction>> byCustomer) {
+        long started = System.nanoTime();
+        int instructions = byCustomer.values().stream().mapToInt(List::size).sum();
+        RefundReportDTO.Batch batch = new RefundReportDTO.Batch(report.getBatches().size(), byCustomer.size(), instructions);
+        report.getBatches().add(batch);
+
+        BatchPlan result = new BatchPlan();
+        if (eventSourcedLedger.isActive()) {
+            // Appends are serialized per customer by its projection, so each customer commits on its own
+            for (Map.Entry<Long, List<WalletService.RefundInstruction>> customer : byCustomer.entrySet()) {
+                Map<Long, List<WalletService.RefundInstruction>> single = Map.of(customer.getKey(), customer.getValue());
+                result.merge(attempt(batch, single, () -> applyEventSourced(customer.getKey(), single, batch.getIndex())));
+            }
+        } else {
+            result.merge(attempt(batch, byCustomer, () -> applyInPlace(byCustomer, batch.getIndex())));
+            for (Long customerId : byCustomer.keySet()) {
+                balanceCache.evict(customerId);
+            }
+        }
+
+        for (LedgerEntry entry : result.entries) {
+            report.setRefundedAmount(report.getRefundedAmount().add(entry.getAmount()));
+        }
+        long elapsed = System.nanoTime() - started;
+        batch.setRefunded(result.entries.size());
+        batch.setDuplicates(result.duplicates);
+        batch.setFailed(result.failures.size());
+        batch.setElapsedMs(elapsed / 1_000_000);
+        batch.setRefundsPerSecond(result.entries.size() * 1_000_000_000.0 / Math.max(1, elapsed));
+
+        report.setRefunded(report.getRefunded() + result.entries.size());
+        report.setDuplicates(report.getDuplicates() + result.duplicates);
+        report.setFailed(report.getFailed() + result.failures.size());
+        report.getFailures().addAll(result.failures);
+    }
+
+    private BatchPlan attempt(RefundReportDTO.Batch batch, Map<Long, List<WalletService.RefundInstruction>> byCustomer,
+                              Supplier<BatchPlan> work) {
+        try {
+            return work.get();
+        } catch (RuntimeException e) {
+            // Rolled back as a whole, so every instruction in it is reported as failed
+            log.warn("Refund batch {} failed: {}", batch.getIndex(), e.getMessage());
+            BatchPlan failed = new BatchPlan();
+            for (List<WalletService.RefundInstruction> instructions : byCustomer.values()) {
+                for (WalletService.RefundInstruction instruction : instructions) {
+                    failed.failures.add(failure(instruction, batch.getIndex(), "Batch failed: " + e.getMessage()));
+                }
+            }
+            return failed;
+        }
+    }
+
+    private BatchPlan applyInPlace(Map<Long, List<WalletService.RefundInstruction>> byCustomer, int batchIndex) {
+        return requiresNewTx.execute(status -> {
+            Map<Long, AccountBalanceRow> accounts = ledgerJdbcRepository.lockAccountsByCustomerIds(byCustomer.keySet());
+            BatchPlan plan = plan(byCustomer, batchIndex);
+            for (LedgerEntry entry : plan.entries) {
+                accounts.get(entry.getCustomerId()).refund(Money.of(entry.getAmount()));
+            }
+            ledgerJdbcRepository.applyBalanceDeltas(accounts.values());
+            ledgerJdbcRepository.insertTransactions(plan.entries);
+            return plan;
+        });
+    }
+
+    private BatchPlan applyEventSourced(Long customerId, Map<Long, List<WalletService.RefundInstruction>> byCustomer,
+                                        int batchIndex) {
+        return eventSourcedLedger.appendLocked(customerId, projection -> {
+            long[] lastId = {0};
+            BatchPlan plan = requiresNewTx.execute(status -> {
+                BatchPlan planned = plan(byCustomer, batchIndex);
+                for (Long id : ledgerJdbcRepository.insertTransactions(planned.entries)) {
+                    lastId[0] = Math.max(lastId[0], id);
+                }
+                return planned;
+            });
+            for (LedgerEntry entry : plan.entries) {
+                projection.refund(Money.of(entry.getAmount()), lastId[0]);
+            }
+            return plan;
+        });
+    }
+
+    /**
+     * Decide which instructions can be applied against what is refundable right now; must run in
+     * the batch transaction, after its accounts are locked (or under the customer's projection)
+     */
+    private BatchPlan plan(Map<Long, List<WalletService.RefundInstruction>> byCustomer, int batchIndex) {
+        List<String> refundReferenceNos = new ArrayList<>();
+        Set<String> spendReferenceNos = new LinkedHashSet<>();
+        for (List<WalletService.RefundInstruction> instructions : byCustomer.values()) {
+            for (WalletService.RefundInstruction instruction : instructions) {
+                refundReferenceNos.add(instruction.getRefundReferenceNo());
+                spendReferenceNos.add(instruction.getSpendReferenceNo());
+            }
+        }
+        Set<String> alreadyRefunded = ledgerJdbcRepository.findExistingReferenceNos(TransactionType.REFUND, refundReferenceNos);
+        Map<String, RefundableSpend> spends = ledgerJdbcRepository.findRefundableSpends(spendReferenceNos);
+
+        BatchPlan plan = new BatchPlan();
+        Map<Long, Money> remaining = new HashMap<>();
+        for (List<WalletService.RefundInstruction> instructions : byCustomer.values()) {
+            for (WalletService.RefundInstruction instruction : instructions) {
+                if (alreadyRefunded.contains(instruction.getRefundReferenceNo())) {
+                    plan.duplicates++;
+                    continue;
+                }
+                RefundableSpend spend = spends.get(instruction.getSpendReferenceNo());
+                Money refundable = remaining.computeIfAbsent(spend.getId(), id -> spend.getRefundable());
+                Money amount = instruction.getAmount() != null ? Money.of(instruction.getAmount()) : refundable;
+                if (!refundable.isPositive()) {
+                    plan.failures.add(failure(instruction, batchIndex, "Spend already fully refunded"));
+                    continue;
+                }
+                if (refundable.isLessThan(amount)) {
+                    plan.failures.add(failure(instruction, batchIndex, "Refund exceeds refundable amount " + refundable));
+                    continue;
+                }
+                remaining.put(spend.getId(), refundable.minus(amount));
+                plan.entries.add(new LedgerEntry(spend.getCustomerId(), spend.getAccountId(), TransactionType.REFUND,
+                        amount.toBigDecimal(), spend.getProjectType(), instruction.getRefundReferenceNo(),
+                        instruction.getMetadata(), spend.getId()));
+            }
+        }
+        return plan;
+    }
+
+    private static String validate(WalletService.RefundInstruction instruction) {
+        if (instruction.getRefundReferenceNo() == null || instruction.getRefundReferenceNo().isEmpty()) {
+            return "refundReferenceNo is required";
+        }
+        if (instruction.getSpendReferenceNo() == null || instruction.getSpendReferenceNo().isEmpty()) {
+            return "spendReferenceNo is required";
+        }
+        if (instruction.getAmount() != null) {
+            try {
+                if (!Money.of(instruction.getAmount()).isPositive()) {
+                    return "Amount must be positive";
+                }
+            } catch (IllegalArgumentException e) {
+                return e.getMessage();
+            }
+        }
+        return null;
+    }
+
+    private static void fail(RefundReportDTO report, WalletService.RefundInstruction instruction, Integer batch, String reason) {
+        report.setFailed(report.getFailed() + 1);
+        report.getFailures().add(failure(instruction, batch, reason));
+    }
+
+    private static RefundReportDTO.Failure failure(WalletService.RefundInstruction instruction, Integer batch, String reason) {
+        return new RefundReportDTO.Failure(instruction.getRefundReferenceNo(), instruction.getSpendReferenceNo(), batch, reason);
+    }
+
+    private static final class BatchPlan {
+        private final List<LedgerEntry> entries = new ArrayList<>();
+        private final List<RefundReportDTO.Failure> failures = new ArrayList<>();
+        private int duplicates;
+
+        private void merge(BatchPlan other) {
+            entries.addAll(other.entries);
+            failures.addAll(other.failures);
+            duplicates += other.duplicates;
+        }
+    }
+}
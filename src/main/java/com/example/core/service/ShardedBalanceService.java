@@ -0,0 +1,339 @@
+package com.example.core.service;
+
+import com.example.core.config.WalletProperties;
+import com.example.core.dto.AccountDTO;
+import com.example.core.entity.Account;
+import com.example.core.entity.AccountShard;
+import com.example.core.entity.Transaction;
+import com.example.core.enums.DeductEngine;
+import com.example.core.enums.ProjectType;
+import com.example.core.enums.TransactionType;
+import com.example.core.exception.InsufficientBalanceException;
+import com.example.core.money.Money;
+import com.example.core.repository.AccountBalanceView;
+import com.example.core.repository.AccountRepository;
+import com.example.core.repository.AccountShardRepository;
+import com.example.core.repository.CustomerRepository;
+import com.example.core.repository.LedgerEntry;
+import com.example.core.repository.LedgerJdbcRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Opt-in sharded balances for very hot accounts. The balance of a sharded account is split
+ * over {@code account_shards} rows: a spend debits one shard that covers it (locking all
+ * shards only when none does), a credit goes to the emptiest shard, and the reported
+ * balance is the accounts row plus the shards. The accounts row keeps only what active
+ * holds reserve; a background job sweeps anything else into the shards and evens them
+ * out when one runs low.
+ */
+@Service
+public class ShardedBalanceService {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardedBalanceService.class);
+
+    private static final int LOCK_RETRY = 3;
+
+    private final AccountRepository accountRepository;
+    private final AccountShardRepository accountShardRepository;
+    private final CustomerRepository customerRepository;
+    private final LedgerJdbcRepository ledgerJdbcRepository;
+    private final AccountLanes accountLanes;
+    private final BalanceCache balanceCache;
+    private final WalletMetrics metrics;
+    private final WalletProperties.Shards properties;
+    private final boolean eventSourced;
+    private final TransactionTemplate requiresNewTx;
+
+    private final Set<Long> shardedCustomers = ConcurrentHashMap.newKeySet();
+    private ScheduledExecutorService scheduler;
+
+    public ShardedBalanceService(AccountRepository accountRepository,
+                                 AccountShardRepository accountShardRepository,
+                                 CustomerRepository customerRepository,
+                                 LedgerJdbcRepository ledgerJdbcRepository,
+                                 AccountLanes accountLanes,
+                                 BalanceCache balanceCache,
+                                 WalletMetrics metrics,
+                                 WalletProperties walletProperties,
+                                 PlatformTransactionManager transactionManager) {
+        this.accountRepository = accountRepository;
+        this.accountShardRepository = accountShardRepository;
+        this.customerRepository = customerRepository;
+        this.ledgerJdbcRepository = ledgerJdbcRepository;
+        this.accountLanes = accountLanes;
+        this.balanceCache = balanceCache;
+        this.metrics = metrics;
+        this.properties = walletProperties.getShards();
+        this.eventSourced = walletProperties.getDeduct().getEngine() == DeductEngine.EVENT_SOURCED;
+
+        this.requiresNewTx = new TransactionTemplate(transactionManager);
+        this.requiresNewTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @PostConstruct
+    void start() {
+        refresh();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "wallet-shard-rebalancer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::rebalanceAll, properties.getRebalanceIntervalMs(),
+                properties.getRebalanceIntervalMs(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    public boolean isSharded(Long customerId) {
+        return shardedCustomers.contains(customerId);
+    }
+
+    /**
+     * Re-read one customer's mode after the unsharded path failed; another node may have sharded it
+     */
+    public boolean recheck(Long customerId) {
+        boolean sharded = accountRepository.findByCustomerId(customerId).map(Account::isSharded).orElse(false);
+        if (sharded) {
+            shardedCustomers.add(customerId);
+        }
+        return sharded;
+    }
+
+    void refresh() {
+        Set<Long> current = new HashSet<>(accountRepository.findShardedCustomerIds());
+        shardedCustomers.addAll(current);
+        shardedCustomers.retainAll(current);
+    }
+
+    /**
+     * Split an account's unreserved balance evenly over {@code shardCount} new shards
+     */
+    public void enable(Long customerId, int shardCount) {
+        if (eventSourced) {
+            throw new IllegalStateException("Sharding is not supported with the event-sourced ledger");
+        }
+        if (shardCount < 2 || shardCount > properties.getMaxShards()) {
+            throw new IllegalArgumentException("Shard count must be between 2 and " + properties.getMaxShards());
+        }
+
+        accountLanes.run(customerId, () -> requiresNewTx.execute(status -> {
+            Account account = accountRepository.findByCustomerId(customerId)
+                    .orElseThrow(() -> new IllegalArgumentException("Account not found"));
+            if (account.isSharded()) {
+                throw new IllegalStateException("Account is already sharded");
+            }
+
+            long movable = Math.max(0, account.getBalanceMoney().getFen() - account.getHeldAmountMoney().getFen());
+            List<AccountShard> shards = new ArrayList<>(shardCount);
+            for (int shardNo = 0; shardNo < shardCount; shardNo++) {
+                shards.add(new AccountShard(account, shardNo, Money.ofFen(evenShare(movable, shardCount, shardNo))));
+            }
+            accountShardRepository.saveAll(shards);
+
+            account.moveToShards(Money.ofFen(movable), shardCount);
+            return accountRepository.save(account);
+        }));
+
+        shardedCustomers.add(customerId);
+        balanceCache.evict(customerId);
+        metrics.increment("wallet.shards.enabled");
+    }
+
+    /**
+     * Spend from a sharded account in its own transaction
+     */
+    public Transaction deduct(Long customerId, Money amount, ProjectType projectType, String metadata, String referenceNo) {
+        BigDecimal decimal = amount.toBigDecimal();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                Transaction transaction = requiresNewTx.execute(status -> {
+                    AccountBalanceView view = accountRepository.findBalanceViewByCustomerId(customerId).orElse(null);
+                    if (view == null) {
+                        if (!customerRepository.existsById(customerId)) {
+                            throw new IllegalArgumentException("Customer not found");
+                        }
+                        throw new InsufficientBalanceException("Insufficient balance");
+                    }
+
+                    debit(view.getId(), amount);
+                    long transactionId = ledgerJdbcRepository.insertTransaction(new LedgerEntry(customerId, view.getId(),
+                            TransactionType.SPEND, decimal, projectType, referenceNo, metadata));
+                    return DetachedLedger.transaction(customerId, view.getId(), totalBalance(view), transactionId,
+                            TransactionType.SPEND, decimal, projectType, metadata, referenceNo);
+                });
+                balanceCache.evict(customerId);
+                return transaction;
+            } catch (PessimisticLockingFailureException e) {
+                // A single-shard probe and a multi-shard spend can lock shards in different orders
+                metrics.increment("wallet.shards.lock-retries");
+                if (attempt >= LOCK_RETRY) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Debit a sharded account inside the caller's transaction; throws when the shards together do not cover it
+     */
+    public void debit(Long accountId, Money amount) {
+        List<AccountShardRepository.ShardBalanceView> shards = accountShardRepository.findBalanceViewsByAccountId(accountId);
+        if (shards.isEmpty()) {
+            throw new IllegalStateException("Account is not sharded");
+        }
+
+        BigDecimal decimal = amount.toBigDecimal();
+        int start = ThreadLocalRandom.current().nextInt(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            AccountShardRepository.ShardBalanceView shard = shards.get((start + i) % shards.size());
+            if (Money.of(shard.getBalance()).isGreaterThanOrEqualTo(amount)
+                    && accountShardRepository.debitIfSufficient(accountId, shard.getShardNo(), decimal) == 1) {
+                metrics.increment("wallet.shards.single-shard-debits");
+                return;
+            }
+        }
+
+        // No single shard covers it: lock them all and take it across several
+        List<AccountShard> locked = accountShardRepository.lockByAccountId(accountId);
+        long available = 0;
+        for (AccountShard shard : locked) {
+            available += shard.getBalanceMoney().getFen();
+        }
+        if (available < amount.getFen()) {
+            throw new InsufficientBalanceException("Insufficient balance");
+        }
+
+        long remaining = amount.getFen();
+        for (AccountShard shard : locked) {
+            long take = Math.min(remaining, shard.getBalanceMoney().getFen());
+            if (take > 0) {
+                shard.debit(Money.ofFen(take));
+                remaining -= take;
+            }
+            if (remaining == 0) {
+                break;
+            }
+        }
+        metrics.increment("wallet.shards.multi-shard-debits");
+    }
+
+    /**
+     * Credit a sharded account inside the caller's transaction, on its emptiest shard
+     */
+    public void credit(Long accountId, Money paid, Money bonus) {
+        List<AccountShardRepository.ShardBalanceView> shards = accountShardRepository.findBalanceViewsByAccountId(accountId);
+        if (shards.isEmpty()) {
+            throw new IllegalStateException("Account is not sharded");
+        }
+
+        AccountShardRepository.ShardBalanceView target = shards.get(0);
+        for (AccountShardRepository.ShardBalanceView shard : shards) {
+            if (shard.getBalance().compareTo(target.getBalance()) < 0) {
+                target = shard;
+            }
+        }
+        accountShardRepository.credit(accountId, target.getShardNo(), paid.plus(bonus).toBigDecimal(), paid.toBigDecimal());
+    }
+
+    /**
+     * Reported balance of a sharded account: the accounts row plus all shards
+     */
+    public BigDecimal totalBalance(AccountBalanceView view) {
+        return view.getBalance().add(accountShardRepository.sumByAccountId(view.getId()).getBalance());
+    }
+
+    /**
+     * Add the shard columns into a DTO mapped from the accounts row
+     */
+    public void applyShardTotals(AccountDTO dto) {
+        AccountShardRepository.ShardTotalsView totals = accountShardRepository.sumByAccountId(dto.getId());
+        dto.setBalance(dto.getBalance().add(totals.getBalance()));
+        dto.setTotalRecharge(dto.getTotalRecharge().add(totals.getTotalRecharge()));
+        dto.setTotalSpend(dto.getTotalSpend().add(totals.getTotalSpend()));
+        dto.setAvailableBalance(dto.getBalance().subtract(dto.getHeldAmount()));
+    }
+
+    void rebalanceAll() {
+        try {
+            refresh();
+            for (Long customerId : shardedCustomers) {
+                if (rebalance(customerId)) {
+                    balanceCache.evict(customerId);
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("Shard rebalance failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Sweep unreserved balance off the accounts row into the shards and spread the shards
+     * evenly if one has fallen below the configured share; returns whether anything moved
+     */
+    public boolean rebalance(Long customerId) {
+        Boolean moved = requiresNewTx.execute(status -> {
+            AccountBalanceView view = accountRepository.findBalanceViewByCustomerId(customerId).orElse(null);
+            if (view == null) {
+                return false;
+            }
+            List<AccountShard> shards = accountShardRepository.lockByAccountId(view.getId());
+            if (shards.isEmpty()) {
+                return false;
+            }
+
+            long swept = Math.max(0, Money.of(view.getBalance()).getFen() - Money.of(view.getHeldAmount()).getFen());
+            if (swept > 0 && accountRepository.withdrawAvailable(view.getId(), Money.ofFen(swept).toBigDecimal()) == 0) {
+                swept = 0;
+            }
+
+            long total = swept;
+            long lowest = Long.MAX_VALUE;
+            for (AccountShard shard : shards) {
+                total += shard.getBalanceMoney().getFen();
+                lowest = Math.min(lowest, shard.getBalanceMoney().getFen());
+            }
+            if (swept == 0 && lowest >= total / shards.size() * properties.getRebalanceThreshold()) {
+                return false;
+            }
+
+            for (AccountShard shard : shards) {
+                shard.setBalanceMoney(Money.ofFen(evenShare(total, shards.size(), shard.getShardNo())));
+            }
+            return true;
+        });
+
+        if (Boolean.TRUE.equals(moved)) {
+            metrics.increment("wallet.shards.rebalances");
+            return true;
+        }
+        return false;
+    }
+
+    private static long evenShare(long total, int shardCount, int shardNo) {
+        return total / shardCount + (shardNo < total % shardCount ? 1 : 0);
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.core.service;
+
+import com.example.core.config.WalletProperties;
+import com.example.core.enums.ProjectType;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded cache of recently applied SPEND reference numbers. Sits in front of
+ * {@code TransactionRepository.findByTypeAndReferenceNo} so client retries are answered
+ * from memory; the oldest entries are evicted first once the bound is reached.
+ */
+@Component
+public class SpendReferenceCache {
+
+    private final ConcurrentHashMap<String, SpendReceipt> receipts = new ConcurrentHashMap<>();
+    private final Queue<String> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final int maxSize;
+
+    public SpendReferenceCache(WalletProperties properties) {
+        this.maxSize = Math.max(1, properties.getIdempotency().getCacheSize());
+    }
+
+    public SpendReceipt get(String referenceNo) {
+        return receipts.get(referenceNo);
+    }
+
+    public void put(String referenceNo, SpendReceipt receipt) {
+        if (receipts.putIfAbsent(referenceNo, receipt) != null) {
+            return;
+        }
+        insertionOrder.add(referenceNo);
+        if (size.incrementAndGet() > maxSize) {
+            String eldest = insertionOrder.poll();
+            if (eldest != null && receipts.remove(eldest) != null) {
+                size.decrementAndGet();
+            }
+        }
+    }
+
+    public void evict(String referenceNo) {
+        if (receipts.remove(referenceNo) != null) {
+            insertionOrder.remove(referenceNo);
+            size.decrementAndGet();
+        }
+    }
+
+    /**
+     * What is needed to answer a replayed deduct without touching the database row again
+     */
+    public static final class SpendReceipt {
+        private final Long transactionId;
+        private final Long customerId;
+        private final Long accountId;
+        private final BigDecimal amount;
+        private final ProjectType projectType;
+        private final String metadata;
+
+        public SpendReceipt(Long transactionId, Long customerId, Long accountId, BigDecimal amount,
+                            ProjectType projectType, String metadata) {
+            this.transactionId = transactionId;
+            this.customerId = customerId;
+            this.accountId = accountId;
+            this.amount = amount;
+            this.projectType = projectType;
+            this.metadata = metadata;
+        }
+
+        public Long getTransactionId() {
+            return transactionId;
+        }
+
+        public Long getCustomerId() {
+            return customerId;
+        }
+
+        public Long getAccountId() {
+            return accountId;
+        }
+
+        public BigDecimal getAmount() {
+            return amount;
+        }
+
+        public ProjectType getProjectType() {
+            return projectType;
+        }
+
+        public String getMetadata() {
+            return metadata;
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package com.example.core.service;
+
+import com.example.core.config.WalletProperties;
+import com.example.core.dto.StatementDTO;
+import com.example.core.dto.StatementRunDTO;
+import com.example.core.enums.ProjectType;
+import com.example.core.enums.TransactionType;
+import com.example.core.money.Money;
+import com.example.core.repository.AccountBalanceRow;
+import com.example.core.repository.BalanceCheckpointJdbcRepository;
+import com.example.core.repository.StatementJdbcRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Generates the monthly wallet statements. The customer id space is cut into fixed ranges built in
+ * parallel: each range reads its opening balances from the balance checkpoints, streams the month's
+ * transactions in one scan ordered by customer, and writes its statements as one batch in the
+ * transaction that records the range as done. An interrupted run resumes with the ranges it has not
+ * recorded. A month is only generated once {@code settle-delay-ms} has passed after it ended.
+ */
+@Component
+public class StatementJob {
+
+    private static final Logger log = LoggerFactory.getLogger(StatementJob.class);
+
+    private final StatementJdbcRepository statementRepository;
+    private final BalanceCheckpointJdbcRepository checkpointRepository;
+    private final WalletMetrics metrics;
+    private final WalletProperties.Statements properties;
+    private final TransactionTemplate requiresNewTx;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private ScheduledExecutorService scheduler;
+
+    public StatementJob(StatementJdbcRepository statementRepository,
+                        BalanceCheckpointJdbcRepository checkpointRepository,
+                        WalletMetrics metrics,
+                        WalletProperties walletProperties,
+                        PlatformTransactionManager transactionManager) {
+        this.statementRepository = statementRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.metrics = metrics;
+        this.properties = walletProperties.getStatements();
+
+        this.requiresNewTx = new TransactionTemplate(transactionManager);
+        this.requiresNewTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @PostConstruct
+    void start() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "wallet-statements");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::run, properties.getIntervalMs(), properties.getIntervalMs(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private void run() {
+        try {
+            YearMonth due = YearMonth.from(LocalDateTime.now().minusNanos(properties.getSettleDelayMs() * 1_000_000)).minusMonths(1);
+            StatementRunDTO run = statementRepository.findRun(due.atDay(1));
+            if (run == null || !"COMPLETED".equals(run.getStatus())) {
+                generate(due);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Statement run failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Generate the statements of a past month, skipping ranges an earlier run already wrote, and return the run
+     */
+    public StatementRunDTO generate(YearMonth month) {
+        if (!month.isBefore(YearMonth.now())) {
+            throw new IllegalArgumentException("Statements can only be generated for past months");
+        }
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("Statement generation already running");
+        }
+        try {
+            return doGenerate(month);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    public StatementRunDTO getRun(YearMonth month) {
+        StatementRunDTO run = statementRepository.findRun(month.atDay(1));
+        if (run == null) {
+            throw new IllegalArgumentException("Statement run not found");
+        }
+        return run;
+    }
+
+    private StatementRunDTO doGenerate(YearMonth month) {
+        LocalDate periodStart = month.atDay(1);
+        long started = System.nanoTime();
+        StatementRunDTO run = statementRepository.startRun(periodStart, statementRepository.findMaxCustomerId(), properties.getRangeSize());
+        if ("COMPLETED".equals(run.getStatus())) {
+            return run;
+        }
+
+        // Cut with the run's recorded bound and size, so a resumed run lines up with the ranges already done
+        Set<Long> completed = statementRepository.findCompletedRangeStarts(periodStart);
+        List<Callable<Integer>> ranges = new ArrayList<>();
+        for (long start = 1; start <= run.getMaxCustomerId(); start += run.getRangeSize()) {
+            if (completed.contains(start)) {
+                continue;
+            }
+            long from = start;
+            long to = Math.min(start + run.getRangeSize() - 1, run.getMaxCustomerId());
+            ranges.add(() -> requiresNewTx.execute(status -> generateRange(month, from, to)));
+        }
+
+        int failed = 0;
+        long written = 0;
+        if (!ranges.isEmpty()) {
+            ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(properties.getConcurrency(), ranges.size())));
+            try {
+                for (Future<Integer> range : pool.invokeAll(ranges)) {
+                    try {
+                        written += range.get();
+                    } catch (ExecutionException e) {
+                        failed++;
+                        log.warn("Statement range failed: {}", e.getCause().getMessage());
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while generating statements", e);
+            } finally {
+                pool.shutdown();
+            }
+        }
+
+        if (failed > 0) {
+            // Left RUNNING; the next run picks up the failed ranges only
+            metrics.add("wallet.statements.failed_ranges", failed);
+            log.warn("Statements for {} left {} ranges unwritten", month, failed);
+        } else {
+            statementRepository.finishRun(periodStart);
+        }
+        metrics.add("wallet.statements.written", written);
+        log.info("Statements for {}: {} ranges ({} already done), {} statements written in {} ms", month,
+                ranges.size(), completed.size(), written, (System.nanoTime() - started) / 1_000_000);
+        return statementRepository.findRun(periodStart);
+    }
+
+    /**
+     * Build and write the statements of customers {@code from..to}; returns how many were written
+     * (0 when another node recorded the range first)
+     */
+    private int generateRange(YearMonth month, long from, long to) {
+        LocalDateTime monthStart = month.atDay(1).atStartOfDay();
+        LocalDateTime monthEnd = month.plusMonths(1).atDay(1).atStartOfDay();
+
+        // Read before the scan: the streamed result set holds the connection until its last row
+        Map<Long, AccountBalanceRow> openings = checkpointRepository.balancesAt(from, to, monthStart);
+
+        List<StatementDTO> statements = new ArrayList<>();
+        StatementBuilder[] current = new StatementBuilder[1];
+        statementRepository.streamRange(from, to, monthStart, monthEnd, rs -> {
+            long customerId = rs.getLong("customer_id");
+            if (current[0] == null || current[0].customerId != customerId) {
+                if (current[0] != null) {
+                    statements.add(current[0].build(month));
+                }
+                AccountBalanceRow opening = openings.get(customerId);
+                current[0] = new StatementBuilder(customerId, rs.getLong("account_id"),
+                        opening != null ? opening.getBalance() : Money.ZERO);
+            }
+            current[0].add(TransactionType.valueOf(rs.getString("type")), ProjectType.valueOf(rs.getString("project_type")),
+                    Money.of(rs.getBigDecimal("amount")), Money.of(rs.getBigDecimal("bonus")));
+        });
+        if (current[0] != null) {
+            statements.add(current[0].build(month));
+        }
+
+        return statementRepository.recordRange(month.atDay(1), from, to, statements) ? statements.size() : 0;
+    }
+
+    /**
+     * Running totals of one customer's month, kept in fen while the scan passes over their rows
+     */
+    private static final class StatementBuilder {
+        private final long customerId;
+        private final long accountId;
+        private final Money opening;
+        private long recharge;
+        private long bonus;
+        private long spend;
+        private long refund;
+        private long adjustment;
+        private long transferIn;
+        private long transferOut;
+        private int count;
+        private final long[] spendByProject = new long[ProjectType.values().length];
+
+        StatementBuilder(long customerId, long accountId, Money opening) {
+            this.customerId = customerId;
+            this.accountId = accountId;
+            this.opening = opening;
+        }
+
+        void add(TransactionType type, ProjectType projectType, Money amount, Money bonusAmount) {
+            count++;
+            switch (type) {
+                case RECHARGE -> {
+                    recharge += amount.getFen();
+                    bonus += bonusAmount.getFen();
+                }
+                case SPEND -> {
+                    spend += amount.getFen();
+                    spendByProject[projectType.ordinal()] += amount.getFen();
+                }
+                case REFUND -> refund += amount.getFen();
+                // Adjustments are signed
+                case ADJUSTMENT -> adjustment += amount.getFen();
+                case TRANSFER_IN -> transferIn += amount.getFen();
+                case TRANSFER_OUT -> transferOut += amount.getFen();
+            }
+        }
+
+        StatementDTO build(YearMonth month) {
+            StatementDTO statement = new StatementDTO(customerId, accountId, month.atDay(1), opening.toBigDecimal());
+            statement.setRechargeAmount(Money.ofFen(recharge).toBigDecimal());
+            statement.setBonusAmount(Money.ofFen(bonus).toBigDecimal());
+            statement.setSpendAmount(Money.ofFen(spend).toBigDecimal());
+            statement.setRefundAmount(Money.ofFen(refund).toBigDecimal());
+            statement.setAdjustmentAmount(Money.ofFen(adjustment).toBigDecimal());
+            statement.setTransferInAmount(Money.ofFen(transferIn).toBigDecimal());
+            statement.setTransferOutAmount(Money.ofFen(transferOut).toBigDecimal());
+            long closing = opening.getFen() + recharge + bonus - spend + refund + adjustment + transferIn - transferOut;
+            statement.setClosingBalance(Money.ofFen(closing).toBigDecimal());
+            statement.setTransactionCount(count);
+
+            Map<ProjectType, BigDecimal> spends = new EnumMap<>(ProjectType.class);
+            for (ProjectType projectType : ProjectType.values()) {
+                if (spendByProject[projectType.ordinal()] != 0) {
+                    spends.put(projectType, Money.ofFen(spendByProject[projectType.ordinal()]).toBigDecimal());
+                }
+            }
+            statement.setSpendByProject(spends);
+            return statement;
+        }
+    }
+}
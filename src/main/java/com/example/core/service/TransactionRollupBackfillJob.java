@@ -0,0 +1,102 @@
+package com.example.core.service;
+
+import com.example.core.config.WalletProperties;
+import com.example.core.repository.TransactionRollupRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Folds transactions written before {@code transaction_rollups} existed into the rollups, one
+ * id range per short transaction. Progress is kept in the database, so a restart resumes where
+ * the last range ended and several nodes can run the job without double counting. The
+ * high-water mark is pinned by the first node that starts the job, not by the migration.
+ */
+@Component
+public class TransactionRollupBackfillJob {
+
+    private static final Logger log = LoggerFactory.getLogger(TransactionRollupBackfillJob.class);
+
+    private final TransactionRollupRepository rollupRepository;
+    private final WalletMetrics metrics;
+    private final WalletProperties.Rollups properties;
+    private final TransactionTemplate requiresNewTx;
+
+    private ScheduledExecutorService scheduler;
+
+    public TransactionRollupBackfillJob(TransactionRollupRepository rollupRepository,
+                                        WalletMetrics metrics,
+                                        WalletProperties walletProperties,
+                                        PlatformTransactionManager transactionManager) {
+        this.rollupRepository = rollupRepository;
+        this.metrics = metrics;
+        this.properties = walletProperties.getRollups();
+
+        this.requiresNewTx = new TransactionTemplate(transactionManager);
+        this.requiresNewTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @PostConstruct
+    void start() {
+        requiresNewTx.executeWithoutResult(status -> rollupRepository.pinBackfillHighWater());
+        if (rollupRepository.findPendingBackfill() == null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "wallet-rollup-backfill");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::run, 0, properties.getBackfillPauseMs(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private void run() {
+        try {
+            if (!backfillNext()) {
+                log.info("Transaction rollup backfill complete");
+                scheduler.shutdown();
+            }
+        } catch (RuntimeException e) {
+            log.warn("Transaction rollup backfill step failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Fold the next id range into the rollups; returns false once nothing is left to backfill
+     */
+    public boolean backfillNext() {
+        long[] pending = rollupRepository.findPendingBackfill();
+        if (pending == null) {
+            return false;
+        }
+        long highWaterId = pending[0];
+        long throughId = pending[1];
+        long nextId = Math.min(throughId + properties.getBackfillBatchSize(), highWaterId);
+
+        Integer rows = requiresNewTx.execute(status -> {
+            // Claiming the range first locks the progress row, so a concurrent node waits and then sees it moved
+            if (!rollupRepository.advanceBackfill(throughId, nextId, nextId >= highWaterId)) {
+                return 0;
+            }
+            return rollupRepository.rollUpRange(throughId, nextId);
+        });
+        metrics.add("wallet.rollups.backfilled-groups", rows != null ? rows : 0);
+        return nextId < highWaterId;
+    }
+}
@@ -0,0 +1,396 @@
+package com.example.core.service;
+
+import com.example.core.config.WalletProperties;
+import com.example.core.dto.TransferDTO;
+import com.example.core.dto.TransferReportDTO;
+import com.example.core.entity.Transaction;
+import com.example.core.enums.ProjectType;
+import com.example.core.enums.TransactionType;
+import com.example.core.exception.InsufficientBalanceException;
+import com.example.core.money.Money;
+import com.example.core.repository.AccountBalanceRow;
+import com.example.core.repository.AccountBalanceView;
+import com.example.core.repository.AccountRepository;
+import com.example.core.repository.LedgerEntry;
+import com.example.core.repository.LedgerJdbcRepository;
+import com.example.core.repository.TransactionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Moves balance between two customers' wallets. A transfer is a TRANSFER_OUT row on the sender
+ * and a TRANSFER_IN row on the recipient (linked to the TRANSFER_OUT) sharing one referenceNo,
+ * written in the same transaction as both balance changes. Every account of a batch is locked
+ * up front in account id order, so crossing transfers (A to B while B pays A) queue behind each
+ * other instead of deadlocking. A referenceNo is settled at most once. Sharded senders are
+ * rejected.
+ */
+@Component
+public class TransferEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(TransferEngine.class);
+
+    private final LedgerJdbcRepository ledgerJdbcRepository;
+    private final TransactionRepository transactionRepository;
+    private final AccountRepository accountRepository;
+    private final EventSourcedLedger eventSourcedLedger;
+    private final BalanceCache balanceCache;
+    private final WalletMetrics metrics;
+    private final WalletProperties.Transfers properties;
+    private final TransactionTemplate requiresNewTx;
+
+    public TransferEngine(LedgerJdbcRepository ledgerJdbcRepository,
+                          TransactionRepository transactionRepository,
+                          AccountRepository accountRepository,
+                          EventSourcedLedger eventSourcedLedger,
+                          BalanceCache balanceCache,
+                          WalletMetrics metrics,
+                          WalletProperties walletProperties,
+                          PlatformTransactionManager transactionManager) {
+        this.ledgerJdbcRepository = ledgerJdbcRepository;
+        this.transactionRepository = transactionRepository;
+        this.accountRepository = accountRepository;
+        this.eventSourcedLedger = eventSourcedLedger;
+        this.balanceCache = balanceCache;
+        this.metrics = metrics;
+        this.properties = walletProperties.getTransfers();
+
+        this.requiresNewTx = new TransactionTemplate(transactionManager);
+        this.requiresNewTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Settle one transfer or throw why it cannot be settled. A retry with the same referenceNo
+     * returns the transfer settled first.
+     */
+    public TransferDTO transfer(WalletService.TransferInstruction instruction) {
+        String invalid = validate(instruction);
+        if (invalid != null) {
+            throw new IllegalArgumentException(invalid);
+        }
+        TransferDTO replay = replay(instruction);
+        if (replay != null) {
+            return replay;
+        }
+
+        Settlement settlement;
+        try {
+            settlement = settle(List.of(instruction), 0, true);
+        } catch (DataIntegrityViolationException e) {
+            // A concurrent retry with the same reference committed first
+            TransferDTO raced = replay(instruction);
+            if (raced == null) {
+                throw e;
+            }
+            return raced;
+        }
+        if (settlement.transfers.isEmpty()) {
+            // Settled by a concurrent retry between the replay check and the lock
+            TransferDTO raced = replay(instruction);
+            if (raced == null) {
+                throw new IllegalStateException("Transfer " + instruction.getReferenceNo() + " was neither settled nor rejected");
+            }
+            return raced;
+        }
+        metrics.increment("wallet.transfers.applied");
+        return settlement.transfers.get(0);
+    }
+
+    /**
+     * Settle many transfers, {@code wallet.transfers.batch-size} per database transaction, in the
+     * order given (a later transfer may spend what an earlier one credited). A transfer that cannot
+     * be settled is reported and skipped without failing the rest of its batch.
+     */
+    public TransferReportDTO transferBatch(List<WalletService.TransferInstruction> instructions) {
+        long started = System.nanoTime();
+        TransferReportDTO report = new TransferReportDTO(instructions.size());
+
+        List<WalletService.TransferInstruction> unique = new ArrayList<>();
+        Set<String> referenceNos = new HashSet<>();
+        for (WalletService.TransferInstruction instruction : instructions) {
+            String invalid = validate(instruction);
+            if (invalid != null) {
+                report.getFailures().add(new TransferReportDTO.Failure(instruction.getReferenceNo(), null, invalid));
+            } else if (!referenceNos.add(instruction.getReferenceNo())) {
+                report.setDuplicates(report.getDuplicates() + 1);
+            } else {
+                unique.add(instruction);
+            }
+        }
+
+        for (int from = 0; from < unique.size(); from += properties.getBatchSize()) {
+            List<WalletService.TransferInstruction> batch = unique.subList(from, Math.min(from + properties.getBatchSize(), unique.size()));
+            int batchIndex = report.getBatches();
+            report.setBatches(batchIndex + 1);
+
+            Settlement settlement;
+            try {
+                settlement = settle(batch, batchIndex, false);
+            } catch (RuntimeException e) {
+                // Rolled back as a whole, so every transfer in it is reported as failed
+                log.warn("Transfer batch {} failed: {}", batchIndex, e.getMessage());
+                for (WalletService.TransferInstruction instruction : batch) {
+                    report.getFailures().add(new TransferReportDTO.Failure(instruction.getReferenceNo(), batchIndex,
+                            "Batch failed: " + e.getMessage()));
+                }
+                continue;
+            }
+
+            for (TransferDTO transfer : settlement.transfers) {
+                report.setTransferredAmount(report.getTransferredAmount().add(transfer.getAmount()));
+            }
+            report.setTransferred(report.getTransferred() + settlement.transfers.size());
+            report.setDuplicates(report.getDuplicates() + settlement.duplicates);
+            report.getFailures().addAll(settlement.failures);
+        }
+
+        report.setFailed(report.getFailures().size());
+        report.setElapsedMs((System.nanoTime() - started) / 1_000_000);
+        metrics.add("wallet.transfers.applied", report.getTransferred());
+        metrics.add("wallet.transfers.duplicates", report.getDuplicates());
+        metrics.add("wallet.transfers.failed", report.getFailed());
+        return report;
+    }
+
+    /**
+     * Lock every account the transfers touch, plan them against the locked balances and commit the
+     * ledger rows with the balance changes; {@code strict} throws on the first transfer that cannot
+     * be settled instead of reporting it
+     */
+    private Settlement settle(List<WalletService.TransferInstruction> batch, int batchIndex, boolean strict) {
+        TreeSet<Long> customerIds = new TreeSet<>();
+        for (WalletService.TransferInstruction instruction : batch) {
+            customerIds.add(instruction.getFromCustomerId());
+            customerIds.add(instruction.getToCustomerId());
+        }
+
+        if (eventSourcedLedger.isActive()) {
+            return settleEventSourced(batch, batchIndex, strict, new ArrayList<>(customerIds), 0, new LinkedHashMap<>());
+        }
+
+        Settlement settlement = requiresNewTx.execute(status -> {
+            Map<Long, AccountBalanceRow> accounts = ledgerJdbcRepository.lockAccountsByCustomerIds(customerIds);
+            Settlement planned = plan(batch, batchIndex, accounts, strict);
+            ledgerJdbcRepository.applyBalanceDeltas(accounts.values());
+            insert(planned);
+            return planned;
+        });
+        for (Long customerId : customerIds) {
+            balanceCache.evict(customerId);
+        }
+        return settlement;
+    }
+
+    /**
+     * Take the projection locks of the batch's customers one by one, in customer id order (every
+     * multi-customer writer takes them in that order), then commit the batch and move the projections.
+     * Customers without an account fail to load a projection and are left unlocked.
+     */
+    private Settlement settleEventSourced(List<WalletService.TransferInstruction> batch, int batchIndex, boolean strict,
+                                          List<Long> customerIds, int next, Map<Long, LedgerProjection> locked) {
+        if (next < customerIds.size()) {
+            Long customerId = customerIds.get(next);
+            try {
+                return eventSourcedLedger.appendLocked(customerId, projection -> {
+                    locked.put(customerId, projection);
+                    return settleEventSourced(batch, batchIndex, strict, customerIds, next + 1, locked);
+                });
+            } catch (RuntimeException e) {
+                if (locked.containsKey(customerId)) {
+                    throw e;
+                }
+                return settleEventSourced(batch, batchIndex, strict, customerIds, next + 1, locked);
+            }
+        }
+
+        Map<Long, AccountBalanceRow> accounts = new HashMap<>();
+        for (LedgerProjection projection : locked.values()) {
+            accounts.put(projection.getCustomerId(), new AccountBalanceRow(projection.getAccountId(),
+                    projection.getCustomerId(), projection.getBalance(), projection.getHeldAmount()));
+        }
+        Settlement settlement = requiresNewTx.execute(status -> {
+            Settlement planned = plan(batch, batchIndex, accounts, strict);
+            insert(planned);
+            return planned;
+        });
+        for (TransferDTO transfer : settlement.transfers) {
+            Money amount = Money.of(transfer.getAmount());
+            locked.get(transfer.getFromCustomerId()).debit(amount, transfer.getOutTransactionId());
+            locked.get(transfer.getToCustomerId()).credit(amount, transfer.getInTransactionId());
+        }
+        return settlement;
+    }
+
+    /**
+     * Decide which transfers can be settled against the locked balances, applying them to the rows in
+     * order; must run in the batch transaction
+     */
+    private Settlement plan(List<WalletService.TransferInstruction> batch, int batchIndex,
+                            Map<Long, AccountBalanceRow> accounts, boolean strict) {
+        Set<String> settled = new HashSet<>(ledgerJdbcRepository.findExistingReferenceNos(TransactionType.TRANSFER_OUT,
+                batch.stream().map(WalletService.TransferInstruction::getReferenceNo).toList()));
+
+        Settlement settlement = new Settlement();
+        for (WalletService.TransferInstruction instruction : batch) {
+            if (!settled.add(instruction.getReferenceNo())) {
+                settlement.duplicates++;
+                continue;
+            }
+            AccountBalanceRow from = accounts.get(instruction.getFromCustomerId());
+            AccountBalanceRow to = accounts.get(instruction.getToCustomerId());
+            Money amount = Money.of(instruction.getAmount());
+            if (from == null) {
+                reject(settlement, instruction, batchIndex, strict, new IllegalArgumentException("Sender account not found"));
+                continue;
+            }
+            if (to == null) {
+                reject(settlement, instruction, batchIndex, strict, new IllegalArgumentException("Recipient account not found"));
+                continue;
+            }
+            if (from.isSharded()) {
+                // Most of a sharded sender's balance sits in its shards, which this batch does not lock;
+                // a sharded recipient is fine, its reported balance includes the accounts row
+                reject(settlement, instruction, batchIndex, strict,
+                        new IllegalStateException("Transfers are not supported on sharded accounts"));
+                continue;
+            }
+            if (!from.canCover(amount)) {
+                reject(settlement, instruction, batchIndex, strict, new InsufficientBalanceException("Insufficient balance"));
+                continue;
+            }
+
+            from.adjust(amount.negate());
+            to.adjust(amount);
+            settlement.planned.add(new PlannedTransfer(instruction, from.getId(), to.getId(), amount, from.getBalance()));
+        }
+        return settlement;
+    }
+
+    /**
+     * Append the TRANSFER_OUT rows, then the TRANSFER_IN rows pointing at them, as two JDBC batches
+     */
+    private void insert(Settlement settlement) {
+        List<LedgerEntry> outs = new ArrayList<>(settlement.planned.size());
+        for (PlannedTransfer planned : settlement.planned) {
+            WalletService.TransferInstruction instruction = planned.instruction;
+            outs.add(new LedgerEntry(instruction.getFromCustomerId(), planned.fromAccountId, TransactionType.TRANSFER_OUT,
+                    planned.amount.toBigDecimal(), ProjectType.GENERAL, instruction.getReferenceNo(), instruction.getMetadata()));
+        }
+        List<Long> outIds = ledgerJdbcRepository.insertTransactions(outs);
+
+        List<LedgerEntry> ins = new ArrayList<>(settlement.planned.size());
+        for (int i = 0; i < settlement.planned.size(); i++) {
+            PlannedTransfer planned = settlement.planned.get(i);
+            WalletService.TransferInstruction instruction = planned.instruction;
+            ins.add(new LedgerEntry(instruction.getToCustomerId(), planned.toAccountId, TransactionType.TRANSFER_IN,
+                    planned.amount.toBigDecimal(), ProjectType.GENERAL, instruction.getReferenceNo(), instruction.getMetadata(),
+                    outIds.get(i)));
+        }
+        List<Long> inIds = ledgerJdbcRepository.insertTransactions(ins);
+
+        for (int i = 0; i < settlement.planned.size(); i++) {
+            PlannedTransfer planned = settlement.planned.get(i);
+            WalletService.TransferInstruction instruction = planned.instruction;
+            settlement.transfers.add(new TransferDTO(instruction.getReferenceNo(), instruction.getFromCustomerId(),
+                    instruction.getToCustomerId(), planned.amount.toBigDecimal(), outIds.get(i),
+                    inIds.get(i), planned.balanceAfter.toBigDecimal()));
+        }
+    }
+
+    /**
+     * The transfer already settled under this referenceNo, or null when there is none.
+     * A referenceNo settled with different parties or amount is rejected.
+     */
+    private TransferDTO replay(WalletService.TransferInstruction instruction) {
+        Transaction out = transactionRepository.findByTypeAndReferenceNo(TransactionType.TRANSFER_OUT,
+                instruction.getReferenceNo()).orElse(null);
+        if (out == null) {
+            return null;
+        }
+        Transaction in = transactionRepository.findByTypeAndReferenceNo(TransactionType.TRANSFER_IN,
+                instruction.getReferenceNo()).orElseThrow(() -> new IllegalStateException(
+                "Transfer " + instruction.getReferenceNo() + " has no TRANSFER_IN row"));
+        if (!out.getCustomer().getId().equals(instruction.getFromCustomerId())
+                || !in.getCustomer().getId().equals(instruction.getToCustomerId())
+                || out.getAmount().compareTo(instruction.getAmount()) != 0) {
+            throw new IllegalArgumentException("referenceNo already used");
+        }
+
+        metrics.increment("wallet.transfers.replays");
+        BigDecimal balance = accountRepository.findBalanceViewByCustomerId(instruction.getFromCustomerId())
+                .map(AccountBalanceView::getBalance)
+                .orElse(BigDecimal.ZERO);
+        return new TransferDTO(instruction.getReferenceNo(), instruction.getFromCustomerId(), instruction.getToCustomerId(),
+                out.getAmount(), out.getId(), in.getId(), balance);
+    }
+
+    private static void reject(Settlement settlement, WalletService.TransferInstruction instruction, int batchIndex,
+                               boolean strict, RuntimeException reason) {
+        if (strict) {
+            throw reason;
+        }
+        settlement.failures.add(new TransferReportDTO.Failure(instruction.getReferenceNo(), batchIndex, reason.getMessage()));
+    }
+
+    private static String validate(WalletService.TransferInstruction instruction) {
+        if (instruction.getReferenceNo() == null || instruction.getReferenceNo().isEmpty()) {
+            return "referenceNo is required";
+        }
+        if (instruction.getFromCustomerId() == null || instruction.getToCustomerId() == null) {
+            return "Sender and recipient are required";
+        }
+        if (instruction.getFromCustomerId().equals(instruction.getToCustomerId())) {
+            return "Cannot transfer to the same wallet";
+        }
+        if (instruction.getAmount() == null) {
+            return "Amount must be positive";
+        }
+        try {
+            if (!Money.of(instruction.getAmount()).isPositive()) {
+                return "Amount must be positive";
+            }
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+        return null;
+    }
+
+    private static final class PlannedTransfer {
+        private final WalletService.TransferInstruction instruction;
+        private final Long fromAccountId;
+        private final Long toAccountId;
+        private final Money amount;
+        private final Money balanceAfter;
+
+        private PlannedTransfer(WalletService.TransferInstruction instruction, Long fromAccountId, Long toAccountId,
+                                Money amount, Money balanceAfter) {
+            this.instruction = instruction;
+            this.fromAccountId = fromAccountId;
+            this.toAccountId = toAccountId;
+            this.amount = amount;
+            this.balanceAfter = balanceAfter;
+        }
+    }
+
+    private static final class Settlement {
+        private final List<PlannedTransfer> planned = new ArrayList<>();
+        private final List<TransferDTO> transfers = new ArrayList<>();
+        private final List<TransferReportDTO.Failure> failures = new ArrayList<>();
+        private int duplicates;
+    }
+}
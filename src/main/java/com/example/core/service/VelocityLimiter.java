@@ -0,0 +1,284 @@
+package com.example.core.service;
+
+import com.example.core.config.WalletProperties;
+import com.example.core.enums.ProjectType;
+import com.example.core.exception.VelocityLimitExceededException;
+import com.example.core.money.Money;
+import com.example.core.repository.TransactionRollupRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Per-customer spend caps over a sliding minute, hour and day, kept in memory so a deduct is checked
+ * without summing the ledger. Each (customer, project type) has one array of time buckets per window;
+ * a bucket packs its time slot and amount into one long updated by CAS, so counting is lock-free.
+ * An amount is added first and taken back when it breaks a cap, so concurrent deducts can only be
+ * rejected too eagerly, never let past a cap. Counters are striped by customer id and dropped once
+ * idle for a day. At startup the day windows are seeded with today's SPEND rollups.
+ *
+ * <p>Windows slide a bucket at a time (10 s for the minute, 5 min for the hour, 1 h for the day),
+ * and the counters are per node: behind a load balancer each node enforces the caps on its own share.
+ */
+@Component
+public class VelocityLimiter {
+
+    private static final Logger log = LoggerFactory.getLogger(VelocityLimiter.class);
+
+    private static final String[] WINDOWS = {"minute", "hour", "day"};
+    private static final long[] BUCKET_MS = {10_000, 300_000, 3_600_000};
+    private static final int[] BUCKETS = {6, 12, 24};
+    private static final int[] OFFSETS = {0, 6, 18};
+    private static final int SLOTS = 42;
+    private static final int DAY = 2;
+    private static final long IDLE_MS = 86_400_000;
+
+    // Bucket layout: time slot (mod 2^24) in the high bits, amount in fen in the low 40
+    private static final int AMOUNT_BITS = 40;
+    private static final long AMOUNT_MASK = (1L << AMOUNT_BITS) - 1;
+    private static final long SLOT_MASK = (1L << (Long.SIZE - AMOUNT_BITS)) - 1;
+    private static final int PROJECT_BITS = 3;
+
+    private final TransactionRollupRepository rollupRepository;
+    private final WalletMetrics metrics;
+    private final WalletProperties.Velocity properties;
+
+    /** Caps in fen per project type and window; null when a project type is not limited, 0 for an uncapped window */
+    private final long[][] limits = new long[ProjectType.values().length][];
+    private final ConcurrentHashMap<Long, Counters>[] stripes;
+    private final boolean active;
+
+    private ScheduledExecutorService sweeper;
+
+    @SuppressWarnings("unchecked")
+    public VelocityLimiter(TransactionRollupRepository rollupRepository, WalletMetrics metrics,
+                           WalletProperties walletProperties) {
+        if (ProjectType.values().length > 1 << PROJECT_BITS) {
+            throw new IllegalStateException("Too many project types for the velocity counter key");
+        }
+        this.rollupRepository = rollupRepository;
+        this.metrics = metrics;
+        this.properties = walletProperties.getVelocity();
+
+        boolean anyLimit = false;
+        for (Map.Entry<ProjectType, WalletProperties.Velocity.Limit> entry : properties.getLimits().entrySet()) {
+            WalletProperties.Velocity.Limit limit = entry.getValue();
+            long[] caps = {toFen(limit.getPerMinute()), toFen(limit.getPerHour()), toFen(limit.getPerDay())};
+            if (caps[0] > 0 || caps[1] > 0 || caps[2] > 0) {
+                limits[entry.getKey().ordinal()] = caps;
+                anyLimit = true;
+            }
+        }
+        this.active = properties.isEnabled() && anyLimit;
+
+        // Round up to a power of two so a stripe is picked with a mask
+        int stripeCount = Integer.highestOneBit(Math.max(1, properties.getStripes()) * 2 - 1);
+        this.stripes = new ConcurrentHashMap[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ConcurrentHashMap<>();
+        }
+    }
+
+    @PostConstruct
+    void start() {
+        if (!active) {
+            return;
+        }
+        seed();
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "wallet-velocity-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweep, properties.getSweepIntervalMs(), properties.getSweepIntervalMs(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+    }
+
+    /**
+     * Count a spend against the customer's caps for its project type. Returns what to hand to
+     * {@link #release} if the spend does not go through, or null when the project type is not limited.
+     *
+     * @throws VelocityLimitExceededException when the spend would break a cap; nothing is counted then
+     */
+    public Reservation acquire(Long customerId, ProjectType projectType, Money amount) {
+        if (!active || customerId == null || projectType == null) {
+            return null;
+        }
+        long[] caps = limits[projectType.ordinal()];
+        if (caps == null) {
+            return null;
+        }
+
+        long now = System.currentTimeMillis();
+        long fen = amount.getFen();
+        Counters counters = counters(customerId, projectType, now);
+        for (int window = 0; window < WINDOWS.length; window++) {
+            if (caps[window] > 0) {
+                counters.add(window, now, fen);
+            }
+        }
+        for (int window = 0; window < WINDOWS.length; window++) {
+            if (caps[window] > 0 && counters.sum(window, now) > caps[window]) {
+                for (int added = 0; added < WINDOWS.length; added++) {
+                    if (caps[added] > 0) {
+                        counters.add(added, now, -fen);
+                    }
+                }
+                metrics.increment("wallet.velocity.rejected");
+                metrics.increment("wallet.velocity.rejected." + WINDOWS[window]);
+                throw new VelocityLimitExceededException("Spend limit per " + WINDOWS[window] + " exceeded");
+            }
+        }
+        return new Reservation(counters, caps, now, fen);
+    }
+
+    /**
+     * Take back a counted spend that did not go through; a bucket that has since rotated out is left alone
+     */
+    public void release(Reservation reservation) {
+        if (reservation == null) {
+            return;
+        }
+        for (int window = 0; window < WINDOWS.length; window++) {
+            if (reservation.caps[window] > 0) {
+                reservation.counters.add(window, reservation.atMs, -reservation.fen);
+            }
+        }
+    }
+
+    private Counters counters(long customerId, ProjectType projectType, long now) {
+        ConcurrentHashMap<Long, Counters> stripe = stripes[(int) (mix(customerId) & (stripes.length - 1))];
+        Long key = customerId << PROJECT_BITS | projectType.ordinal();
+        Counters counters = stripe.get(key);
+        if (counters == null) {
+            counters = stripe.computeIfAbsent(key, k -> new Counters());
+        }
+        counters.lastUsedMs = now;
+        return counters;
+    }
+
+    /**
+     * Load today's spend into the day windows. It is counted as spent now, so it ages out over the next
+     * day rather than at midnight: stricter than the true window, never looser.
+     */
+    private void seed() {
+        List<ProjectType> dayLimited = new ArrayList<>();
+        for (ProjectType projectType : ProjectType.values()) {
+            long[] caps = limits[projectType.ordinal()];
+            if (caps != null && caps[DAY] > 0) {
+                dayLimited.add(projectType);
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        long[] seeded = new long[1];
+        try {
+            rollupRepository.streamSpendTotals(LocalDate.now(), dayLimited, rs -> {
+                Money amount = Money.of(rs.getBigDecimal("amount"));
+                if (amount.isPositive()) {
+                    counters(rs.getLong("customer_id"), ProjectType.valueOf(rs.getString("project_type")), now)
+                            .add(DAY, now, amount.getFen());
+                    seeded[0]++;
+                }
+            });
+            log.info("Velocity limits seeded with {} day totals", seeded[0]);
+        } catch (RuntimeException e) {
+            log.warn("Velocity limits could not be seeded from rollups: {}", e.getMessage());
+        }
+    }
+
+    private void sweep() {
+        long cutoff = System.currentTimeMillis() - IDLE_MS;
+        long dropped = 0;
+        for (ConcurrentHashMap<Long, Counters> stripe : stripes) {
+            int before = stripe.size();
+            stripe.values().removeIf(counters -> counters.lastUsedMs < cutoff);
+            dropped += before - stripe.size();
+        }
+        metrics.add("wallet.velocity.swept", dropped);
+    }
+
+    private static long toFen(BigDecimal amount) {
+        return amount != null ? Money.of(amount).getFen() : 0;
+    }
+
+    private static long mix(long customerId) {
+        long h = customerId * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 32);
+    }
+
+    /**
+     * Bucketed sliding windows of one customer and project type
+     */
+    private static final class Counters {
+        private final AtomicLongArray buckets = new AtomicLongArray(SLOTS);
+        private volatile long lastUsedMs;
+
+        void add(int window, long atMs, long delta) {
+            long slot = atMs / BUCKET_MS[window];
+            int index = OFFSETS[window] + (int) (slot % BUCKETS[window]);
+            long tag = slot & SLOT_MASK;
+            while (true) {
+                long current = buckets.get(index);
+                boolean sameSlot = current >>> AMOUNT_BITS == tag;
+                if (!sameSlot && delta < 0) {
+                    return;
+                }
+                long amount = sameSlot ? current & AMOUNT_MASK : 0;
+                long next = Math.max(0, Math.min(AMOUNT_MASK, amount + delta));
+                if (buckets.compareAndSet(index, current, tag << AMOUNT_BITS | next)) {
+                    return;
+                }
+            }
+        }
+
+        long sum(int window, long atMs) {
+            long slot = atMs / BUCKET_MS[window];
+            long total = 0;
+            for (int k = 0; k < BUCKETS[window]; k++) {
+                long s = slot - k;
+                long current = buckets.get(OFFSETS[window] + (int) (s % BUCKETS[window]));
+                if (current >>> AMOUNT_BITS == (s & SLOT_MASK)) {
+                    total += current & AMOUNT_MASK;
+                }
+            }
+            return total;
+        }
+    }
+
+    /**
+     * A counted spend, so it can be taken back from the buckets it went into
+     */
+    public static final class Reservation {
+        private final Counters counters;
+        private final long[] caps;
+        private final long atMs;
+        private final long fen;
+
+        private Reservation(Counters counters, long[] caps, long atMs, long fen) {
+            this.counters = counters;
+            this.caps = caps;
+            this.atMs = atMs;
+            this.fen = fen;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.example.core.service;
+
+import com.example.core.config.WalletProperties;
+import com.example.core.dto.ReconciliationDriftDTO;
+import com.example.core.dto.ReconciliationRunDTO;
+import com.example.core.enums.DeductEngine;
+import com.example.core.repository.ReconciliationJdbcRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks stored account balances/totals against the ledger. The account id space is cut into
+ * fixed ranges that are scanned in parallel on a bounded fork-join pool; every checked range is
+ * recorded with its drifts in one transaction, so a run interrupted by a crash resumes with the
+ * ranges it had not finished.
+ */
+@Component
+public class WalletReconciliationJob {
+
+    private static final Logger log = LoggerFactory.getLogger(WalletReconciliationJob.class);
+
+    private final ReconciliationJdbcRepository reconciliationRepository;
+    private final WalletMetrics metrics;
+    private final WalletProperties.Reconciliation properties;
+    private final boolean eventSourced;
+    private final TransactionTemplate requiresNewTx;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final ExecutorService launcher;
+
+    public WalletReconciliationJob(ReconciliationJdbcRepository reconciliationRepository,
+                                   WalletMetrics metrics,
+                                   WalletProperties walletProperties,
+                                   PlatformTransactionManager transactionManager) {
+        this.reconciliationRepository = reconciliationRepository;
+        this.metrics = metrics;
+        this.properties = walletProperties.getReconciliation();
+        this.eventSourced = walletProperties.getDeduct().getEngine() == DeductEngine.EVENT_SOURCED;
+
+        this.requiresNewTx = new TransactionTemplate(transactionManager);
+        this.requiresNewTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        this.launcher = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "wallet-reconciliation");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void stop() {
+        launcher.shutdownNow();
+    }
+
+    /**
+     * Resume the unfinished run, or start a new one, in the background; returns the run being worked on
+     */
+    public ReconciliationRunDTO start() {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("A reconciliation is already running");
+        }
+        try {
+            long runId = resumeOrCreateRun();
+            launcher.execute(() -> {
+                try {
+                    execute(runId);
+                } catch (RuntimeException e) {
+                    log.error("Reconciliation run {} failed", runId, e);
+                } finally {
+                    running.set(false);
+                }
+            });
+            return reconciliationRepository.findRun(runId, 0);
+        } catch (RuntimeException e) {
+            running.set(false);
+            throw e;
+        }
+    }
+
+    /**
+     * Resume the unfinished run, or start a new one, and wait for it
+     */
+    public ReconciliationRunDTO reconcile() {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("A reconciliation is already running");
+        }
+        try {
+            return execute(resumeOrCreateRun());
+        } finally {
+            running.set(false);
+        }
+    }
+
+    public ReconciliationRunDTO getRun(long runId, int driftLimit) {
+        ReconciliationRunDTO run = reconciliationRepository.findRun(runId, driftLimit);
+        if (run == null) {
+            throw new IllegalArgumentException("Reconciliation run not found");
+        }
+        return run;
+    }
+
+    private long resumeOrCreateRun() {
+        ReconciliationRunDTO unfinished = reconciliationRepository.findUnfinishedRun();
+        if (unfinished != null) {
+            log.info("Resuming reconciliation run {} ({}/{} ranges checked)",
+                    unfinished.getId(), unfinished.getRangesChecked(), unfinished.getRangesTotal());
+            return unfinished.getId();
+        }
+        return reconciliationRepository.createRun(reconciliationRepository.findMaxAccountId(), properties.getRangeSize());
+    }
+
+    private ReconciliationRunDTO execute(long runId) {
+        ReconciliationRunDTO run = reconciliationRepository.findRun(runId, 0);
+        Set<Long> checked = reconciliationRepository.findCheckedRangeStarts(runId);
+
+        List<long[]> pending = new ArrayList<>();
+        for (long start = 1; start <= run.getMaxAccountId(); start += run.getRangeSize()) {
+            if (!checked.contains(start)) {
+                pending.add(new long[]{start, Math.min(start + run.getRangeSize() - 1, run.getMaxAccountId())});
+            }
+        }
+
+        AtomicInteger failed = new AtomicInteger();
+        if (!pending.isEmpty()) {
+            ForkJoinPool pool = new ForkJoinPool(properties.getConcurrency());
+            try {
+                pool.invoke(new RangeTask(runId, pending, 0, pending.size(), failed));
+            } finally {
+                pool.shutdown();
+            }
+        }
+
+        if (failed.get() > 0) {
+            // Left RUNNING so the next start picks up the failed ranges
+            log.warn("Reconciliation run {} left {} ranges unchecked", runId, failed.get());
+        } else {
+            reconciliationRepository.finishRun(runId, "COMPLETED");
+        }
+        ReconciliationRunDTO result = reconciliationRepository.findRun(runId, 0);
+        log.info("Reconciliation run {}: {} accounts checked, {} drifted", runId, result.getAccountsChecked(), result.getDriftCount());
+        return result;
+    }
+
+    private void checkRange(long runId, long start, long end) {
+        List<ReconciliationDriftDTO> rows = reconciliationRepository.scanRange(start, end, eventSourced);
+        List<ReconciliationDriftDTO> drifts = new ArrayList<>();
+        for (ReconciliationDriftDTO row : rows) {
+            if (row.getStoredBalance().compareTo(row.getLedgerBalance()) != 0
+                    || row.getStoredTotalRecharge().compareTo(row.getLedgerTotalRecharge()) != 0
+                    || row.getStoredTotalSpend().compareTo(row.getLedgerTotalSpend()) != 0) {
+                drifts.add(row);
+            }
+        }
+
+        Boolean recorded = requiresNewTx.execute(status ->
+                reconciliationRepository.recordRange(runId, start, end, rows.size(), drifts));
+        if (Boolean.TRUE.equals(recorded)) {
+            metrics.add("wallet.reconciliation.accounts", rows.size());
+            metrics.add("wallet.reconciliation.drifts", drifts.size());
+        }
+    }
+
+    private final class RangeTask extends RecursiveAction {
+        private final long runId;
+        private final List<long[]> ranges;
+        private final int from;
+        private final int to;
+        private final AtomicInteger failed;
+
+        private RangeTask(long runId, List<long[]> ranges, int from, int to, AtomicInteger failed) {
+            this.runId = runId;
+            this.ranges = ranges;
+            this.from = from;
+            this.to = to;
+            this.failed = failed;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new RangeTask(runId, ranges, from, mid, failed), new RangeTask(runId, ranges, mid, to, failed));
+                return;
+            }
+
+            long[] range = ranges.get(from);
+            try {
+                checkRange(runId, range[0], range[1]);
+            } catch (RuntimeException e) {
+                failed.incrementAndGet();
+                log.warn("Reconciliation of accounts {}-{} failed: {}", range[0], range[1], e.getMessage());
+            }
+        }
+    }
+}
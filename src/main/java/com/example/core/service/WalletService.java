@@ -1,31 +1,64 @@
 package com.example.core.service;
 
+import com.example.core.config.WalletProperties;
+import com.example.core.dto.AccountDTO;
+import com.example.core.dto.BalanceAtDTO;
+import com.example.core.dto.BatchDeductResponseDTO;
 import com.example.core.dto.RechargeInitiationDTO;
+import com.example.core.dto.RefundReportDTO;
+import com.example.core.dto.ShortfallPurchaseDTO;
+import com.example.core.dto.StatementDTO;
+import com.example.core.dto.TransactionDTO;
+import com.example.core.dto.TransactionPageDTO;
+import com.example.core.dto.TransactionRollupDTO;
+import com.example.core.dto.TransferDTO;
+import com.example.core.dto.TransferReportDTO;
 import com.example.core.entity.Account;
+import com.example.core.entity.BalanceHold;
 import com.example.core.entity.Customer;
 import com.example.core.entity.RechargeOrder;
 import com.example.core.entity.RechargeOrderEvent;
 import com.example.core.entity.RechargePromotion;
+import com.example.core.entity.ShortfallPurchase;
 import com.example.core.entity.Transaction;
+import com.example.core.enums.DeductEngine;
+import com.example.core.enums.HoldStatus;
 import com.example.core.enums.PaymentChannel;
 import com.example.core.enums.ProjectType;
 import com.example.core.enums.RechargeOrderStatus;
+import com.example.core.enums.ShortfallPurchaseStatus;
 import com.example.core.enums.TransactionType;
+import com.example.core.exception.DeductOutcomeUnknownException;
 import com.example.core.exception.InsufficientBalanceException;
 import com.example.core.exception.PaymentProcessingException;
+import com.example.core.exception.VelocityLimitExceededException;
+import com.example.core.mapper.AccountMapper;
+import com.example.core.mapper.ShortfallPurchaseMapper;
+import com.example.core.mapper.TransactionMapper;
+import com.example.core.money.Money;
 import com.example.core.payment.AlipayPaymentService;
 import com.example.core.payment.PaymentCallback;
 import com.example.core.payment.PaymentInitiation;
 import com.example.core.payment.WechatPayService;
 import com.example.core.repository.AccountRepository;
+import com.example.core.repository.AccountBalanceView;
+import com.example.core.repository.BalanceCheckpointJdbcRepository;
+import com.example.core.repository.BalanceHoldRepository;
 import com.example.core.repository.CustomerRepository;
+import com.example.core.repository.LedgerEntry;
+import com.example.core.repository.LedgerJdbcRepository;
 import com.example.core.repository.RechargeOrderEventRepository;
 import com.example.core.repository.RechargeOrderRepository;
 import com.example.core.repository.RechargePromotionRepository;
+import com.example.core.repository.ShortfallPurchaseRepository;
+import com.example.core.repository.StatementJdbcRepository;
+import com.example.core.repository.TransactionHistoryView;
 import com.example.core.repository.TransactionRepository;
+import com.example.core.repository.TransactionRollupRepository;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.PlatformTransactionManager;
@@ -33,10 +66,23 @@ import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 
 @Service
 public class WalletService {
@@ -44,52 +90,244 @@ public class WalletService {
     private static final Logger log = LoggerFactory.getLogger(WalletService.class);
 
     private static final int OPTIMISTIC_LOCK_RETRY = 3;
+    private static final int DEFAULT_HISTORY_PAGE_SIZE = 20;
+    private static final int MAX_HISTORY_PAGE_SIZE = 100;
 
     private final CustomerRepository customerRepository;
     private final AccountRepository accountRepository;
     private final TransactionRepository transactionRepository;
+    private final TransactionRollupRepository transactionRollupRepository;
     private final RechargePromotionRepository rechargePromotionRepository;
     private final RechargeOrderRepository rechargeOrderRepository;
     private final RechargeOrderEventRepository rechargeOrderEventRepository;
+    private final LedgerJdbcRepository ledgerJdbcRepository;
+    private final BalanceHoldRepository balanceHoldRepository;
+    private final BalanceCheckpointJdbcRepository balanceCheckpointRepository;
+    private final StatementJdbcRepository statementRepository;
+    private final ShortfallPurchaseRepository shortfallPurchaseRepository;
 
     private final WechatPayService wechatPayService;
     private final AlipayPaymentService alipayPaymentService;
 
+    private final AccountLanes accountLanes;
+    private final ConditionalDeductEngine conditionalDeductEngine;
+    private final GroupCommitDeductEngine groupCommitDeductEngine;
+    private final SpendReferenceCache spendReferenceCache;
+    private final BalanceCache balanceCache;
+    private final BalanceHoldExpiryJob balanceHoldExpiryJob;
+    private final ShardedBalanceService shardedBalanceService;
+    private final EventSourcedLedger eventSourcedLedger;
+    private final RefundEngine refundEngine;
+    private final TransferEngine transferEngine;
+    private final OrderNumberGenerator orderNumberGenerator;
+    private final IdentityCache identityCache;
+    private final VelocityLimiter velocityLimiter;
+    private final WalletProperties walletProperties;
+    private final WalletMetrics metrics;
+
     private final ObjectMapper objectMapper;
     private final TransactionTemplate requiresNewTx;
+    private final TransactionTemplate readOnlyTx;
 
     public WalletService(CustomerRepository customerRepository,
                          AccountRepository accountRepository,
                          TransactionRepository transactionRepository,
+                         TransactionRollupRepository transactionRollupRepository,
                          RechargePromotionRepository rechargePromotionRepository,
                          RechargeOrderRepository rechargeOrderRepository,
                          RechargeOrderEventRepository rechargeOrderEventRepository,
+                         LedgerJdbcRepository ledgerJdbcRepository,
+                         BalanceHoldRepository balanceHoldRepository,
+                         BalanceCheckpointJdbcRepository balanceCheckpointRepository,
+                         StatementJdbcRepository statementRepository,
+                         ShortfallPurchaseRepository shortfallPurchaseRepository,
                          WechatPayService wechatPayService,
                          AlipayPaymentService alipayPaymentService,
+                         AccountLanes accountLanes,
+                         ConditionalDeductEngine conditionalDeductEngine,
+                         GroupCommitDeductEngine groupCommitDeductEngine,
+                         SpendReferenceCache spendReferenceCache,
+                         BalanceCache balanceCache,
+                         BalanceHoldExpiryJob balanceHoldExpiryJob,
+                         ShardedBalanceService shardedBalanceService,
+                         EventSourcedLedger eventSourcedLedger,
+                         RefundEngine refundEngine,
+                         TransferEngine transferEngine,
+                         OrderNumberGenerator orderNumberGenerator,
+                         IdentityCache identityCache,
+                         VelocityLimiter velocityLimiter,
+                         WalletProperties walletProperties,
+                         WalletMetrics metrics,
                          ObjectMapper objectMapper,
                          PlatformTransactionManager transactionManager) {
         this.customerRepository = customerRepository;
         this.accountRepository = accountRepository;
         this.transactionRepository = transactionRepository;
+        this.transactionRollupRepository = transactionRollupRepository;
         this.rechargePromotionRepository = rechargePromotionRepository;
         this.rechargeOrderRepository = rechargeOrderRepository;
         this.rechargeOrderEventRepository = rechargeOrderEventRepository;
+        this.ledgerJdbcRepository = ledgerJdbcRepository;
+        this.balanceHoldRepository = balanceHoldRepository;
+        this.balanceCheckpointRepository = balanceCheckpointRepository;
+        this.statementRepository = statementRepository;
+        this.shortfallPurchaseRepository = shortfallPurchaseRepository;
         this.wechatPayService = wechatPayService;
         this.alipayPaymentService = alipayPaymentService;
+        this.accountLanes = accountLanes;
+        this.conditionalDeductEngine = conditionalDeductEngine;
+        this.groupCommitDeductEngine = groupCommitDeductEngine;
+        this.spendReferenceCache = spendReferenceCache;
+        this.balanceCache = balanceCache;
+        this.balanceHoldExpiryJob = balanceHoldExpiryJob;
+        this.shardedBalanceService = shardedBalanceService;
+        this.eventSourcedLedger = eventSourcedLedger;
+        this.refundEngine = refundEngine;
+        this.transferEngine = transferEngine;
+        this.orderNumberGenerator = orderNumberGenerator;
+        this.identityCache = identityCache;
+        this.velocityLimiter = velocityLimiter;
+        this.walletProperties = walletProperties;
+        this.metrics = metrics;
         this.objectMapper = objectMapper;
 
         this.requiresNewTx = new TransactionTemplate(transactionManager);
         this.requiresNewTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+    }
+
+    /**
+     * Balance lookup for polling clients. Served from {@link BalanceCache} through a read-only
+     * transaction when possible; only the first read of a customer without an account takes the
+     * write path to create it, and an unknown customer is rejected.
+     */
+    public AccountDTO getBalance(Long customerId) {
+        AccountDTO dto = balanceCache.get(customerId, () -> readOnlyTx.execute(status ->
+                accountRepository.findByCustomerId(customerId)
+                        .map(account -> new BalanceCache.VersionedBalance(toBalanceDTO(account), account.getVersion()))
+                        .orElse(null)));
+        if (dto != null) {
+            return dto;
+        }
+        return toBalanceDTO(getOrCreateAccount(customerId));
+    }
+
+    /**
+     * One page of a customer's transactions, newest first. The cursor is the opaque nextCursor
+     * of the previous page; type and projectType are optional filters.
+     */
+    public TransactionPageDTO getTransactions(Long customerId, TransactionType type, ProjectType projectType,
+                                              String cursor, Integer limit) {
+        int pageSize = limit == null ? DEFAULT_HISTORY_PAGE_SIZE : limit;
+        if (pageSize < 1 || pageSize > MAX_HISTORY_PAGE_SIZE) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_HISTORY_PAGE_SIZE);
+        }
+        String typeName = type != null ? type.name() : null;
+        String projectTypeName = projectType != null ? projectType.name() : null;
+
+        // One extra row tells whether another page exists
+        List<TransactionHistoryView> rows;
+        if (cursor == null || cursor.isEmpty()) {
+            rows = transactionRepository.findHistoryPage(customerId, typeName, projectTypeName, pageSize + 1);
+        } else {
+            HistoryCursor after = HistoryCursor.decode(cursor);
+            rows = transactionRepository.findHistoryPageAfter(customerId, typeName, projectTypeName,
+                    after.createdAt, after.id, pageSize + 1);
+        }
+
+        boolean hasMore = rows.size() > pageSize;
+        List<TransactionDTO> items = new ArrayList<>(Math.min(rows.size(), pageSize));
+        for (int i = 0; i < rows.size() && i < pageSize; i++) {
+            items.add(TransactionMapper.toDTO(rows.get(i)));
+        }
+
+        String nextCursor = null;
+        if (hasMore) {
+            TransactionDTO last = items.get(items.size() - 1);
+            nextCursor = new HistoryCursor(last.getCreatedAt(), last.getId()).encode();
+        }
+        return new TransactionPageDTO(items, nextCursor);
+    }
+
+    /**
+     * Monthly totals of one transaction type per project type, read from the rollups
+     */
+    public List<TransactionRollupDTO> getTransactionRollups(Long customerId, TransactionType type,
+                                                            LocalDate from, LocalDate to) {
+        TransactionType rollupType = type != null ? type : TransactionType.SPEND;
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate start = from != null ? from : end.withDayOfMonth(1).minusMonths(11);
+        if (start.isAfter(end)) {
+            throw new IllegalArgumentException("from must not be after to");
+        }
+        return transactionRollupRepository.findMonthlyTotals(customerId, rollupType, start, end);
+    }
+
+    /**
+     * Lifetime total of one transaction type, read from the rollups instead of summing the ledger.
+     * Until the rollup backfill has completed the rollups miss older rows, so the ledger is summed instead.
+     */
+    public BigDecimal getTotalAmount(Long customerId, TransactionType type) {
+        if (transactionRollupRepository.findPendingBackfill() != null) {
+            return transactionRepository.getTotalAmountByCustomerAndType(customerId, type);
+        }
+        return transactionRollupRepository.sumAmount(customerId, type);
+    }
+
+    /**
+     * Balance and totals as of a point in time (every transaction created before it), replayed from the
+     * nearest earlier daily checkpoint instead of from the start of the ledger
+     */
+    public BalanceAtDTO balanceAt(Long customerId, Instant at) {
+        if (at == null) {
+            throw new IllegalArgumentException("Point in time is required");
+        }
+        if (!customerRepository.existsById(customerId)) {
+            throw new IllegalArgumentException("Customer not found");
+        }
+        return readOnlyTx.execute(status ->
+                balanceCheckpointRepository.balanceAt(customerId, LocalDateTime.ofInstant(at, ZoneId.systemDefault())));
+    }
+
+    /**
+     * The customer's generated statement for a month
+     */
+    public StatementDTO getStatement(Long customerId, YearMonth month) {
+        StatementDTO statement = statementRepository.findStatement(customerId, month.atDay(1));
+        if (statement == null) {
+            throw new IllegalArgumentException("Statement not found");
+        }
+        return statement;
     }
 
     public Account getOrCreateAccount(Long customerId) {
-        return requiresNewTx.execute(status -> {
-            Customer customer = customerRepository.findById(customerId)
-                    .orElseThrow(() -> new IllegalArgumentException("Customer not found"));
+        return requiresNewTx.execute(status -> findOrCreateAccount(customerId));
+    }
 
-            return accountRepository.findByCustomerId(customerId)
-                    .orElseGet(() -> accountRepository.save(new Account(customer)));
-        });
+    /**
+     * The customer's account, created on first use. A cached customer->account mapping turns this into
+     * one primary-key read; the customer row itself is then only loaded if the caller touches it.
+     * Must run in a transaction.
+     */
+    private Account findOrCreateAccount(Long customerId) {
+        Long accountId = identityCache.getAccountId(customerId);
+        if (accountId != null) {
+            Optional<Account> account = accountRepository.findById(accountId);
+            if (account.isPresent()) {
+                return account.get();
+            }
+            identityCache.evictAccountId(customerId);
+        }
+
+        Customer customer = customerRepository.findById(customerId)
+                .orElseThrow(() -> new IllegalArgumentException("Customer not found"));
+        Account account = accountRepository.findByCustomerId(customerId)
+                .orElseGet(() -> accountRepository.save(new Account(customer)));
+        Long createdAccountId = account.getId();
+        identityCache.afterCommit(() -> identityCache.putAccountId(customerId, createdAccountId));
+        return account;
     }
 
     public RechargeInitiationDTO initiateRecharge(Long customerId, PaymentChannel channel, BigDecimal amount, Long promotionId) {
@@ -97,61 +335,84 @@ public class WalletService {
             throw new IllegalArgumentException("Amount must be positive");
         }
 
-        return requiresNewTx.execute(status -> {
-            Customer customer = customerRepository.findById(customerId)
-                    .orElseThrow(() -> new IllegalArgumentException("Customer not found"));
+        return requiresNewTx.execute(status -> openRechargeOrder(findOrCreateAccount(customerId), channel, amount, promotionId));
+    }
 
-            Account account = accountRepository.findByCustomerId(customerId)
-                    .orElseGet(() -> accountRepository.save(new Account(customer)));
+    /**
+     * Create a PENDING recharge order and its provider-side payment. Must run in a transaction.
+     */
+    private RechargeInitiationDTO openRechargeOrder(Account account, PaymentChannel channel, BigDecimal amount, Long promotionId) {
+        BigDecimal bonusAmount = BigDecimal.ZERO;
+        if (promotionId != null) {
+            RechargePromotion promotion = rechargePromotionRepository.findById(promotionId)
+                    .orElseThrow(() -> new IllegalArgumentException("Promotion not found"));
+            bonusAmount = promotion.getBonusAmount();
+        }
 
-            BigDecimal bonusAmount = BigDecimal.ZERO;
-            if (promotionId != null) {
-                RechargePromotion promotion = rechargePromotionRepository.findById(promotionId)
-                        .orElseThrow(() -> new IllegalArgumentException("Promotion not found"));
-                bonusAmount = promotion.getBonusAmount();
-            }
+        long orderId = orderNumberGenerator.nextId();
+        String orderNo = OrderNumberGenerator.orderNo(channel, orderId);
+        PaymentInitiation initiation = initiatePayment(channel, orderNo, amount, account.getCustomer().getWechatOpenid());
+        return saveRechargeOrder(account, channel, amount, promotionId, bonusAmount, null, orderId, initiation);
+    }
 
-            String orderNo = generateOrderNo(channel);
-            RechargeOrder order = new RechargeOrder(customer, account, orderNo, channel, amount);
-            order.setPromotionId(promotionId);
-            order.setBonusAmount(bonusAmount);
-            order.setStatus(RechargeOrderStatus.PENDING);
-
-            Map<String, Object> requestMeta = new LinkedHashMap<>();
-            requestMeta.put("customerId", customerId);
-            requestMeta.put("channel", channel.name());
-            requestMeta.put("amount", amount);
-            requestMeta.put("bonusAmount", bonusAmount);
-            if (promotionId != null) {
-                requestMeta.put("promotionId", promotionId);
-            }
-            order.setRequestMetadata(toJsonSafe(requestMeta));
-
-            order = rechargeOrderRepository.save(order);
-            rechargeOrderEventRepository.save(new RechargeOrderEvent(order, null, RechargeOrderStatus.PENDING.name(), "Order created", order.getRequestMetadata()));
-
-            PaymentInitiation initiation;
-            if (channel == PaymentChannel.WECHAT_PAY) {
-                int amountFen = amount.multiply(BigDecimal.valueOf(100)).intValueExact();
-                initiation = wechatPayService.createJsapiRechargeOrder(orderNo, amountFen, customer.getWechatOpenid(), "Wallet recharge");
-                order.setProviderPrepayId(initiation.getProviderPrepayId());
-                order = rechargeOrderRepository.save(order);
-            } else if (channel == PaymentChannel.ALIPAY) {
-                initiation = alipayPaymentService.createAppRechargeOrder(orderNo, amount, "Wallet recharge");
-            } else {
-                throw new IllegalArgumentException("Unsupported payment channel");
-            }
+    /**
+     * Create the provider-side payment for a recharge order; makes an HTTP call to the provider, so it
+     * should not run while account rows are locked
+     */
+    private PaymentInitiation initiatePayment(PaymentChannel channel, String orderNo, BigDecimal amount, String wechatOpenid) {
+        if (channel == PaymentChannel.WECHAT_PAY) {
+            int amountFen = Money.of(amount).toFenIntExact();
+            return wechatPayService.createJsapiRechargeOrder(orderNo, amountFen, wechatOpenid, "Wallet recharge");
+        } else if (channel == PaymentChannel.ALIPAY) {
+            return alipayPaymentService.createAppRechargeOrder(orderNo, amount, "Wallet recharge");
+        }
+        throw new IllegalArgumentException("Unsupported payment channel");
+    }
 
-            RechargeInitiationDTO dto = new RechargeInitiationDTO();
-            dto.setOrderNo(orderNo);
-            dto.setChannel(channel);
-            dto.setAmount(amount);
-            dto.setBonusAmount(bonusAmount);
-            dto.setPromotionId(promotionId);
-            dto.setWechatPayParams(initiation.getClientParams());
-            dto.setAlipayOrderString(initiation.getOrderString());
-            return dto;
-        });
+    /**
+     * Record a PENDING recharge order whose payment the provider has created; {@code shortfallReferenceNo}
+     * marks an order opened to top up a shortfall purchase. Must run in a transaction.
+     */
+    private RechargeInitiationDTO saveRechargeOrder(Account account, PaymentChannel channel, BigDecimal amount,
+                                                    Long promotionId, BigDecimal bonusAmount, String shortfallReferenceNo,
+                                                    long orderId, PaymentInitiation initiation) {
+        Customer customer = account.getCustomer();
+        String orderNo = OrderNumberGenerator.orderNo(channel, orderId);
+        RechargeOrder order = new RechargeOrder(customer, account, orderNo, channel, amount);
+        order.setId(orderId);
+        order.setPromotionId(promotionId);
+        order.setBonusAmount(bonusAmount);
+        order.setStatus(RechargeOrderStatus.PENDING);
+
+        Map<String, Object> requestMeta = new LinkedHashMap<>();
+        requestMeta.put("customerId", customer.getId());
+        requestMeta.put("channel", channel.name());
+        requestMeta.put("amount", amount);
+        requestMeta.put("bonusAmount", bonusAmount);
+        if (promotionId != null) {
+            requestMeta.put("promotionId", promotionId);
+        }
+        if (shortfallReferenceNo != null) {
+            requestMeta.put("shortfallReferenceNo", shortfallReferenceNo);
+        }
+        order.setRequestMetadata(toJsonSafe(requestMeta));
+
+        if (channel == PaymentChannel.WECHAT_PAY) {
+            order.setProviderPrepayId(initiation.getProviderPrepayId());
+        }
+
+        order = rechargeOrderRepository.save(order);
+        rechargeOrderEventRepository.save(new RechargeOrderEvent(order, null, RechargeOrderStatus.PENDING.name(), "Order created", order.getRequestMetadata()));
+
+        RechargeInitiationDTO dto = new RechargeInitiationDTO();
+        dto.setOrderNo(orderNo);
+        dto.setChannel(channel);
+        dto.setAmount(amount);
+        dto.setBonusAmount(bonusAmount);
+        dto.setPromotionId(promotionId);
+        dto.setWechatPayParams(initiation.getClientParams());
+        dto.setAlipayOrderString(initiation.getOrderString());
+        return dto;
     }
 
     public void handleWechatPayNotification(Map<String, String> headers, String body) {
@@ -165,30 +426,809 @@ public class WalletService {
     }
 
     public Transaction deduct(Long customerId, BigDecimal amount, ProjectType projectType, String metadata, String referenceNo) {
-        if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
+        if (amount == null) {
+            throw new IllegalArgumentException("Amount must be positive");
+        }
+        Money spend = Money.of(amount);
+        if (!spend.isPositive()) {
             throw new IllegalArgumentException("Amount must be positive");
         }
+        // Defaulted here so no engine, nor the velocity limiter, sees a missing project type
+        if (projectType == null) {
+            projectType = ProjectType.GENERAL;
+        }
+
+        if (referenceNo != null) {
+            Transaction replay = replaySpend(customerId, referenceNo);
+            if (replay != null) {
+                return replay;
+            }
+        }
+
+        // Retries were answered above, so only new spends count against the velocity caps
+        VelocityLimiter.Reservation velocity = velocityLimiter.acquire(customerId, projectType, spend);
+        Transaction transaction;
+        try {
+            transaction = applyDeduct(customerId, amount, spend, projectType, metadata, referenceNo);
+        } catch (DataIntegrityViolationException e) {
+            velocityLimiter.release(velocity);
+            // A concurrent retry with the same reference won the race; hand back its result
+            Transaction replay = referenceNo != null ? replaySpend(customerId, referenceNo) : null;
+            if (replay == null) {
+                throw e;
+            }
+            return replay;
+        } catch (DeductOutcomeUnknownException e) {
+            // The spend may still commit, so its reservation stays counted
+            throw e;
+        } catch (RuntimeException e) {
+            velocityLimiter.release(velocity);
+            throw e;
+        }
+
+        if (referenceNo != null) {
+            spendReferenceCache.put(referenceNo, new SpendReferenceCache.SpendReceipt(transaction.getId(), customerId,
+                    transaction.getAccount().getId(), amount, projectType, metadata));
+        }
+        return transaction;
+    }
+
+    private Transaction applyDeduct(Long customerId, BigDecimal amount, Money spend, ProjectType projectType,
+                                    String metadata, String referenceNo) {
+        if (eventSourcedLedger.isActive()) {
+            return eventSourcedLedger.deduct(customerId, spend, projectType, metadata, referenceNo);
+        }
+        if (shardedBalanceService.isSharded(customerId)) {
+            return shardedBalanceService.deduct(customerId, spend, projectType, metadata, referenceNo);
+        }
+        try {
+            return applyUnshardedDeduct(customerId, amount, spend, projectType, metadata, referenceNo);
+        } catch (InsufficientBalanceException e) {
+            // Another node may have sharded the account since this node last refreshed its routing
+            if (!shardedBalanceService.recheck(customerId)) {
+                throw e;
+            }
+            return shardedBalanceService.deduct(customerId, spend, projectType, metadata, referenceNo);
+        }
+    }
 
-        return executeWithOptimisticLockRetry(() -> requiresNewTx.execute(status -> {
-            Customer customer = customerRepository.findById(customerId)
-                    .orElseThrow(() -> new IllegalArgumentException("Customer not found"));
+    private Transaction applyUnshardedDeduct(Long customerId, BigDecimal amount, Money spend, ProjectType projectType,
+                                             String metadata, String referenceNo) {
+        DeductEngine engine = walletProperties.getDeduct().getEngine();
+        if (engine == DeductEngine.CONDITIONAL_UPDATE) {
+            Transaction transaction = accountLanes.run(customerId, () ->
+                    conditionalDeductEngine.deduct(customerId, amount, projectType, metadata, referenceNo));
+            balanceCache.evict(customerId);
+            return transaction;
+        }
+        if (engine == DeductEngine.GROUP_COMMIT) {
+            // The single flusher thread already serializes writes, so no lane is taken here
+            try {
+                return groupCommitDeductEngine.deduct(customerId, spend, projectType, metadata, referenceNo);
+            } finally {
+                // Also on a timed-out commit, which may still have moved the balance
+                balanceCache.evict(customerId);
+            }
+        }
 
-            Account account = accountRepository.findByCustomerId(customerId)
-                    .orElseGet(() -> accountRepository.save(new Account(customer)));
+        Transaction saved = accountLanes.run(customerId, () -> executeWithOptimisticLockRetry(() -> requiresNewTx.execute(status -> {
+            Account account = findOrCreateAccount(customerId);
+            Customer customer = account.getCustomer();
 
-            if (account.getBalance().compareTo(amount) < 0) {
+            if (!account.canCover(amount)) {
                 throw new InsufficientBalanceException("Insufficient balance");
             }
 
-            account.setBalance(account.getBalance().subtract(amount));
-            account.setTotalSpend(account.getTotalSpend().add(amount));
+            account.debit(amount);
             account = accountRepository.save(account);
 
             Transaction transaction = new Transaction(customer, account, TransactionType.SPEND, amount, projectType);
             transaction.setMetadata(metadata);
             transaction.setReferenceNo(referenceNo);
-            return transactionRepository.save(transaction);
+            Transaction inserted = transactionRepository.save(transaction);
+            transactionRollupRepository.rollUp(List.of(inserted.getId()));
+            return inserted;
+        })));
+        refreshBalance(saved.getAccount());
+        return saved;
+    }
+
+    /**
+     * Answer a retried deduct from the original SPEND without touching {@code accounts}.
+     * Returns null when the reference has not been used yet.
+     */
+    private Transaction replaySpend(Long customerId, String referenceNo) {
+        SpendReferenceCache.SpendReceipt receipt = spendReferenceCache.get(referenceNo);
+        if (receipt != null) {
+            metrics.increment("wallet.idempotency.cache-hits");
+        } else {
+            metrics.increment("wallet.idempotency.cache-misses");
+            Transaction original = transactionRepository.findByTypeAndReferenceNo(TransactionType.SPEND, referenceNo).orElse(null);
+            if (original == null) {
+                return null;
+            }
+            receipt = new SpendReferenceCache.SpendReceipt(original.getId(), original.getCustomer().getId(),
+                    original.getAccount().getId(), original.getAmount(), original.getProjectType(), original.getMetadata());
+            spendReferenceCache.put(referenceNo, receipt);
+        }
+
+        if (!receipt.getCustomerId().equals(customerId)) {
+            throw new IllegalArgumentException("referenceNo already used");
+        }
+
+        metrics.increment("wallet.idempotency.replays");
+        BigDecimal balance = accountRepository.findBalanceViewByCustomerId(customerId)
+                .map(AccountBalanceView::getBalance)
+                .orElse(BigDecimal.ZERO);
+        return DetachedLedger.transaction(customerId, receipt.getAccountId(), balance, receipt.getTransactionId(),
+                TransactionType.SPEND, receipt.getAmount(), receipt.getProjectType(), receipt.getMetadata(), referenceNo);
+    }
+
+    /**
+     * Apply several spends for one customer atomically: either every item is debited or none is.
+     * The balance is debited once for the total and the ledger rows go out as one JDBC batch.
+     * Items whose referenceNo was already spent by this customer are answered with the original
+     * transaction instead of being debited again, so a retried batch is safe.
+     */
+    public BatchDeductResponseDTO deductBatch(Long customerId, List<DeductItem> items) {
+        if (items == null || items.isEmpty()) {
+            throw new IllegalArgumentException("At least one item is required");
+        }
+        int maxItems = walletProperties.getDeduct().getMaxBatchItems();
+        if (items.size() > maxItems) {
+            throw new IllegalArgumentException("At most " + maxItems + " items are allowed per batch");
+        }
+
+        Set<String> referenceNos = new HashSet<>();
+        for (DeductItem item : items) {
+            if (item.getAmount() == null || item.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
+                throw new IllegalArgumentException("Amount must be positive");
+            }
+            if (item.getReferenceNo() != null && !referenceNos.add(item.getReferenceNo())) {
+                throw new IllegalArgumentException("Duplicate referenceNo in batch: " + item.getReferenceNo());
+            }
+        }
+
+        Map<String, Long> applied = findAppliedSpends(customerId, referenceNos);
+        List<DeductItem> pending = new ArrayList<>(items.size());
+        BigDecimal total = BigDecimal.ZERO;
+        for (DeductItem item : items) {
+            if (item.getReferenceNo() == null || !applied.containsKey(item.getReferenceNo())) {
+                pending.add(item);
+                total = total.add(item.getAmount());
+            }
+        }
+        if (pending.isEmpty()) {
+            metrics.increment("wallet.idempotency.replays");
+            return replayBatch(customerId, items, applied, List.of());
+        }
+
+        // Retried items were answered above, so only new spends count against the velocity caps
+        List<VelocityLimiter.Reservation> velocity = acquireVelocity(customerId, pending);
+        BatchDeductResponseDTO result;
+        try {
+            result = applyDeductBatch(customerId, pending, total);
+        } catch (DataIntegrityViolationException e) {
+            velocity.forEach(velocityLimiter::release);
+            // A concurrent request spent one of the references first; replay only if it spent all of them
+            Map<String, Long> raced = findAppliedSpends(customerId, referenceNos);
+            if (raced.size() < items.size()) {
+                throw new IllegalArgumentException("referenceNo already used");
+            }
+            return replayBatch(customerId, items, raced, List.of());
+        } catch (RuntimeException e) {
+            velocity.forEach(velocityLimiter::release);
+            throw e;
+        }
+        if (applied.isEmpty()) {
+            return result;
+        }
+        BatchDeductResponseDTO merged = replayBatch(customerId, items, applied, result.getTransactionIds());
+        merged.setNewBalance(result.getNewBalance());
+        return merged;
+    }
+
+    /**
+     * The SPEND ids already recorded for a batch's referenceNos, keyed by referenceNo
+     *
+     * @throws IllegalArgumentException when one of them was spent by another customer
+     */
+    private Map<String, Long> findAppliedSpends(Long customerId, Set<String> referenceNos) {
+        Map<String, Long> applied = new HashMap<>();
+        if (referenceNos.isEmpty()) {
+            return applied;
+        }
+        for (Transaction original : transactionRepository.findByTypeAndReferenceNoIn(TransactionType.SPEND, referenceNos)) {
+            if (!original.getCustomer().getId().equals(customerId)) {
+                throw new IllegalArgumentException("referenceNo already used");
+            }
+            applied.put(original.getReferenceNo(), original.getId());
+        }
+        return applied;
+    }
+
+    /**
+     * Answer a batch in item order, taking ids of earlier spends from {@code applied} and those of
+     * freshly applied items, in order, from {@code appliedNow}
+     */
+    private BatchDeductResponseDTO replayBatch(Long customerId, List<DeductItem> items, Map<String, Long> applied,
+                                               List<Long> appliedNow) {
+        List<Long> transactionIds = new ArrayList<>(items.size());
+        int next = 0;
+        for (DeductItem item : items) {
+            Long original = item.getReferenceNo() != null ? applied.get(item.getReferenceNo()) : null;
+            transactionIds.add(original != null ? original : appliedNow.get(next++));
+        }
+        BigDecimal balance = accountRepository.findBalanceViewByCustomerId(customerId)
+                .map(AccountBalanceView::getBalance)
+                .orElse(BigDecimal.ZERO);
+        return new BatchDeductResponseDTO(transactionIds, balance);
+    }
+
+    /**
+     * Count every item of a batch against the velocity caps; when one breaks a cap the ones already counted are taken back
+     */
+    private List<VelocityLimiter.Reservation> acquireVelocity(Long customerId, List<DeductItem> items) {
+        List<VelocityLimiter.Reservation> reservations = new ArrayList<>(items.size());
+        try {
+            for (DeductItem item : items) {
+                reservations.add(velocityLimiter.acquire(customerId, item.getProjectType(), Money.of(item.getAmount())));
+            }
+        } catch (RuntimeException e) {
+            reservations.forEach(velocityLimiter::release);
+            throw e;
+        }
+        return reservations;
+    }
+
+    private BatchDeductResponseDTO applyDeductBatch(Long customerId, List<DeductItem> items, BigDecimal totalAmount) {
+        if (eventSourcedLedger.isActive()) {
+            return deductBatchEventSourced(customerId, items, Money.of(totalAmount));
+        }
+        boolean sharded = shardedBalanceService.isSharded(customerId);
+
+        Supplier<BatchDeductResponseDTO> work = () -> requiresNewTx.execute(status -> {
+            AccountBalanceView view;
+            if (sharded) {
+                view = accountRepository.findBalanceViewByCustomerId(customerId)
+                        .orElseThrow(() -> new IllegalArgumentException("Customer not found"));
+                shardedBalanceService.debit(view.getId(), Money.of(totalAmount));
+            } else {
+                if (accountRepository.debitIfSufficient(customerId, totalAmount) == 0) {
+                    if (!customerRepository.existsById(customerId)) {
+                        throw new IllegalArgumentException("Customer not found");
+                    }
+                    throw new InsufficientBalanceException("Insufficient balance");
+                }
+                view = accountRepository.findBalanceViewByCustomerId(customerId)
+                        .orElseThrow(() -> new IllegalStateException("Account vanished during deduct"));
+            }
+
+            List<Long> transactionIds = ledgerJdbcRepository.insertTransactions(toLedgerEntries(customerId, view.getId(), items));
+            metrics.add("wallet.deduct.batch.items", items.size());
+            return new BatchDeductResponseDTO(transactionIds,
+                    sharded ? shardedBalanceService.totalBalance(view) : view.getBalance());
+        });
+
+        // Sharded accounts skip the lane: their spends are meant to run in parallel
+        BatchDeductResponseDTO result = sharded ? work.get() : accountLanes.run(customerId, work);
+        balanceCache.evict(customerId);
+        return result;
+    }
+
+    private BatchDeductResponseDTO deductBatchEventSourced(Long customerId, List<DeductItem> items, Money total) {
+        return eventSourcedLedger.appendLocked(customerId, projection -> {
+            if (!projection.canCover(total)) {
+                throw new InsufficientBalanceException("Insufficient balance");
+            }
+
+            List<Long> transactionIds = requiresNewTx.execute(status ->
+                    ledgerJdbcRepository.insertTransactions(toLedgerEntries(customerId, projection.getAccountId(), items)));
+            projection.spend(total, transactionIds.stream().mapToLong(Long::longValue).max().orElse(0L));
+            metrics.add("wallet.deduct.batch.items", items.size());
+            return new BatchDeductResponseDTO(transactionIds, projection.getBalance().toBigDecimal());
+        });
+    }
+
+    private List<LedgerEntry> toLedgerEntries(Long customerId, Long accountId, List<DeductItem> items) {
+        List<LedgerEntry> entries = new ArrayList<>(items.size());
+        for (DeductItem item : items) {
+            entries.add(new LedgerEntry(customerId, accountId, TransactionType.SPEND, item.getAmount(),
+                    item.getProjectType() != null ? item.getProjectType() : ProjectType.GENERAL,
+                    item.getReferenceNo(), item.getMetadata()));
+        }
+        return entries;
+    }
+
+    /**
+     * Refund earlier spends in bulk. Each instruction names the SPEND by its referenceNo and is
+     * applied at most once per refundReferenceNo; a null amount refunds whatever is left of the spend.
+     */
+    public RefundReportDTO refundBatch(List<RefundInstruction> instructions) {
+        if (instructions == null || instructions.isEmpty()) {
+            throw new IllegalArgumentException("Refund list is empty");
+        }
+        return refundEngine.refund(instructions);
+    }
+
+    /**
+     * Move balance from one customer's wallet to another's atomically. Idempotent on referenceNo:
+     * a retry returns the transfer settled first.
+     */
+    public TransferDTO transfer(Long fromCustomerId, Long toCustomerId, BigDecimal amount, String referenceNo, String metadata) {
+        return transferEngine.transfer(new TransferInstruction(fromCustomerId, toCustomerId, amount, referenceNo, metadata));
+    }
+
+    /**
+     * Settle many transfers in batches, one database transaction per batch. Transfers that cannot
+     * be settled are reported rather than failing the rest.
+     */
+    public TransferReportDTO transferBatch(List<TransferInstruction> instructions) {
+        if (instructions == null || instructions.isEmpty()) {
+            throw new IllegalArgumentException("Transfer list is empty");
+        }
+        return transferEngine.transferBatch(instructions);
+    }
+
+    /**
+     * Reserve part of the available balance until it is captured, released or expires.
+     * Idempotent on (customer, referenceNo): a retry returns the hold created first.
+     */
+    public BalanceHold authorizeHold(Long customerId, BigDecimal amount, ProjectType projectType,
+                                     String referenceNo, Long ttlSeconds) {
+        if (amount == null || amount.compareTo(BigDecimal.ZERO) <= 0) {
+            throw new IllegalArgumentException("Amount must be positive");
+        }
+        WalletProperties.Holds holdProperties = walletProperties.getHolds();
+        long ttl = ttlSeconds != null ? ttlSeconds : holdProperties.getDefaultTtlSeconds();
+        if (ttl <= 0 || ttl > holdProperties.getMaxTtlSeconds()) {
+            throw new IllegalArgumentException("ttlSeconds must be between 1 and " + holdProperties.getMaxTtlSeconds());
+        }
+
+        requireInPlaceLedger("Holds");
+        if (shardedBalanceService.isSharded(customerId)) {
+            throw new IllegalStateException("Holds are not supported on sharded accounts");
+        }
+
+        if (referenceNo != null) {
+            BalanceHold existing = balanceHoldRepository.findByCustomerIdAndReferenceNo(customerId, referenceNo).orElse(null);
+            if (existing != null) {
+                return existing;
+            }
+        }
+
+        BalanceHold hold;
+        try {
+            hold = accountLanes.run(customerId, () -> requiresNewTx.execute(status -> {
+                if (accountRepository.reserveIfAvailable(customerId, amount) == 0) {
+                    if (!customerRepository.existsById(customerId)) {
+                        throw new IllegalArgumentException("Customer not found");
+                    }
+                    throw new InsufficientBalanceException("Insufficient balance");
+                }
+
+                AccountBalanceView view = accountRepository.findBalanceViewByCustomerId(customerId)
+                        .orElseThrow(() -> new IllegalStateException("Account vanished during authorize"));
+                BalanceHold created = new BalanceHold(customerRepository.getReferenceById(customerId),
+                        accountRepository.getReferenceById(view.getId()), amount,
+                        projectType != null ? projectType : ProjectType.GENERAL,
+                        LocalDateTime.now().plusSeconds(ttl));
+                created.setReferenceNo(referenceNo);
+                return balanceHoldRepository.save(created);
+            }));
+        } catch (DataIntegrityViolationException e) {
+            if (referenceNo == null) {
+                throw e;
+            }
+            return balanceHoldRepository.findByCustomerIdAndReferenceNo(customerId, referenceNo).orElseThrow(() -> e);
+        }
+
+        balanceHoldExpiryJob.schedule(hold.getId(), hold.getExpiresAt());
+        balanceCache.evict(customerId);
+        metrics.increment("wallet.holds.authorized");
+        return hold;
+    }
+
+    /**
+     * Settle an active hold: debit up to the held amount (the whole hold when amount is null)
+     * and give the rest back. Capturing an already captured hold returns the same transaction.
+     */
+    public Transaction captureHold(Long customerId, Long holdId, BigDecimal amount) {
+        requireInPlaceLedger("Holds");
+        if (amount != null && amount.compareTo(BigDecimal.ZERO) <= 0) {
+            throw new IllegalArgumentException("Amount must be positive");
+        }
+
+        // A capture is a spend, so it counts against the velocity caps; retries of a captured hold do not
+        BalanceHold current = balanceHoldRepository.findByIdAndCustomerId(holdId, customerId)
+                .orElseThrow(() -> new IllegalArgumentException("Hold not found"));
+        VelocityLimiter.Reservation velocity = current.getStatus() == HoldStatus.CAPTURED ? null
+                : velocityLimiter.acquire(customerId, current.getProjectType(), Money.of(amount != null ? amount : current.getAmount()));
+        AtomicBoolean replayed = new AtomicBoolean();
+
+        Transaction transaction;
+        try {
+            transaction = accountLanes.run(customerId, () -> requiresNewTx.execute(status -> {
+                BalanceHold hold = balanceHoldRepository.lockByIdAndCustomerId(holdId, customerId)
+                        .orElseThrow(() -> new IllegalArgumentException("Hold not found"));
+
+                if (hold.getStatus() == HoldStatus.CAPTURED) {
+                    replayed.set(true);
+                    BigDecimal balance = accountRepository.findBalanceViewByCustomerId(customerId)
+                            .map(AccountBalanceView::getBalance)
+                            .orElse(BigDecimal.ZERO);
+                    return DetachedLedger.transaction(customerId, hold.getAccount().getId(), balance, hold.getTransactionId(),
+                            TransactionType.SPEND, hold.getCapturedAmount(), hold.getProjectType(),
+                            holdMetadata(hold), hold.getReferenceNo());
+                }
+                requireActive(hold);
+
+                BigDecimal captured = amount != null ? amount : hold.getAmount();
+                if (captured.compareTo(hold.getAmount()) > 0) {
+                    throw new IllegalArgumentException("Capture amount exceeds the held amount");
+                }
+                if (accountRepository.captureHeld(customerId, hold.getAmount(), captured) == 0) {
+                    throw new IllegalStateException("Hold reservation is missing on the account");
+                }
+
+                String metadata = holdMetadata(hold);
+                Long transactionId = ledgerJdbcRepository.insertTransaction(new LedgerEntry(customerId, hold.getAccount().getId(),
+                        TransactionType.SPEND, captured, hold.getProjectType(), hold.getReferenceNo(), metadata));
+
+                hold.setStatus(HoldStatus.CAPTURED);
+                hold.setCapturedAmount(captured);
+                hold.setTransactionId(transactionId);
+                hold.setSettledAt(LocalDateTime.now());
+
+                AccountBalanceView view = accountRepository.findBalanceViewByCustomerId(customerId)
+                        .orElseThrow(() -> new IllegalStateException("Account vanished during capture"));
+                return DetachedLedger.transaction(customerId, view.getId(), view.getBalance(), transactionId,
+                        TransactionType.SPEND, captured, hold.getProjectType(), metadata, hold.getReferenceNo());
+            }));
+        } catch (RuntimeException e) {
+            velocityLimiter.release(velocity);
+            throw e;
+        }
+        if (replayed.get()) {
+            // Captured concurrently by another call, which counted it
+            velocityLimiter.release(velocity);
+        }
+
+        balanceCache.evict(customerId);
+        if (transaction.getReferenceNo() != null) {
+            spendReferenceCache.put(transaction.getReferenceNo(), new SpendReferenceCache.SpendReceipt(transaction.getId(),
+                    customerId, transaction.getAccount().getId(), transaction.getAmount(), transaction.getProjectType(),
+                    transaction.getMetadata()));
+        }
+        metrics.increment("wallet.holds.captured");
+        return transaction;
+    }
+
+    /**
+     * Give an active hold back to the available balance. Releasing twice is a no-op.
+     */
+    public BalanceHold releaseHold(Long customerId, Long holdId) {
+        requireInPlaceLedger("Holds");
+        BalanceHold released = accountLanes.run(customerId, () -> requiresNewTx.execute(status -> {
+            BalanceHold hold = balanceHoldRepository.lockByIdAndCustomerId(holdId, customerId)
+                    .orElseThrow(() -> new IllegalArgumentException("Hold not found"));
+            if (hold.getStatus() == HoldStatus.RELEASED) {
+                return hold;
+            }
+            requireActive(hold);
+
+            accountRepository.releaseHeld(customerId, hold.getAmount());
+            hold.setStatus(HoldStatus.RELEASED);
+            hold.setSettledAt(LocalDateTime.now());
+            return hold;
+        }));
+
+        balanceCache.evict(customerId);
+        metrics.increment("wallet.holds.released");
+        return released;
+    }
+
+    private void requireInPlaceLedger(String feature) {
+        if (eventSourcedLedger.isActive()) {
+            throw new IllegalStateException(feature + " are not supported with the event-sourced ledger");
+        }
+    }
+
+    private void requireActive(BalanceHold hold) {
+        if (hold.getStatus() != HoldStatus.ACTIVE) {
+            throw new IllegalStateException("Hold is " + hold.getStatus());
+        }
+        if (hold.getExpiresAt().isBefore(LocalDateTime.now())) {
+            // Left for the expiry job, which releases it with the rest of its batch
+            throw new IllegalStateException("Hold has expired");
+        }
+    }
+
+    private String holdMetadata(BalanceHold hold) {
+        Map<String, Object> metadata = new LinkedHashMap<>();
+        metadata.put("holdId", hold.getId());
+        return toJsonSafe(metadata);
+    }
+
+    /**
+     * Spend more than the available balance in one call: the available part is held, a recharge order is
+     * opened for the shortfall, and the whole amount is spent when that order's payment is confirmed.
+     * Idempotent on (customer, referenceNo). A balance that already covers the amount is spent right away.
+     */
+    public ShortfallPurchaseDTO purchaseWithShortfall(Long customerId, PaymentChannel channel, BigDecimal amount,
+                                                      ProjectType projectType, String metadata, String referenceNo) {
+        if (amount == null || !Money.of(amount).isPositive()) {
+            throw new IllegalArgumentException("Amount must be positive");
+        }
+        if (channel == null) {
+            throw new IllegalArgumentException("Payment channel is required");
+        }
+        if (referenceNo == null || referenceNo.isEmpty()) {
+            throw new IllegalArgumentException("referenceNo is required");
+        }
+        requireInPlaceLedger("Shortfall purchases");
+        if (shardedBalanceService.isSharded(customerId)) {
+            throw new IllegalStateException("Shortfall purchases are not supported on sharded accounts");
+        }
+
+        ShortfallPurchase existing = shortfallPurchaseRepository.findByCustomerIdAndReferenceNo(customerId, referenceNo).orElse(null);
+        if (existing != null) {
+            return ShortfallPurchaseMapper.toDTO(existing);
+        }
+        if (replaySpend(customerId, referenceNo) != null) {
+            throw new IllegalArgumentException("referenceNo already used");
+        }
+
+        ProjectType type = projectType != null ? projectType : ProjectType.GENERAL;
+        // Checked up front so a purchase that would break a cap is refused before the customer pays. Only a
+        // covered purchase is spent here; one awaiting payment gives it back and is counted when it completes.
+        VelocityLimiter.Reservation velocity = velocityLimiter.acquire(customerId, type, Money.of(amount));
+        StartedPurchase started;
+        try {
+            started = accountLanes.run(customerId, () -> requiresNewTx.execute(status ->
+                    startShortfallPurchase(customerId, amount, type, metadata, referenceNo)));
+        } catch (DataIntegrityViolationException e) {
+            velocityLimiter.release(velocity);
+            // A concurrent retry with the same reference won the race
+            return shortfallPurchaseRepository.findByCustomerIdAndReferenceNo(customerId, referenceNo)
+                    .map(ShortfallPurchaseMapper::toDTO)
+                    .orElseThrow(() -> e);
+        } catch (RuntimeException e) {
+            velocityLimiter.release(velocity);
+            throw e;
+        }
+
+        ShortfallPurchase purchase = started.purchase;
+        if (purchase.getStatus() != ShortfallPurchaseStatus.COMPLETED) {
+            velocityLimiter.release(velocity);
+        }
+        if (started.hold != null) {
+            balanceHoldExpiryJob.schedule(started.hold.getId(), started.hold.getExpiresAt());
+        }
+        balanceCache.evict(customerId);
+        RechargeInitiationDTO initiation = null;
+        if (purchase.getStatus() == ShortfallPurchaseStatus.AWAITING_PAYMENT) {
+            initiation = openShortfallOrder(customerId, channel, purchase, started.wechatOpenid);
+            purchase.setOrderNo(initiation.getOrderNo());
+        }
+        if (purchase.getStatus() == ShortfallPurchaseStatus.COMPLETED) {
+            spendReferenceCache.put(referenceNo, new SpendReferenceCache.SpendReceipt(purchase.getTransactionId(), customerId,
+                    purchase.getAccount().getId(), amount, type, metadata));
+            metrics.increment("wallet.shortfall.covered");
+        } else {
+            metrics.increment("wallet.shortfall.started");
+        }
+
+        ShortfallPurchaseDTO dto = ShortfallPurchaseMapper.toDTO(purchase);
+        if (initiation != null) {
+            dto.setChannel(channel);
+            dto.setWechatPayParams(initiation.getWechatPayParams());
+            dto.setAlipayOrderString(initiation.getAlipayOrderString());
+        }
+        return dto;
+    }
+
+    public ShortfallPurchaseDTO getShortfallPurchase(Long customerId, String orderNo) {
+        return shortfallPurchaseRepository.findByOrderNo(orderNo)
+                .filter(purchase -> purchase.getCustomer().getId().equals(customerId))
+                .map(ShortfallPurchaseMapper::toDTO)
+                .orElseThrow(() -> new IllegalArgumentException("Purchase not found"));
+    }
+
+    /**
+     * Spend a covered purchase right away, or hold the available part and save the purchase as awaiting
+     * payment. Runs in the account lane and a transaction, so it must not call out to the payment provider.
+     */
+    private StartedPurchase startShortfallPurchase(Long customerId, BigDecimal amount, ProjectType projectType,
+                                                   String metadata, String referenceNo) {
+        Account account = findOrCreateAccount(customerId);
+        AccountBalanceView view = accountRepository.findBalanceViewByCustomerId(customerId)
+                .orElseThrow(() -> new IllegalStateException("Account vanished during purchase"));
+        BigDecimal available = view.getBalance().subtract(view.getHeldAmount()).max(BigDecimal.ZERO);
+
+        ShortfallPurchase purchase = new ShortfallPurchase(account.getCustomer(), account, referenceNo, amount, projectType);
+        purchase.setMetadata(metadata);
+
+        if (available.compareTo(amount) >= 0) {
+            if (accountRepository.captureHeldAndDebit(customerId, BigDecimal.ZERO, amount) == 0) {
+                throw new IllegalStateException("Balance changed during purchase, please retry");
+            }
+            Long transactionId = ledgerJdbcRepository.insertTransaction(new LedgerEntry(customerId, account.getId(),
+                    TransactionType.SPEND, amount, projectType, referenceNo, metadata));
+            purchase.setStatus(ShortfallPurchaseStatus.COMPLETED);
+            purchase.setTransactionId(transactionId);
+            purchase.setCompletedAt(LocalDateTime.now());
+            return new StartedPurchase(shortfallPurchaseRepository.save(purchase), null, null);
+        }
+        String wechatOpenid = account.getCustomer().getWechatOpenid();
+
+        BalanceHold hold = null;
+        if (available.signum() > 0) {
+            if (accountRepository.reserveIfAvailable(customerId, available) == 0) {
+                throw new IllegalStateException("Balance changed during purchase, please retry");
+            }
+            hold = balanceHoldRepository.save(new BalanceHold(account.getCustomer(), account, available, projectType,
+                    LocalDateTime.now().plusSeconds(walletProperties.getHolds().getDefaultTtlSeconds())));
+        }
+
+        purchase.setHeldAmount(available);
+        purchase.setShortfallAmount(amount.subtract(available));
+        purchase.setHoldId(hold != null ? hold.getId() : null);
+        return new StartedPurchase(shortfallPurchaseRepository.save(purchase), hold, wechatOpenid);
+    }
+
+    /**
+     * Open the recharge order for the shortfall of a started purchase. The provider call runs outside the
+     * account lane and any transaction, so a slow provider holds no locks; the order is then recorded in a
+     * short transaction of its own. When either step fails the purchase fails and its hold is released.
+     */
+    private RechargeInitiationDTO openShortfallOrder(Long customerId, PaymentChannel channel, ShortfallPurchase purchase,
+                                                     String wechatOpenid) {
+        long orderId = orderNumberGenerator.nextId();
+        String orderNo = OrderNumberGenerator.orderNo(channel, orderId);
+        try {
+            PaymentInitiation payment = initiatePayment(channel, orderNo, purchase.getShortfallAmount(), wechatOpenid);
+            return requiresNewTx.execute(status -> {
+                ShortfallPurchase locked = shortfallPurchaseRepository.lockById(purchase.getId())
+                        .orElseThrow(() -> new IllegalStateException("Shortfall purchase vanished: " + purchase.getReferenceNo()));
+                if (locked.getStatus() != ShortfallPurchaseStatus.AWAITING_PAYMENT) {
+                    throw new IllegalStateException("Shortfall purchase is " + locked.getStatus());
+                }
+                locked.setOrderNo(orderNo);
+                return saveRechargeOrder(locked.getAccount(), channel, purchase.getShortfallAmount(), null, BigDecimal.ZERO,
+                        purchase.getReferenceNo(), orderId, payment);
+            });
+        } catch (RuntimeException e) {
+            failShortfallPurchase(customerId, purchase.getId(), "Payment initiation failed");
+            throw e;
+        }
+    }
+
+    /**
+     * Fail a purchase that is still awaiting payment and give its hold back
+     */
+    private void failShortfallPurchase(Long customerId, Long purchaseId, String reason) {
+        accountLanes.run(customerId, () -> requiresNewTx.execute(status -> {
+            ShortfallPurchase locked = shortfallPurchaseRepository.lockById(purchaseId).orElse(null);
+            if (locked == null || locked.getStatus() != ShortfallPurchaseStatus.AWAITING_PAYMENT) {
+                return locked;
+            }
+            LocalDateTime now = LocalDateTime.now();
+            BalanceHold hold = locked.getHoldId() != null
+                    ? balanceHoldRepository.lockByIdAndCustomerId(locked.getHoldId(), customerId).orElse(null)
+                    : null;
+            if (hold != null && hold.getStatus() == HoldStatus.ACTIVE) {
+                accountRepository.releaseHeld(customerId, hold.getAmount());
+                hold.setStatus(HoldStatus.RELEASED);
+                hold.setSettledAt(now);
+            }
+            locked.setStatus(ShortfallPurchaseStatus.FAILED);
+            locked.setFailureReason(reason);
+            locked.setCompletedAt(now);
+            return locked;
         }));
+        balanceCache.evict(customerId);
+        metrics.increment("wallet.shortfall.failed");
+    }
+
+    /**
+     * Spend a shortfall purchase whose recharge order has been paid: its hold is captured and the whole
+     * amount debited in one guarded update. When the balance no longer covers it (the top-up was spent
+     * elsewhere, or the hold expired first) or the spend would break a velocity cap, the purchase fails and
+     * the recharge stays in the wallet. Recharges that are not shortfall purchases stop at the order number lookup.
+     */
+    private void completeShortfallPurchase(String orderNo) {
+        ShortfallPurchase pending = shortfallPurchaseRepository.findByOrderNo(orderNo).orElse(null);
+        if (pending == null || pending.getStatus() != ShortfallPurchaseStatus.AWAITING_PAYMENT) {
+            return;
+        }
+
+        Long customerId = pending.getCustomer().getId();
+        VelocityLimiter.Reservation velocity;
+        try {
+            velocity = velocityLimiter.acquire(customerId, pending.getProjectType(), Money.of(pending.getAmount()));
+        } catch (VelocityLimitExceededException e) {
+            // The top-up stays in the wallet, as when the balance no longer covers the purchase
+            log.warn("Shortfall purchase {} failed after payment of order {}: {}", pending.getReferenceNo(), orderNo, e.getMessage());
+            failShortfallPurchase(customerId, pending.getId(), "Velocity limit exceeded");
+            return;
+        }
+
+        ShortfallPurchase purchase;
+        try {
+            purchase = accountLanes.run(customerId, () -> requiresNewTx.execute(status -> {
+                ShortfallPurchase locked = shortfallPurchaseRepository.lockByOrderNo(orderNo)
+                        .orElseThrow(() -> new IllegalStateException("Shortfall purchase vanished: " + orderNo));
+                if (locked.getStatus() != ShortfallPurchaseStatus.AWAITING_PAYMENT) {
+                    // Settled by a concurrent callback
+                    return null;
+                }
+
+                BalanceHold hold = locked.getHoldId() != null
+                        ? balanceHoldRepository.lockByIdAndCustomerId(locked.getHoldId(), customerId).orElse(null)
+                        : null;
+                boolean holdActive = hold != null && hold.getStatus() == HoldStatus.ACTIVE;
+                BigDecimal held = holdActive ? hold.getAmount() : BigDecimal.ZERO;
+                LocalDateTime now = LocalDateTime.now();
+
+                if (accountRepository.captureHeldAndDebit(customerId, held, locked.getAmount()) == 0) {
+                    if (holdActive) {
+                        accountRepository.releaseHeld(customerId, held);
+                        hold.setStatus(HoldStatus.RELEASED);
+                        hold.setSettledAt(now);
+                    }
+                    locked.setStatus(ShortfallPurchaseStatus.FAILED);
+                    locked.setFailureReason("Insufficient balance");
+                    locked.setCompletedAt(now);
+                    return locked;
+                }
+
+                Long transactionId = ledgerJdbcRepository.insertTransaction(new LedgerEntry(customerId, locked.getAccount().getId(),
+                        TransactionType.SPEND, locked.getAmount(), locked.getProjectType(), locked.getReferenceNo(), locked.getMetadata()));
+                if (holdActive) {
+                    hold.setStatus(HoldStatus.CAPTURED);
+                    hold.setCapturedAmount(held);
+                    hold.setTransactionId(transactionId);
+                    hold.setSettledAt(now);
+                }
+                locked.setStatus(ShortfallPurchaseStatus.COMPLETED);
+                locked.setTransactionId(transactionId);
+                locked.setCompletedAt(now);
+                return locked;
+            }));
+        } catch (RuntimeException e) {
+            velocityLimiter.release(velocity);
+            throw e;
+        }
+        if (purchase == null || purchase.getStatus() != ShortfallPurchaseStatus.COMPLETED) {
+            velocityLimiter.release(velocity);
+        }
+        if (purchase == null) {
+            return;
+        }
+
+        balanceCache.evict(customerId);
+        if (purchase.getStatus() == ShortfallPurchaseStatus.COMPLETED) {
+            spendReferenceCache.put(purchase.getReferenceNo(), new SpendReferenceCache.SpendReceipt(purchase.getTransactionId(),
+                    customerId, purchase.getAccount().getId(), purchase.getAmount(), purchase.getProjectType(),
+                    purchase.getMetadata()));
+            metrics.increment("wallet.shortfall.completed");
+        } else {
+            log.warn("Shortfall purchase {} failed after payment of order {}", purchase.getReferenceNo(), orderNo);
+            metrics.increment("wallet.shortfall.failed");
+        }
+    }
+
+    private static final class StartedPurchase {
+        private final ShortfallPurchase purchase;
+        private final BalanceHold hold;
+        private final String wechatOpenid;
+
+        private StartedPurchase(ShortfallPurchase purchase, BalanceHold hold, String wechatOpenid) {
+            this.purchase = purchase;
+            this.hold = hold;
+            this.wechatOpenid = wechatOpenid;
+        }
     }
 
     private void confirmRechargePaid(PaymentChannel channel, PaymentCallback callback) {
@@ -201,51 +1241,116 @@ public class WalletService {
             return;
         }
 
-        executeWithOptimisticLockRetry(() -> {
-            requiresNewTx.execute(status -> {
-                RechargeOrder order = rechargeOrderRepository.findByOrderNo(callback.getOrderNo())
-                        .orElseThrow(() -> new PaymentProcessingException("Recharge order not found: " + callback.getOrderNo()));
-
-                if (order.getStatus() == RechargeOrderStatus.PAID) {
-                    log.info("Recharge order already paid (orderNo={})", order.getOrderNo());
-                    return null;
+        if (eventSourcedLedger.isActive()) {
+            Long customerId = findRechargeCustomerId(callback.getOrderNo())
+                    .orElseThrow(() -> new PaymentProcessingException("Recharge order not found: " + callback.getOrderNo()));
+            // The credit is appended as a RECHARGE row only; the projection picks it up once the row is committed
+            eventSourcedLedger.appendLocked(customerId, projection -> {
+                RechargeCredit credit = requiresNewTx.execute(status -> markRechargePaid(channel, callback, false));
+                if (credit != null) {
+                    projection.recharge(credit.paid, credit.bonus, credit.transactionId);
                 }
+                return credit;
+            });
+            return;
+        }
 
-                RechargeOrderStatus from = order.getStatus();
-
-                order.setStatus(RechargeOrderStatus.PAID);
-                order.setProviderTransactionId(callback.getProviderTransactionId());
-                order.setCallbackMetadata(callback.getRawPayload());
-                order.setPaidAt(LocalDateTime.now());
-                rechargeOrderRepository.save(order);
-                rechargeOrderEventRepository.save(new RechargeOrderEvent(order, from.name(), RechargeOrderStatus.PAID.name(), "Payment confirmed", callback.getRawPayload()));
-
-                Account account = order.getAccount();
-                BigDecimal credit = order.getAmount().add(order.getBonusAmount() != null ? order.getBonusAmount() : BigDecimal.ZERO);
-
-                account.setBalance(account.getBalance().add(credit));
-                account.setTotalRecharge(account.getTotalRecharge().add(order.getAmount()));
-                accountRepository.save(account);
-
-                Map<String, Object> txMeta = new LinkedHashMap<>();
-                txMeta.put("orderNo", order.getOrderNo());
-                txMeta.put("channel", channel.name());
-                txMeta.put("providerTransactionId", callback.getProviderTransactionId());
-                txMeta.put("bonusAmount", order.getBonusAmount());
-                if (order.getPromotionId() != null) {
-                    txMeta.put("promotionId", order.getPromotionId());
-                }
+        // Credits share the deduct lane of the same customer so they queue instead of conflicting
+        Long laneKey = accountLanes.isEnabled()
+                ? findRechargeCustomerId(callback.getOrderNo()).orElse(null)
+                : null;
 
-                Transaction transaction = new Transaction(order.getCustomer(), account, TransactionType.RECHARGE, order.getAmount(),
-                        order.getPromotionId() != null ? ProjectType.PROMOTION : ProjectType.GENERAL);
-                transaction.setReferenceNo(order.getOrderNo());
-                transaction.setMetadata(toJsonSafe(txMeta));
+        RechargeCredit credited = accountLanes.run(laneKey, () -> executeWithOptimisticLockRetry(() ->
+            requiresNewTx.execute(status -> markRechargePaid(channel, callback, true))));
 
-                transactionRepository.save(transaction);
-                return null;
-            });
+        if (credited != null) {
+            refreshBalance(credited.account);
+        }
+        // Also on a repeated callback, which finishes a purchase whose completion did not commit the first time
+        completeShortfallPurchase(callback.getOrderNo());
+    }
+
+    private RechargeCredit markRechargePaid(PaymentChannel channel, PaymentCallback callback, boolean creditAccount) {
+        RechargeOrder order = findRechargeOrder(callback.getOrderNo())
+                .orElseThrow(() -> new PaymentProcessingException("Recharge order not found: " + callback.getOrderNo()));
+
+        if (order.getStatus() == RechargeOrderStatus.PAID) {
+            log.info("Recharge order already paid (orderNo={})", order.getOrderNo());
             return null;
-        });
+        }
+
+        RechargeOrderStatus from = order.getStatus();
+
+        order.setStatus(RechargeOrderStatus.PAID);
+        order.setProviderTransactionId(callback.getProviderTransactionId());
+        order.setCallbackMetadata(callback.getRawPayload());
+        order.setPaidAt(LocalDateTime.now());
+        rechargeOrderRepository.save(order);
+        rechargeOrderEventRepository.save(new RechargeOrderEvent(order, from.name(), RechargeOrderStatus.PAID.name(), "Payment confirmed", callback.getRawPayload()));
+
+        Account account = order.getAccount();
+        Money paid = Money.of(order.getAmount());
+        Money bonus = order.getBonusAmount() != null ? Money.of(order.getBonusAmount()) : Money.ZERO;
+
+        // In event-sourced mode the balance is derived from the ledger, so the account row is left alone
+        if (creditAccount && account.isSharded()) {
+            shardedBalanceService.credit(account.getId(), paid, bonus);
+        } else if (creditAccount) {
+            account.recharge(order.getAmount(), order.getBonusAmount() != null ? order.getBonusAmount() : BigDecimal.ZERO);
+            accountRepository.save(account);
+        }
+
+        Map<String, Object> txMeta = new LinkedHashMap<>();
+        txMeta.put("orderNo", order.getOrderNo());
+        txMeta.put("channel", channel.name());
+        txMeta.put("providerTransactionId", callback.getProviderTransactionId());
+        txMeta.put("bonusAmount", order.getBonusAmount());
+        if (order.getPromotionId() != null) {
+            txMeta.put("promotionId", order.getPromotionId());
+        }
+
+        Transaction transaction = new Transaction(order.getCustomer(), account, TransactionType.RECHARGE, paid,
+                order.getPromotionId() != null ? ProjectType.PROMOTION : ProjectType.GENERAL);
+        transaction.setReferenceNo(order.getOrderNo());
+        transaction.setMetadata(toJsonSafe(txMeta));
+
+        transactionRepository.save(transaction);
+        transactionRollupRepository.rollUp(List.of(transaction.getId()));
+        return new RechargeCredit(account, paid, bonus, transaction.getId());
+    }
+
+    private static final class RechargeCredit {
+        private final Account account;
+        private final Money paid;
+        private final Money bonus;
+        private final Long transactionId;
+
+        private RechargeCredit(Account account, Money paid, Money bonus, Long transactionId) {
+            this.account = account;
+            this.paid = paid;
+            this.bonus = bonus;
+            this.transactionId = transactionId;
+        }
+    }
+
+    private AccountDTO toBalanceDTO(Account account) {
+        AccountDTO dto = AccountMapper.toDTO(account);
+        if (eventSourcedLedger.isActive()) {
+            eventSourcedLedger.applyProjection(dto);
+        } else if (account.isSharded()) {
+            shardedBalanceService.applyShardTotals(dto);
+        }
+        return dto;
+    }
+
+    private void refreshBalance(Account account) {
+        AccountDTO dto = AccountMapper.toDTO(account);
+        if (account.isSharded()) {
+            // Shard writes do not bump the account version, so the entity alone is not the full balance
+            balanceCache.evict(dto.getCustomerId());
+            return;
+        }
+        balanceCache.refresh(dto.getCustomerId(), dto, account.getVersion());
     }
 
     private <T> T executeWithOptimisticLockRetry(java.util.function.Supplier<T> supplier) {
@@ -255,14 +1360,39 @@ public class WalletService {
                 return supplier.get();
             } catch (ObjectOptimisticLockingFailureException e) {
                 last = e;
+                metrics.increment("wallet.optimistic-lock.conflicts");
                 log.warn("Optimistic lock conflict, retry {}/{}", attempt, OPTIMISTIC_LOCK_RETRY);
             }
         }
+        metrics.increment("wallet.optimistic-lock.exhausted");
         throw last;
     }
 
-    private String generateOrderNo(PaymentChannel channel) {
-        return channel.name() + "_" + UUID.randomUUID().toString().replace("-", "");
+    /**
+     * Resolve an order number by the primary key it embeds; orders numbered before the id
+     * generator existed fall back to the order_no unique index
+     */
+    private Optional<RechargeOrder> findRechargeOrder(String orderNo) {
+        Long id = OrderNumberGenerator.parseId(orderNo);
+        if (id != null) {
+            Optional<RechargeOrder> order = rechargeOrderRepository.findById(id)
+                    .filter(o -> orderNo.equals(o.getOrderNo()));
+            if (order.isPresent()) {
+                return order;
+            }
+        }
+        return rechargeOrderRepository.findByOrderNo(orderNo);
+    }
+
+    private Optional<Long> findRechargeCustomerId(String orderNo) {
+        Long id = OrderNumberGenerator.parseId(orderNo);
+        if (id != null) {
+            Optional<Long> customerId = rechargeOrderRepository.findCustomerIdByIdAndOrderNo(id, orderNo);
+            if (customerId.isPresent()) {
+                return customerId;
+            }
+        }
+        return rechargeOrderRepository.findCustomerIdByOrderNo(orderNo);
     }
 
     private String toJsonSafe(Object data) {
@@ -272,4 +1402,126 @@ public class WalletService {
             return null;
         }
     }
+
+    private static final class HistoryCursor {
+        private final LocalDateTime createdAt;
+        private final Long id;
+
+        private HistoryCursor(LocalDateTime createdAt, Long id) {
+            this.createdAt = createdAt;
+            this.id = id;
+        }
+
+        private String encode() {
+            String raw = createdAt + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        private static HistoryCursor decode(String cursor) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separator = raw.indexOf('|');
+                return new HistoryCursor(LocalDateTime.parse(raw.substring(0, separator)),
+                        Long.parseLong(raw.substring(separator + 1)));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+        }
+    }
+
+    public static class DeductItem {
+        private final BigDecimal amount;
+        private final ProjectType projectType;
+        private final String metadata;
+        private final String referenceNo;
+
+        public DeductItem(BigDecimal amount, ProjectType projectType, String metadata, String referenceNo) {
+            this.amount = amount;
+            this.projectType = projectType;
+            this.metadata = metadata;
+            this.referenceNo = referenceNo;
+        }
+
+        public BigDecimal getAmount() {
+            return amount;
+        }
+
+        public ProjectType getProjectType() {
+            return projectType;
+        }
+
+        public String getMetadata() {
+            return metadata;
+        }
+
+        public String getReferenceNo() {
+            return referenceNo;
+        }
+    }
+
+    public static class RefundInstruction {
+        private final String refundReferenceNo;
+        private final String spendReferenceNo;
+        private final BigDecimal amount;
+        private final String metadata;
+
+        public RefundInstruction(String refundReferenceNo, String spendReferenceNo, BigDecimal amount, String metadata) {
+            this.refundReferenceNo = refundReferenceNo;
+            this.spendReferenceNo = spendReferenceNo;
+            this.amount = amount;
+            this.metadata = metadata;
+        }
+
+        public String getRefundReferenceNo() {
+            return refundReferenceNo;
+        }
+
+        public String getSpendReferenceNo() {
+            return spendReferenceNo;
+        }
+
+        public BigDecimal getAmount() {
+            return amount;
+        }
+
+        public String getMetadata() {
+            return metadata;
+        }
+    }
+
+    public static class TransferInstruction {
+        private final Long fromCustomerId;
+        private final Long toCustomerId;
+        private final BigDecimal amount;
+        private final String referenceNo;
+        private final String metadata;
+
+        public TransferInstruction(Long fromCustomerId, Long toCustomerId, BigDecimal amount, String referenceNo, String metadata) {
+            this.fromCustomerId = fromCustomerId;
+            this.toCustomerId = toCustomerId;
+            this.amount = amount;
+            this.referenceNo = referenceNo;
+            this.metadata = metadata;
+        }
+
+        public Long getFromCustomerId() {
+            return fromCustomerId;
+        }
+
+        public Long getToCustomerId() {
+            return toCustomerId;
+        }
+
+        public BigDecimal getAmount() {
+            return amount;
+        }
+
+        public String getReferenceNo() {
+            return referenceNo;
+        }
+
+        public String getMetadata() {
+            return metadata;
+        }
+    }
 }
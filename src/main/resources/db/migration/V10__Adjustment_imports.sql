@@ -0,0 +1,34 @@
+-- V10__Adjustment_imports.sql
+-- Checkpointed bulk imports of balance adjustments
+
+-- One uploaded adjustment file, identified by the SHA-256 of its content. next_line is the
+-- number of data lines already applied (or rejected); it advances in the same transaction as
+-- each batch, so a resumed import starts exactly where the last committed batch ended.
+CREATE TABLE adjustment_imports (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    file_sha256 CHAR(64) NOT NULL,
+    file_name VARCHAR(255),
+    status VARCHAR(20) NOT NULL,
+    next_line BIGINT NOT NULL DEFAULT 0,
+    applied_count BIGINT NOT NULL DEFAULT 0,
+    duplicate_count BIGINT NOT NULL DEFAULT 0,
+    failed_count BIGINT NOT NULL DEFAULT 0,
+    applied_amount DECIMAL(14,2) NOT NULL DEFAULT 0.00,
+    created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+
+    UNIQUE KEY uk_adjustment_imports_file (file_sha256)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- Lines of an import that were rejected, with the reason
+CREATE TABLE adjustment_import_failures (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    import_id BIGINT NOT NULL,
+    line_no BIGINT NOT NULL,
+    reference_no VARCHAR(64),
+    reason VARCHAR(255) NOT NULL,
+
+    INDEX idx_adjustment_import_failures_import (import_id, line_no),
+
+    FOREIGN KEY (import_id) REFERENCES adjustment_imports(id) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
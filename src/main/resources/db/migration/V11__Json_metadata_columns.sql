@@ -0,0 +1,34 @@
+-- V11__Json_metadata_columns.sql
+-- Native JSON metadata columns, with indexed generated columns for the keys that are looked up
+
+-- Values that are not valid JSON (free-form client metadata, form-encoded callbacks) are kept as
+-- JSON strings so the type change cannot fail
+UPDATE transactions SET metadata = NULL WHERE TRIM(metadata) = '';
+UPDATE transactions SET metadata = JSON_QUOTE(metadata) WHERE metadata IS NOT NULL AND NOT JSON_VALID(metadata);
+UPDATE recharge_orders SET request_metadata = NULL WHERE TRIM(request_metadata) = '';
+UPDATE recharge_orders SET request_metadata = JSON_QUOTE(request_metadata)
+    WHERE request_metadata IS NOT NULL AND NOT JSON_VALID(request_metadata);
+UPDATE recharge_orders SET callback_metadata = NULL WHERE TRIM(callback_metadata) = '';
+UPDATE recharge_orders SET callback_metadata = JSON_QUOTE(callback_metadata)
+    WHERE callback_metadata IS NOT NULL AND NOT JSON_VALID(callback_metadata);
+
+-- Virtual columns cost no row space; JSON_VALUE yields NULL for missing or mistyped keys, so odd
+-- metadata never fails a write. promotion_id is the key the seed data used before promotionId.
+ALTER TABLE transactions
+    MODIFY COLUMN metadata JSON NULL,
+    ADD COLUMN meta_order_no VARCHAR(64)
+        GENERATED ALWAYS AS (JSON_VALUE(metadata, '$.orderNo' RETURNING CHAR(64))) VIRTUAL,
+    ADD COLUMN meta_promotion_id BIGINT UNSIGNED
+        GENERATED ALWAYS AS (COALESCE(JSON_VALUE(metadata, '$.promotionId' RETURNING UNSIGNED),
+                                      JSON_VALUE(metadata, '$.promotion_id' RETURNING UNSIGNED))) VIRTUAL,
+    ADD COLUMN meta_article_id BIGINT UNSIGNED
+        GENERATED ALWAYS AS (JSON_VALUE(metadata, '$.article_id' RETURNING UNSIGNED)) VIRTUAL,
+    ADD INDEX idx_transactions_meta_order_no (meta_order_no),
+    ADD INDEX idx_transactions_meta_promotion (meta_promotion_id, created_at),
+    ADD INDEX idx_transactions_meta_article (meta_article_id, type, created_at);
+
+-- recharge_orders already carries promotion_id as a real column; it only lacked an index
+ALTER TABLE recharge_orders
+    MODIFY COLUMN request_metadata JSON NULL,
+    MODIFY COLUMN callback_metadata JSON NULL,
+    ADD INDEX idx_recharge_orders_promotion (promotion_id, created_at);
@@ -0,0 +1,18 @@
+-- V12__Pooled_id_sequences.sql
+-- Table-backed id sequences handed out in blocks (pooled-lo), so inserts do not need AUTO_INCREMENT
+
+-- next_val is the first id not yet handed out; a node takes a block by adding the block size.
+-- The id columns keep AUTO_INCREMENT only as a fallback for manual inserts.
+CREATE TABLE id_sequences (
+    name VARCHAR(64) PRIMARY KEY,
+    next_val BIGINT NOT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+INSERT INTO id_sequences (name, next_val)
+SELECT 'transactions', COALESCE(MAX(id), 0) + 1 FROM transactions;
+
+INSERT INTO id_sequences (name, next_val)
+SELECT 'recharge_order_events', COALESCE(MAX(id), 0) + 1 FROM recharge_order_events;
+
+INSERT INTO id_sequences (name, next_val)
+SELECT 'comments', COALESCE(MAX(id), 0) + 1 FROM comments;
@@ -0,0 +1,32 @@
+-- V13__Balance_checkpoints.sql
+-- Daily per-account balance checkpoints for point-in-time balance queries
+
+-- Balance/totals of an account over every transaction created before checkpoint_at. Accounts
+-- without transactions since their previous checkpoint get no new row; a query for a later
+-- time starts from the older row and finds no tail to replay.
+CREATE TABLE balance_checkpoints (
+    account_id BIGINT NOT NULL,
+    checkpoint_at DATETIME NOT NULL,
+    customer_id BIGINT NOT NULL,
+    balance DECIMAL(14,2) NOT NULL,
+    total_recharge DECIMAL(14,2) NOT NULL,
+    total_spend DECIMAL(14,2) NOT NULL,
+    created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+
+    PRIMARY KEY (account_id, checkpoint_at),
+    INDEX idx_balance_checkpoints_customer (customer_id, checkpoint_at),
+
+    FOREIGN KEY (account_id) REFERENCES accounts(id) ON DELETE CASCADE,
+    FOREIGN KEY (customer_id) REFERENCES customers(id) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- One checkpoint pass over accounts.id 1..max_account_id; ranges are idempotent, so an
+-- unfinished run is simply run again
+CREATE TABLE balance_checkpoint_runs (
+    checkpoint_at DATETIME NOT NULL PRIMARY KEY,
+    status VARCHAR(20) NOT NULL,
+    max_account_id BIGINT NOT NULL,
+    accounts_written BIGINT NOT NULL DEFAULT 0,
+    started_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    completed_at DATETIME NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
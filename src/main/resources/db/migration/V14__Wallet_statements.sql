@@ -0,0 +1,51 @@
+-- V14__Wallet_statements.sql
+-- Monthly wallet statements generated in customer id ranges
+
+-- One statement per customer with transactions in the month. spend_by_project holds the
+-- month's SPEND amounts keyed by project type.
+CREATE TABLE wallet_statements (
+    customer_id BIGINT NOT NULL,
+    period_start DATE NOT NULL,
+    account_id BIGINT NOT NULL,
+    opening_balance DECIMAL(14,2) NOT NULL,
+    recharge_amount DECIMAL(14,2) NOT NULL,
+    bonus_amount DECIMAL(14,2) NOT NULL,
+    spend_amount DECIMAL(14,2) NOT NULL,
+    refund_amount DECIMAL(14,2) NOT NULL,
+    adjustment_amount DECIMAL(14,2) NOT NULL,
+    transfer_in_amount DECIMAL(14,2) NOT NULL,
+    transfer_out_amount DECIMAL(14,2) NOT NULL,
+    closing_balance DECIMAL(14,2) NOT NULL,
+    transaction_count INT NOT NULL,
+    spend_by_project JSON NOT NULL,
+    created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+
+    PRIMARY KEY (customer_id, period_start),
+    INDEX idx_wallet_statements_period (period_start, customer_id),
+
+    FOREIGN KEY (customer_id) REFERENCES customers(id) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- One generation pass over customers.id 1..max_customer_id for a month
+CREATE TABLE statement_runs (
+    period_start DATE NOT NULL PRIMARY KEY,
+    status VARCHAR(20) NOT NULL,
+    max_customer_id BIGINT NOT NULL,
+    range_size INT NOT NULL,
+    started_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    completed_at DATETIME NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- Ranges whose statements are written; recorded in the same transaction as the statements,
+-- so a resumed run skips exactly these
+CREATE TABLE statement_run_ranges (
+    period_start DATE NOT NULL,
+    range_start BIGINT NOT NULL,
+    range_end BIGINT NOT NULL,
+    statement_count INT NOT NULL,
+    completed_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+
+    PRIMARY KEY (period_start, range_start),
+
+    FOREIGN KEY (period_start) REFERENCES statement_runs(period_start) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
@@ -0,0 +1,33 @@
+-- V15__Shortfall_purchases.sql
+-- Purchases paid partly from the wallet and partly by a recharge of the shortfall
+
+-- hold_id reserves the part the wallet covered when the purchase was started; order_no is the
+-- recharge order for the rest, and the purchase completes when that order is paid
+CREATE TABLE shortfall_purchases (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    customer_id BIGINT NOT NULL,
+    account_id BIGINT NOT NULL,
+    reference_no VARCHAR(64) NOT NULL,
+    amount DECIMAL(10,2) NOT NULL,
+    held_amount DECIMAL(10,2) NOT NULL,
+    shortfall_amount DECIMAL(10,2) NOT NULL,
+    project_type VARCHAR(20) NOT NULL,
+    metadata JSON NULL,
+    status VARCHAR(20) NOT NULL,
+    hold_id BIGINT NULL,
+    order_no VARCHAR(64) NULL,
+    transaction_id BIGINT NULL,
+    failure_reason VARCHAR(255) NULL,
+    completed_at DATETIME NULL,
+    version BIGINT NOT NULL DEFAULT 0,
+    created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+
+    UNIQUE KEY uk_shortfall_purchases_customer_reference_no (customer_id, reference_no),
+    UNIQUE KEY uk_shortfall_purchases_order_no (order_no),
+
+    INDEX idx_shortfall_purchases_account (account_id),
+
+    FOREIGN KEY (customer_id) REFERENCES customers(id) ON DELETE CASCADE,
+    FOREIGN KEY (account_id) REFERENCES accounts(id) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
@@ -0,0 +1,11 @@
+-- V16__Writer_leases.sql
+-- Time-limited single-writer leases; EVENT_SOURCED mode only runs on the node holding 'event-sourced-ledger'
+
+-- owner is NULL while the lease is free; a lease whose expires_at has passed can be taken over.
+CREATE TABLE writer_leases (
+    name VARCHAR(64) PRIMARY KEY,
+    owner VARCHAR(128) NULL,
+    expires_at DATETIME(3) NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+INSERT INTO writer_leases (name, owner, expires_at) VALUES ('event-sourced-ledger', NULL, NULL);
@@ -0,0 +1,10 @@
+-- V17__Rollup_backfill_high_water_at_start.sql
+-- Pin the rollup backfill high-water mark when the backfill job first starts instead of at migration time
+
+-- Nodes still running the previous release keep writing transactions without rolling them up after V7
+-- has run, so a high-water mark taken by the migration would leave those rows out of the rollups.
+-- NULL means "not pinned yet"; TransactionRollupBackfillJob sets it to MAX(transactions.id) on start.
+ALTER TABLE transaction_rollup_backfill MODIFY high_water_id BIGINT NULL;
+
+UPDATE transaction_rollup_backfill SET high_water_id = NULL
+WHERE id = 1 AND completed_at IS NULL AND backfilled_through_id = 0;
@@ -0,0 +1,14 @@
+-- V18__Pooled_ids_without_auto_increment.sql
+-- Drop AUTO_INCREMENT from the id columns handed out by id_sequences (V12)
+
+-- Every insert into these tables must carry an id taken from id_sequences. An insert without one
+-- now fails instead of drawing from the AUTO_INCREMENT counter, which sits inside the blocks
+-- nodes have already reserved and would collide with ids they are about to use.
+ALTER TABLE transactions MODIFY id BIGINT NOT NULL;
+
+ALTER TABLE recharge_order_events MODIFY id BIGINT NOT NULL;
+
+-- comments.parent_id references comments.id; the column type is unchanged, only the check is skipped
+SET FOREIGN_KEY_CHECKS = 0;
+ALTER TABLE comments MODIFY id BIGINT NOT NULL;
+SET FOREIGN_KEY_CHECKS = 1;
@@ -0,0 +1,31 @@
+-- V4__Balance_holds.sql
+-- Balance holds (authorize/capture): reserved amounts that are not yet spent
+
+-- Sum of ACTIVE holds per account; available = balance - held_amount
+ALTER TABLE accounts
+    ADD COLUMN held_amount DECIMAL(10,2) NOT NULL DEFAULT 0.00 AFTER balance;
+
+CREATE TABLE balance_holds (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    customer_id BIGINT NOT NULL,
+    account_id BIGINT NOT NULL,
+    amount DECIMAL(10,2) NOT NULL,
+    captured_amount DECIMAL(10,2) NULL,
+    status VARCHAR(20) NOT NULL,
+    project_type VARCHAR(20) NOT NULL,
+    reference_no VARCHAR(64) NULL,
+    transaction_id BIGINT NULL,
+    expires_at DATETIME NOT NULL,
+    settled_at DATETIME NULL,
+    version BIGINT NOT NULL DEFAULT 0,
+    created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+
+    UNIQUE KEY uk_balance_holds_customer_reference_no (customer_id, reference_no),
+
+    INDEX idx_balance_holds_account (account_id),
+    INDEX idx_balance_holds_status_expires (status, expires_at),
+
+    FOREIGN KEY (customer_id) REFERENCES customers(id) ON DELETE CASCADE,
+    FOREIGN KEY (account_id) REFERENCES accounts(id) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
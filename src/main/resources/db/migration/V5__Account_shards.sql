@@ -0,0 +1,23 @@
+-- V5__Account_shards.sql
+-- Opt-in sharded balances for very hot accounts
+
+-- Number of sub-balance rows backing the account; 0 = not sharded
+ALTER TABLE accounts
+    ADD COLUMN shard_count INT NOT NULL DEFAULT 0 AFTER total_spend;
+
+-- Reported balance/totals of a sharded account = accounts row + sum of its shards
+CREATE TABLE account_shards (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    account_id BIGINT NOT NULL,
+    shard_no INT NOT NULL,
+    balance DECIMAL(10,2) NOT NULL DEFAULT 0.00,
+    total_recharge DECIMAL(10,2) NOT NULL DEFAULT 0.00,
+    total_spend DECIMAL(10,2) NOT NULL DEFAULT 0.00,
+    version BIGINT NOT NULL DEFAULT 0,
+    created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
+
+    UNIQUE KEY uk_account_shards_account_shard_no (account_id, shard_no),
+
+    FOREIGN KEY (account_id) REFERENCES accounts(id) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
@@ -0,0 +1,20 @@
+-- V6__Balance_snapshots.sql
+-- Balance snapshots for the event-sourced ledger mode
+
+-- Balance/totals of an account including every transaction up to last_transaction_id
+CREATE TABLE balance_snapshots (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    account_id BIGINT NOT NULL,
+    customer_id BIGINT NOT NULL,
+    balance DECIMAL(10,2) NOT NULL,
+    total_recharge DECIMAL(10,2) NOT NULL,
+    total_spend DECIMAL(10,2) NOT NULL,
+    last_transaction_id BIGINT NOT NULL,
+    created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+
+    INDEX idx_balance_snapshots_account (account_id, id),
+    INDEX idx_balance_snapshots_customer (customer_id, id),
+
+    FOREIGN KEY (account_id) REFERENCES accounts(id) ON DELETE CASCADE,
+    FOREIGN KEY (customer_id) REFERENCES customers(id) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
@@ -0,0 +1,31 @@
+-- V7__Transaction_rollups.sql
+-- Per-customer daily rollups of ledger amounts, maintained alongside every transaction insert
+
+-- Amount and count of a customer's transactions per type, project type and day.
+-- Writes for one key are spread over a few slots (transaction id mod 8) so concurrent
+-- writers on a sharded account do not all queue on the same row; readers sum the slots.
+CREATE TABLE transaction_rollups (
+    customer_id BIGINT NOT NULL,
+    type VARCHAR(20) NOT NULL,
+    project_type VARCHAR(20) NOT NULL,
+    day DATE NOT NULL,
+    slot TINYINT NOT NULL,
+    amount DECIMAL(14,2) NOT NULL DEFAULT 0.00,
+    tx_count BIGINT NOT NULL DEFAULT 0,
+
+    PRIMARY KEY (customer_id, type, project_type, day, slot),
+
+    FOREIGN KEY (customer_id) REFERENCES customers(id) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- Transactions up to high_water_id predate the rollups and are folded in by the backfill job;
+-- everything after it is rolled up by the write path itself
+CREATE TABLE transaction_rollup_backfill (
+    id INT PRIMARY KEY,
+    high_water_id BIGINT NOT NULL,
+    backfilled_through_id BIGINT NOT NULL DEFAULT 0,
+    completed_at DATETIME NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+INSERT INTO transaction_rollup_backfill (id, high_water_id)
+SELECT 1, COALESCE(MAX(id), 0) FROM transactions;
@@ -0,0 +1,47 @@
+-- V8__Wallet_reconciliation.sql
+-- Reconciliation of account balances/totals against the ledger
+
+-- One reconciliation pass over accounts.id 1..max_account_id in fixed-size ranges
+CREATE TABLE reconciliation_runs (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    status VARCHAR(20) NOT NULL,
+    max_account_id BIGINT NOT NULL,
+    range_size INT NOT NULL,
+    started_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    completed_at DATETIME NULL,
+
+    INDEX idx_reconciliation_runs_status (status, id)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- Ranges already checked in a run; a resumed run skips them
+CREATE TABLE reconciliation_ranges (
+    run_id BIGINT NOT NULL,
+    range_start BIGINT NOT NULL,
+    range_end BIGINT NOT NULL,
+    accounts_checked INT NOT NULL,
+    drift_count INT NOT NULL,
+    checked_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+
+    PRIMARY KEY (run_id, range_start),
+
+    FOREIGN KEY (run_id) REFERENCES reconciliation_runs(id) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- Accounts whose stored balance/totals disagree with the ledger
+CREATE TABLE reconciliation_drifts (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    run_id BIGINT NOT NULL,
+    account_id BIGINT NOT NULL,
+    customer_id BIGINT NOT NULL,
+    stored_balance DECIMAL(14,2) NOT NULL,
+    ledger_balance DECIMAL(14,2) NOT NULL,
+    stored_total_recharge DECIMAL(14,2) NOT NULL,
+    ledger_total_recharge DECIMAL(14,2) NOT NULL,
+    stored_total_spend DECIMAL(14,2) NOT NULL,
+    ledger_total_spend DECIMAL(14,2) NOT NULL,
+    created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+
+    INDEX idx_reconciliation_drifts_run (run_id, account_id),
+
+    FOREIGN KEY (run_id) REFERENCES reconciliation_runs(id) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
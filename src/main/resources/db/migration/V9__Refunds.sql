@@ -0,0 +1,7 @@
+-- V9__Refunds.sql
+-- Link refunds to the spend they reverse
+
+-- For REFUND rows: id of the SPEND being refunded, so refunds can never exceed the original
+ALTER TABLE transactions
+    ADD COLUMN related_transaction_id BIGINT NULL AFTER reference_no,
+    ADD INDEX idx_transactions_related (related_transaction_id);
@@ -0,0 +1,161 @@
+package com.example.core;
+
+import com.example.core.config.TestWechatConfig;
+import com.example.core.entity.AdminUser;
+import com.example.core.repository.AdminUserRepository;
+import com.example.core.security.AdminAuthorizationFilter;
+import com.example.core.security.JwtAuthenticationFilter;
+import com.example.core.security.JwtTokenProvider;
+import com.example.core.service.AdminAuthService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@Import(TestWechatConfig.class)
+class AdminAuthIntegrationTest {
+
+    @Autowired
+    private AdminAuthService adminAuthService;
+
+    @Autowired
+    private AdminUserRepository adminUserRepository;
+
+    @Autowired
+    private JwtAuthenticationFilter jwtAuthenticationFilter;
+
+    @Autowired
+    private JwtTokenProvider jwtTokenProvider;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    private AdminAuthorizationFilter adminAuthorizationFilter;
+
+    @BeforeEach
+    void setUp() {
+        adminUserRepository.findByUsername("wallet_admin").ifPresent(adminUserRepository::delete);
+        adminUserRepository.findByUsername("wallet_moderator").ifPresent(adminUserRepository::delete);
+        adminAuthorizationFilter = new AdminAuthorizationFilter(adminUserRepository);
+    }
+
+    @Test
+    void testAdminRoutesRejectMissingAndCustomerTokens() throws Exception {
+        assertEquals(401, callAdminRoute(null).getStatus());
+        assertEquals(401, callAdminRoute(jwtTokenProvider.generateToken(1L)).getStatus());
+        assertEquals(401, callAdminRoute("not-a-token").getStatus());
+    }
+
+    @Test
+    void testAdminLoginIssuesTokenThatPassesTheGuard() throws Exception {
+        adminUserRepository.save(newAdmin("wallet_admin", "ADMIN"));
+
+        assertThrows(IllegalArgumentException.class, () -> adminAuthService.login("wallet_admin", "wrong"));
+        String token = adminAuthService.login("wallet_admin", "s3cret-pass");
+
+        MockHttpServletResponse response = callAdminRoute(token);
+        assertEquals(200, response.getStatus());
+
+        // Deactivating the admin cuts off the token already issued
+        AdminUser admin = adminUserRepository.findByUsername("wallet_admin").orElseThrow();
+        admin.setIsActive(false);
+        adminUserRepository.save(admin);
+        assertEquals(403, callAdminRoute(token).getStatus());
+    }
+
+    @Test
+    void testNonAdminRoleIsDenied() throws Exception {
+        AdminUser moderator = adminUserRepository.save(newAdmin("wallet_moderator", "MODERATOR"));
+
+        assertThrows(IllegalStateException.class, () -> adminAuthService.login("wallet_moderator", "s3cret-pass"));
+        assertEquals(403, callAdminRoute(jwtTokenProvider.generateAdminToken(moderator.getId())).getStatus());
+    }
+
+    @Test
+    void testRepeatedFailuresLockTheAdmin() {
+        adminUserRepository.save(newAdmin("wallet_admin", "ADMIN"));
+        for (int i = 0; i < 5; i++) {
+            assertThrows(IllegalArgumentException.class, () -> adminAuthService.login("wallet_admin", "wrong"));
+        }
+        assertThrows(IllegalStateException.class, () -> adminAuthService.login("wallet_admin", "s3cret-pass"));
+    }
+
+    @Test
+    void testLedgerExportRequiresAdmin() throws Exception {
+        mockMvc.perform(get("/api/admin/wallet/accounts/1/transactions/export"))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/api/admin/wallet/accounts/1/transactions/export")
+                        .header("Authorization", "Bearer " + jwtTokenProvider.generateToken(1L)))
+                .andExpect(status().isUnauthorized());
+
+        AdminUser admin = adminUserRepository.save(newAdmin("wallet_admin", "ADMIN"));
+        mockMvc.perform(get("/api/admin/wallet/accounts/1/transactions/export")
+                        .header("Authorization", "Bearer " + jwtTokenProvider.generateAdminToken(admin.getId())))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void testRefundsRequireAdmin() throws Exception {
+        String body = "[{\"refundReferenceNo\":\"refund_auth_001\",\"spendReferenceNo\":\"spend_auth_001\",\"amount\":1.00}]";
+        mockMvc.perform(post("/api/admin/wallet/refunds").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(post("/api/admin/wallet/refunds").contentType(MediaType.APPLICATION_JSON).content(body)
+                        .header("Authorization", "Bearer " + jwtTokenProvider.generateToken(1L)))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void testAdjustmentImportRequiresAdmin() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "adjustments.csv", "text/csv",
+                "customerId,amount,reason,referenceNo\n1,100.00,Bonus,adj_auth_001\n".getBytes());
+        mockMvc.perform(multipart("/api/admin/wallet/adjustments/imports").file(file))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(multipart("/api/admin/wallet/adjustments/imports").file(file)
+                        .header("Authorization", "Bearer " + jwtTokenProvider.generateToken(1L)))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void testTransfersRequireAdmin() throws Exception {
+        String body = "[{\"fromCustomerId\":1,\"toCustomerId\":2,\"amount\":1.00,\"referenceNo\":\"xfer_auth_001\"}]";
+        mockMvc.perform(post("/api/admin/wallet/transfers").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(post("/api/admin/wallet/transfers").contentType(MediaType.APPLICATION_JSON).content(body)
+                        .header("Authorization", "Bearer " + jwtTokenProvider.generateToken(1L)))
+                .andExpect(status().isUnauthorized());
+    }
+
+    private AdminUser newAdmin(String username, String role) {
+        return new AdminUser(username, username + "@example.com", adminAuthService.encodePassword("s3cret-pass"),
+                "Wallet Admin", role);
+    }
+
+    private MockHttpServletResponse callAdminRoute(String token) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/admin/wallet/metrics");
+        if (token != null) {
+            request.addHeader("Authorization", "Bearer " + token);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        jwtAuthenticationFilter.doFilter(request, response, (req, res) ->
+                adminAuthorizationFilter.doFilter(req, res, new MockFilterChain()));
+        return response;
+    }
+}
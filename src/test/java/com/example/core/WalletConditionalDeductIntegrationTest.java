@@ -0,0 +1,157 @@
+package com.example.core;
+
+import com.example.core.config.TestPaymentConfig;
+import com.example.core.config.TestWechatConfig;
+import com.example.core.dto.RechargeInitiationDTO;
+import com.example.core.entity.Account;
+import com.example.core.entity.Customer;
+import com.example.core.entity.Transaction;
+import com.example.core.enums.PaymentChannel;
+import com.example.core.enums.ProjectType;
+import com.example.core.enums.TransactionType;
+import com.example.core.exception.InsufficientBalanceException;
+import com.example.core.repository.*;
+import com.example.core.service.CustomerAuthService;
+import com.example.core.service.WalletService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "wallet.deduct.engine=CONDITIONAL_UPDATE")
+@ActiveProfiles("test")
+@Import({TestWechatConfig.class, TestPaymentConfig.class})
+class WalletConditionalDeductIntegrationTest {
+
+    @Autowired
+    private CustomerAuthService authService;
+
+    @Autowired
+    private WalletService walletService;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private ShortfallPurchaseRepository shortfallPurchaseRepository;
+
+    @Autowired
+    private BalanceHoldRepository balanceHoldRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private RechargeOrderRepository rechargeOrderRepository;
+
+    @Autowired
+    private RechargeOrderEventRepository rechargeOrderEventRepository;
+
+    @BeforeEach
+    void setUp() {
+        shortfallPurchaseRepository.deleteAll();
+        balanceHoldRepository.deleteAll();
+        transactionRepository.deleteAll();
+        rechargeOrderEventRepository.deleteAll();
+        rechargeOrderRepository.deleteAll();
+        accountRepository.deleteAll();
+        customerRepository.deleteAll();
+    }
+
+    @Test
+    void testOverdraftIsRejectedAndLeavesBalanceUntouched() {
+        Long customerId = authService.handleWechatLogin("conditional_overdraft_code", "weixin").getCustomerId();
+        credit(customerId, new BigDecimal("5.00"), "wx_tx_cond_001");
+
+        Transaction spend = walletService.deduct(customerId, new BigDecimal("3.00"), ProjectType.GENERAL, "{}", "cond_001");
+        assertEquals(new BigDecimal("2.00"), spend.getAccount().getBalance());
+
+        assertThrows(InsufficientBalanceException.class, () ->
+                walletService.deduct(customerId, new BigDecimal("2.01"), ProjectType.GENERAL, "{}", "cond_002"));
+
+        Account account = accountRepository.findByCustomerId(customerId).orElseThrow();
+        assertEquals(new BigDecimal("2.00"), account.getBalance());
+        assertEquals(new BigDecimal("3.00"), account.getTotalSpend());
+        assertEquals(0, transactionRepository.countByTypeAndReferenceNo(TransactionType.SPEND, "cond_002"));
+    }
+
+    @Test
+    void testConcurrentDeductsOnOneAccountNeverOverdraw() throws Exception {
+        Long customerId = authService.handleWechatLogin("conditional_concurrent_code", "weixin").getCustomerId();
+        credit(customerId, new BigDecimal("20.00"), "wx_tx_cond_002");
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger insufficient = new AtomicInteger();
+        Set<Long> transactionIds = ConcurrentHashMap.newKeySet();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            String referenceNo = "cond_concurrent_" + i;
+            futures.add(pool.submit(() -> {
+                start.await();
+                try {
+                    transactionIds.add(walletService.deduct(customerId, new BigDecimal("1.00"), ProjectType.GENERAL, "{}", referenceNo).getId());
+                } catch (InsufficientBalanceException e) {
+                    insufficient.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+
+        assertEquals(20, transactionIds.size());
+        assertEquals(20, insufficient.get());
+        Account account = accountRepository.findByCustomerId(customerId).orElseThrow();
+        assertEquals(new BigDecimal("0.00"), account.getBalance());
+        assertEquals(new BigDecimal("20.00"), account.getTotalSpend());
+    }
+
+    @Test
+    void testUnknownCustomerIsNotFoundAndCustomerWithoutAccountIsInsufficient() {
+        IllegalArgumentException unknown = assertThrows(IllegalArgumentException.class, () ->
+                walletService.deduct(-1L, new BigDecimal("1.00"), ProjectType.GENERAL, "{}", "cond_missing_001"));
+        assertEquals("Customer not found", unknown.getMessage());
+
+        Customer customer = new Customer();
+        customer.setWechatOpenid("conditional_no_account_openid");
+        customer.setName("");
+        customer.setSource("weixin");
+        customer.setFirstVisitAt(LocalDateTime.now());
+        Long customerId = customerRepository.save(customer).getId();
+
+        // Same answer as the JPA engine, which would open a zero-balance account for this customer
+        assertThrows(InsufficientBalanceException.class, () ->
+                walletService.deduct(customerId, new BigDecimal("1.00"), ProjectType.GENERAL, "{}", "cond_missing_002"));
+    }
+
+    private void credit(Long customerId, BigDecimal amount, String providerTransactionId) {
+        RechargeInitiationDTO initiation = walletService.initiateRecharge(customerId, PaymentChannel.WECHAT_PAY, amount, null);
+        String callbackBody = "{\"orderNo\":\"" + initiation.getOrderNo() + "\",\"providerTransactionId\":\"" + providerTransactionId + "\",\"paid\":true}";
+        walletService.handleWechatPayNotification(Map.of(), callbackBody);
+    }
+}
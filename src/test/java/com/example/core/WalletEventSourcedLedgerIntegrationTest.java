@@ -0,0 +1,125 @@
+package com.example.core;
+
+import com.example.core.config.TestPaymentConfig;
+import com.example.core.config.TestWechatConfig;
+import com.example.core.dto.AccountDTO;
+import com.example.core.dto.RechargeInitiationDTO;
+import com.example.core.entity.Account;
+import com.example.core.enums.PaymentChannel;
+import com.example.core.enums.ProjectType;
+import com.example.core.exception.InsufficientBalanceException;
+import com.example.core.repository.*;
+import com.example.core.service.BalanceSnapshotJob;
+import com.example.core.service.CustomerAuthService;
+import com.example.core.service.WalletService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "wallet.deduct.engine=EVENT_SOURCED",
+        "wallet.event-ledger.snapshot-interval-ms=3600000"
+})
+@ActiveProfiles("test")
+@Import({TestWechatConfig.class, TestPaymentConfig.class})
+class WalletEventSourcedLedgerIntegrationTest {
+
+    @Autowired
+    private CustomerAuthService authService;
+
+    @Autowired
+    private WalletService walletService;
+
+    @Autowired
+    private BalanceSnapshotJob balanceSnapshotJob;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private BalanceHoldRepository balanceHoldRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private RechargeOrderRepository rechargeOrderRepository;
+
+    @Autowired
+    private RechargeOrderEventRepository rechargeOrderEventRepository;
+
+    @Autowired
+    private WriterLeaseJdbcRepository writerLeaseRepository;
+
+    @BeforeEach
+    void setUp() {
+        balanceHoldRepository.deleteAll();
+        transactionRepository.deleteAll();
+        rechargeOrderEventRepository.deleteAll();
+        rechargeOrderRepository.deleteAll();
+        accountRepository.deleteAll();
+        customerRepository.deleteAll();
+    }
+
+    @Test
+    void testBalanceIsDerivedFromLedgerUntilSnapshotFolds() {
+        Long customerId = authService.handleWechatLogin("event_ledger_code", "weixin").getCustomerId();
+        credit(customerId, new BigDecimal("20.00"), "wx_tx_es_001");
+        walletService.deduct(customerId, new BigDecimal("7.50"), ProjectType.GENERAL, "{}", "es_ref_001");
+
+        assertThrows(InsufficientBalanceException.class, () ->
+                walletService.deduct(customerId, new BigDecimal("13.00"), ProjectType.GENERAL, "{}", "es_ref_002"));
+
+        // Writes only append, so the accounts row still holds the bootstrap state
+        Account account = accountRepository.findByCustomerId(customerId).orElseThrow();
+        assertEquals(new BigDecimal("0.00"), account.getBalance());
+
+        AccountDTO balance = walletService.getBalance(customerId);
+        assertEquals(new BigDecimal("12.50"), balance.getBalance());
+        assertEquals(new BigDecimal("20.00"), balance.getTotalRecharge());
+        assertEquals(new BigDecimal("7.50"), balance.getTotalSpend());
+
+        assertTrue(balanceSnapshotJob.rollForward(1) >= 1);
+
+        account = accountRepository.findByCustomerId(customerId).orElseThrow();
+        assertEquals(new BigDecimal("12.50"), account.getBalance());
+        assertEquals(new BigDecimal("7.50"), account.getTotalSpend());
+        assertEquals(new BigDecimal("12.50"), walletService.getBalance(customerId).getBalance());
+    }
+
+    @Test
+    void testHoldsAreRejected() {
+        Long customerId = authService.handleWechatLogin("event_ledger_hold_code", "weixin").getCustomerId();
+        credit(customerId, new BigDecimal("5.00"), "wx_tx_es_002");
+
+        assertThrows(IllegalStateException.class, () ->
+                walletService.authorizeHold(customerId, new BigDecimal("1.00"), ProjectType.GENERAL, "es_hold_001", null));
+    }
+
+    @Test
+    void testSecondWriterCannotTakeTheLedgerLease() {
+        assertFalse(writerLeaseRepository.tryAcquire("event-sourced-ledger", "other-node", 30000));
+        assertFalse(writerLeaseRepository.renew("event-sourced-ledger", "other-node", 30000));
+
+        // A release by a node that does not hold the lease leaves it in place
+        writerLeaseRepository.release("event-sourced-ledger", "other-node");
+        assertFalse(writerLeaseRepository.tryAcquire("event-sourced-ledger", "other-node", 30000));
+    }
+
+    private void credit(Long customerId, BigDecimal amount, String providerTransactionId) {
+        RechargeInitiationDTO initiation = walletService.initiateRecharge(customerId, PaymentChannel.WECHAT_PAY, amount, null);
+        String callbackBody = "{\"orderNo\":\"" + initiation.getOrderNo() + "\",\"providerTransactionId\":\"" + providerTransactionId + "\",\"paid\":true}";
+        walletService.handleWechatPayNotification(Map.of(), callbackBody);
+    }
+}
@@ -0,0 +1,207 @@
+package com.example.core;
+
+import com.example.core.config.TestPaymentConfig;
+import com.example.core.config.TestWechatConfig;
+import com.example.core.dto.RechargeInitiationDTO;
+import com.example.core.entity.Account;
+import com.example.core.entity.Transaction;
+import com.example.core.enums.PaymentChannel;
+import com.example.core.enums.ProjectType;
+import com.example.core.enums.TransactionType;
+import com.example.core.exception.InsufficientBalanceException;
+import com.example.core.repository.*;
+import com.example.core.service.CustomerAuthService;
+import com.example.core.service.WalletService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "wallet.deduct.engine=GROUP_COMMIT",
+        "wallet.group-commit.window-ms=5",
+        "wallet.group-commit.max-batch-size=32"
+})
+@ActiveProfiles("test")
+@Import({TestWechatConfig.class, TestPaymentConfig.class})
+class WalletGroupCommitIntegrationTest {
+
+    @Autowired
+    private CustomerAuthService authService;
+
+    @Autowired
+    private WalletService walletService;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private BalanceHoldRepository balanceHoldRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private RechargeOrderRepository rechargeOrderRepository;
+
+    @Autowired
+    private RechargeOrderEventRepository rechargeOrderEventRepository;
+
+    @BeforeEach
+    void setUp() {
+        balanceHoldRepository.deleteAll();
+        transactionRepository.deleteAll();
+        rechargeOrderEventRepository.deleteAll();
+        rechargeOrderRepository.deleteAll();
+        accountRepository.deleteAll();
+        customerRepository.deleteAll();
+    }
+
+    @Test
+    void testConcurrentDeductsAreNeitherLostNorDoubleApplied() throws Exception {
+        Long first = authService.handleWechatLogin("group_commit_code_a", "weixin").getCustomerId();
+        Long second = authService.handleWechatLogin("group_commit_code_b", "weixin").getCustomerId();
+        credit(first, new BigDecimal("50.00"), "wx_tx_gc_001");
+        credit(second, new BigDecimal("30.00"), "wx_tx_gc_002");
+
+        int attemptsPerCustomer = 80;
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger insufficient = new AtomicInteger();
+        Set<Long> transactionIds = ConcurrentHashMap.newKeySet();
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int i = 0; i < attemptsPerCustomer; i++) {
+            for (Long customerId : List.of(first, second)) {
+                String referenceNo = "gc_" + customerId + "_" + i;
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    try {
+                        Transaction tx = walletService.deduct(customerId, new BigDecimal("1.00"), ProjectType.GENERAL, "{}", referenceNo);
+                        assertTrue(transactionIds.add(tx.getId()), "transaction id handed out twice");
+                    } catch (InsufficientBalanceException e) {
+                        insufficient.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+        }
+
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+
+        assertEquals(50 + 30, transactionIds.size());
+        assertEquals(2 * attemptsPerCustomer - 80, insufficient.get());
+
+        assertSpends(first, 50, new BigDecimal("0.00"));
+        assertSpends(second, 30, new BigDecimal("0.00"));
+    }
+
+    @Test
+    void testDuplicateReferenceInOneWindowAppliesOnce() throws Exception {
+        Long customerId = authService.handleWechatLogin("group_commit_dup_code", "weixin").getCustomerId();
+        credit(customerId, new BigDecimal("10.00"), "wx_tx_gc_003");
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        CountDownLatch start = new CountDownLatch(1);
+        Set<Long> transactionIds = ConcurrentHashMap.newKeySet();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                transactionIds.add(walletService.deduct(customerId, new BigDecimal("1.00"), ProjectType.GENERAL, "{}", "gc_dup_ref").getId());
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+
+        // Every retry is answered with the original spend
+        assertEquals(1, transactionIds.size());
+        assertEquals(1, transactionRepository.countByTypeAndReferenceNo(TransactionType.SPEND, "gc_dup_ref"));
+        assertEquals(new BigDecimal("9.00"), accountRepository.findByCustomerId(customerId).orElseThrow().getBalance());
+    }
+
+    @Test
+    void testBadItemFailsAloneAndTheRestOfTheBatchCommits() throws Exception {
+        Long customerId = authService.handleWechatLogin("group_commit_bad_item_code", "weixin").getCustomerId();
+        credit(customerId, new BigDecimal("20.00"), "wx_tx_gc_004");
+
+        // Longer than the reference_no column, so its insert breaks whatever commit it lands in
+        String oversized = "gc_bad_" + "x".repeat(80);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger failures = new AtomicInteger();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            String referenceNo = i == 3 ? oversized : "gc_good_" + i;
+            futures.add(pool.submit(() -> {
+                start.await();
+                try {
+                    walletService.deduct(customerId, new BigDecimal("1.00"), null, "{}", referenceNo);
+                } catch (RuntimeException e) {
+                    failures.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+
+        assertEquals(1, failures.get());
+        assertSpends(customerId, 7, new BigDecimal("13.00"));
+        assertTrue(transactionRepository.findByCustomerId(customerId).stream()
+                .filter(tx -> tx.getType() == TransactionType.SPEND)
+                .allMatch(tx -> tx.getProjectType() == ProjectType.GENERAL));
+    }
+
+    private void assertSpends(Long customerId, int expectedCount, BigDecimal expectedBalance) {
+        Account account = accountRepository.findByCustomerId(customerId).orElseThrow();
+        assertEquals(expectedBalance, account.getBalance());
+
+        Set<String> references = new HashSet<>();
+        long spends = transactionRepository.findByCustomerId(customerId).stream()
+                .filter(tx -> tx.getType() == TransactionType.SPEND)
+                .peek(tx -> assertTrue(references.add(tx.getReferenceNo()), "spend applied twice"))
+                .count();
+        assertEquals(expectedCount, spends);
+        assertEquals(new BigDecimal(expectedCount + ".00"), account.getTotalSpend());
+    }
+
+    private void credit(Long customerId, BigDecimal amount, String providerTransactionId) {
+        RechargeInitiationDTO initiation = walletService.initiateRecharge(customerId, PaymentChannel.WECHAT_PAY, amount, null);
+        String callbackBody = "{\"orderNo\":\"" + initiation.getOrderNo() + "\",\"providerTransactionId\":\"" + providerTransactionId + "\",\"paid\":true}";
+        walletService.handleWechatPayNotification(Map.of(), callbackBody);
+    }
+}
@@ -2,25 +2,82 @@ package com.example.core;
 
 import com.example.core.config.TestPaymentConfig;
 import com.example.core.config.TestWechatConfig;
+import com.example.core.config.WalletProperties;
+import com.example.core.dto.AdjustmentImportDTO;
+import com.example.core.dto.BalanceAtDTO;
+import com.example.core.dto.BatchDeductResponseDTO;
 import com.example.core.dto.RechargeInitiationDTO;
+import com.example.core.dto.ReconciliationDriftDTO;
+import com.example.core.dto.ReconciliationRunDTO;
+import com.example.core.dto.RefundReportDTO;
+import com.example.core.dto.ShortfallPurchaseDTO;
+import com.example.core.dto.StatementDTO;
+import com.example.core.dto.StatementRunDTO;
+import com.example.core.dto.TransactionDTO;
+import com.example.core.dto.TransactionPageDTO;
+import com.example.core.dto.TransactionRollupDTO;
+import com.example.core.dto.TransferDTO;
+import com.example.core.dto.TransferReportDTO;
 import com.example.core.entity.Account;
+import com.example.core.entity.BalanceHold;
+import com.example.core.entity.Customer;
+import com.example.core.entity.RechargeOrder;
+import com.example.core.entity.ShortfallPurchase;
 import com.example.core.entity.Transaction;
+import com.example.core.enums.HoldStatus;
 import com.example.core.enums.PaymentChannel;
 import com.example.core.enums.ProjectType;
+import com.example.core.enums.ShortfallPurchaseStatus;
 import com.example.core.enums.TransactionType;
 import com.example.core.exception.InsufficientBalanceException;
+import com.example.core.exception.VelocityLimitExceededException;
+import com.example.core.id.PooledIdAllocator;
+import com.example.core.mapper.TransactionMapper;
 import com.example.core.repository.*;
+import com.example.core.service.AccountLanes;
+import com.example.core.service.AdjustmentImportService;
+import com.example.core.service.BalanceCheckpointJob;
 import com.example.core.service.CustomerAuthService;
+import com.example.core.service.LedgerExportService;
+import com.example.core.service.OrderNumberGenerator;
+import com.example.core.service.ShardedBalanceService;
+import com.example.core.service.StatementJob;
+import com.example.core.service.WalletMetrics;
+import com.example.core.service.WalletReconciliationJob;
 import com.example.core.service.WalletService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -35,12 +92,48 @@ class WalletServiceIntegrationTest {
     @Autowired
     private WalletService walletService;
 
+    @Autowired
+    private ShardedBalanceService shardedBalanceService;
+
+    @Autowired
+    private LedgerExportService ledgerExportService;
+
+    @Autowired
+    private WalletReconciliationJob reconciliationJob;
+
+    @Autowired
+    private AdjustmentImportService adjustmentImportService;
+
+    @Autowired
+    private BalanceCheckpointJob balanceCheckpointJob;
+
+    @Autowired
+    private StatementJob statementJob;
+
+    @Autowired
+    private ShortfallPurchaseRepository shortfallPurchaseRepository;
+
+    @Autowired
+    private WalletMetrics walletMetrics;
+
+    @Autowired
+    private AccountLanes accountLanes;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
     @Autowired
     private CustomerRepository customerRepository;
 
     @Autowired
     private AccountRepository accountRepository;
 
+    @Autowired
+    private BalanceHoldRepository balanceHoldRepository;
+
     @Autowired
     private TransactionRepository transactionRepository;
 
@@ -52,6 +145,8 @@ class WalletServiceIntegrationTest {
 
     @BeforeEach
     void setUp() {
+        shortfallPurchaseRepository.deleteAll();
+        balanceHoldRepository.deleteAll();
         transactionRepository.deleteAll();
         rechargeOrderEventRepository.deleteAll();
         rechargeOrderRepository.deleteAll();
@@ -104,4 +199,784 @@ class WalletServiceIntegrationTest {
         Account afterFailed = accountRepository.findByCustomerId(customerId).orElseThrow();
         assertEquals(new BigDecimal("15.00"), afterFailed.getBalance());
     }
+
+    @Test
+    void testDeductBatchIsAllOrNothing() {
+        Long customerId = authService.handleWechatLogin("wallet_batch_code", "weixin").getCustomerId();
+        credit(customerId, new BigDecimal("10.00"), "wx_tx_batch_001");
+
+        BatchDeductResponseDTO result = walletService.deductBatch(customerId, List.of(
+                new WalletService.DeductItem(new BigDecimal("2.00"), ProjectType.POND_ARTICLES, "{}", "batch_001"),
+                new WalletService.DeductItem(new BigDecimal("3.00"), ProjectType.POND_ARTICLES, "{}", "batch_002")
+        ));
+        assertEquals(2, result.getTransactionIds().size());
+        assertEquals(new BigDecimal("5.00"), result.getNewBalance());
+
+        assertThrows(InsufficientBalanceException.class, () -> walletService.deductBatch(customerId, List.of(
+                new WalletService.DeductItem(new BigDecimal("4.00"), ProjectType.POND_ARTICLES, "{}", "batch_003"),
+                new WalletService.DeductItem(new BigDecimal("4.00"), ProjectType.POND_ARTICLES, "{}", "batch_004")
+        )));
+
+        Account after = accountRepository.findByCustomerId(customerId).orElseThrow();
+        assertEquals(new BigDecimal("5.00"), after.getBalance());
+        assertEquals(0, transactionRepository.countByTypeAndReferenceNo(TransactionType.SPEND, "batch_003"));
+    }
+
+    @Test
+    void testDeductBatchReplaysAppliedReferencesAndCapsItems() {
+        Long customerId = authService.handleWechatLogin("wallet_batch_replay_code", "weixin").getCustomerId();
+        Long otherId = authService.handleWechatLogin("wallet_batch_replay_other_code", "weixin").getCustomerId();
+        credit(customerId, new BigDecimal("10.00"), "wx_tx_batch_replay_001");
+        credit(otherId, new BigDecimal("10.00"), "wx_tx_batch_replay_002");
+
+        BatchDeductResponseDTO first = walletService.deductBatch(customerId, List.of(
+                new WalletService.DeductItem(new BigDecimal("2.00"), ProjectType.GENERAL, "{}", "batch_replay_001"),
+                new WalletService.DeductItem(new BigDecimal("3.00"), ProjectType.GENERAL, "{}", "batch_replay_002")));
+
+        // A full retry debits nothing and hands back the original ids
+        BatchDeductResponseDTO retry = walletService.deductBatch(customerId, List.of(
+                new WalletService.DeductItem(new BigDecimal("2.00"), ProjectType.GENERAL, "{}", "batch_replay_001"),
+                new WalletService.DeductItem(new BigDecimal("3.00"), ProjectType.GENERAL, "{}", "batch_replay_002")));
+        assertEquals(first.getTransactionIds(), retry.getTransactionIds());
+        assertEquals(new BigDecimal("5.00"), retry.getNewBalance());
+
+        // Overlapping batch: only the new item is debited, ids come back in item order
+        BatchDeductResponseDTO overlap = walletService.deductBatch(customerId, List.of(
+                new WalletService.DeductItem(new BigDecimal("1.00"), ProjectType.GENERAL, "{}", "batch_replay_003"),
+                new WalletService.DeductItem(new BigDecimal("2.00"), ProjectType.GENERAL, "{}", "batch_replay_001")));
+        assertEquals(first.getTransactionIds().get(0), overlap.getTransactionIds().get(1));
+        assertEquals(new BigDecimal("4.00"), overlap.getNewBalance());
+        assertEquals(1, transactionRepository.countByTypeAndReferenceNo(TransactionType.SPEND, "batch_replay_001"));
+
+        assertThrows(IllegalArgumentException.class, () -> walletService.deductBatch(otherId, List.of(
+                new WalletService.DeductItem(new BigDecimal("1.00"), ProjectType.GENERAL, "{}", "batch_replay_002"))));
+        assertThrows(IllegalArgumentException.class, () -> walletService.deductBatch(customerId, List.of(
+                new WalletService.DeductItem(new BigDecimal("1.00"), ProjectType.GENERAL, "{}", "batch_replay_004"),
+                new WalletService.DeductItem(new BigDecimal("1.00"), ProjectType.GENERAL, "{}", "batch_replay_004"))));
+
+        List<WalletService.DeductItem> tooMany = new ArrayList<>();
+        for (int i = 0; i < 101; i++) {
+            tooMany.add(new WalletService.DeductItem(new BigDecimal("0.01"), ProjectType.GENERAL, "{}", "batch_cap_" + i));
+        }
+        assertThrows(IllegalArgumentException.class, () -> walletService.deductBatch(customerId, tooMany));
+        assertEquals(new BigDecimal("4.00"), walletService.getBalance(customerId).getBalance());
+        assertEquals(new BigDecimal("10.00"), walletService.getBalance(otherId).getBalance());
+    }
+
+    @Test
+    void testDeductReplaysRetryWithSameReference() {
+        Long customerId = authService.handleWechatLogin("wallet_replay_code", "weixin").getCustomerId();
+        credit(customerId, new BigDecimal("10.00"), "wx_tx_replay_001");
+
+        Transaction first = walletService.deduct(customerId, new BigDecimal("4.00"), ProjectType.GENERAL, "{}", "replay_001");
+        Transaction retry = walletService.deduct(customerId, new BigDecimal("4.00"), ProjectType.GENERAL, "{}", "replay_001");
+
+        assertEquals(first.getId(), retry.getId());
+        assertEquals(new BigDecimal("6.00"), retry.getAccount().getBalance());
+        assertEquals(1, transactionRepository.countByTypeAndReferenceNo(TransactionType.SPEND, "replay_001"));
+        assertEquals(new BigDecimal("6.00"), accountRepository.findByCustomerId(customerId).orElseThrow().getBalance());
+    }
+
+    @Test
+    void testBalanceReadReflectsCommittedWrites() {
+        Long customerId = authService.handleWechatLogin("wallet_balance_code", "weixin").getCustomerId();
+        assertEquals(new BigDecimal("0.00"), walletService.getBalance(customerId).getBalance());
+
+        credit(customerId, new BigDecimal("8.00"), "wx_tx_balance_001");
+        assertEquals(new BigDecimal("8.00"), walletService.getBalance(customerId).getBalance());
+
+        walletService.deduct(customerId, new BigDecimal("3.00"), ProjectType.GENERAL, "{}", "balance_001");
+        assertEquals(new BigDecimal("5.00"), walletService.getBalance(customerId).getBalance());
+    }
+
+    @Test
+    void testBalanceReadCreatesMissingAccountAndRejectsUnknownCustomer() {
+        IllegalArgumentException unknown = assertThrows(IllegalArgumentException.class, () -> walletService.getBalance(-1L));
+        assertEquals("Customer not found", unknown.getMessage());
+
+        Customer customer = new Customer();
+        customer.setWechatOpenid("wallet_balance_no_account_openid");
+        customer.setName("");
+        customer.setSource("weixin");
+        customer.setFirstVisitAt(LocalDateTime.now());
+        Long customerId = customerRepository.save(customer).getId();
+        assertTrue(accountRepository.findByCustomerId(customerId).isEmpty());
+
+        assertEquals(0, walletService.getBalance(customerId).getBalance().compareTo(BigDecimal.ZERO));
+        assertTrue(accountRepository.findByCustomerId(customerId).isPresent());
+    }
+
+    @Test
+    void testHoldReservesAvailableBalanceUntilCaptured() {
+        Long customerId = authService.handleWechatLogin("wallet_hold_code", "weixin").getCustomerId();
+        credit(customerId, new BigDecimal("10.00"), "wx_tx_hold_001");
+
+        BalanceHold hold = walletService.authorizeHold(customerId, new BigDecimal("6.00"), ProjectType.GENERAL, "hold_001", 60L);
+        assertEquals(hold.getId(), walletService.authorizeHold(customerId, new BigDecimal("6.00"), ProjectType.GENERAL, "hold_001", 60L).getId());
+        assertEquals(new BigDecimal("4.00"), walletService.getBalance(customerId).getAvailableBalance());
+
+        assertThrows(InsufficientBalanceException.class, () ->
+                walletService.deduct(customerId, new BigDecimal("5.00"), ProjectType.GENERAL, "{}", null));
+
+        Transaction captured = walletService.captureHold(customerId, hold.getId(), new BigDecimal("2.50"));
+        assertEquals(new BigDecimal("7.50"), captured.getAccount().getBalance());
+        assertEquals(captured.getId(), walletService.captureHold(customerId, hold.getId(), null).getId());
+
+        Account account = accountRepository.findByCustomerId(customerId).orElseThrow();
+        assertEquals(new BigDecimal("0.00"), account.getHeldAmount());
+        assertEquals(HoldStatus.CAPTURED, balanceHoldRepository.findById(hold.getId()).orElseThrow().getStatus());
+    }
+
+    @Test
+    void testShardedAccountReportsSumOfShards() {
+        Long customerId = authService.handleWechatLogin("wallet_shard_code", "weixin").getCustomerId();
+        credit(customerId, new BigDecimal("10.00"), "wx_tx_shard_001");
+
+        shardedBalanceService.enable(customerId, 4);
+        assertEquals(new BigDecimal("10.00"), walletService.getBalance(customerId).getBalance());
+
+        // 2.50 per shard, so this spend has to be taken across several shards
+        Transaction spend = walletService.deduct(customerId, new BigDecimal("7.00"), ProjectType.GENERAL, "{}", "shard_001");
+        assertEquals(new BigDecimal("3.00"), spend.getAccount().getBalance());
+        assertThrows(InsufficientBalanceException.class, () ->
+                walletService.deduct(customerId, new BigDecimal("3.01"), ProjectType.GENERAL, "{}", null));
+
+        credit(customerId, new BigDecimal("5.00"), "wx_tx_shard_002");
+        assertEquals(new BigDecimal("8.00"), walletService.getBalance(customerId).getBalance());
+        assertEquals(new BigDecimal("7.00"), walletService.getBalance(customerId).getTotalSpend());
+    }
+
+    @Test
+    void testTransactionHistoryPagesWithKeysetCursor() {
+        Long customerId = authService.handleWechatLogin("wallet_history_code", "weixin").getCustomerId();
+        credit(customerId, new BigDecimal("10.00"), "wx_tx_history_001");
+        for (int i = 0; i < 5; i++) {
+            walletService.deduct(customerId, new BigDecimal("1.00"), ProjectType.GENERAL, "{}", "history_" + i);
+        }
+
+        // Rows written within the same second are ordered by id, so no row is skipped or repeated
+        Set<Long> seen = new HashSet<>();
+        TransactionPageDTO page = walletService.getTransactions(customerId, null, null, null, 2);
+        int pages = 1;
+        page.getItems().forEach(tx -> assertTrue(seen.add(tx.getId())));
+        while (page.getNextCursor() != null) {
+            page = walletService.getTransactions(customerId, null, null, page.getNextCursor(), 2);
+            page.getItems().forEach(tx -> assertTrue(seen.add(tx.getId())));
+            pages++;
+        }
+        assertEquals(6, seen.size());
+        assertEquals(3, pages);
+
+        TransactionPageDTO spends = walletService.getTransactions(customerId, TransactionType.SPEND, null, null, 10);
+        assertEquals(5, spends.getItems().size());
+        assertNull(spends.getNextCursor());
+        assertEquals("history_4", spends.getItems().get(0).getReferenceNo());
+
+        assertThrows(IllegalArgumentException.class, () ->
+                walletService.getTransactions(customerId, null, null, "not-a-cursor", 2));
+    }
+
+    @Test
+    void testLedgerExportStreamsEveryTransaction() throws Exception {
+        Long customerId = authService.handleWechatLogin("wallet_export_code", "weixin").getCustomerId();
+        credit(customerId, new BigDecimal("10.00"), "wx_tx_export_001");
+        walletService.deduct(customerId, new BigDecimal("1.25"), ProjectType.GENERAL, "{\"note\":\"a,b\"}", "export_001");
+
+        ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        assertEquals(2, ledgerExportService.export(customerId, LedgerExportService.Format.CSV, false, csv));
+        String[] lines = csv.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(3, lines.length);
+        assertTrue(lines[2].contains("SPEND,1.25,GENERAL,export_001,\"{\"\"note\"\":\"\"a,b\"\"}\""));
+
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+        ledgerExportService.export(customerId, LedgerExportService.Format.NDJSON, true, gzipped);
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped.toByteArray()))) {
+            String[] records = new String(in.readAllBytes(), StandardCharsets.UTF_8).split("\n");
+            assertEquals(2, records.length);
+            assertTrue(records[1].contains("\"referenceNo\":\"export_001\""));
+        }
+    }
+
+    @Test
+    void testRollupsTrackEveryWritePath() {
+        Long customerId = authService.handleWechatLogin("wallet_rollup_code", "weixin").getCustomerId();
+        credit(customerId, new BigDecimal("20.00"), "wx_tx_rollup_001");
+        walletService.deduct(customerId, new BigDecimal("1.50"), ProjectType.GENERAL, "{}", "rollup_001");
+        walletService.deduct(customerId, new BigDecimal("2.00"), ProjectType.POND_ARTICLES, "{}", "rollup_002");
+        walletService.deductBatch(customerId, List.of(
+                new WalletService.DeductItem(new BigDecimal("0.25"), ProjectType.POND_ARTICLES, "{}", "rollup_003"),
+                new WalletService.DeductItem(new BigDecimal("0.75"), ProjectType.POND_ARTICLES, "{}", "rollup_004")));
+
+        List<TransactionRollupDTO> months = walletService.getTransactionRollups(customerId, TransactionType.SPEND, null, null);
+        assertEquals(2, months.size());
+        assertEquals(ProjectType.GENERAL, months.get(0).getProjectType());
+        assertEquals(new BigDecimal("1.50"), months.get(0).getAmount());
+        assertEquals(ProjectType.POND_ARTICLES, months.get(1).getProjectType());
+        assertEquals(new BigDecimal("3.00"), months.get(1).getAmount());
+        assertEquals(3L, months.get(1).getCount());
+
+        assertEquals(transactionRepository.getTotalAmountByCustomerAndType(customerId, TransactionType.SPEND),
+                walletService.getTotalAmount(customerId, TransactionType.SPEND));
+        assertEquals(new BigDecimal("20.00"), walletService.getTotalAmount(customerId, TransactionType.RECHARGE));
+    }
+
+    @Test
+    void testTotalAmountSumsLedgerWhileRollupBackfillIsPending() {
+        Long customerId = authService.handleWechatLogin("wallet_rollup_pending_code", "weixin").getCustomerId();
+        credit(customerId, new BigDecimal("20.00"), "wx_tx_rollup_pending_001");
+        walletService.deduct(customerId, new BigDecimal("4.00"), ProjectType.GENERAL, "{}", "rollup_pending_001");
+
+        // Rows written by a node that predates the rollups have no rollup entries yet
+        jdbcTemplate.update("DELETE FROM transaction_rollups WHERE customer_id = ?", customerId);
+        String restore = "UPDATE transaction_rollup_backfill SET high_water_id = ?, backfilled_through_id = ?, completed_at = ? WHERE id = 1";
+        Map<String, Object> backfill = jdbcTemplate.queryForMap(
+                "SELECT high_water_id, backfilled_through_id, completed_at FROM transaction_rollup_backfill WHERE id = 1");
+        jdbcTemplate.update("UPDATE transaction_rollup_backfill SET high_water_id = NULL, backfilled_through_id = 0, completed_at = NULL WHERE id = 1");
+        try {
+            assertEquals(new BigDecimal("4.00"), walletService.getTotalAmount(customerId, TransactionType.SPEND));
+            assertEquals(new BigDecimal("20.00"), walletService.getTotalAmount(customerId, TransactionType.RECHARGE));
+        } finally {
+            jdbcTemplate.update(restore, backfill.get("high_water_id"), backfill.get("backfilled_through_id"), backfill.get("completed_at"));
+        }
+    }
+
+    @Test
+    void testReconciliationReportsAccountsThatDisagreeWithLedger() {
+        Long clean = authService.handleWechatLogin("wallet_reconcile_clean", "weixin").getCustomerId();
+        Long tampered = authService.handleWechatLogin("wallet_reconcile_tampered", "weixin").getCustomerId();
+        credit(clean, new BigDecimal("10.00"), "wx_tx_reconcile_001");
+        credit(tampered, new BigDecimal("10.00"), "wx_tx_reconcile_002");
+        walletService.deduct(clean, new BigDecimal("4.00"), ProjectType.GENERAL, "{}", "reconcile_001");
+        walletService.deduct(tampered, new BigDecimal("4.00"), ProjectType.GENERAL, "{}", "reconcile_002");
+
+        Account account = accountRepository.findByCustomerId(tampered).orElseThrow();
+        account.setBalance(new BigDecimal("7.00"));
+        accountRepository.save(account);
+
+        ReconciliationRunDTO run = reconciliationJob.reconcile();
+        assertEquals("COMPLETED", run.getStatus());
+        assertEquals(run.getRangesTotal(), run.getRangesChecked());
+
+        List<ReconciliationDriftDTO> drifts = reconciliationJob.getRun(run.getId(), Integer.MAX_VALUE).getDrifts();
+        ReconciliationDriftDTO drift = drifts.stream()
+                .filter(d -> d.getCustomerId().equals(tampered)).findFirst().orElseThrow();
+        assertEquals(new BigDecimal("7.00"), drift.getStoredBalance());
+        assertEquals(new BigDecimal("6.00"), drift.getLedgerBalance());
+        assertTrue(drifts.stream().noneMatch(d -> d.getCustomerId().equals(clean)));
+    }
+
+    @Test
+    void testBulkRefundIsIdempotentAndCappedAtOriginalSpend() {
+        Long customerId = authService.handleWechatLogin("wallet_refund_code", "weixin").getCustomerId();
+        credit(customerId, new BigDecimal("10.00"), "wx_tx_refund_001");
+        walletService.deduct(customerId, new BigDecimal("4.00"), ProjectType.POND_ARTICLES, "{}", "refund_spend_001");
+        walletService.deduct(customerId, new BigDecimal("3.00"), ProjectType.POND_ARTICLES, "{}", "refund_spend_002");
+
+        RefundReportDTO report = walletService.refundBatch(List.of(
+                new WalletService.RefundInstruction("refund_001", "refund_spend_001", new BigDecimal("1.50"), null),
+                new WalletService.RefundInstruction("refund_002", "refund_spend_001", new BigDecimal("3.00"), null),
+                new WalletService.RefundInstruction("refund_003", "refund_spend_002", null, null),
+                new WalletService.RefundInstruction("refund_003", "refund_spend_002", null, null),
+                new WalletService.RefundInstruction("refund_004", "missing_spend", null, null)));
+
+        assertEquals(2, report.getRefunded());
+        assertEquals(1, report.getDuplicates());
+        assertEquals(2, report.getFailed());
+        assertEquals(new BigDecimal("4.50"), report.getRefundedAmount());
+        assertEquals(1, report.getBatches().size());
+
+        Account account = accountRepository.findByCustomerId(customerId).orElseThrow();
+        assertEquals(new BigDecimal("7.50"), account.getBalance());
+        assertEquals(new BigDecimal("2.50"), account.getTotalSpend());
+
+        // Resubmitting the same file refunds nothing twice
+        RefundReportDTO replay = walletService.refundBatch(List.of(
+                new WalletService.RefundInstruction("refund_001", "refund_spend_001", new BigDecimal("1.50"), null)));
+        assertEquals(0, replay.getRefunded());
+        assertEquals(1, replay.getDuplicates());
+        assertEquals(new BigDecimal("7.50"), walletService.getBalance(customerId).getBalance());
+    }
+
+    @Test
+    void testAdjustmentImportAppliesEachLineOnce() throws Exception {
+        Long customerId = authService.handleWechatLogin("wallet_adjustment_code", "weixin").getCustomerId();
+        credit(customerId, new BigDecimal("5.00"), "wx_tx_adjustment_001");
+
+        String csv = "customerId,amount,reason,referenceNo\n" +
+                customerId + ",10.00,\"Incident 42, compensation\",adj_" + customerId + "_001\n" +
+                customerId + ",-2.50,Correction,adj_" + customerId + "_002\n" +
+                customerId + ",-100.00,Too much,adj_" + customerId + "_003\n" +
+                customerId + ",1.00,Repeated,adj_" + customerId + "_001\n" +
+                "\n" +
+                "not-a-number,1.00,Broken,adj_" + customerId + "_004\n";
+        ByteArrayResource file = new ByteArrayResource(csv.getBytes(StandardCharsets.UTF_8));
+
+        AdjustmentImportDTO result = adjustmentImportService.importFile("adjustments.csv", file);
+        assertEquals("COMPLETED", result.getStatus());
+        assertEquals(6L, result.getLinesProcessed());
+        assertEquals(2L, result.getApplied());
+        assertEquals(1L, result.getDuplicates());
+        assertEquals(2L, result.getFailed());
+        assertEquals(new BigDecimal("7.50"), result.getAppliedAmount());
+        assertEquals(List.of(3L, 6L), result.getFailures().stream().map(AdjustmentImportDTO.Failure::getLineNo).toList());
+
+        Account account = accountRepository.findByCustomerId(customerId).orElseThrow();
+        assertEquals(new BigDecimal("12.50"), account.getBalance());
+        assertEquals(new BigDecimal("5.00"), account.getTotalRecharge());
+        assertEquals(new BigDecimal("0.00"), account.getTotalSpend());
+
+        // Uploading the same file again reports the finished import and applies nothing
+        AdjustmentImportDTO replay = adjustmentImportService.importFile("adjustments.csv", file);
+        assertEquals(result.getId(), replay.getId());
+        assertEquals(2L, replay.getApplied());
+        assertEquals(new BigDecimal("12.50"), walletService.getBalance(customerId).getBalance());
+    }
+
+    @Test
+    void testAdjustmentImportRejectsShardedAccounts() throws Exception {
+        Long customerId = authService.handleWechatLogin("wallet_adjustment_shard_code", "weixin").getCustomerId();
+        credit(customerId, new BigDecimal("8.00"), "wx_tx_adjustment_shard_001");
+        shardedBalanceService.enable(customerId, 4);
+
+        String csv = "customerId,amount,reason,referenceNo\n" +
+                customerId + ",-1.00,Correction,adj_shard_" + customerId + "_001\n";
+        AdjustmentImportDTO result = adjustmentImportService.importFile("adjustments-sharded.csv",
+                new ByteArrayResource(csv.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(0L, result.getApplied());
+        assertEquals(1L, result.getFailed());
+        assertEquals("Adjustments are not supported on sharded accounts", result.getFailures().get(0).getReason());
+        assertEquals(new BigDecimal("8.00"), walletService.getBalance(customerId).getBalance());
+    }
+
+    @Test
+    void testMetadataKeysAreQueryableThroughGeneratedColumns() {
+        Long customerId = authService.handleWechatLogin("wallet_json_meta_code", "weixin").getCustomerId();
+        RechargeInitiationDTO initiation = walletService.initiateRecharge(customerId, PaymentChannel.WECHAT_PAY, new BigDecimal("10.00"), null);
+        walletService.handleWechatPayNotification(Map.of(), "{\"orderNo\":\"" + initiation.getOrderNo() +
+                "\",\"providerTransactionId\":\"wx_tx_json_001\",\"paid\":true}");
+
+        walletService.deduct(customerId, new BigDecimal("1.00"), ProjectType.POND_ARTICLES, "{\"article_id\": 9001}", "json_meta_001");
+        walletService.deduct(customerId, new BigDecimal("2.00"), ProjectType.POND_ARTICLES, "{\"article_id\": 9002}", "json_meta_002");
+        // Not JSON: stored as a JSON string rather than rejected by the column, and read back unchanged
+        walletService.deduct(customerId, new BigDecimal("0.50"), ProjectType.GENERAL, "plain text note", "json_meta_003");
+
+        List<TransactionHistoryView> spends = transactionRepository.findSpendsByArticleId(9001L, 10);
+        assertEquals(1, spends.size());
+        assertEquals("json_meta_001", spends.get(0).getReferenceNo());
+
+        List<TransactionHistoryView> recharge = transactionRepository.findByMetadataOrderNo(initiation.getOrderNo());
+        assertEquals(1, recharge.size());
+        assertEquals("RECHARGE", recharge.get(0).getType());
+
+        Transaction note = transactionRepository.findByTypeAndReferenceNo(TransactionType.SPEND, "json_meta_003").orElseThrow();
+        assertEquals("plain text note", note.getMetadata());
+        // History listings read the column through a projection and must hand back the same values
+        Map<String, String> historyMetadata = walletService.getTransactions(customerId, TransactionType.SPEND, null, null, 10)
+                .getItems().stream()
+                .collect(Collectors.toMap(TransactionDTO::getReferenceNo, TransactionDTO::getMetadata));
+        assertEquals("plain text note", historyMetadata.get("json_meta_003"));
+        String articleMetadata = transactionRepository.findByTypeAndReferenceNo(TransactionType.SPEND, "json_meta_001")
+                .orElseThrow().getMetadata();
+        assertEquals(articleMetadata, historyMetadata.get("json_meta_001"));
+        assertEquals(articleMetadata, TransactionMapper.toDTO(spends.get(0)).getMetadata());
+    }
+
+    @Test
+    void testOrderNumbersAreTimeOrderedAndEmbedTheOrderId() {
+        Long customerId = authService.handleWechatLogin("wallet_order_no_code", "weixin").getCustomerId();
+        RechargeInitiationDTO first = walletService.initiateRecharge(customerId, PaymentChannel.WECHAT_PAY, new BigDecimal("1.00"), null);
+        RechargeInitiationDTO second = walletService.initiateRecharge(customerId, PaymentChannel.WECHAT_PAY, new BigDecimal("1.00"), null);
+
+        assertTrue(first.getOrderNo().length() <= 32);
+        Long firstId = OrderNumberGenerator.parseId(first.getOrderNo());
+        Long secondId = OrderNumberGenerator.parseId(second.getOrderNo());
+        assertTrue(secondId > firstId);
+
+        RechargeOrder order = rechargeOrderRepository.findById(firstId).orElseThrow();
+        assertEquals(first.getOrderNo(), order.getOrderNo());
+
+        walletService.handleWechatPayNotification(Map.of(), "{\"orderNo\":\"" + second.getOrderNo() +
+                "\",\"providerTransactionId\":\"wx_tx_order_no_001\",\"paid\":true}");
+        assertEquals(new BigDecimal("1.00"), walletService.getBalance(customerId).getBalance());
+    }
+
+    @Test
+    void testJpaAndJdbcInsertsShareTheTransactionIdPool() {
+        Long customerId = authService.handleWechatLogin("wallet_pooled_id_code", "weixin").getCustomerId();
+        credit(customerId, new BigDecimal("10.00"), "wx_tx_pooled_001");
+        BatchDeductResponseDTO batch = walletService.deductBatch(customerId, List.of(
+                new WalletService.DeductItem(new BigDecimal("1.00"), ProjectType.GENERAL, "{}", "pooled_ref_001"),
+                new WalletService.DeductItem(new BigDecimal("1.00"), ProjectType.GENERAL, "{}", "pooled_ref_002")));
+        credit(customerId, new BigDecimal("5.00"), "wx_tx_pooled_002");
+
+        // Recharges are saved through JPA, batch deducts through JDBC; ids still come out in write order
+        List<Long> rechargeIds = transactionRepository.findByCustomerId(customerId).stream()
+                .filter(t -> t.getType() == TransactionType.RECHARGE)
+                .map(Transaction::getId).sorted().toList();
+        assertEquals(2, rechargeIds.size());
+        assertTrue(rechargeIds.get(0) < batch.getTransactionIds().get(0));
+        assertTrue(batch.getTransactionIds().get(0) < batch.getTransactionIds().get(1));
+        assertTrue(batch.getTransactionIds().get(1) < rechargeIds.get(1));
+        assertEquals(new BigDecimal("13.00"), walletService.getBalance(customerId).getBalance());
+    }
+
+    @Test
+    void testIdentityCacheResolvesRepeatLoginsAndWrites() {
+        Long customerId = authService.handleWechatLogin("wallet_identity_code", "weixin").getCustomerId();
+        long openidHits = walletMetrics.get("wallet.identity-cache.openid.hits");
+        long accountHits = walletMetrics.get("wallet.identity-cache.account.hits");
+
+        assertEquals(customerId, authService.handleWechatLogin("wallet_identity_code", "weixin").getCustomerId());
+        assertTrue(walletMetrics.get("wallet.identity-cache.openid.hits") > openidHits);
+
+        credit(customerId, new BigDecimal("3.00"), "wx_tx_identity_001");
+        walletService.deduct(customerId, new BigDecimal("1.00"), ProjectType.GENERAL, "{}", "identity_ref_001");
+        assertTrue(walletMetrics.get("wallet.identity-cache.account.hits") > accountHits);
+        assertEquals(new BigDecimal("2.00"), walletService.getBalance(customerId).getBalance());
+
+        // Rows deleted behind the cache's back: the stale mapping is dropped and login starts over
+        balanceHoldRepository.deleteAll();
+        transactionRepository.deleteAll();
+        rechargeOrderEventRepository.deleteAll();
+        rechargeOrderRepository.deleteAll();
+        accountRepository.deleteAll();
+        customerRepository.deleteAll();
+        CustomerAuthService.LoginResponse again = authService.handleWechatLogin("wallet_identity_code", "weixin");
+        assertTrue(again.isNewCustomer());
+        assertNotEquals(customerId, again.getCustomerId());
+    }
+
+    @Test
+    void testCrossingTransfersNeitherDeadlockNorLoseBalance() throws Exception {
+        Long alice = authService.handleWechatLogin("wallet_transfer_a_code", "weixin").getCustomerId();
+        Long bob = authService.handleWechatLogin("wallet_transfer_b_code", "weixin").getCustomerId();
+        credit(alice, new BigDecimal("50.00"), "wx_tx_transfer_001");
+        credit(bob, new BigDecimal("50.00"), "wx_tx_transfer_002");
+
+        // Single transfers and batches cross A->B and B->A at the same time
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < 8; thread++) {
+            int t = thread;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 25; i++) {
+                    Long from = (t + i) % 2 == 0 ? alice : bob;
+                    Long to = from.equals(alice) ? bob : alice;
+                    if (t % 4 == 3) {
+                        walletService.transferBatch(List.of(
+                                new WalletService.TransferInstruction(from, to, new BigDecimal("0.30"), "xfer_" + t + "_" + i + "_a", null),
+                                new WalletService.TransferInstruction(to, from, new BigDecimal("0.20"), "xfer_" + t + "_" + i + "_b", null)));
+                    } else {
+                        walletService.transfer(from, to, new BigDecimal("0.50"), "xfer_" + t + "_" + i, null);
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        BigDecimal aliceBalance = walletService.getBalance(alice).getBalance();
+        BigDecimal bobBalance = walletService.getBalance(bob).getBalance();
+        assertEquals(new BigDecimal("100.00"), aliceBalance.add(bobBalance));
+        assertEquals(250, transactionRepository.findAll().stream()
+                .filter(tx -> tx.getType() == TransactionType.TRANSFER_OUT).count());
+        assertEquals(250, transactionRepository.findAll().stream()
+                .filter(tx -> tx.getType() == TransactionType.TRANSFER_IN).count());
+        ReconciliationRunDTO run = reconciliationJob.reconcile();
+        assertTrue(reconciliationJob.getRun(run.getId(), Integer.MAX_VALUE).getDrifts().stream()
+                .noneMatch(d -> d.getCustomerId().equals(alice) || d.getCustomerId().equals(bob)));
+
+        // A retry returns the original transfer; reusing its reference for another transfer fails
+        TransferDTO first = walletService.transfer(alice, bob, new BigDecimal("1.00"), "xfer_retry", null);
+        TransferDTO retry = walletService.transfer(alice, bob, new BigDecimal("1.00"), "xfer_retry", null);
+        assertEquals(first.getOutTransactionId(), retry.getOutTransactionId());
+        assertEquals(first.getInTransactionId(), retry.getInTransactionId());
+        assertThrows(IllegalArgumentException.class,
+                () -> walletService.transfer(bob, alice, new BigDecimal("1.00"), "xfer_retry", null));
+        assertThrows(InsufficientBalanceException.class,
+                () -> walletService.transfer(alice, bob, new BigDecimal("1000.00"), "xfer_too_much", null));
+
+        TransferReportDTO report = walletService.transferBatch(List.of(
+                new WalletService.TransferInstruction(alice, bob, new BigDecimal("1.00"), "xfer_retry", null),
+                new WalletService.TransferInstruction(alice, bob, new BigDecimal("1000.00"), "xfer_batch_too_much", null),
+                new WalletService.TransferInstruction(bob, alice, new BigDecimal("2.00"), "xfer_batch_ok", null)));
+        assertEquals(1, report.getTransferred());
+        assertEquals(1, report.getDuplicates());
+        assertEquals(1, report.getFailed());
+        assertEquals(aliceBalance.subtract(new BigDecimal("1.00")).add(new BigDecimal("2.00")),
+                walletService.getBalance(alice).getBalance());
+    }
+
+    @Test
+    void testTransfersRejectShardedSenders() {
+        Long sharded = authService.handleWechatLogin("wallet_transfer_shard_code", "weixin").getCustomerId();
+        Long plain = authService.handleWechatLogin("wallet_transfer_plain_code", "weixin").getCustomerId();
+        credit(sharded, new BigDecimal("10.00"), "wx_tx_transfer_shard_001");
+        credit(plain, new BigDecimal("10.00"), "wx_tx_transfer_shard_002");
+        shardedBalanceService.enable(sharded, 4);
+
+        IllegalStateException rejected = assertThrows(IllegalStateException.class,
+                () -> walletService.transfer(sharded, plain, new BigDecimal("1.00"), "xfer_shard_out", null));
+        assertEquals("Transfers are not supported on sharded accounts", rejected.getMessage());
+
+        // Paying into a sharded account only touches its accounts row, which its balance includes
+        walletService.transfer(plain, sharded, new BigDecimal("2.00"), "xfer_shard_in", null);
+        assertEquals(new BigDecimal("12.00"), walletService.getBalance(sharded).getBalance());
+        assertEquals(new BigDecimal("8.00"), walletService.getBalance(plain).getBalance());
+    }
+
+    @Test
+    void testBalanceAtReplaysFromNearestEarlierCheckpoint() {
+        Long customerId = authService.handleWechatLogin("wallet_checkpoint_code", "weixin").getCustomerId();
+        credit(customerId, new BigDecimal("10.00"), "wx_tx_checkpoint_001");
+        walletService.deduct(customerId, new BigDecimal("3.00"), ProjectType.GENERAL, "{}", "checkpoint_spend_001");
+
+        // Backdate the ledger: the recharge three days ago, the spend yesterday
+        LocalDate today = LocalDate.now();
+        jdbcTemplate.update("UPDATE transactions SET created_at = ? WHERE customer_id = ? AND type = 'RECHARGE'",
+                today.minusDays(3).atTime(12, 0), customerId);
+        jdbcTemplate.update("UPDATE transactions SET created_at = ? WHERE customer_id = ? AND type = 'SPEND'",
+                today.minusDays(1).atTime(12, 0), customerId);
+        assertEquals(0, balanceCheckpointJob.checkpoint(today.minusDays(2)));
+
+        BalanceAtDTO beforeRecharge = walletService.balanceAt(customerId,
+                today.minusDays(3).atStartOfDay(ZoneId.systemDefault()).toInstant());
+        assertEquals(0, beforeRecharge.getBalance().compareTo(BigDecimal.ZERO));
+
+        BalanceAtDTO atCheckpoint = walletService.balanceAt(customerId,
+                today.minusDays(2).atTime(6, 0).atZone(ZoneId.systemDefault()).toInstant());
+        assertEquals(today.minusDays(2).atStartOfDay(), atCheckpoint.getCheckpointAt());
+        assertEquals(new BigDecimal("10.00"), atCheckpoint.getBalance());
+        assertEquals(0, atCheckpoint.getReplayedTransactions());
+
+        BalanceAtDTO current = walletService.balanceAt(customerId, Instant.now());
+        assertEquals(today.minusDays(2).atStartOfDay(), current.getCheckpointAt());
+        assertEquals(new BigDecimal("7.00"), current.getBalance());
+        assertEquals(new BigDecimal("3.00"), current.getTotalSpend());
+        assertEquals(1, current.getReplayedTransactions());
+        assertEquals(walletService.getBalance(customerId).getBalance(), current.getBalance());
+    }
+
+    @Test
+    void testMonthlyStatementCarriesOpeningBalanceAndSpendByProject() {
+        Long customerId = authService.handleWechatLogin("wallet_statement_code", "weixin").getCustomerId();
+        credit(customerId, new BigDecimal("10.00"), "wx_tx_statement_001");
+        walletService.deduct(customerId, new BigDecimal("3.00"), ProjectType.GENERAL, "{}", "statement_spend_001");
+        walletService.deduct(customerId, new BigDecimal("2.00"), ProjectType.PROMOTION, "{}", "statement_spend_002");
+
+        // Backdate the ledger: the recharge before last month, the spends during it
+        YearMonth lastMonth = YearMonth.now().minusMonths(1);
+        jdbcTemplate.update("UPDATE transactions SET created_at = ? WHERE customer_id = ? AND type = 'RECHARGE'",
+                lastMonth.minusMonths(1).atDay(15).atStartOfDay(), customerId);
+        jdbcTemplate.update("UPDATE transactions SET created_at = ? WHERE customer_id = ? AND type = 'SPEND'",
+                lastMonth.atDay(10).atStartOfDay(), customerId);
+        jdbcTemplate.update("DELETE FROM statement_runs WHERE period_start = ?", lastMonth.atDay(1));
+
+        StatementRunDTO run = statementJob.generate(lastMonth);
+        assertEquals("COMPLETED", run.getStatus());
+        assertEquals(run.getRangesTotal(), run.getRangesCompleted());
+
+        StatementDTO statement = walletService.getStatement(customerId, lastMonth);
+        assertEquals(new BigDecimal("10.00"), statement.getOpeningBalance());
+        assertEquals(new BigDecimal("5.00"), statement.getSpendAmount());
+        assertEquals(new BigDecimal("5.00"), statement.getClosingBalance());
+        assertEquals(2, statement.getTransactionCount());
+        assertEquals(0, new BigDecimal("3.00").compareTo(statement.getSpendByProject().get(ProjectType.GENERAL)));
+        assertEquals(0, new BigDecimal("2.00").compareTo(statement.getSpendByProject().get(ProjectType.PROMOTION)));
+
+        // A repeated run is a no-op on the completed month
+        assertEquals(run.getStatementCount(), statementJob.generate(lastMonth).getStatementCount());
+        assertThrows(IllegalArgumentException.class, () -> walletService.getStatement(customerId, YearMonth.now()));
+    }
+
+    @Test
+    void testShortfallPurchaseHoldsBalanceAndCompletesOnPayment() {
+        Long customerId = authService.handleWechatLogin("wallet_shortfall_code", "weixin").getCustomerId();
+        credit(customerId, new BigDecimal("3.00"), "wx_tx_shortfall_001");
+
+        ShortfallPurchaseDTO started = walletService.purchaseWithShortfall(customerId, PaymentChannel.WECHAT_PAY,
+                new BigDecimal("10.00"), ProjectType.POND_ARTICLES, "{}", "shortfall_purchase_001");
+        assertEquals(ShortfallPurchaseStatus.AWAITING_PAYMENT, started.getStatus());
+        assertEquals(new BigDecimal("3.00"), started.getHeldAmount());
+        assertEquals(new BigDecimal("7.00"), started.getShortfallAmount());
+        assertNotNull(started.getOrderNo());
+        assertEquals(new BigDecimal("3.00"), walletService.getBalance(customerId).getHeldAmount());
+
+        // A retried request returns the same purchase instead of opening a second order
+        assertEquals(started.getOrderNo(), walletService.purchaseWithShortfall(customerId, PaymentChannel.WECHAT_PAY,
+                new BigDecimal("10.00"), ProjectType.POND_ARTICLES, "{}", "shortfall_purchase_001").getOrderNo());
+
+        String callbackBody = "{\"orderNo\":\"" + started.getOrderNo() + "\",\"providerTransactionId\":\"wx_tx_shortfall_002\",\"paid\":true}";
+        walletService.handleWechatPayNotification(Map.of(), callbackBody);
+        walletService.handleWechatPayNotification(Map.of(), callbackBody);
+
+        ShortfallPurchaseDTO completed = walletService.getShortfallPurchase(customerId, started.getOrderNo());
+        assertEquals(ShortfallPurchaseStatus.COMPLETED, completed.getStatus());
+        assertNotNull(completed.getTransactionId());
+        assertEquals(0, walletService.getBalance(customerId).getBalance().compareTo(BigDecimal.ZERO));
+        assertEquals(0, walletService.getBalance(customerId).getHeldAmount().compareTo(BigDecimal.ZERO));
+        assertEquals(new BigDecimal("10.00"), walletService.getTotalAmount(customerId, TransactionType.SPEND));
+    }
+
+    @Test
+    void testVelocityLimitCoversHoldCapturesAndShortfallPurchases() {
+        Long customerId = authService.handleWechatLogin("wallet_velocity_paths_code", "weixin").getCustomerId();
+        credit(customerId, new BigDecimal("20.00"), "wx_tx_velocity_paths_001");
+
+        BalanceHold hold = walletService.authorizeHold(customerId, new BigDecimal("4.00"), ProjectType.SUBSCRIPTION,
+                "velocity_hold_001", null);
+        walletService.captureHold(customerId, hold.getId(), null);
+
+        // The capture used 4.00 of the 5.00 per-minute cap, so a covered purchase of 2.00 is refused before it spends
+        assertThrows(VelocityLimitExceededException.class, () -> walletService.purchaseWithShortfall(customerId,
+                PaymentChannel.WECHAT_PAY, new BigDecimal("2.00"), ProjectType.SUBSCRIPTION, "{}", "velocity_purchase_001"));
+        assertTrue(shortfallPurchaseRepository.findByCustomerIdAndReferenceNo(customerId, "velocity_purchase_001").isEmpty());
+
+        // Capturing the same hold again is a retry and is not counted twice
+        walletService.captureHold(customerId, hold.getId(), null);
+        ShortfallPurchaseDTO covered = walletService.purchaseWithShortfall(customerId, PaymentChannel.WECHAT_PAY,
+                new BigDecimal("1.00"), ProjectType.SUBSCRIPTION, "{}", "velocity_purchase_002");
+        assertEquals(ShortfallPurchaseStatus.COMPLETED, covered.getStatus());
+        assertThrows(VelocityLimitExceededException.class, () ->
+                walletService.deduct(customerId, new BigDecimal("0.01"), ProjectType.SUBSCRIPTION, "{}", "velocity_paths_003"));
+        assertEquals(new BigDecimal("15.00"), walletService.getBalance(customerId).getBalance());
+    }
+
+    @Test
+    void testShortfallPurchaseFailsAndReleasesHoldWhenPaymentCannotBeOpened() {
+        Long customerId = authService.handleWechatLogin("wallet_shortfall_fail_code", "weixin").getCustomerId();
+        credit(customerId, new BigDecimal("3.00"), "wx_tx_shortfall_fail_001");
+
+        // More fen than WeChat Pay accepts: the provider call fails after the hold was committed
+        assertThrows(ArithmeticException.class, () -> walletService.purchaseWithShortfall(customerId, PaymentChannel.WECHAT_PAY,
+                new BigDecimal("30000000.00"), ProjectType.GENERAL, "{}", "shortfall_fail_001"));
+
+        ShortfallPurchase failed = shortfallPurchaseRepository.findByCustomerIdAndReferenceNo(customerId, "shortfall_fail_001").orElseThrow();
+        assertEquals(ShortfallPurchaseStatus.FAILED, failed.getStatus());
+        assertNull(failed.getOrderNo());
+        assertEquals(0, walletService.getBalance(customerId).getHeldAmount().compareTo(BigDecimal.ZERO));
+        assertEquals(new BigDecimal("3.00"), walletService.getBalance(customerId).getBalance());
+    }
+
+    @Test
+    void testVelocityLimitRejectsSpendsOverTheMinuteCap() {
+        Long customerId = authService.handleWechatLogin("wallet_velocity_code", "weixin").getCustomerId();
+        credit(customerId, new BigDecimal("4.00"), "wx_tx_velocity_001");
+        long rejectedBefore = walletMetrics.get("wallet.velocity.rejected");
+
+        walletService.deduct(customerId, new BigDecimal("3.00"), ProjectType.SUBSCRIPTION, "{}", "velocity_spend_001");
+        // A failed deduct gives its share of the cap back
+        assertThrows(InsufficientBalanceException.class, () ->
+                walletService.deduct(customerId, new BigDecimal("2.00"), ProjectType.SUBSCRIPTION, "{}", "velocity_spend_002"));
+
+        credit(customerId, new BigDecimal("10.00"), "wx_tx_velocity_002");
+        walletService.deduct(customerId, new BigDecimal("2.00"), ProjectType.SUBSCRIPTION, "{}", "velocity_spend_003");
+        assertThrows(VelocityLimitExceededException.class, () ->
+                walletService.deduct(customerId, new BigDecimal("0.01"), ProjectType.SUBSCRIPTION, "{}", "velocity_spend_004"));
+        assertEquals(rejectedBefore + 1, walletMetrics.get("wallet.velocity.rejected"));
+
+        // Retries of an applied spend and other project types are not capped
+        walletService.deduct(customerId, new BigDecimal("3.00"), ProjectType.SUBSCRIPTION, "{}", "velocity_spend_001");
+        walletService.deduct(customerId, new BigDecimal("5.00"), ProjectType.GENERAL, "{}", "velocity_spend_005");
+        assertEquals(new BigDecimal("4.00"), walletService.getBalance(customerId).getBalance());
+    }
+
+    @Test
+    void testAccountLaneSerializesWritersOnOneCustomer() throws Exception {
+        AtomicInteger inside = new AtomicInteger();
+        AtomicInteger maxInside = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> writers = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                writers.add(pool.submit(() -> accountLanes.run(42L, () -> {
+                    maxInside.accumulateAndGet(inside.incrementAndGet(), Math::max);
+                    try {
+                        Thread.sleep(20);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return inside.decrementAndGet();
+                })));
+            }
+            for (Future<Integer> writer : writers) {
+                writer.get(5, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(1, maxInside.get());
+    }
+
+    @Test
+    void testPooledIdsStayUniqueWhenThreadsRefillConcurrently() throws Exception {
+        WalletProperties properties = new WalletProperties();
+        properties.getIds().setAllocationSize(10);
+        PooledIdAllocator allocator = new PooledIdAllocator(jdbcTemplate, properties, transactionManager);
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        try {
+            List<Future<?>> callers = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                callers.add(pool.submit(() -> {
+                    for (int n = 0; n < 50; n++) {
+                        for (long id : allocator.next("comments", 3)) {
+                            ids.add(id);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> caller : callers) {
+                caller.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(8 * 50 * 3, ids.size());
+    }
+
+    @Test
+    void testAccountLaneTimesOutWhenTheLaneStaysBusy() throws Exception {
+        WalletProperties properties = new WalletProperties();
+        properties.getLanes().setAcquireTimeoutMs(50);
+        AccountLanes lanes = new AccountLanes(properties, walletMetrics);
+        long timeoutsBefore = walletMetrics.get("wallet.lane.timeouts");
+
+        CountDownLatch held = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            pool.submit(() -> lanes.run(7L, () -> {
+                held.countDown();
+                try {
+                    return done.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }));
+            assertTrue(held.await(5, TimeUnit.SECONDS));
+
+            IllegalStateException busy = assertThrows(IllegalStateException.class, () -> lanes.run(7L, () -> true));
+            assertEquals("Wallet account is busy, please retry", busy.getMessage());
+            assertEquals(timeoutsBefore + 1, walletMetrics.get("wallet.lane.timeouts"));
+        } finally {
+            done.countDown();
+            pool.shutdown();
+        }
+        // The lane is usable again once the holder leaves
+        assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+        assertTrue(lanes.run(7L, () -> true));
+    }
+
+    private void credit(Long customerId, BigDecimal amount, String providerTransactionId) {
+        RechargeInitiationDTO initiation = walletService.initiateRecharge(customerId, PaymentChannel.WECHAT_PAY, amount, null);
+        String callbackBody = "{\"orderNo\":\"" + initiation.getOrderNo() + "\",\"providerTransactionId\":\"" + providerTransactionId + "\",\"paid\":true}";
+        walletService.handleWechatPayNotification(Map.of(), callbackBody);
+    }
 }
@@ -0,0 +1,144 @@
+package com.example.core.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Insert throughput of ledger-shaped rows with IDENTITY ids (one statement and one generated-key
+ * round trip per row, which is what Hibernate falls back to for IDENTITY entities) against pooled
+ * ids (one id_sequences round trip per block, then a single JDBC batch). Needs a MySQL database:
+ * pass {@code -Dbenchmark.jdbc.url=...}, {@code -Dbenchmark.jdbc.user} and {@code -Dbenchmark.jdbc.password};
+ * it only touches temporary tables. Scores are rows per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IdAllocationInsertBenchmark {
+
+    private static final int ROWS = 100;
+
+    private static final String INSERT_IDENTITY =
+            "INSERT INTO bench_transactions (customer_id, account_id, type, amount, project_type, reference_no) " +
+            "VALUES (?, ?, 'SPEND', ?, 'GENERAL', ?)";
+
+    private static final String INSERT_POOLED =
+            "INSERT INTO bench_transactions (id, customer_id, account_id, type, amount, project_type, reference_no) " +
+            "VALUES (?, ?, ?, 'SPEND', ?, 'GENERAL', ?)";
+
+    private Connection connection;
+    private long reference;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection(
+                System.getProperty("benchmark.jdbc.url",
+                        "jdbc:mysql://localhost:3306/core_db_test?useSSL=false&serverTimezone=UTC" +
+                        "&allowPublicKeyRetrieval=true&rewriteBatchedStatements=true"),
+                System.getProperty("benchmark.jdbc.user", "root"),
+                System.getProperty("benchmark.jdbc.password", "password"));
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TEMPORARY TABLE bench_transactions (" +
+                    "id BIGINT AUTO_INCREMENT PRIMARY KEY, customer_id BIGINT NOT NULL, account_id BIGINT NOT NULL, " +
+                    "type VARCHAR(20) NOT NULL, amount DECIMAL(10,2) NOT NULL, project_type VARCHAR(20) NOT NULL, " +
+                    "reference_no VARCHAR(64), created_at DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP, " +
+                    "INDEX idx_bench_customer_created (customer_id, created_at)) ENGINE=InnoDB");
+            statement.execute("CREATE TEMPORARY TABLE bench_sequences (name VARCHAR(64) PRIMARY KEY, next_val BIGINT NOT NULL) ENGINE=InnoDB");
+            // Pooled ids start far above anything the IDENTITY benchmark can reach
+            statement.execute("INSERT INTO bench_sequences VALUES ('bench_transactions', 1000000000000)");
+        }
+        connection.setAutoCommit(false);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long identityInserts() throws SQLException {
+        long last = 0;
+        try (PreparedStatement ps = connection.prepareStatement(INSERT_IDENTITY, Statement.RETURN_GENERATED_KEYS)) {
+            for (int i = 0; i < ROWS; i++) {
+                bind(ps, 1);
+                ps.executeUpdate();
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    keys.next();
+                    last = keys.getLong(1);
+                }
+            }
+        }
+        connection.commit();
+        return last;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long pooledBatchInserts() throws SQLException {
+        // One block per batch: the same round trip PooledIdAllocator makes when its pool runs dry
+        long end;
+        try (PreparedStatement reserve = connection.prepareStatement(
+                "UPDATE bench_sequences SET next_val = LAST_INSERT_ID(next_val + ?) WHERE name = 'bench_transactions'")) {
+            reserve.setInt(1, ROWS);
+            reserve.executeUpdate();
+        }
+        try (Statement statement = connection.createStatement(); ResultSet rs = statement.executeQuery("SELECT LAST_INSERT_ID()")) {
+            rs.next();
+            end = rs.getLong(1);
+        }
+        connection.commit();
+
+        try (PreparedStatement ps = connection.prepareStatement(INSERT_POOLED)) {
+            for (long id = end - ROWS; id < end; id++) {
+                ps.setLong(1, id);
+                bind(ps, 2);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+        connection.commit();
+        return end;
+    }
+
+    private void bind(PreparedStatement ps, int offset) throws SQLException {
+        reference++;
+        ps.setLong(offset, reference % 1000);
+        ps.setLong(offset + 1, reference % 1000);
+        ps.setBigDecimal(offset + 2, BigDecimal.ONE);
+        ps.setString(offset + 3, "bench_" + reference);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(IdAllocationInsertBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.core.benchmark;
+
+import com.example.core.entity.Account;
+import com.example.core.money.Money;
+import com.example.core.repository.AccountBalanceRow;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the in-memory part of a spend (cover check, debit, total spend) as the two write paths
+ * run it: the JPA deduct path on the {@link Account} entity's {@link BigDecimal} columns, and the
+ * JDBC paths (batch deduct, group commit) on an {@link AccountBalanceRow} held in fen.
+ * Run with {@code -prof gc} to see the allocation rate per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoneyArithmeticBenchmark {
+
+    private static final BigDecimal START = new BigDecimal("1000000.00");
+
+    private static final Money START_MONEY = Money.of(START);
+    private static final Money HELD_MONEY = Money.of(new BigDecimal("10.00"));
+
+    private Account account;
+    private BigDecimal decimalSpend;
+
+    private AccountBalanceRow row;
+    private Money moneySpend;
+
+    @Setup
+    public void setUp() {
+        account = new Account();
+        account.setBalance(START);
+        account.setHeldAmount(new BigDecimal("10.00"));
+        decimalSpend = new BigDecimal("0.01");
+
+        row = new AccountBalanceRow(1L, 1L, START_MONEY, HELD_MONEY);
+        moneySpend = Money.of(decimalSpend);
+    }
+
+    /**
+     * What {@code WalletService} does per spend on the default JPA engine
+     */
+    @Benchmark
+    public BigDecimal bigDecimalDeduct() {
+        if (!account.canCover(decimalSpend)) {
+            account.setBalance(START);
+        }
+        account.debit(decimalSpend);
+        return account.getBalance();
+    }
+
+    /**
+     * What {@code GroupCommitDeductEngine} and {@code deductBatch} do per spend on a locked row
+     */
+    @Benchmark
+    public long moneyDeduct() {
+        if (!row.canCover(moneySpend)) {
+            row = new AccountBalanceRow(1L, 1L, START_MONEY, HELD_MONEY);
+        }
+        row.debit(moneySpend);
+        return row.getBalance().getFen();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(MoneyArithmeticBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}